@@ -10,11 +10,14 @@ package org.jhotdraw.draw;
 import org.jhotdraw.draw.figure.Figure;
 import org.jhotdraw.draw.figure.AbstractAttributedCompositeFigure;
 import java.awt.font.*;
+import java.awt.geom.Rectangle2D;
 import java.io.*;
 import java.util.*;
-import javax.swing.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.swing.event.*;
 import javax.swing.undo.*;
+import org.jhotdraw.draw.event.FigureEvent;
 import org.jhotdraw.draw.io.InputFormat;
 import org.jhotdraw.draw.io.OutputFormat;
 import org.jhotdraw.xml.*;
@@ -28,11 +31,31 @@ import org.jhotdraw.xml.*;
 public abstract class AbstractDrawing extends AbstractAttributedCompositeFigure implements Drawing {
 
     private static final long serialVersionUID = 1L;
-    private static final Object LOCK = new JPanel().getTreeLock();
+    /**
+     * The lock of this drawing.
+     */
+    private ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
     private transient FontRenderContext fontRenderContext;
     private LinkedList<InputFormat> inputFormats = new LinkedList<>();
     private LinkedList<OutputFormat> outputFormats = new LinkedList<>();
     private static boolean debugMode = false;
+    /**
+     * The nesting depth of {@link #beginUpdate}.
+     */
+    private transient int updateDepth;
+    /**
+     * The children which have changed during the current update.
+     */
+    private transient LinkedHashSet<Figure> deferredFigures;
+    /**
+     * The union of the areas which have been invalidated during the current
+     * update.
+     */
+    private transient Rectangle2D.Double deferredArea;
+    /**
+     * The connection index. This is created lazily.
+     */
+    private transient ConnectionIndex connectionIndex;
 
     /**
      * Creates a new instance.
@@ -40,6 +63,145 @@ public abstract class AbstractDrawing extends AbstractAttributedCompositeFigure
     public AbstractDrawing() {
     }
 
+    /**
+     * Defers figure events of the children while an update is in progress.
+     */
+    protected class DrawingEventHandler extends EventHandler {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void figureChanged(FigureEvent e) {
+            if (!deferChildEvent(e, true)) {
+                super.figureChanged(e);
+            }
+            invalidateConnections(e, true);
+        }
+
+        @Override
+        public void areaInvalidated(FigureEvent e) {
+            if (!deferChildEvent(e, false)) {
+                super.areaInvalidated(e);
+            }
+            invalidateConnections(e, false);
+        }
+    }
+
+    @Override
+    protected EventHandler createEventHandler() {
+        return new DrawingEventHandler();
+    }
+
+    @Override
+    public void beginUpdate() {
+        updateDepth++;
+    }
+
+    @Override
+    public void endUpdate() {
+        if (updateDepth < 1) {
+            throw new IllegalStateException("endUpdate was called without a prior call to beginUpdate. " + updateDepth);
+        }
+        updateDepth--;
+        if (updateDepth == 0 && deferredArea != null) {
+            Set<Figure> changedFigures = deferredFigures;
+            Rectangle2D.Double invalidatedArea = deferredArea;
+            deferredFigures = null;
+            deferredArea = null;
+            childrenChanged(changedFigures, invalidatedArea);
+        }
+        if (updateDepth == 0 && connectionIndex != null && !connectionIndex.isValid()) {
+            // The connections are laid out after the changed children have
+            // been processed, because liners may look up other figures.
+            // Their events are processed as a batch of its own.
+            updateDepth++;
+            try {
+                connectionIndex.validate();
+            } finally {
+                endUpdate();
+            }
+        }
+    }
+
+    @Override
+    public boolean isUpdating() {
+        return updateDepth > 0;
+    }
+
+    @Override
+    public ConnectionIndex getConnectionIndex() {
+        if (connectionIndex == null) {
+            connectionIndex = new ConnectionIndex(this);
+        }
+        return connectionIndex;
+    }
+
+    /**
+     * Records a figure event of a child if an update is in progress.
+     *
+     * @param e the event
+     * @param changed true if the event is a figure changed event, false if
+     * it is an area invalidated event.
+     * @return true if the event has been deferred.
+     */
+    protected boolean deferChildEvent(FigureEvent e, boolean changed) {
+        if (updateDepth == 0) {
+            return false;
+        }
+        if (deferredArea == null) {
+            deferredFigures = new LinkedHashSet<>();
+            deferredArea = (Rectangle2D.Double) e.getInvalidatedArea().clone();
+        } else {
+            deferredArea.add(e.getInvalidatedArea());
+        }
+        if (changed) {
+            deferredFigures.add(e.getFigure());
+        }
+        return true;
+    }
+
+    /**
+     * Informs the connection index about a figure event of a child, so that
+     * it can lay out the connections again which avoid figures near the
+     * invalidated area.
+     *
+     * @param e the event
+     * @param changed true if the event is a figure changed event, false if
+     * it is an area invalidated event.
+     */
+    protected void invalidateConnections(FigureEvent e, boolean changed) {
+        if (connectionIndex != null) {
+            connectionIndex.invalidateConnectionsNear(e.getFigure(), e.getInvalidatedArea(), changed);
+        }
+    }
+
+    /**
+     * This method is invoked by {@link #endUpdate} with the children which
+     * have changed during the update, and with the union of all areas which
+     * have been invalidated during the update.
+     * <p>
+     * This implementation updates the bounds of the drawing once, and fires a
+     * single figure changed event, or a single area invalidated event if no
+     * child has changed.
+     */
+    protected void childrenChanged(Set<Figure> changedFigures, Rectangle2D.Double invalidatedArea) {
+        if (changedFigures.isEmpty() || isChanging()) {
+            fireAreaInvalidated(invalidatedArea);
+            return;
+        }
+        invalidatedArea.add(getDrawingArea());
+        if (getLayouter() == null) {
+            for (Figure f : changedFigures) {
+                invalidateChild(f);
+            }
+        } else {
+            invalidate();
+            validate();
+        }
+        invalidatedArea.add(getDrawingArea());
+        fireFigureChanged(invalidatedArea);
+    }
+
     @Override
     public void addUndoableEditListener(UndoableEditListener l) {
         listenerList.add(UndoableEditListener.class, l);
@@ -86,29 +248,66 @@ public abstract class AbstractDrawing extends AbstractAttributedCompositeFigure
 
     @Override
     public void read(DOMInput in) throws IOException {
-        in.openElement("figures");
-        for (int i = 0; i < in.getElementCount(); i++) {
-            Figure f;
-            add(f = (Figure) in.readObject(i));
+        lock.writeLock().lock();
+        try {
+            in.openElement("figures");
+            while (in.hasNextElement()) {
+                add((Figure) in.readNextObject());
+            }
+            in.closeElement();
+        } finally {
+            lock.writeLock().unlock();
         }
-        in.closeElement();
     }
 
     @Override
     public void write(DOMOutput out) throws IOException {
-        out.openElement("figures");
-        for (Figure f : getChildren()) {
-            out.writeObject(f);
+        lock.readLock().lock();
+        try {
+            out.openElement("figures");
+            for (Figure f : getChildren()) {
+                out.writeObject(f);
+            }
+            out.closeElement();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void basicAdd(int index, Figure figure) {
+        lock.writeLock().lock();
+        try {
+            super.basicAdd(index, figure);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Figure basicRemoveChild(int index) {
+        lock.writeLock().lock();
+        try {
+            return super.basicRemoveChild(index);
+        } finally {
+            lock.writeLock().unlock();
         }
-        out.closeElement();
     }
 
     /**
-     * The drawing view synchronizes on the lock when drawing a drawing.
+     * Returns the lock of this drawing. Each drawing has its own lock.
      */
     @Override
     public Object getLock() {
-        return LOCK;
+        return lock;
+    }
+
+    /**
+     * The drawing view holds the read lock when drawing a drawing.
+     */
+    @Override
+    public ReadWriteLock getReadWriteLock() {
+        return lock;
     }
 
     @Override
@@ -173,6 +372,11 @@ public abstract class AbstractDrawing extends AbstractAttributedCompositeFigure
     @SuppressWarnings("unchecked")
     public AbstractDrawing clone() {
         AbstractDrawing that = (AbstractDrawing) super.clone();
+        that.lock = new ReentrantReadWriteLock();
+        that.updateDepth = 0;
+        that.deferredFigures = null;
+        that.deferredArea = null;
+        that.connectionIndex = null;
         that.inputFormats = (this.inputFormats == null) ? null : (LinkedList<InputFormat>) this.inputFormats.clone();
         that.outputFormats = (this.outputFormats == null) ? null : (LinkedList<OutputFormat>) this.outputFormats.clone();
         return that;
@@ -49,6 +49,7 @@ import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JLabel;
@@ -446,7 +447,13 @@ public abstract class AbstractDrawingView implements DrawingView, EditableCompon
                 }
                 g.setTransform(tx);
                 drawing.setFontRenderContext(g.getFontRenderContext());
-                drawing.draw(g);
+                Lock readLock = drawing.getReadWriteLock().readLock();
+                readLock.lock();
+                try {
+                    drawing.draw(g);
+                } finally {
+                    readLock.unlock();
+                }
                 g.dispose();
             }
         }
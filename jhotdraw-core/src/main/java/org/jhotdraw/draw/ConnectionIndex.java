@@ -0,0 +1,265 @@
+/*
+ * @(#)ConnectionIndex.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.awt.geom.Rectangle2D;
+import java.util.*;
+import org.jhotdraw.draw.event.FigureAdapter;
+import org.jhotdraw.draw.event.FigureEvent;
+import org.jhotdraw.draw.event.FigureListener;
+import org.jhotdraw.draw.figure.ConnectionFigure;
+import org.jhotdraw.draw.figure.Figure;
+
+/**
+ * Keeps track of the connection figures which are attached to the figures of
+ * a {@link Drawing}, and updates the connections when the figures change.
+ * <p>
+ * The index listens once to each connected figure, instead of each connection
+ * listening to both of its figures. While the drawing is in an update, see
+ * {@link Drawing#beginUpdate}, the index only records the connections which
+ * need to be updated. The drawing invokes {@link #validate} at the end of the
+ * update, which updates each recorded connection once. Thus, when a cluster
+ * of connected figures is dragged, each connection is laid out once per
+ * mouse event, even if both of its figures and the connection itself have
+ * been moved.
+ * <p>
+ * Connections with a liner which avoids figures, see
+ * {@link org.jhotdraw.draw.liner.Liner#avoidsFigures}, are also laid out
+ * again, when another figure changes in an area which intersects with them.
+ * Connections elsewhere in the drawing are not affected.
+ * <p>
+ * Connection figures add and remove themselves, when they are added to or
+ * removed from the drawing, and when their connectors change.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class ConnectionIndex {
+
+    private final Drawing drawing;
+    /**
+     * Maps figures to the connections which are attached to them.
+     */
+    private final IdentityHashMap<Figure, ArrayList<ConnectionFigure>> connectionsByFigure = new IdentityHashMap<>();
+    /**
+     * Maps connections to the figures with which they have been added to
+     * the index.
+     */
+    private final IdentityHashMap<ConnectionFigure, Figure[]> figuresByConnection = new IdentityHashMap<>();
+    /**
+     * The connections which need to be updated at the end of the update.
+     */
+    private final LinkedHashSet<ConnectionFigure> invalidConnections = new LinkedHashSet<>();
+    /**
+     * The connections with a liner which avoids figures.
+     */
+    private final Set<ConnectionFigure> figureAvoidingConnections = Collections.newSetFromMap(new IdentityHashMap<ConnectionFigure, Boolean>());
+    /**
+     * The connections which have been updated by the current invocation of
+     * {@link #validate}. This is null if no validation is in progress.
+     */
+    private Set<ConnectionFigure> validatedConnections;
+    private final FigureListener figureHandler = new FigureAdapter() {
+        @Override
+        public void figureChanged(FigureEvent e) {
+            invalidateConnections(e.getFigure());
+        }
+    };
+
+    /**
+     * Creates a new index for the specified drawing.
+     */
+    public ConnectionIndex(Drawing drawing) {
+        this.drawing = drawing;
+    }
+
+    /**
+     * Adds the connection with its current start and end figure. If the
+     * connection is already in the index, it is added again with its current
+     * figures and liner.
+     */
+    public void add(ConnectionFigure connection) {
+        remove(connection);
+        Figure start = connection.getStartFigure();
+        Figure end = connection.getEndFigure();
+        Figure[] figures;
+        if (start == null || end == null || start == end) {
+            figures = (start != null) ? new Figure[]{start}
+                    : (end != null) ? new Figure[]{end} : new Figure[0];
+        } else {
+            figures = new Figure[]{start, end};
+        }
+        figuresByConnection.put(connection, figures);
+        if (connection.getLiner() != null && connection.getLiner().avoidsFigures()) {
+            figureAvoidingConnections.add(connection);
+        }
+        for (Figure f : figures) {
+            ArrayList<ConnectionFigure> connections = connectionsByFigure.get(f);
+            if (connections == null) {
+                connections = new ArrayList<>(2);
+                connectionsByFigure.put(f, connections);
+                f.addFigureListener(figureHandler);
+            }
+            connections.add(connection);
+        }
+    }
+
+    /**
+     * Removes the connection from the index.
+     */
+    public void remove(ConnectionFigure connection) {
+        Figure[] figures = figuresByConnection.remove(connection);
+        if (figures == null) {
+            return;
+        }
+        invalidConnections.remove(connection);
+        figureAvoidingConnections.remove(connection);
+        for (Figure f : figures) {
+            ArrayList<ConnectionFigure> connections = connectionsByFigure.get(f);
+            connections.remove(connection);
+            if (connections.isEmpty()) {
+                connectionsByFigure.remove(f);
+                f.removeFigureListener(figureHandler);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the connection is in the index.
+     */
+    public boolean contains(ConnectionFigure connection) {
+        return figuresByConnection.containsKey(connection);
+    }
+
+    /**
+     * Returns the connections which are attached to the specified figure.
+     */
+    public List<ConnectionFigure> getConnections(Figure figure) {
+        ArrayList<ConnectionFigure> connections = connectionsByFigure.get(figure);
+        return (connections == null)
+                ? Collections.<ConnectionFigure>emptyList()
+                : Collections.unmodifiableList(connections);
+    }
+
+    /**
+     * Records the connections which are attached to the specified figure for
+     * {@link #validate}, and validates them immediately if the drawing is
+     * not in an update.
+     */
+    public void invalidateConnections(Figure figure) {
+        ArrayList<ConnectionFigure> connections = connectionsByFigure.get(figure);
+        if (connections == null) {
+            return;
+        }
+        invalidConnections.addAll(connections);
+        if (!drawing.isUpdating()) {
+            validate();
+        }
+    }
+
+    /**
+     * Records the connections which avoid figures, and which intersect with
+     * the specified area, for {@link #validate}. This method is invoked by
+     * the drawing for the figure events of its children.
+     * <p>
+     * Area invalidated events are fired before a figure changes, and figure
+     * changed events after it has changed. Therefore the connections are
+     * updated on the figure changed event, if the drawing is not in an
+     * update.
+     *
+     * @param figure The child which has fired the event.
+     * @param area The invalidated area.
+     * @param changed True for a figure changed event, false for an area
+     * invalidated event.
+     */
+    public void invalidateConnectionsNear(Figure figure, Rectangle2D.Double area, boolean changed) {
+        if (figureAvoidingConnections.isEmpty() || (figure instanceof ConnectionFigure)) {
+            return;
+        }
+        for (Figure f : drawing.findFigures(area)) {
+            if (f != figure && figureAvoidingConnections.contains(f)) {
+                invalidConnections.add((ConnectionFigure) f);
+            }
+        }
+        if (changed && !drawing.isUpdating()) {
+            validate();
+        }
+    }
+
+    /**
+     * Records the connection for {@link #validate}, if the drawing is in an
+     * update.
+     *
+     * @return true if the connection has been recorded, false if the caller
+     * must update the connection itself.
+     */
+    public boolean deferUpdate(ConnectionFigure connection) {
+        if (drawing.isUpdating() && figuresByConnection.containsKey(connection)) {
+            invalidConnections.add(connection);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the drawing is in an update, and the connection has
+     * been recorded for {@link #validate}.
+     */
+    public boolean isUpdateDeferred(ConnectionFigure connection) {
+        return drawing.isUpdating() && invalidConnections.contains(connection);
+    }
+
+    /**
+     * Returns true if no connections have been recorded for {@link #validate}.
+     */
+    public boolean isValid() {
+        return invalidConnections.isEmpty();
+    }
+
+    /**
+     * Updates all recorded connections once. This method is invoked by the
+     * drawing at the end of an update.
+     * <p>
+     * Connections which are attached to connections are recorded again,
+     * when the connection to which they are attached has been updated.
+     * Each connection is updated at most once per invocation of this
+     * method, so that connections which are attached to each other in a
+     * cycle are not updated endlessly. If this method is invoked while it
+     * is already updating connections, it returns immediately, and the
+     * recorded connections are updated by the enclosing invocation.
+     */
+    public void validate() {
+        if (validatedConnections != null) {
+            return;
+        }
+        validatedConnections = Collections.newSetFromMap(new IdentityHashMap<ConnectionFigure, Boolean>());
+        try {
+            while (!invalidConnections.isEmpty()) {
+                ConnectionFigure[] connections = invalidConnections.toArray(new ConnectionFigure[invalidConnections.size()]);
+                invalidConnections.clear();
+                for (ConnectionFigure c : connections) {
+                    if (validatedConnections.add(c)) {
+                        updateConnection(c);
+                    }
+                }
+            }
+        } finally {
+            validatedConnections = null;
+        }
+    }
+
+    /**
+     * Updates the connection. This lays out the connection with its liner.
+     */
+    protected void updateConnection(ConnectionFigure connection) {
+        invalidConnections.remove(connection);
+        connection.willChange();
+        connection.updateConnection();
+        connection.changed();
+    }
+}
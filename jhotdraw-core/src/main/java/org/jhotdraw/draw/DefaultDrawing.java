@@ -20,6 +20,7 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
 import static org.jhotdraw.draw.AttributeKeys.*;
 import org.jhotdraw.draw.figure.Figure;
 import org.jhotdraw.geom.Geom;
@@ -43,7 +44,6 @@ public class DefaultDrawing
         extends AbstractDrawing {
 
     private static final long serialVersionUID = 1L;
-    private boolean needsSorting = false;
 
     /**
      * Creates a new instance.
@@ -53,14 +53,24 @@ public class DefaultDrawing
 
     @Override
     public void basicAdd(int index, Figure figure) {
-        super.basicAdd(index, figure);
-        invalidateSortOrder();
+        Lock writeLock = getReadWriteLock().writeLock();
+        writeLock.lock();
+        try {
+            super.basicAdd(index, figure);
+            if (!isInLayerOrder(index)) {
+                Collections.sort(children, FigureLayerComparator.INSTANCE);
+                invalidateChildIndices();
+            }
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     @Override
     public void draw(Graphics2D g) {
-        synchronized (getLock()) {
-            ensureSorted();
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
             List<Figure> toDraw = new ArrayList<>(getChildren().size());
             Rectangle clipRect = g.getClipBounds();
             double scale = AttributeKeys.getScaleFactorFromGraphics(g);
@@ -70,6 +80,8 @@ public class DefaultDrawing
                 }
             }
             draw(g, toDraw);
+        } finally {
+            readLock.unlock();
         }
     }
 
@@ -93,117 +105,171 @@ public class DefaultDrawing
 
     @Override
     public List<Figure> sort(Collection<? extends Figure> c) {
-        Set<Figure> unsorted = new HashSet<>();
-        unsorted.addAll(c);
-        List<Figure> sorted = new ArrayList<>(c.size());
-        for (Figure f : getChildren()) {
-            if (unsorted.contains(f)) {
-                sorted.add(f);
-                unsorted.remove(f);
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            Set<Figure> unsorted = new HashSet<>();
+            unsorted.addAll(c);
+            List<Figure> sorted = new ArrayList<>(c.size());
+            for (Figure f : getChildren()) {
+                if (unsorted.contains(f)) {
+                    sorted.add(f);
+                    unsorted.remove(f);
+                }
             }
-        }
-        for (Figure f : c) {
-            if (unsorted.contains(f)) {
-                sorted.add(f);
-                unsorted.remove(f);
+            for (Figure f : c) {
+                if (unsorted.contains(f)) {
+                    sorted.add(f);
+                    unsorted.remove(f);
+                }
             }
+            return sorted;
+        } finally {
+            readLock.unlock();
         }
-        return sorted;
     }
 
     @Override
     public Figure findFigure(Point2D.Double p) {
-        for (Figure f : getFiguresFrontToBack()) {
-            if (f.isVisible() && f.contains(p)) {
-                return f;
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            for (Figure f : getFiguresFrontToBack()) {
+                if (f.isVisible() && f.contains(p)) {
+                    return f;
+                }
             }
+            return null;
+        } finally {
+            readLock.unlock();
         }
-        return null;
     }
 
     @Override
     public Figure findFigureExcept(Point2D.Double p, Figure ignore) {
-        for (Figure f : getFiguresFrontToBack()) {
-            if (f != ignore && f.isVisible() && f.contains(p)) {
-                return f;
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            for (Figure f : getFiguresFrontToBack()) {
+                if (f != ignore && f.isVisible() && f.contains(p)) {
+                    return f;
+                }
             }
+            return null;
+        } finally {
+            readLock.unlock();
         }
-        return null;
     }
 
     @Override
     public Figure findFigureBehind(Point2D.Double p, Figure figure) {
-        boolean isBehind = false;
-        for (Figure f : getFiguresFrontToBack()) {
-            if (isBehind) {
-                if (f.isVisible() && f.contains(p)) {
-                    return f;
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            boolean isBehind = false;
+            for (Figure f : getFiguresFrontToBack()) {
+                if (isBehind) {
+                    if (f.isVisible() && f.contains(p)) {
+                        return f;
+                    }
+                } else {
+                    isBehind = figure == f;
                 }
-            } else {
-                isBehind = figure == f;
             }
+            return null;
+        } finally {
+            readLock.unlock();
         }
-        return null;
     }
 
     @Override
     public Figure findFigureBehind(Point2D.Double p, Collection<? extends Figure> children) {
-        int inFrontOf = children.size();
-        for (Figure f : getFiguresFrontToBack()) {
-            if (inFrontOf == 0) {
-                if (f.isVisible() && f.contains(p)) {
-                    return f;
-                }
-            } else {
-                if (children.contains(f)) {
-                    inFrontOf--;
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            int inFrontOf = children.size();
+            for (Figure f : getFiguresFrontToBack()) {
+                if (inFrontOf == 0) {
+                    if (f.isVisible() && f.contains(p)) {
+                        return f;
+                    }
+                } else {
+                    if (children.contains(f)) {
+                        inFrontOf--;
+                    }
                 }
             }
+            return null;
+        } finally {
+            readLock.unlock();
         }
-        return null;
     }
 
     @Override
     public Figure findFigureExcept(Point2D.Double p, Collection<? extends Figure> ignore) {
-        for (Figure f : getFiguresFrontToBack()) {
-            if (!ignore.contains(f) && f.isVisible() && f.contains(p)) {
-                return f;
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            for (Figure f : getFiguresFrontToBack()) {
+                if (!ignore.contains(f) && f.isVisible() && f.contains(p)) {
+                    return f;
+                }
             }
+            return null;
+        } finally {
+            readLock.unlock();
         }
-        return null;
     }
 
     @Override
     public List<Figure> findFigures(Rectangle2D.Double bounds) {
-        List<Figure> intersection = new LinkedList<>();
-        for (Figure f : getChildren()) {
-            if (f.isVisible() && f.getBounds().intersects(bounds)) {
-                intersection.add(f);
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            List<Figure> intersection = new LinkedList<>();
+            for (Figure f : getChildren()) {
+                if (f.isVisible() && f.getBounds().intersects(bounds)) {
+                    intersection.add(f);
+                }
             }
+            return intersection;
+        } finally {
+            readLock.unlock();
         }
-        return intersection;
     }
 
     @Override
     public List<Figure> findFiguresWithin(Rectangle2D.Double bounds) {
-        List<Figure> contained = new LinkedList<>();
-        for (Figure f : getChildren()) {
-            Rectangle2D.Double r = f.getBounds();
-            if (f.get(TRANSFORM) != null) {
-                Rectangle2D rt = f.get(TRANSFORM).createTransformedShape(r).getBounds2D();
-                r = (rt instanceof Rectangle2D.Double) ? (Rectangle2D.Double) rt : new Rectangle2D.Double(rt.getX(), rt.getY(), rt.getWidth(), rt.getHeight());
-            }
-            if (f.isVisible() && Geom.contains(bounds, r)) {
-                contained.add(f);
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            List<Figure> contained = new LinkedList<>();
+            for (Figure f : getChildren()) {
+                Rectangle2D.Double r = f.getBounds();
+                if (f.get(TRANSFORM) != null) {
+                    Rectangle2D rt = f.get(TRANSFORM).createTransformedShape(r).getBounds2D();
+                    r = (rt instanceof Rectangle2D.Double) ? (Rectangle2D.Double) rt : new Rectangle2D.Double(rt.getX(), rt.getY(), rt.getWidth(), rt.getHeight());
+                }
+                if (f.isVisible() && Geom.contains(bounds, r)) {
+                    contained.add(f);
+                }
             }
+            return contained;
+        } finally {
+            readLock.unlock();
         }
-        return contained;
     }
 
     @Override
     public Figure findFigureInside(Point2D.Double p) {
-        Figure f = findFigure(p);
-        return (f == null) ? null : f.findFigureInside(p);
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            Figure f = findFigure(p);
+            return (f == null) ? null : f.findFigureInside(p);
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -212,26 +278,23 @@ public class DefaultDrawing
      */
     @Override
     public List<Figure> getFiguresFrontToBack() {
-        ensureSorted();
-        return new ReversedList<>(getChildren());
-    }
-
-    /**
-     * Invalidates the sort order.
-     */
-    private void invalidateSortOrder() {
-        needsSorting = true;
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            return new ReversedList<>(getChildren());
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
-     * Ensures that the children are sorted in z-order sequence from back to
-     * front.
+     * Returns true if the layer of the child at the specified index is
+     * consistent with the layers of its neighbours.
      */
-    private void ensureSorted() {
-        if (needsSorting) {
-            Collections.sort(children, FigureLayerComparator.INSTANCE);
-            needsSorting = false;
-        }
+    private boolean isInLayerOrder(int index) {
+        int layer = children.get(index).getLayer();
+        return (index == 0 || children.get(index - 1).getLayer() <= layer)
+                && (index == children.size() - 1 || children.get(index + 1).getLayer() >= layer);
     }
 
     @Override
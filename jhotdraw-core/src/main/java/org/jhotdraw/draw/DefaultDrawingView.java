@@ -14,6 +14,11 @@ import java.awt.geom.*;
 import java.awt.image.BufferedImage;
 import java.awt.image.VolatileImage;
 import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 import javax.swing.*;
 import javax.swing.undo.*;
 import org.jhotdraw.api.gui.EditableComponent;
@@ -99,6 +104,38 @@ public class DefaultDrawingView
      * buffer.
      */
     private Rectangle dirtyArea = new Rectangle(0, 0, -1, -1);
+    public static final String DRAWING_TILED_PROPERTY = "drawingTiled";
+    /**
+     * Holds rendered tiles of the drawing. This is null if the drawing is not
+     * tiled.
+     */
+    private DrawingTileCache tileCache;
+    private int maxTileCount = 128;
+    public static final String DRAWING_RENDERED_IN_BACKGROUND_PROPERTY = "drawingRenderedInBackground";
+    /**
+     * Whether tiles are rendered in the background.
+     */
+    private boolean isDrawingRenderedInBackground;
+    /**
+     * Tiles which are waiting to be recorded on the event dispatch thread.
+     */
+    private LinkedHashSet<DrawingTileCache.Key> pendingTiles = new LinkedHashSet<>();
+    /**
+     * Tiles which have been recorded, and which are rasterized by worker
+     * threads.
+     */
+    private HashMap<DrawingTileCache.Key, TileJob> renderingTiles = new HashMap<>();
+    /**
+     * Whether the tile recorder has been posted to the event queue.
+     */
+    private boolean isTileRecorderScheduled;
+    private static ThreadPoolExecutor tileRenderer;
+    public static final String LEVEL_OF_DETAIL_PROPERTY = "levelOfDetail";
+    /**
+     * The level of detail with which the figures are drawn. This is null if
+     * the figures are drawn with full detail.
+     */
+    private LevelOfDetail levelOfDetail;
     private boolean paintEnabled = true;
     private static final boolean IS_WINDOWS;
 
@@ -362,7 +399,9 @@ public class DefaultDrawingView
         drawBackground(g);
         drawCanvas(g);
         drawConstrainer(g);
-        if (isDrawingDoubleBuffered()) {
+        if (isDrawingTiled()) {
+            drawDrawingTiled(g);
+        } else if (isDrawingDoubleBuffered()) {
             if (IS_WINDOWS) {
                 drawDrawingNonvolatileBuffered(g);
             } else {
@@ -555,6 +594,318 @@ public class DefaultDrawingView
         dirtyArea.setSize(-1, -1);
     }
 
+    /**
+     * Draws the drawing from the tile cache.
+     * <p>
+     * If the drawing is rendered in the background, tiles which are not in
+     * the cache or which are stale are recorded one tile per event on the
+     * event dispatch thread, and rasterized by worker threads. Until they
+     * arrive, the stale tile or a tile of another scale factor is shown
+     * instead. Otherwise, the missing tiles are rendered before they are
+     * drawn.
+     */
+    protected void drawDrawingTiled(Graphics2D g) {
+        if (drawing == null || drawing.getChildCount() == 0 && emptyDrawingLabel != null) {
+            drawDrawing(g);
+            return;
+        }
+        Rectangle r = g.getClipBounds();
+        if (r == null) {
+            r = getVisibleRect();
+        }
+        int size = DrawingTileCache.TILE_SIZE;
+        int minX = Math.floorDiv(r.x + translation.x, size);
+        int minY = Math.floorDiv(r.y + translation.y, size);
+        int maxX = Math.floorDiv(r.x + r.width - 1 + translation.x, size);
+        int maxY = Math.floorDiv(r.y + r.height - 1 + translation.y, size);
+        if (isDrawingRenderedInBackground) {
+            cancelInvisibleTileJobs();
+        }
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                int vx = x * size - translation.x;
+                int vy = y * size - translation.y;
+                if (isDrawingRenderedInBackground) {
+                    BufferedImage tile = tileCache.getTile(scaleFactor, x, y);
+                    if (tile != null) {
+                        g.drawImage(tile, vx, vy, null);
+                    } else {
+                        Graphics2D gPlaceholder = (Graphics2D) g.create();
+                        gPlaceholder.clipRect(vx, vy, size, size);
+                        gPlaceholder.translate(-translation.x, -translation.y);
+                        tileCache.drawPlaceholder(gPlaceholder, scaleFactor, x, y);
+                        gPlaceholder.dispose();
+                    }
+                    if (!tileCache.isTileValid(scaleFactor, x, y)) {
+                        renderTileInBackground(x, y);
+                    }
+                } else {
+                    BufferedImage tile = tileCache.isTileValid(scaleFactor, x, y)
+                            ? tileCache.getTile(scaleFactor, x, y) : null;
+                    if (tile == null) {
+                        tile = createTile(drawing, getGraphicsConfiguration(), scaleFactor, x, y);
+                        if (tile == null) {
+                            // There is not enough memory available for a tile;
+                            // draw without tiles.
+                            drawDrawing(g);
+                            return;
+                        }
+                        tileCache.putTile(scaleFactor, x, y, tile);
+                    }
+                    g.drawImage(tile, vx, vy, null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Renders the specified tile of the drawing.
+     * <p>
+     * The drawing is locked for reading while the tile is rendered. This
+     * method must be invoked on the event dispatch thread, because figures
+     * update their caches while they are drawn.
+     *
+     * @param drawing The drawing.
+     * @param gc The graphics configuration of the view, can be null.
+     * @param scale The scale factor.
+     * @param x The x coordinate of the tile.
+     * @param y The y coordinate of the tile.
+     * @return the tile or null if there is not enough memory for the tile.
+     */
+    protected BufferedImage createTile(Drawing drawing, GraphicsConfiguration gc, double scale, int x, int y) {
+        BufferedImage tile = createTileImage(gc);
+        if (tile != null) {
+            Graphics2D gTile = tile.createGraphics();
+            try {
+                drawTile(gTile, drawing, scale, x, y);
+            } finally {
+                gTile.dispose();
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * Creates an empty tile, or returns null if there is not enough memory
+     * for the tile.
+     */
+    private static BufferedImage createTileImage(GraphicsConfiguration gc) {
+        int size = DrawingTileCache.TILE_SIZE;
+        try {
+            return (gc == null)
+                    ? new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB_PRE)
+                    : gc.createCompatibleImage(size, size, Transparency.TRANSLUCENT);
+        } catch (OutOfMemoryError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Draws the specified tile of the drawing into a graphics whose origin
+     * is at the origin of the tile. The drawing is locked for reading while
+     * it is drawn.
+     */
+    private void drawTile(Graphics2D g, Drawing drawing, double scale, int x, int y) {
+        int size = DrawingTileCache.TILE_SIZE;
+        setViewRenderingHints(g);
+        g.clipRect(0, 0, size, size);
+        g.translate(-x * size, -y * size);
+        g.scale(scale, scale);
+        drawing.setFontRenderContext(g.getFontRenderContext());
+        Lock readLock = drawing.getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            drawing.draw(g);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the shared pool of worker threads, which rasterize the
+     * recorded tiles.
+     */
+    private static synchronized ThreadPoolExecutor getTileRenderer() {
+        if (tileRenderer == null) {
+            int n = Runtime.getRuntime().availableProcessors();
+            tileRenderer = new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "DrawingTileRenderer");
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                }
+            });
+        }
+        return tileRenderer;
+    }
+
+    /**
+     * Records the next pending tile, hands the recording over to a worker
+     * thread, and posts itself again to the event queue while there are
+     * pending tiles. Events which are posted in the meantime, such as user
+     * input and repaints, are processed between two tiles.
+     * <p>
+     * The figures are drawn into the recording on the event dispatch thread,
+     * because they are not thread safe. The recording is a snapshot of the
+     * tile, which the worker thread rasterizes while the figures change.
+     */
+    private class TileRecorder implements Runnable {
+
+        @Override
+        public void run() {
+            isTileRecorderScheduled = false;
+            Iterator<DrawingTileCache.Key> i = pendingTiles.iterator();
+            if (!i.hasNext()) {
+                return;
+            }
+            DrawingTileCache.Key key = i.next();
+            i.remove();
+            if (tileCache != null && drawing != null) {
+                RecordingGraphics2D recording = new RecordingGraphics2D();
+                try {
+                    drawTile(recording, drawing, key.scaleFactor, key.x, key.y);
+                } finally {
+                    recording.dispose();
+                }
+                TileJob job = new TileJob(key, recording, getGraphicsConfiguration());
+                renderingTiles.put(key, job);
+                getTileRenderer().execute(job);
+            }
+            scheduleTileRecorder();
+        }
+    }
+
+    /**
+     * Rasterizes a recorded tile on a worker thread, and puts it into the
+     * tile cache on the event dispatch thread.
+     */
+    private class TileJob implements Runnable {
+
+        private final DrawingTileCache.Key key;
+        private final RecordingGraphics2D recording;
+        private final GraphicsConfiguration gc;
+        /**
+         * Set on the event dispatch thread, if an area of the drawing which
+         * intersects with the tile has changed after the tile was recorded.
+         */
+        private boolean isStale;
+
+        public TileJob(DrawingTileCache.Key key, RecordingGraphics2D recording, GraphicsConfiguration gc) {
+            this.key = key;
+            this.recording = recording;
+            this.gc = gc;
+        }
+
+        @Override
+        public void run() {
+            BufferedImage tile = null;
+            try {
+                tile = createTileImage(gc);
+                if (tile != null) {
+                    Graphics2D gTile = tile.createGraphics();
+                    try {
+                        recording.replay(gTile);
+                    } finally {
+                        gTile.dispose();
+                    }
+                }
+            } finally {
+                final BufferedImage result = tile;
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        tileRendered(TileJob.this, result);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Puts a tile, which has been rasterized by a worker thread, into the
+     * tile cache. The tile is dropped, if its job has been cancelled.
+     */
+    private void tileRendered(TileJob job, BufferedImage tile) {
+        DrawingTileCache.Key key = job.key;
+        if (renderingTiles.get(key) != job) {
+            return;
+        }
+        renderingTiles.remove(key);
+        if (tile != null) {
+            tileCache.putTile(key.scaleFactor, key.x, key.y, tile, job.isStale);
+        }
+        if (key.scaleFactor == scaleFactor) {
+            int size = DrawingTileCache.TILE_SIZE;
+            repaint(key.x * size - translation.x, key.y * size - translation.y, size, size);
+        }
+    }
+
+    private void scheduleTileRecorder() {
+        if (!isTileRecorderScheduled && !pendingTiles.isEmpty()) {
+            isTileRecorderScheduled = true;
+            SwingUtilities.invokeLater(new TileRecorder());
+        }
+    }
+
+    private void renderTileInBackground(int x, int y) {
+        DrawingTileCache.Key key = new DrawingTileCache.Key(scaleFactor, x, y);
+        if (!renderingTiles.containsKey(key)) {
+            pendingTiles.add(key);
+            scheduleTileRecorder();
+        }
+    }
+
+    /**
+     * Cancels the rendering of tiles which are not visible at the current
+     * scale factor.
+     */
+    private void cancelInvisibleTileJobs() {
+        if (pendingTiles.isEmpty() && renderingTiles.isEmpty()) {
+            return;
+        }
+        Rectangle vr = getVisibleRect();
+        int size = DrawingTileCache.TILE_SIZE;
+        int minX = Math.floorDiv(vr.x + translation.x, size);
+        int minY = Math.floorDiv(vr.y + translation.y, size);
+        int maxX = Math.floorDiv(vr.x + vr.width - 1 + translation.x, size);
+        int maxY = Math.floorDiv(vr.y + vr.height - 1 + translation.y, size);
+        for (Iterator<DrawingTileCache.Key> i = pendingTiles.iterator(); i.hasNext();) {
+            DrawingTileCache.Key key = i.next();
+            if (key.scaleFactor != scaleFactor
+                    || key.x < minX || key.x > maxX || key.y < minY || key.y > maxY) {
+                i.remove();
+            }
+        }
+        for (Iterator<TileJob> i = renderingTiles.values().iterator(); i.hasNext();) {
+            TileJob job = i.next();
+            DrawingTileCache.Key key = job.key;
+            if (key.scaleFactor != scaleFactor
+                    || key.x < minX || key.x > maxX || key.y < minY || key.y > maxY) {
+                getTileRenderer().remove(job);
+                i.remove();
+            }
+        }
+    }
+
+    private void cancelTileJobs() {
+        pendingTiles.clear();
+        for (TileJob job : renderingTiles.values()) {
+            getTileRenderer().remove(job);
+        }
+        renderingTiles.clear();
+    }
+
+    /**
+     * Returns the number of tiles which are waiting to be rendered in the
+     * background.
+     */
+    int getPendingTileCount() {
+        return pendingTiles.size() + renderingTiles.size();
+    }
+
     /**
      * Prints the drawing view. Uses high quality rendering hints for printing. Only prints the
      * drawing. Doesn't print the canvasColor, the grid, the handles and the tool.
@@ -582,6 +933,9 @@ public class DefaultDrawingView
         g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
         g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
         g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        if (levelOfDetail != null) {
+            g.setRenderingHint(LevelOfDetail.KEY_LEVEL_OF_DETAIL, levelOfDetail);
+        }
     }
 
     /**
@@ -648,7 +1002,13 @@ public class DefaultDrawingView
                 tx.scale(scaleFactor, scaleFactor);
                 g.setTransform(tx);
                 drawing.setFontRenderContext(g.getFontRenderContext());
-                drawing.draw(g);
+                Lock readLock = drawing.getReadWriteLock().readLock();
+                readLock.lock();
+                try {
+                    drawing.draw(g);
+                } finally {
+                    readLock.unlock();
+                }
                 g.dispose();
             }
         }
@@ -686,6 +1046,10 @@ public class DefaultDrawingView
             this.drawing.addFigureListener(eventHandler);
         }
         dirtyArea.add(bufferedArea);
+        if (tileCache != null) {
+            cancelTileJobs();
+            tileCache.clear();
+        }
         firePropertyChange(DRAWING_PROPERTY, oldValue, newValue);
         // Revalidate without flickering
         revalidate();
@@ -713,6 +1077,15 @@ public class DefaultDrawingView
         Rectangle vr = drawingToView(r);
         vr.grow(2, 2);
         dirtyArea.add(vr);
+        if (tileCache != null) {
+            // Grow by one more pixel, because drawingToView truncates
+            tileCache.invalidate(r, 3);
+            for (TileJob job : renderingTiles.values()) {
+                if (DrawingTileCache.intersects(job.key, r, 3)) {
+                    job.isStale = true;
+                }
+            }
+        }
         repaint(vr);
     }
 
@@ -733,6 +1106,10 @@ public class DefaultDrawingView
             drawingBufferV.flush();
             drawingBufferV = null;
         }
+        if (tileCache != null) {
+            cancelTileJobs();
+            tileCache.clear();
+        }
     }
 
     /**
@@ -1464,6 +1841,116 @@ public class DefaultDrawingView
         return isDrawingDoubleBuffered;
     }
 
+    /**
+     * Sets whether the drawing is drawn from a cache of rendered tiles.
+     * <p>
+     * The default value is false.
+     * <p>
+     * This is a bound property.
+     * <p>
+     * A tiled drawing only renders the tiles which are not in the cache.
+     * Tiles stay valid when the view is scrolled or zoomed back to a previous
+     * scale factor, and a change of a figure only invalidates the tiles
+     * underneath it. If the drawing is tiled, it is not double buffered.
+     */
+    public void setDrawingTiled(boolean newValue) {
+        boolean oldValue = isDrawingTiled();
+        if (newValue && tileCache == null) {
+            tileCache = new DrawingTileCache(maxTileCount);
+        } else if (!newValue) {
+            cancelTileJobs();
+            tileCache = null;
+        }
+        repaint();
+        firePropertyChange(DRAWING_TILED_PROPERTY, oldValue, newValue);
+    }
+
+    /**
+     * Returns true, if the drawing is drawn from a cache of rendered tiles.
+     */
+    public boolean isDrawingTiled() {
+        return tileCache != null;
+    }
+
+    /**
+     * Sets whether the tiles of the drawing are rendered in the background
+     * by a pool of worker threads. This has only an effect, if the drawing is
+     * tiled.
+     * <p>
+     * Figures are not thread safe. Therefore the figures are drawn into a
+     * recording of the tile on the event dispatch thread, one tile per event,
+     * and the worker threads rasterize the recordings. The view stays
+     * responsive while the tiles are rasterized, and a figure which changes
+     * in the meantime marks the tiles underneath it as stale.
+     * <p>
+     * The default value is false.
+     * <p>
+     * This is a bound property.
+     * <p>
+     * While a tile is rendered, the view shows the stale tile or tiles of
+     * other scale factors instead. Rendering of tiles which are no longer
+     * visible is cancelled when the view is scrolled or zoomed.
+     */
+    public void setDrawingRenderedInBackground(boolean newValue) {
+        boolean oldValue = isDrawingRenderedInBackground;
+        isDrawingRenderedInBackground = newValue;
+        if (!newValue) {
+            cancelTileJobs();
+        }
+        repaint();
+        firePropertyChange(DRAWING_RENDERED_IN_BACKGROUND_PROPERTY, oldValue, newValue);
+    }
+
+    /**
+     * Returns true, if the tiles of the drawing are rendered in the
+     * background.
+     */
+    public boolean isDrawingRenderedInBackground() {
+        return isDrawingRenderedInBackground;
+    }
+
+    /**
+     * Sets the maximal number of tiles which are kept in the cache, if the
+     * drawing is tiled. A tile uses 256 KB of memory.
+     * <p>
+     * The default value is 128.
+     */
+    public void setMaxTileCount(int newValue) {
+        maxTileCount = newValue;
+        if (tileCache != null) {
+            tileCache.setMaxTileCount(newValue);
+        }
+    }
+
+    public int getMaxTileCount() {
+        return maxTileCount;
+    }
+
+    /**
+     * Sets the level of detail with which the figures are drawn on the view.
+     * If the drawing is zoomed out, figures which are very small are skipped
+     * or drawn as boxes, and text which is very small is drawn as bars.
+     * Printing always draws the figures with full detail.
+     * <p>
+     * The default value is null, which draws the figures with full detail.
+     * <p>
+     * This is a bound property.
+     */
+    public void setLevelOfDetail(LevelOfDetail newValue) {
+        LevelOfDetail oldValue = levelOfDetail;
+        levelOfDetail = newValue;
+        if (tileCache != null) {
+            cancelTileJobs();
+            tileCache.clear();
+        }
+        repaint();
+        firePropertyChange(LEVEL_OF_DETAIL_PROPERTY, oldValue, newValue);
+    }
+
+    public LevelOfDetail getLevelOfDetail() {
+        return levelOfDetail;
+    }
+
     /**
      * Returns a paint for drawing the background of the drawing area.
      *
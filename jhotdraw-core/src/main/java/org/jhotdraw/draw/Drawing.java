@@ -12,6 +12,7 @@ import java.awt.font.*;
 import java.awt.geom.*;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
 import javax.swing.event.*;
 import javax.swing.undo.*;
 import org.jhotdraw.draw.figure.CompositeFigure;
@@ -345,9 +346,90 @@ public interface Drawing extends CompositeFigure, Serializable, DOMStorable {
     /**
      * Returns the lock object on which all threads acting on Figures in this
      * drawing synchronize to prevent race conditions.
+     * <p>
+     * Each drawing has its own lock object. New code should use
+     * {@link #getReadWriteLock} instead.
      */
     Object getLock();
 
+    /**
+     * Returns the read/write lock of this drawing.
+     * <p>
+     * Threads which draw, hit-test or export the drawing acquire the read
+     * lock. Threads which add, remove or reorder the figures of the drawing
+     * acquire the write lock. Many threads may draw the same drawing at the
+     * same time, and threads working on different drawings never contend.
+     * <p>
+     * The default implementation returns a lock which is kept for this
+     * drawing in a weak map. {@link AbstractDrawing} holds its own lock.
+     */
+    default ReadWriteLock getReadWriteLock() {
+        return DrawingReadWriteLocks.get(this);
+    }
+
+    /**
+     * Begins a batch of changes.
+     * <p>
+     * Until the matching call to {@link #endUpdate}, the drawing defers the
+     * processing of figure changed and area invalidated events of its
+     * children. On {@code endUpdate}, the drawing processes all changed
+     * children in a single pass and fires a single event for the union of the
+     * invalidated areas. Calls to {@code beginUpdate} and {@code endUpdate}
+     * can be nested, and must be balanced:
+     * <pre>
+     * drawing.beginUpdate();
+     * try {
+     *     for (Figure f : figures) {
+     *         f.willChange();
+     *         f.transform(tx);
+     *         f.changed();
+     *     }
+     * } finally {
+     *     drawing.endUpdate();
+     * }
+     * </pre>
+     * While an update is in progress, the drawing may return stale bounds and
+     * hit-test results for the changed children.
+     * <p>
+     * The default implementation does nothing, and the changes are processed
+     * one by one.
+     */
+    default void beginUpdate() {
+    }
+
+    /**
+     * Ends a batch of changes which has been begun with {@link #beginUpdate}.
+     * <p>
+     * The default implementation does nothing.
+     *
+     * @throws IllegalStateException if no update is in progress.
+     */
+    default void endUpdate() {
+    }
+
+    /**
+     * Returns true if an update is in progress.
+     * <p>
+     * The default implementation returns false.
+     */
+    default boolean isUpdating() {
+        return false;
+    }
+
+    /**
+     * Returns the index of the connection figures which are attached to the
+     * figures of this drawing. The connections which are attached to figures
+     * that change during an update are laid out once at the end of the
+     * update.
+     * <p>
+     * The default implementation returns null. The connections of a drawing
+     * without a connection index lay themselves out whenever a connected
+     * figure changes.
+     */
+    default ConnectionIndex getConnectionIndex() {
+        return null;
+    }
+
     /**
      * Adds an input format to the drawing.
      */
@@ -0,0 +1,41 @@
+/*
+ * @(#)DrawingReadWriteLocks.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Holds the read/write locks of drawings which do not provide their own
+ * lock. See {@link Drawing#getReadWriteLock}.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+final class DrawingReadWriteLocks {
+
+    private static final Map<Drawing, ReadWriteLock> LOCKS = new WeakHashMap<>();
+
+    private DrawingReadWriteLocks() {
+    }
+
+    /**
+     * Returns the lock of the specified drawing. The lock is created on the
+     * first call, and is discarded when the drawing is garbage collected.
+     */
+    static synchronized ReadWriteLock get(Drawing drawing) {
+        ReadWriteLock lock = LOCKS.get(drawing);
+        if (lock == null) {
+            lock = new ReentrantReadWriteLock();
+            LOCKS.put(drawing, lock);
+        }
+        return lock;
+    }
+}
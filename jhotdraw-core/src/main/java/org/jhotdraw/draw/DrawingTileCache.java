@@ -0,0 +1,251 @@
+/*
+ * @(#)DrawingTileCache.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds rendered tiles of a drawing for a drawing view.
+ * <p>
+ * A tile is a square image of {@link #TILE_SIZE} pixels. Tiles are keyed by
+ * the scale factor of the view and by their coordinates. Tile {@code (x, y)}
+ * covers the pixels from {@code x * TILE_SIZE} to
+ * {@code (x + 1) * TILE_SIZE - 1} and {@code y * TILE_SIZE} to
+ * {@code (y + 1) * TILE_SIZE - 1} of the drawing, after the drawing has been
+ * scaled by the scale factor. Since the tiles do not depend on the
+ * translation of the view, they stay valid when the view is scrolled, and
+ * since tiles of different scale factors are kept side by side, they stay
+ * valid when the view is zoomed back to a previous scale factor.
+ * <p>
+ * When an area of the drawing changes, the tiles underneath it are marked as
+ * stale. Stale tiles are kept until they are replaced, so that a view which
+ * renders tiles in the background can show them in the meantime.
+ * <p>
+ * If the cache holds more than the maximal number of tiles, the least
+ * recently used tiles are evicted.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class DrawingTileCache {
+
+    /**
+     * The width and height of a tile in pixels.
+     */
+    public static final int TILE_SIZE = 256;
+    private int maxTileCount;
+    private final LinkedHashMap<Key, Tile> tiles = new LinkedHashMap<>(64, 0.75f, true);
+
+    /**
+     * Key of a tile.
+     */
+    static class Key {
+
+        final double scaleFactor;
+        final int x;
+        final int y;
+
+        public Key(double scaleFactor, int x, int y) {
+            this.scaleFactor = scaleFactor;
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) obj;
+            return this.scaleFactor == that.scaleFactor && this.x == that.x && this.y == that.y;
+        }
+
+        @Override
+        public int hashCode() {
+            return (Double.hashCode(scaleFactor) * 31 + x) * 31 + y;
+        }
+    }
+
+    private static class Tile {
+
+        private final BufferedImage image;
+        private boolean stale;
+
+        public Tile(BufferedImage image, boolean stale) {
+            this.image = image;
+            this.stale = stale;
+        }
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxTileCount The maximal number of tiles.
+     */
+    public DrawingTileCache(int maxTileCount) {
+        this.maxTileCount = maxTileCount;
+    }
+
+    /**
+     * Sets the maximal number of tiles. If the cache holds more tiles, the
+     * least recently used tiles are evicted.
+     */
+    public void setMaxTileCount(int newValue) {
+        maxTileCount = newValue;
+        evict();
+    }
+
+    public int getMaxTileCount() {
+        return maxTileCount;
+    }
+
+    /**
+     * Returns the number of tiles in the cache.
+     */
+    public int size() {
+        return tiles.size();
+    }
+
+    /**
+     * Returns the specified tile, or null if the tile is not in the cache.
+     * The tile may be stale.
+     *
+     * @param scaleFactor The scale factor of the tile.
+     * @param x The x coordinate of the tile.
+     * @param y The y coordinate of the tile.
+     */
+    public BufferedImage getTile(double scaleFactor, int x, int y) {
+        Tile tile = tiles.get(new Key(scaleFactor, x, y));
+        return (tile == null) ? null : tile.image;
+    }
+
+    /**
+     * Returns true, if the specified tile is in the cache and is not stale.
+     *
+     * @param scaleFactor The scale factor of the tile.
+     * @param x The x coordinate of the tile.
+     * @param y The y coordinate of the tile.
+     */
+    public boolean isTileValid(double scaleFactor, int x, int y) {
+        Tile tile = tiles.get(new Key(scaleFactor, x, y));
+        return tile != null && !tile.stale;
+    }
+
+    /**
+     * Puts the specified tile into the cache.
+     *
+     * @param scaleFactor The scale factor of the tile.
+     * @param x The x coordinate of the tile.
+     * @param y The y coordinate of the tile.
+     * @param image The rendered tile.
+     */
+    public void putTile(double scaleFactor, int x, int y, BufferedImage image) {
+        putTile(scaleFactor, x, y, image, false);
+    }
+
+    /**
+     * Puts the specified tile into the cache.
+     *
+     * @param scaleFactor The scale factor of the tile.
+     * @param x The x coordinate of the tile.
+     * @param y The y coordinate of the tile.
+     * @param image The rendered tile.
+     * @param stale Whether the drawing has changed while the tile was
+     * rendered.
+     */
+    public void putTile(double scaleFactor, int x, int y, BufferedImage image, boolean stale) {
+        tiles.put(new Key(scaleFactor, x, y), new Tile(image, stale));
+        evict();
+    }
+
+    /**
+     * Marks all tiles of all scale factors, which intersect with the
+     * specified area of the drawing, as stale.
+     *
+     * @param r The area in drawing coordinates.
+     * @param grow The number of pixels by which the area is grown on each side
+     * after it has been scaled.
+     */
+    public void invalidate(Rectangle2D.Double r, double grow) {
+        for (Map.Entry<Key, Tile> entry : tiles.entrySet()) {
+            if (intersects(entry.getKey(), r, grow)) {
+                entry.getValue().stale = true;
+            }
+        }
+    }
+
+    /**
+     * Returns true, if the specified tile intersects with the specified area
+     * of the drawing.
+     *
+     * @param key The tile.
+     * @param r The area in drawing coordinates.
+     * @param grow The number of pixels by which the area is grown on each side
+     * after it has been scaled.
+     */
+    static boolean intersects(Key key, Rectangle2D.Double r, double grow) {
+        double x = key.x * (double) TILE_SIZE;
+        double y = key.y * (double) TILE_SIZE;
+        return r.x * key.scaleFactor - grow < x + TILE_SIZE
+                && r.y * key.scaleFactor - grow < y + TILE_SIZE
+                && (r.x + r.width) * key.scaleFactor + grow > x
+                && (r.y + r.height) * key.scaleFactor + grow > y;
+    }
+
+    /**
+     * Draws the tiles of other scale factors which intersect with the
+     * specified tile, scaled to the specified scale factor. This can be used
+     * as a placeholder until the tile has been rendered.
+     *
+     * @param g The graphics. Its origin must be at the origin of the drawing
+     * after it has been scaled. The caller is responsible for clipping the
+     * graphics to the tile.
+     * @param scaleFactor The scale factor of the tile.
+     * @param x The x coordinate of the tile.
+     * @param y The y coordinate of the tile.
+     */
+    public void drawPlaceholder(Graphics2D g, double scaleFactor, int x, int y) {
+        double minX = x * (double) TILE_SIZE;
+        double minY = y * (double) TILE_SIZE;
+        for (Map.Entry<Key, Tile> entry : tiles.entrySet()) {
+            Key key = entry.getKey();
+            if (key.scaleFactor != scaleFactor) {
+                double f = scaleFactor / key.scaleFactor;
+                double size = TILE_SIZE * f;
+                double tx = key.x * size;
+                double ty = key.y * size;
+                if (tx < minX + TILE_SIZE && ty < minY + TILE_SIZE
+                        && tx + size > minX && ty + size > minY) {
+                    g.drawImage(entry.getValue().image,
+                            (int) Math.floor(tx), (int) Math.floor(ty),
+                            (int) Math.ceil(tx + size) - (int) Math.floor(tx),
+                            (int) Math.ceil(ty + size) - (int) Math.floor(ty), null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all tiles.
+     */
+    public void clear() {
+        tiles.clear();
+    }
+
+    private void evict() {
+        for (Iterator<Tile> i = tiles.values().iterator(); tiles.size() > maxTileCount;) {
+            i.next();
+            i.remove();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * @(#)LevelOfDetail.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Describes how much detail of a figure is drawn, depending on the size of
+ * the figure on the device.
+ * <p>
+ * Figures which are smaller than the minimal figure size are not drawn at all.
+ * Figures which are smaller than the box size are drawn as a box of a solid
+ * colour. Text which is smaller than the minimal text height is drawn as a
+ * bar of the text bar colour. All sizes are in device pixels.
+ * <p>
+ * A drawing view passes the level of detail to the figures with the
+ * {@link #KEY_LEVEL_OF_DETAIL} rendering hint. If the hint is not set on a
+ * graphics, for example when a drawing is printed, the figures are drawn with
+ * full detail.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class LevelOfDetail {
+
+    /**
+     * Rendering hint key for the level of detail. The value is an instance of
+     * LevelOfDetail.
+     */
+    public static final RenderingHints.Key KEY_LEVEL_OF_DETAIL = new RenderingHints.Key(0x4c4f44) {
+        @Override
+        public boolean isCompatibleValue(Object val) {
+            return val == null || val instanceof LevelOfDetail;
+        }
+
+        @Override
+        public String toString() {
+            return "Level of detail key";
+        }
+    };
+    private final double minFigureSize;
+    private final double boxFigureSize;
+    private final double minTextHeight;
+    private final Color textBarColor;
+
+    /**
+     * Creates a level of detail which skips figures below half a pixel, draws
+     * figures below 2 pixels as boxes, and draws text below 4 pixels as bars.
+     */
+    public LevelOfDetail() {
+        this(0.5, 2, 4, Color.LIGHT_GRAY);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param minFigureSize Figures which are smaller than this are not drawn.
+     * @param boxFigureSize Figures which are smaller than this are drawn as a
+     * box.
+     * @param minTextHeight Text with a font size smaller than this is drawn as
+     * bars.
+     * @param textBarColor The colour of the text bars.
+     */
+    public LevelOfDetail(double minFigureSize, double boxFigureSize, double minTextHeight, Color textBarColor) {
+        this.minFigureSize = minFigureSize;
+        this.boxFigureSize = boxFigureSize;
+        this.minTextHeight = minTextHeight;
+        this.textBarColor = textBarColor;
+    }
+
+    /**
+     * Returns the level of detail of the graphics, or null if the graphics
+     * shall draw with full detail.
+     */
+    public static LevelOfDetail get(Graphics2D g) {
+        Object value = g.getRenderingHint(KEY_LEVEL_OF_DETAIL);
+        return (value instanceof LevelOfDetail) ? (LevelOfDetail) value : null;
+    }
+
+    /**
+     * Returns the number of device pixels per unit of the user space of the
+     * graphics.
+     */
+    public static double getDeviceScale(Graphics2D g) {
+        return 1 / Math.abs(AttributeKeys.getScaleFactorFromGraphics(g));
+    }
+
+    /**
+     * Skips a figure or draws it as a box, if it is too small on the device.
+     * <p>
+     * Figures which do not draw themselves with {@code AbstractAttributedFigure}
+     * can use this method at the start of their draw method.
+     *
+     * @param g the graphics.
+     * @param bounds the bounds of the figure in the user space of the graphics.
+     * @param boxColor the colour of the box. If this is null, figures below
+     * the box size are drawn with full detail, for example because their
+     * children draw their own boxes.
+     * @return true if the figure has been skipped or drawn as a box.
+     */
+    public boolean drawReducedDetail(Graphics2D g, Rectangle2D.Double bounds, Color boxColor) {
+        double deviceScale = getDeviceScale(g);
+        double size = Math.max(bounds.width, bounds.height) * deviceScale;
+        if (size < minFigureSize) {
+            return true;
+        }
+        if (size < boxFigureSize && boxColor != null) {
+            if (boxColor.getAlpha() != 0) {
+                double pixel = 1 / deviceScale;
+                double w = Math.max(bounds.width, pixel);
+                double h = Math.max(bounds.height, pixel);
+                g.setColor(boxColor);
+                g.fill(new Rectangle2D.Double(
+                        bounds.x + (bounds.width - w) / 2, bounds.y + (bounds.height - h) / 2, w, h));
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the size below which figures are not drawn.
+     */
+    public double getMinFigureSize() {
+        return minFigureSize;
+    }
+
+    /**
+     * Returns the size below which figures are drawn as a box.
+     */
+    public double getBoxFigureSize() {
+        return boxFigureSize;
+    }
+
+    /**
+     * Returns the font size below which text is drawn as bars.
+     */
+    public double getMinTextHeight() {
+        return minTextHeight;
+    }
+
+    /**
+     * Returns the colour of text bars.
+     */
+    public Color getTextBarColor() {
+        return textBarColor;
+    }
+}
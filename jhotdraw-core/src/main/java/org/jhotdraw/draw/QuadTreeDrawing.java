@@ -8,14 +8,14 @@
 package org.jhotdraw.draw;
 
 import org.jhotdraw.draw.figure.Figure;
-import org.jhotdraw.draw.figure.AbstractCompositeFigure;
 import java.awt.*;
 import java.awt.geom.*;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
 import static org.jhotdraw.draw.AttributeKeys.*;
 import org.jhotdraw.draw.event.FigureEvent;
 import org.jhotdraw.geom.Geom;
-import org.jhotdraw.geom.QuadTree;
+import org.jhotdraw.geom.ArrayQuadTree;
 import org.jhotdraw.util.*;
 
 /**
@@ -29,8 +29,28 @@ import org.jhotdraw.util.*;
 public class QuadTreeDrawing extends AbstractDrawing {
 
     private static final long serialVersionUID = 1L;
-    private QuadTree<Figure> quadTree = new QuadTree<>();
-    private boolean needsSorting = false;
+    private ArrayQuadTree<Figure> quadTree = new ArrayQuadTree<>();
+    /**
+     * Maps each child to its z-index. Query results of the quad tree are
+     * sorted by this index, so that sorting costs only the number of found
+     * figures instead of the number of children.
+     * <p>
+     * The z-indices increase with the position of the children in the
+     * {@code children} list, but they leave gaps between each other. Adding a
+     * child at the front or the back, or between two children, takes a free
+     * z-index from the gap, and removing a child leaves the other z-indices
+     * unchanged. Only when a gap is used up, or when the children are sorted
+     * by layer, all children are numbered again.
+     * <p>
+     * The children, the quad tree and the z-indices are only changed while
+     * the write lock is held.
+     */
+    private HashMap<Figure, Integer> zIndices = new HashMap<>();
+    /**
+     * The gap between the z-indices of the children after they have been
+     * numbered.
+     */
+    private int zIndexGap = 1 << 16;
 
     @Override
     public int indexOf(Figure figure) {
@@ -39,29 +59,50 @@ public class QuadTreeDrawing extends AbstractDrawing {
 
     @Override
     public void basicAdd(int index, Figure figure) {
-        super.basicAdd(index, figure);
-        quadTree.add(figure, figure.getDrawingArea());
-        needsSorting = true;
+        Lock writeLock = getReadWriteLock().writeLock();
+        writeLock.lock();
+        try {
+            super.basicAdd(index, figure);
+            quadTree.add(figure, figure.getDrawingArea());
+            indexChild(index);
+            if (!isInLayerOrder(index)) {
+                sortChildren();
+            }
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     @Override
     public Figure basicRemoveChild(int index) {
-        Figure figure = getChild(index);
-        quadTree.remove(figure);
-        needsSorting = true;
-        super.basicRemoveChild(index);
-        return figure;
+        Lock writeLock = getReadWriteLock().writeLock();
+        writeLock.lock();
+        try {
+            Figure figure = getChild(index);
+            quadTree.remove(figure);
+            zIndices.remove(figure);
+            super.basicRemoveChild(index);
+            return figure;
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     @Override
     public void draw(Graphics2D g) {
-        Rectangle2D clipBounds = g.getClipBounds();
-        if (clipBounds != null) {
-            Collection<Figure> c = quadTree.findIntersects(clipBounds);
-            Collection<Figure> toDraw = sort(c);
-            draw(g, toDraw);
-        } else {
-            draw(g, children);
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            Rectangle2D clipBounds = g.getClipBounds();
+            if (clipBounds != null) {
+                Collection<Figure> c = quadTree.findIntersects(clipBounds, new ArrayList<Figure>());
+                Collection<Figure> toDraw = sort(c);
+                draw(g, toDraw);
+            } else {
+                draw(g, children);
+            }
+        } finally {
+            readLock.unlock();
         }
     }
 
@@ -70,14 +111,13 @@ public class QuadTreeDrawing extends AbstractDrawing {
      */
     @Override
     public java.util.List<Figure> sort(Collection<? extends Figure> c) {
-        ensureSorted();
-        ArrayList<Figure> sorted = new ArrayList<>(c.size());
-        for (Figure f : children) {
-            if (c.contains(f)) {
-                sorted.add(f);
-            }
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            return sortByZIndex(c, false);
+        } finally {
+            readLock.unlock();
         }
-        return sorted;
     }
 
     public void draw(Graphics2D g, Collection<Figure> c) {
@@ -101,7 +141,13 @@ public class QuadTreeDrawing extends AbstractDrawing {
     }
 
     public java.util.List<Figure> getChildren(Rectangle2D.Double bounds) {
-        return new LinkedList<>(quadTree.findInside(bounds));
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            return quadTree.findInside(bounds, new LinkedList<Figure>());
+        } finally {
+            readLock.unlock();
+        }
     }
 
     @Override
@@ -111,13 +157,18 @@ public class QuadTreeDrawing extends AbstractDrawing {
 
     @Override
     public Figure findFigureInside(Point2D.Double p) {
-        Collection<Figure> c = quadTree.findContains(p);
-        for (Figure f : getFiguresFrontToBack()) {
-            if (c.contains(f) && f.contains(p)) {
-                return f.findFigureInside(p);
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            for (Figure f : findContainsFrontToBack(p)) {
+                if (f.contains(p)) {
+                    return f.findFigureInside(p);
+                }
             }
+            return null;
+        } finally {
+            readLock.unlock();
         }
-        return null;
     }
 
     /**
@@ -126,161 +177,324 @@ public class QuadTreeDrawing extends AbstractDrawing {
      */
     @Override
     public java.util.List<Figure> getFiguresFrontToBack() {
-        ensureSorted();
-        return new ReversedList<>(children);
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            return new ReversedList<>(children);
+        } finally {
+            readLock.unlock();
+        }
     }
 
     @Override
     public Figure findFigure(Point2D.Double p) {
-        Collection<Figure> c = quadTree.findContains(p);
-        switch (c.size()) {
-            case 0:
-                return null;
-            case 1:
-                Figure f = c.iterator().next();
-                return (f.contains(p)) ? f : null;
-            default: 
-                for (Figure f2 : getFiguresFrontToBack()) {
-                    if (c.contains(f2) && f2.contains(p)) {
-                        return f2;
-                    }
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            for (Figure f : findContainsFrontToBack(p)) {
+                if (f.contains(p)) {
+                    return f;
                 }
-                return null;
+            }
+            return null;
+        } finally {
+            readLock.unlock();
         }
     }
 
     @Override
     public Figure findFigureExcept(Point2D.Double p, Figure ignore) {
-        Collection<Figure> c = quadTree.findContains(p);
-        switch (c.size()) {
-            case 0:
-                return null;
-            case 1: 
-                Figure f = c.iterator().next();
-                return (f == ignore || !f.contains(p)) ? null : f;
-            default: 
-                for (Figure f2 : getFiguresFrontToBack()) {
-                    if (f2 != ignore && f2.contains(p)) {
-                        return f2;
-                    }
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            for (Figure f : findContainsFrontToBack(p)) {
+                if (f != ignore && f.contains(p)) {
+                    return f;
                 }
-                return null;
+            }
+            return null;
+        } finally {
+            readLock.unlock();
         }
     }
 
     @Override
     public Figure findFigureExcept(Point2D.Double p, Collection<? extends Figure> ignore) {
-        Collection<Figure> c = quadTree.findContains(p);
-        switch (c.size()) {
-            case 0:
-                return null;
-            case 1:
-                Figure f = c.iterator().next();
-                return (!ignore.contains(f) || !f.contains(p)) ? null : f;
-            default: 
-                for (Figure f2 : getFiguresFrontToBack()) {
-                    if (!ignore.contains(f2) && f2.contains(p)) {
-                        return f2;
-                    }
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            for (Figure f : findContainsFrontToBack(p)) {
+                if (!ignore.contains(f) && f.contains(p)) {
+                    return f;
                 }
-                return null;
+            }
+            return null;
+        } finally {
+            readLock.unlock();
         }
     }
 
     @Override
     public Figure findFigureBehind(Point2D.Double p, Figure figure) {
-        boolean isBehind = false;
-        for (Figure f : getFiguresFrontToBack()) {
-            if (isBehind) {
-                if (f.isVisible() && f.contains(p)) {
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            Integer behind = getZIndex(figure);
+            if (behind == null) {
+                return null;
+            }
+            for (Figure f : findContainsFrontToBack(p)) {
+                if (getZIndex(f) < behind && f.isVisible() && f.contains(p)) {
                     return f;
                 }
-            } else {
-                isBehind = figure == f;
             }
+            return null;
+        } finally {
+            readLock.unlock();
         }
-        return null;
     }
 
     @Override
     public Figure findFigureBehind(Point2D.Double p, Collection<? extends Figure> children) {
-        int inFrontOf = children.size();
-        for (Figure f : getFiguresFrontToBack()) {
-            if (inFrontOf == 0) {
-                if (f.isVisible() && f.contains(p)) {
-                    return f;
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            int behind = Integer.MAX_VALUE;
+            for (Figure f : children) {
+                Integer z = getZIndex(f);
+                if (z == null) {
+                    return null;
                 }
-            } else {
-                if (children.contains(f)) {
-                    inFrontOf--;
+                behind = Math.min(behind, z);
+            }
+            for (Figure f : findContainsFrontToBack(p)) {
+                if (getZIndex(f) < behind && f.isVisible() && f.contains(p)) {
+                    return f;
                 }
             }
+            return null;
+        } finally {
+            readLock.unlock();
         }
-        return null;
     }
 
     @Override
     public java.util.List<Figure> findFigures(Rectangle2D.Double r) {
-        LinkedList<Figure> c = new LinkedList<>(quadTree.findIntersects(r));
-        switch (c.size()) {
-            case 0:
-            // fall through
-            case 1:
-                return c;
-            default:
-                return sort(c);
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            ArrayList<Figure> c = quadTree.findIntersects(r, new ArrayList<Figure>());
+            switch (c.size()) {
+                case 0:
+                // fall through
+                case 1:
+                    return c;
+                default:
+                    return sort(c);
+            }
+        } finally {
+            readLock.unlock();
         }
     }
 
     @Override
     public java.util.List<Figure> findFiguresWithin(Rectangle2D.Double bounds) {
-        LinkedList<Figure> contained = new LinkedList<>();
-        for (Figure f : children) {
-            Rectangle2D.Double r = f.getBounds();
-            if (f.get(TRANSFORM) != null) {
-                Rectangle2D rt = f.get(TRANSFORM).createTransformedShape(r).getBounds2D();
-                r = (rt instanceof Rectangle2D.Double) ? (Rectangle2D.Double) rt : new Rectangle2D.Double(rt.getX(), rt.getY(), rt.getWidth(), rt.getHeight());
-            }
-            if (f.isVisible() && Geom.contains(bounds, r)) {
-                contained.add(f);
+        Lock readLock = getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            LinkedList<Figure> contained = new LinkedList<>();
+            for (Figure f : children) {
+                Rectangle2D.Double r = f.getBounds();
+                if (f.get(TRANSFORM) != null) {
+                    Rectangle2D rt = f.get(TRANSFORM).createTransformedShape(r).getBounds2D();
+                    r = (rt instanceof Rectangle2D.Double) ? (Rectangle2D.Double) rt : new Rectangle2D.Double(rt.getX(), rt.getY(), rt.getWidth(), rt.getHeight());
+                }
+                if (f.isVisible() && Geom.contains(bounds, r)) {
+                    contained.add(f);
+                }
             }
+            return contained;
+        } finally {
+            readLock.unlock();
         }
-        return contained;
     }
 
     @Override
     public void bringToFront(Figure figure) {
-        if (children.remove(figure)) {
-            children.add(figure);
-            needsSorting = true;
-            fireAreaInvalidated(figure.getDrawingArea());
+        Lock writeLock = getReadWriteLock().writeLock();
+        writeLock.lock();
+        try {
+            int index = indexOfChild(figure);
+            if (index != -1) {
+                children.remove(index);
+                children.add(figure);
+                invalidateChildIndices();
+                indexChild(children.size() - 1);
+                if (!isInLayerOrder(children.size() - 1)) {
+                    sortChildren();
+                }
+                fireAreaInvalidated(figure.getDrawingArea());
+            }
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public void sendToBack(Figure figure) {
-        if (children.remove(figure)) {
-            children.add(0, figure);
-            needsSorting = true;
-            fireAreaInvalidated(figure.getDrawingArea());
+        Lock writeLock = getReadWriteLock().writeLock();
+        writeLock.lock();
+        try {
+            int index = indexOfChild(figure);
+            if (index != -1) {
+                children.remove(index);
+                children.add(0, figure);
+                invalidateChildIndices();
+                indexChild(0);
+                if (!isInLayerOrder(0)) {
+                    sortChildren();
+                }
+                fireAreaInvalidated(figure.getDrawingArea());
+            }
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public boolean contains(Figure f) {
-        return children.contains(f);
+        return quadTree.contains(f);
     }
 
     /**
-     * Ensures that the children are sorted in z-order sequence.
+     * Sorts the children in z-order sequence. This method must only be called
+     * while the write lock is held.
      */
-    private void ensureSorted() {
-        if (needsSorting) {
-            Collections.sort(children, FigureLayerComparator.INSTANCE);
-            needsSorting = false;
+    private void sortChildren() {
+        Collections.sort(children, FigureLayerComparator.INSTANCE);
+        invalidateChildIndices();
+        renumberChildren();
+    }
+
+    /**
+     * Gives all children new z-indices, which are evenly spaced around zero.
+     * This method must only be called while the write lock is held.
+     */
+    private void renumberChildren() {
+        int n = children.size();
+        zIndexGap = (int) Math.max(1, Math.min(1 << 16, (1L << 31) / (n + 1)));
+        zIndices.clear();
+        long z = -(long) zIndexGap * (n / 2);
+        for (Figure f : children) {
+            zIndices.put(f, (int) z);
+            z += zIndexGap;
         }
     }
 
+    /**
+     * Gives the child at the specified index a z-index between the z-indices
+     * of its neighbours. If there is no free z-index between them, all
+     * children are numbered again. This method must only be called while
+     * the write lock is held.
+     */
+    private void indexChild(int index) {
+        int n = children.size();
+        long lower = (index == 0) ? Integer.MIN_VALUE - 1L : zIndices.get(children.get(index - 1));
+        long upper = (index == n - 1) ? Integer.MAX_VALUE + 1L : zIndices.get(children.get(index + 1));
+        long z;
+        if (index == n - 1 && index > 0) {
+            z = lower + zIndexGap;
+        } else if (index == 0 && n > 1) {
+            z = upper - zIndexGap;
+        } else {
+            z = (lower + upper) / 2;
+        }
+        if (lower < z && z < upper) {
+            zIndices.put(children.get(index), (int) z);
+        } else {
+            renumberChildren();
+        }
+    }
+
+    /**
+     * Returns the z-index of the specified child, or null if it is not a
+     * child.
+     */
+    private Integer getZIndex(Figure figure) {
+        return zIndices.get(figure);
+    }
+
+    /**
+     * Returns the position of the specified child in the {@code children}
+     * list, or -1 if it is not a child. This performs a binary search over
+     * the z-indices.
+     */
+    private int indexOfChild(Figure figure) {
+        Integer z = zIndices.get(figure);
+        if (z == null) {
+            return -1;
+        }
+        int low = 0;
+        int high = children.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midZ = zIndices.get(children.get(mid));
+            if (midZ < z) {
+                low = mid + 1;
+            } else if (midZ > z) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if the layer of the child at the specified index is
+     * consistent with the layers of its neighbours.
+     */
+    private boolean isInLayerOrder(int index) {
+        int layer = children.get(index).getLayer();
+        return (index == 0 || children.get(index - 1).getLayer() <= layer)
+                && (index == children.size() - 1 || children.get(index + 1).getLayer() >= layer);
+    }
+
+    /**
+     * Returns the figures whose drawing area contains the specified point in
+     * z-order from front to back.
+     */
+    private java.util.List<Figure> findContainsFrontToBack(Point2D.Double p) {
+        return sortByZIndex(quadTree.findContains(p, new ArrayList<Figure>()), true);
+    }
+
+    /**
+     * Sorts the specified figures by their z-index. Figures which are not
+     * children of this drawing are omitted.
+     */
+    private ArrayList<Figure> sortByZIndex(Collection<? extends Figure> c, boolean frontToBack) {
+        Figure[] figures = c.toArray(new Figure[c.size()]);
+        // The z-index goes into the upper 32 bits, the position in the
+        // array into the lower 32 bits.
+        long[] keys = new long[figures.length];
+        int n = 0;
+        for (int i = 0; i < figures.length; i++) {
+            Integer z = zIndices.get(figures[i]);
+            if (z != null) {
+                keys[n++] = ((long) z << 32) | i;
+            }
+        }
+        Arrays.sort(keys, 0, n);
+        ArrayList<Figure> sorted = new ArrayList<>(n);
+        for (int j = 0; j < n; j++) {
+            long key = keys[frontToBack ? n - 1 - j : j];
+            if (j == 0 || (key >>> 32) != (keys[frontToBack ? n - j : j - 1] >>> 32)) {
+                sorted.add(figures[(int) key]);
+            }
+        }
+        return sorted;
+    }
+
     @Override
     protected <T> void setAttributeOnChildren(AttributeKey<T> key, T newValue) {
         // empty
@@ -289,10 +503,10 @@ public class QuadTreeDrawing extends AbstractDrawing {
     @Override
     public QuadTreeDrawing clone() {
         QuadTreeDrawing that = (QuadTreeDrawing) super.clone();
-        that.quadTree = new QuadTree<>();
-        for (Figure f : getChildren()) {
-            quadTree.add(f, f.getDrawingArea());
-        }
+        that.quadTree = new ArrayQuadTree<>();
+        that.quadTree.bulkLoad(that.children, Figure::getDrawingArea);
+        that.zIndices = new HashMap<>();
+        that.renumberChildren();
         return that;
     }
 
@@ -304,20 +518,61 @@ public class QuadTreeDrawing extends AbstractDrawing {
     /**
      * Handles all figure events fired by Figures contained in the Drawing.
      */
-    protected class QuadTreeEventHandler extends AbstractCompositeFigure.EventHandler {
+    protected class QuadTreeEventHandler extends AbstractDrawing.DrawingEventHandler {
 
         private static final long serialVersionUID = 1L;
 
         @Override
         public void figureChanged(FigureEvent e) {
-            if (!isChanging()) {
-                quadTree.remove(e.getFigure());
-                quadTree.add(e.getFigure(), e.getFigure().getDrawingArea());
-                needsSorting = true;
-                invalidate();
+            if (!isChanging() && !deferChildEvent(e, true)) {
+                Figure f = e.getFigure();
+                Lock writeLock = getReadWriteLock().writeLock();
+                writeLock.lock();
+                try {
+                    updateChild(f);
+                    invalidateChild(f);
+                } finally {
+                    writeLock.unlock();
+                }
                 fireAreaInvalidated(e);
             }
+            invalidateConnections(e, true);
+        }
+    }
+
+    /**
+     * Updates the quad tree and the sort order after a child has changed.
+     * This method must only be called while the write lock is held.
+     */
+    private void updateChild(Figure f) {
+        quadTree.update(f, f.getDrawingArea());
+        int index = indexOfChild(f);
+        if (index != -1 && !isInLayerOrder(index)) {
+            sortChildren();
+        }
+    }
+
+    /**
+     * Updates the quad tree for all changed children in a single pass while
+     * holding the write lock, and fires a single area invalidated event.
+     */
+    @Override
+    protected void childrenChanged(Set<Figure> changedFigures, Rectangle2D.Double invalidatedArea) {
+        if (!isChanging() && !changedFigures.isEmpty()) {
+            Lock writeLock = getReadWriteLock().writeLock();
+            writeLock.lock();
+            try {
+                for (Figure f : changedFigures) {
+                    if (quadTree.contains(f)) {
+                        updateChild(f);
+                        invalidateChild(f);
+                    }
+                }
+            } finally {
+                writeLock.unlock();
+            }
         }
+        fireAreaInvalidated(invalidatedArea);
     }
 
     @Override
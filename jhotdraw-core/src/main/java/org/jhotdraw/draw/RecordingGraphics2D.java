@@ -0,0 +1,747 @@
+/*
+ * @(#)RecordingGraphics2D.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.RectangularShape;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.text.AttributedCharacterIterator;
+import java.text.AttributedString;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * A graphics which records the drawing operations instead of performing
+ * them, so that they can be replayed later on another graphics.
+ * <p>
+ * A recording is a snapshot of what the figures have drawn: shapes, text
+ * and the state of the graphics are copied when they are recorded. This is
+ * used for rendering tiles of a drawing on worker threads. The figures are
+ * drawn into a recording on the event dispatch thread, and only the
+ * rasterization of the recording is done by the worker threads.
+ * <p>
+ * Images, strokes, paints and glyph vectors are not copied. They must not be
+ * changed after they have been drawn.
+ * <p>
+ * The state of the graphics, such as the transform, the clip and the
+ * rendering hints, is tracked by a graphics of a scratch image, so that the
+ * figures can query it while they draw.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+final class RecordingGraphics2D extends Graphics2D {
+
+    /**
+     * The recorded operations. The recording is shared by the graphics
+     * which have been created from the same root graphics.
+     */
+    private static class Recording {
+
+        private final ArrayList<Command> commands = new ArrayList<>();
+        private int graphicsCount = 1;
+    }
+
+    /**
+     * A recorded operation on the graphics with the specified index.
+     */
+    private abstract static class Command {
+
+        final int target;
+
+        Command(int target) {
+            this.target = target;
+        }
+
+        abstract void replay(Graphics2D g, ArrayList<Graphics2D> graphics);
+    }
+
+    private final Recording recording;
+    /**
+     * The index of this graphics in the replayed graphics. The root graphics
+     * has index 0.
+     */
+    private final int index;
+    /**
+     * Tracks the state of this graphics.
+     */
+    private final Graphics2D state;
+
+    /**
+     * Creates a new recording.
+     */
+    public RecordingGraphics2D() {
+        this(new Recording(), 0, new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB_PRE).createGraphics());
+    }
+
+    private RecordingGraphics2D(Recording recording, int index, Graphics2D state) {
+        this.recording = recording;
+        this.index = index;
+        this.state = state;
+    }
+
+    /**
+     * Replays the recorded operations on the specified graphics. This method
+     * can be invoked from any thread, after the recording is done.
+     */
+    public void replay(Graphics2D g) {
+        ArrayList<Graphics2D> graphics = new ArrayList<>();
+        graphics.add(g);
+        for (Command c : recording.commands) {
+            c.replay(graphics.get(c.target), graphics);
+        }
+        for (int i = 1; i < graphics.size(); i++) {
+            if (graphics.get(i) != null) {
+                graphics.get(i).dispose();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of recorded operations.
+     */
+    public int getCommandCount() {
+        return recording.commands.size();
+    }
+
+    private void record(Command c) {
+        recording.commands.add(c);
+    }
+
+    private static Shape copy(Shape s) {
+        if (s instanceof RectangularShape) {
+            return (Shape) ((RectangularShape) s).clone();
+        } else if (s instanceof Line2D) {
+            return (Shape) ((Line2D) s).clone();
+        } else {
+            return new Path2D.Double(s);
+        }
+    }
+
+    // GRAPHICS STATE
+    @Override
+    public Graphics create() {
+        final int child = recording.graphicsCount++;
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                while (graphics.size() <= child) {
+                    graphics.add(null);
+                }
+                graphics.set(child, (Graphics2D) g.create());
+            }
+        });
+        return new RecordingGraphics2D(recording, child, (Graphics2D) state.create());
+    }
+
+    @Override
+    public void dispose() {
+        if (index != 0) {
+            final int disposed = index;
+            record(new Command(index) {
+                @Override
+                void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                    g.dispose();
+                    graphics.set(disposed, null);
+                }
+            });
+        }
+        state.dispose();
+    }
+
+    private void recordTransform() {
+        final AffineTransform tx = state.getTransform();
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.setTransform(tx);
+            }
+        });
+    }
+
+    private void recordClip() {
+        final Shape clip = state.getClip();
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.setClip(clip);
+            }
+        });
+    }
+
+    private void recordRenderingHints() {
+        final RenderingHints hints = state.getRenderingHints();
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.setRenderingHints(hints);
+            }
+        });
+    }
+
+    @Override
+    public void translate(int x, int y) {
+        state.translate(x, y);
+        recordTransform();
+    }
+
+    @Override
+    public void translate(double tx, double ty) {
+        state.translate(tx, ty);
+        recordTransform();
+    }
+
+    @Override
+    public void rotate(double theta) {
+        state.rotate(theta);
+        recordTransform();
+    }
+
+    @Override
+    public void rotate(double theta, double x, double y) {
+        state.rotate(theta, x, y);
+        recordTransform();
+    }
+
+    @Override
+    public void scale(double sx, double sy) {
+        state.scale(sx, sy);
+        recordTransform();
+    }
+
+    @Override
+    public void shear(double shx, double shy) {
+        state.shear(shx, shy);
+        recordTransform();
+    }
+
+    @Override
+    public void transform(AffineTransform tx) {
+        state.transform(tx);
+        recordTransform();
+    }
+
+    @Override
+    public void setTransform(AffineTransform tx) {
+        state.setTransform(tx);
+        recordTransform();
+    }
+
+    @Override
+    public AffineTransform getTransform() {
+        return state.getTransform();
+    }
+
+    @Override
+    public Rectangle getClipBounds() {
+        return state.getClipBounds();
+    }
+
+    @Override
+    public void clipRect(int x, int y, int width, int height) {
+        state.clipRect(x, y, width, height);
+        recordClip();
+    }
+
+    @Override
+    public void setClip(int x, int y, int width, int height) {
+        state.setClip(x, y, width, height);
+        recordClip();
+    }
+
+    @Override
+    public Shape getClip() {
+        return state.getClip();
+    }
+
+    @Override
+    public void setClip(Shape clip) {
+        state.setClip(clip);
+        recordClip();
+    }
+
+    @Override
+    public void clip(Shape s) {
+        state.clip(s);
+        recordClip();
+    }
+
+    @Override
+    public Color getColor() {
+        return state.getColor();
+    }
+
+    @Override
+    public void setColor(Color c) {
+        setPaint(c);
+    }
+
+    @Override
+    public void setPaint(final Paint paint) {
+        state.setPaint(paint);
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.setPaint(paint);
+            }
+        });
+    }
+
+    @Override
+    public Paint getPaint() {
+        return state.getPaint();
+    }
+
+    @Override
+    public void setPaintMode() {
+        state.setPaintMode();
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.setPaintMode();
+            }
+        });
+    }
+
+    @Override
+    public void setXORMode(final Color c) {
+        state.setXORMode(c);
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.setXORMode(c);
+            }
+        });
+    }
+
+    @Override
+    public void setComposite(final Composite comp) {
+        state.setComposite(comp);
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.setComposite(comp);
+            }
+        });
+    }
+
+    @Override
+    public Composite getComposite() {
+        return state.getComposite();
+    }
+
+    @Override
+    public void setBackground(final Color color) {
+        state.setBackground(color);
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.setBackground(color);
+            }
+        });
+    }
+
+    @Override
+    public Color getBackground() {
+        return state.getBackground();
+    }
+
+    @Override
+    public void setStroke(final Stroke s) {
+        state.setStroke(s);
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.setStroke(s);
+            }
+        });
+    }
+
+    @Override
+    public Stroke getStroke() {
+        return state.getStroke();
+    }
+
+    @Override
+    public Font getFont() {
+        return state.getFont();
+    }
+
+    @Override
+    public void setFont(final Font font) {
+        state.setFont(font);
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.setFont(font);
+            }
+        });
+    }
+
+    @Override
+    public FontMetrics getFontMetrics(Font f) {
+        return state.getFontMetrics(f);
+    }
+
+    @Override
+    public FontRenderContext getFontRenderContext() {
+        return state.getFontRenderContext();
+    }
+
+    @Override
+    public void setRenderingHint(RenderingHints.Key hintKey, Object hintValue) {
+        state.setRenderingHint(hintKey, hintValue);
+        recordRenderingHints();
+    }
+
+    @Override
+    public Object getRenderingHint(RenderingHints.Key hintKey) {
+        return state.getRenderingHint(hintKey);
+    }
+
+    @Override
+    public void setRenderingHints(Map<?, ?> hints) {
+        state.setRenderingHints(hints);
+        recordRenderingHints();
+    }
+
+    @Override
+    public void addRenderingHints(Map<?, ?> hints) {
+        state.addRenderingHints(hints);
+        recordRenderingHints();
+    }
+
+    @Override
+    public RenderingHints getRenderingHints() {
+        return state.getRenderingHints();
+    }
+
+    @Override
+    public GraphicsConfiguration getDeviceConfiguration() {
+        return state.getDeviceConfiguration();
+    }
+
+    @Override
+    public boolean hit(Rectangle rect, Shape s, boolean onStroke) {
+        return state.hit(rect, s, onStroke);
+    }
+
+    // SHAPES
+    @Override
+    public void draw(Shape s) {
+        final Shape shape = copy(s);
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.draw(shape);
+            }
+        });
+    }
+
+    @Override
+    public void fill(Shape s) {
+        final Shape shape = copy(s);
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.fill(shape);
+            }
+        });
+    }
+
+    /**
+     * Records an operation of the Graphics class with integer arguments.
+     */
+    private void recordPrimitive(final int op, final int... a) {
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                switch (op) {
+                    case 0:
+                        g.drawLine(a[0], a[1], a[2], a[3]);
+                        break;
+                    case 1:
+                        g.fillRect(a[0], a[1], a[2], a[3]);
+                        break;
+                    case 2:
+                        g.clearRect(a[0], a[1], a[2], a[3]);
+                        break;
+                    case 3:
+                        g.drawRoundRect(a[0], a[1], a[2], a[3], a[4], a[5]);
+                        break;
+                    case 4:
+                        g.fillRoundRect(a[0], a[1], a[2], a[3], a[4], a[5]);
+                        break;
+                    case 5:
+                        g.drawOval(a[0], a[1], a[2], a[3]);
+                        break;
+                    case 6:
+                        g.fillOval(a[0], a[1], a[2], a[3]);
+                        break;
+                    case 7:
+                        g.drawArc(a[0], a[1], a[2], a[3], a[4], a[5]);
+                        break;
+                    case 8:
+                        g.fillArc(a[0], a[1], a[2], a[3], a[4], a[5]);
+                        break;
+                    case 9:
+                        g.copyArea(a[0], a[1], a[2], a[3], a[4], a[5]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("op " + op);
+                }
+            }
+        });
+    }
+
+    /**
+     * Records a polyline or a polygon.
+     */
+    private void recordPolygon(final int op, int[] xPoints, int[] yPoints, final int nPoints) {
+        final int[] xs = xPoints.clone();
+        final int[] ys = yPoints.clone();
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                switch (op) {
+                    case 0:
+                        g.drawPolyline(xs, ys, nPoints);
+                        break;
+                    case 1:
+                        g.drawPolygon(xs, ys, nPoints);
+                        break;
+                    default:
+                        g.fillPolygon(xs, ys, nPoints);
+                        break;
+                }
+            }
+        });
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        recordPrimitive(0, x1, y1, x2, y2);
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height) {
+        recordPrimitive(1, x, y, width, height);
+    }
+
+    @Override
+    public void clearRect(int x, int y, int width, int height) {
+        recordPrimitive(2, x, y, width, height);
+    }
+
+    @Override
+    public void drawRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+        recordPrimitive(3, x, y, width, height, arcWidth, arcHeight);
+    }
+
+    @Override
+    public void fillRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+        recordPrimitive(4, x, y, width, height, arcWidth, arcHeight);
+    }
+
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        recordPrimitive(5, x, y, width, height);
+    }
+
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        recordPrimitive(6, x, y, width, height);
+    }
+
+    @Override
+    public void drawArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+        recordPrimitive(7, x, y, width, height, startAngle, arcAngle);
+    }
+
+    @Override
+    public void fillArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+        recordPrimitive(8, x, y, width, height, startAngle, arcAngle);
+    }
+
+    @Override
+    public void copyArea(int x, int y, int width, int height, int dx, int dy) {
+        recordPrimitive(9, x, y, width, height, dx, dy);
+    }
+
+    @Override
+    public void drawPolyline(int[] xPoints, int[] yPoints, int nPoints) {
+        recordPolygon(0, xPoints, yPoints, nPoints);
+    }
+
+    @Override
+    public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+        recordPolygon(1, xPoints, yPoints, nPoints);
+    }
+
+    @Override
+    public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+        recordPolygon(2, xPoints, yPoints, nPoints);
+    }
+
+    // TEXT
+    @Override
+    public void drawString(String str, int x, int y) {
+        drawString(str, (float) x, (float) y);
+    }
+
+    @Override
+    public void drawString(final String str, final float x, final float y) {
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.drawString(str, x, y);
+            }
+        });
+    }
+
+    @Override
+    public void drawString(AttributedCharacterIterator iterator, int x, int y) {
+        drawString(iterator, (float) x, (float) y);
+    }
+
+    @Override
+    public void drawString(AttributedCharacterIterator iterator, final float x, final float y) {
+        final AttributedString str = new AttributedString(iterator);
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.drawString(str.getIterator(), x, y);
+            }
+        });
+    }
+
+    @Override
+    public void drawGlyphVector(final GlyphVector gv, final float x, final float y) {
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.drawGlyphVector(gv, x, y);
+            }
+        });
+    }
+
+    // IMAGES
+    @Override
+    public boolean drawImage(final Image img, final AffineTransform xform, ImageObserver obs) {
+        final AffineTransform tx = (xform == null) ? null : new AffineTransform(xform);
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.drawImage(img, tx, null);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public void drawImage(final BufferedImage img, final BufferedImageOp op, final int x, final int y) {
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.drawImage(img, op, x, y);
+            }
+        });
+    }
+
+    @Override
+    public void drawRenderedImage(final RenderedImage img, AffineTransform xform) {
+        final AffineTransform tx = new AffineTransform(xform);
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.drawRenderedImage(img, tx);
+            }
+        });
+    }
+
+    @Override
+    public void drawRenderableImage(final RenderableImage img, AffineTransform xform) {
+        final AffineTransform tx = new AffineTransform(xform);
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.drawRenderableImage(img, tx);
+            }
+        });
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, ImageObserver observer) {
+        return drawImage(img, x, y, null, observer);
+    }
+
+    @Override
+    public boolean drawImage(final Image img, final int x, final int y, final Color bgcolor, ImageObserver observer) {
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.drawImage(img, x, y, bgcolor, null);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, int width, int height, ImageObserver observer) {
+        return drawImage(img, x, y, width, height, null, observer);
+    }
+
+    @Override
+    public boolean drawImage(final Image img, final int x, final int y, final int width, final int height, final Color bgcolor, ImageObserver observer) {
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.drawImage(img, x, y, width, height, bgcolor, null);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2, ImageObserver observer) {
+        return drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, null, observer);
+    }
+
+    @Override
+    public boolean drawImage(final Image img, final int dx1, final int dy1, final int dx2, final int dy2,
+            final int sx1, final int sy1, final int sx2, final int sy2, final Color bgcolor, ImageObserver observer) {
+        record(new Command(index) {
+            @Override
+            void replay(Graphics2D g, ArrayList<Graphics2D> graphics) {
+                g.drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, bgcolor, null);
+            }
+        });
+        return true;
+    }
+}
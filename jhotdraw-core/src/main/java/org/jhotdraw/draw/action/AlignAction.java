@@ -9,6 +9,7 @@ package org.jhotdraw.draw.action;
 
 import java.awt.geom.*;
 import java.util.*;
+import org.jhotdraw.draw.Drawing;
 import org.jhotdraw.draw.DrawingEditor;
 import org.jhotdraw.draw.figure.Figure;
 import org.jhotdraw.draw.event.TransformEdit;
@@ -51,7 +52,13 @@ public abstract class AlignAction extends AbstractSelectedAction {
     public void actionPerformed(java.awt.event.ActionEvent e) {
         CompositeEdit edit = new CompositeEdit(labels.getString("edit.align.text"));
         fireUndoableEditHappened(edit);
-        alignFigures(getView().getSelectedFigures(), getSelectionBounds());
+        Drawing drawing = getDrawing();
+        drawing.beginUpdate();
+        try {
+            alignFigures(getView().getSelectedFigures(), getSelectionBounds());
+        } finally {
+            drawing.endUpdate();
+        }
         fireUndoableEditHappened(edit);
     }
 
@@ -15,6 +15,7 @@ import javax.swing.*;
 import javax.swing.text.*;
 import javax.swing.undo.*;
 import org.jhotdraw.draw.*;
+import org.jhotdraw.draw.event.AttributesChangeEdit;
 import org.jhotdraw.util.ActionUtil;
 import org.jhotdraw.util.ResourceBundleUtil;
 
@@ -85,51 +86,21 @@ public class AttributeToggler<T> extends AbstractAction {
         final T newValue = toggleValue;
         //--
         final ArrayList<Figure> selectedFigures = new ArrayList<>(getView().getSelectedFigures());
-        final ArrayList<Object> restoreData = new ArrayList<>(selectedFigures.size());
+        String name = (String) getValue(ActionUtil.UNDO_PRESENTATION_NAME_KEY);
+        if (name == null) {
+            name = (String) getValue(AbstractAction.NAME);
+        }
+        if (name == null) {
+            ResourceBundleUtil labels = ResourceBundleUtil.getBundle("org.jhotdraw.draw.Labels");
+            name = labels.getString("attribute.text");
+        }
+        UndoableEdit edit = new AttributesChangeEdit(name, selectedFigures,
+                Collections.<AttributeKey<?>, Object>singletonMap(key, newValue));
         for (Figure figure : selectedFigures) {
-            restoreData.add(figure.getAttributesRestoreData());
             figure.willChange();
             figure.set(key, newValue);
             figure.changed();
         }
-        UndoableEdit edit = new AbstractUndoableEdit() {
-            private static final long serialVersionUID = 1L;
-
-            @Override
-            public String getPresentationName() {
-                String name = (String) getValue(ActionUtil.UNDO_PRESENTATION_NAME_KEY);
-                if (name == null) {
-                    name = (String) getValue(AbstractAction.NAME);
-                }
-                if (name == null) {
-                    ResourceBundleUtil labels = ResourceBundleUtil.getBundle("org.jhotdraw.draw.Labels");
-                    name = labels.getString("attribute.text");
-                }
-                return name;
-            }
-
-            @Override
-            public void undo() {
-                super.undo();
-                Iterator<Object> iRestore = restoreData.iterator();
-                for (Figure figure : selectedFigures) {
-                    figure.willChange();
-                    figure.restoreAttributesTo(iRestore.next());
-                    figure.changed();
-                }
-            }
-
-            @Override
-            public void redo() {
-                super.redo();
-                for (Figure figure : selectedFigures) {
-                    //restoreData.add(figure.getAttributesRestoreData());
-                    figure.willChange();
-                    figure.set(key, newValue);
-                    figure.changed();
-                }
-            }
-        };
         getView().getDrawing().fireUndoableEditHappened(edit);
     }
 }
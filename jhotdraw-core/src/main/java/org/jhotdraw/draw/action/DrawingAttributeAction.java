@@ -12,6 +12,7 @@ import java.util.*;
 import javax.swing.*;
 import javax.swing.undo.*;
 import org.jhotdraw.draw.*;
+import org.jhotdraw.draw.event.AttributesChangeEdit;
 import org.jhotdraw.util.ActionUtil;
 import org.jhotdraw.util.ResourceBundleUtil;
 
@@ -74,51 +75,21 @@ public class DrawingAttributeAction extends AbstractDrawingViewAction {
     @SuppressWarnings("unchecked")
     @Override
     public void actionPerformed(java.awt.event.ActionEvent evt) {
-        final ArrayList<Object> restoreData = new ArrayList<>();
         final Figure drawing = getView().getDrawing();
-        restoreData.add(drawing.getAttributesRestoreData());
+        String name = (String) getValue(ActionUtil.UNDO_PRESENTATION_NAME_KEY);
+        if (name == null) {
+            name = (String) getValue(AbstractAction.NAME);
+        }
+        if (name == null) {
+            ResourceBundleUtil labels = ResourceBundleUtil.getBundle("org.jhotdraw.draw.Labels");
+            name = labels.getString("attribute.text");
+        }
+        UndoableEdit edit = new AttributesChangeEdit(name, Collections.singleton(drawing), attributes);
         drawing.willChange();
         for (Map.Entry<AttributeKey<?>, Object> entry : attributes.entrySet()) {
             drawing.set((AttributeKey<Object>) entry.getKey(), entry.getValue());
         }
         drawing.changed();
-        UndoableEdit edit = new AbstractUndoableEdit() {
-            private static final long serialVersionUID = 1L;
-
-            @Override
-            public String getPresentationName() {
-                String name = (String) getValue(ActionUtil.UNDO_PRESENTATION_NAME_KEY);
-                if (name == null) {
-                    name = (String) getValue(AbstractAction.NAME);
-                }
-                if (name == null) {
-                    ResourceBundleUtil labels = ResourceBundleUtil.getBundle("org.jhotdraw.draw.Labels");
-                    name = labels.getString("attribute.text");
-                }
-                return name;
-            }
-
-            @Override
-            public void undo() {
-                super.undo();
-                Iterator<Object> iRestore = restoreData.iterator();
-                drawing.willChange();
-                drawing.restoreAttributesTo(iRestore.next());
-                drawing.changed();
-            }
-
-            @Override
-            @SuppressWarnings("unchecked")
-            public void redo() {
-                super.redo();
-                //restoreData.add(drawing.getAttributesRestoreData());
-                drawing.willChange();
-                for (Map.Entry<AttributeKey<?>, Object> entry : attributes.entrySet()) {
-                    drawing.set((AttributeKey<Object>) entry.getKey(), entry.getValue());
-                }
-                drawing.changed();
-            }
-        };
         fireUndoableEditHappened(edit);
     }
 }
@@ -8,11 +8,13 @@
 package org.jhotdraw.draw.action;
 
 import java.awt.*;
+import java.util.Collections;
 import javax.swing.*;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import javax.swing.undo.*;
 import org.jhotdraw.draw.*;
+import org.jhotdraw.draw.event.AttributesChangeEdit;
 
 /**
  * DrawingColorChooserHandler.
@@ -59,47 +61,12 @@ public class DrawingColorChooserHandler extends AbstractDrawingViewAction
         if (selectedColor != null && selectedColor.getAlpha() == 0) {
             selectedColor = null;
         }
-        final Object restoreData = drawing.getAttributesRestoreData();
+        UndoableEdit edit = new AttributesChangeEdit(AttributeKeys.FONT_FACE.getPresentationName(),
+                Collections.singleton(drawing), Collections.<AttributeKey<?>, Object>singletonMap(key, selectedColor));
         drawing.willChange();
         drawing.set(key, selectedColor);
         drawing.changed();
         getEditor().setDefaultAttribute(key, selectedColor);
-        final Color undoValue = selectedColor;
-        UndoableEdit edit = new AbstractUndoableEdit() {
-            private static final long serialVersionUID = 1L;
-
-            @Override
-            public String getPresentationName() {
-                return AttributeKeys.FONT_FACE.getPresentationName();
-                /*
-                String name = (String) getValue(Actions.UNDO_PRESENTATION_NAME_KEY);
-                if (name == null) {
-                name = (String) getValue(AbstractAction.NAME);
-                }
-                if (name == null) {
-                ResourceBundleUtil labels = ResourceBundleUtil.getBundle("org.jhotdraw.draw.Labels");
-                name = labels.getString("attribute.text");
-                }
-                return name;*/
-            }
-
-            @Override
-            public void undo() {
-                super.undo();
-                drawing.willChange();
-                drawing.restoreAttributesTo(restoreData);
-                drawing.changed();
-            }
-
-            @Override
-            public void redo() {
-                super.redo();
-                // restoreData.add(figure.getAttributesRestoreData());
-                drawing.willChange();
-                drawing.set(key, undoValue);
-                drawing.changed();
-            }
-        };
         fireUndoableEditHappened(edit);
     }
 
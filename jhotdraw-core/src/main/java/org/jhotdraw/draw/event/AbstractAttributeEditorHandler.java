@@ -26,6 +26,7 @@ import org.jhotdraw.draw.AttributeKey;
 import org.jhotdraw.draw.DrawingEditor;
 import org.jhotdraw.draw.DrawingView;
 import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.undo.SizedUndoableEdit;
 
 /**
  * AbstractAttributeEditorHandler mediates between an AttributeEditor and the
@@ -110,19 +111,27 @@ public abstract class AbstractAttributeEditorHandler<T> implements Disposable {
     }
     private EventHandler eventHandler;
 
-    private static class UndoableAttributeEdit<T> extends AbstractUndoableEdit {
+    private static class UndoableAttributeEdit<T> extends AbstractUndoableEdit implements SizedUndoableEdit {
 
         private static final long serialVersionUID = 1L;
         private Set<Figure> editedFigures;
         private AttributeKey<T> attributeKey;
         private T editRedoValue;
         protected LinkedList<Object> editUndoData;
+        private long estimatedSize;
 
         public UndoableAttributeEdit(Set<Figure> editedFigures, AttributeKey<T> attributeKey, T editRedoValue, LinkedList<Object> editUndoData) {
             this.editedFigures = editedFigures;
             this.attributeKey = attributeKey;
             this.editRedoValue = editRedoValue;
             this.editUndoData = editUndoData;
+            estimatedSize = 64 + 48L * editedFigures.size()
+                    + AttributesChangeEdit.estimateRestoreDataSize(editUndoData);
+        }
+
+        @Override
+        public long getEstimatedSize() {
+            return estimatedSize;
         }
 
         @Override
@@ -351,9 +360,13 @@ public abstract class AbstractAttributeEditorHandler<T> implements Disposable {
             } else {
                 T value = attributeEditor.getAttributeValue();
                 if (attributeRestoreData == null) {
+                    // Only the attributes which we are about to change need to be restored
+                    Set<AttributeKey<?>> keys = new HashSet<>(defaultAttributes.keySet());
+                    keys.add(attributeKey);
+                    keys = Collections.unmodifiableSet(keys);
                     attributeRestoreData = new LinkedList<>();
                     for (Figure f : figures) {
-                        attributeRestoreData.add(f.getAttributesRestoreData());
+                        attributeRestoreData.add(f.getAttributesRestoreData(keys));
                     }
                 }
                 for (Figure f : figures) {
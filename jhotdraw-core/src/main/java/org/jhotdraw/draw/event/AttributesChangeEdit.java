@@ -0,0 +1,119 @@
+/*
+ * @(#)AttributesChangeEdit.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.event;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+import org.jhotdraw.draw.AttributeKey;
+import org.jhotdraw.draw.figure.AttributeRestoreData;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.undo.SizedUndoableEdit;
+
+/**
+ * An {@code UndoableEdit} event which can undo a change of some attributes of
+ * a number of {@link Figure}s.
+ * <p>
+ * The edit only stores the old values of the changed attributes of each
+ * figure, see {@link Figure#getAttributesRestoreData(java.util.Set)}.
+ * Therefore it must be created before the attributes are changed.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class AttributesChangeEdit extends AbstractUndoableEdit implements SizedUndoableEdit {
+
+    private static final long serialVersionUID = 1L;
+    private String presentationName;
+    private Figure[] figures;
+    private Map<AttributeKey<?>, Object> newValues;
+    private Object[] restoreData;
+    private long estimatedSize;
+
+    /**
+     * Creates a new instance, and stores the current values of the
+     * attributes which are about to be changed.
+     *
+     * @param presentationName The presentation name of the edit.
+     * @param figures The figures.
+     * @param newValues The new values of the attributes.
+     */
+    public AttributesChangeEdit(String presentationName, Collection<? extends Figure> figures,
+            Map<AttributeKey<?>, Object> newValues) {
+        this.presentationName = presentationName;
+        this.figures = figures.toArray(new Figure[figures.size()]);
+        this.newValues = new HashMap<>(newValues);
+        Set<AttributeKey<?>> keys = Collections.unmodifiableSet(this.newValues.keySet());
+        restoreData = new Object[this.figures.length];
+        estimatedSize = 64 + 64L * this.newValues.size();
+        for (int i = 0; i < this.figures.length; i++) {
+            restoreData[i] = this.figures[i].getAttributesRestoreData(keys);
+            estimatedSize += 16 + estimateRestoreDataSize(restoreData[i]);
+        }
+    }
+
+    @Override
+    public String getPresentationName() {
+        return (presentationName != null) ? presentationName : super.getPresentationName();
+    }
+
+    @Override
+    public void undo() throws CannotUndoException {
+        super.undo();
+        for (int i = 0; i < figures.length; i++) {
+            figures[i].willChange();
+            figures[i].restoreAttributesTo(restoreData[i]);
+            figures[i].changed();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void redo() throws CannotRedoException {
+        super.redo();
+        for (Figure figure : figures) {
+            figure.willChange();
+            for (Map.Entry<AttributeKey<?>, Object> entry : newValues.entrySet()) {
+                figure.set((AttributeKey<Object>) entry.getKey(), entry.getValue());
+            }
+            figure.changed();
+        }
+    }
+
+    @Override
+    public long getEstimatedSize() {
+        return estimatedSize;
+    }
+
+    /**
+     * Returns an estimate of the memory used by the attributes restore data
+     * of a figure in bytes.
+     *
+     * @param restoreData Data which has been obtained from one of the
+     * getAttributesRestoreData methods of a figure.
+     */
+    public static long estimateRestoreDataSize(Object restoreData) {
+        if (restoreData instanceof AttributeRestoreData) {
+            return ((AttributeRestoreData) restoreData).getEstimatedSize();
+        } else if (restoreData instanceof Map) {
+            return 64 + 48L * ((Map<?, ?>) restoreData).size();
+        } else if (restoreData instanceof Collection) {
+            long size = 32;
+            for (Object o : (Collection<?>) restoreData) {
+                size += 24 + estimateRestoreDataSize(o);
+            }
+            return size;
+        }
+        return 16;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * @(#)DrawingUndoStore.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.event;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import javax.swing.undo.UndoableEdit;
+import org.jhotdraw.draw.AttributeKey;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.undo.CompositeEdit;
+import org.jhotdraw.undo.FileUndoStore;
+
+/**
+ * A {@link FileUndoStore} for the edits of a drawing.
+ * <p>
+ * The store can hold the edits of this package, which undo changes of
+ * attributes, bounds, transforms and bezier nodes, and composite edits which
+ * consist only of such edits. Figures and attribute keys are not copied into
+ * the file, but are referenced by handles.
+ * <p>
+ * Usage:
+ * <pre>
+ * undoRedoManager.setUndoStore(new DrawingUndoStore());
+ * </pre>
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class DrawingUndoStore extends FileUndoStore {
+
+    private static final Set<Class<?>> SPILLABLE_EDIT_CLASSES = new HashSet<Class<?>>(Arrays.asList(
+            CompositeEdit.class,
+            CompositeFigureEdit.class,
+            AttributeChangeEdit.class,
+            AttributesChangeEdit.class,
+            BezierNodeEdit.class,
+            SetBoundsEdit.class,
+            TransformEdit.class,
+            TransformRestoreEdit.class));
+
+    /**
+     * Creates a store which uses a temporary file.
+     */
+    public DrawingUndoStore() throws IOException {
+        super();
+    }
+
+    /**
+     * Creates a store which uses the specified file.
+     */
+    public DrawingUndoStore(File file, boolean deleteOnClose) throws IOException {
+        super(file, deleteOnClose);
+    }
+
+    @Override
+    protected boolean isSpillable(UndoableEdit edit) {
+        return SPILLABLE_EDIT_CLASSES.contains(edit.getClass());
+    }
+
+    @Override
+    protected boolean isLiveObject(Object obj) {
+        return (obj instanceof Figure) || (obj instanceof AttributeKey);
+    }
+}
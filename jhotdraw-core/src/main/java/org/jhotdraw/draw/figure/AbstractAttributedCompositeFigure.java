@@ -108,12 +108,34 @@ public abstract class AbstractAttributedCompositeFigure extends AbstractComposit
         return list;
     }
 
+    @Override
+    public Object getAttributesRestoreData(Set<AttributeKey<?>> keys) {
+        LinkedList<Object> list = new LinkedList<>();
+        list.add(new AttributeRestoreData(attributes, keys));
+        for (Figure child : getChildren()) {
+            list.add(child.getAttributesRestoreData(keys));
+        }
+        return list;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public void restoreAttributesTo(Object restoreData) {
         Iterator<Object> i = ((LinkedList<Object>) restoreData).iterator();
-        attributes.clear();
-        setAttributes((Map<AttributeKey<?>, Object>) i.next());
+        Object data = i.next();
+        if (data instanceof AttributeRestoreData) {
+            AttributeRestoreData attributeData = (AttributeRestoreData) data;
+            for (int j = 0, n = attributeData.size(); j < n; j++) {
+                if (attributeData.isSet(j)) {
+                    set((AttributeKey<Object>) attributeData.getKey(j), attributeData.getValue(j));
+                } else {
+                    removeAttribute(attributeData.getKey(j));
+                }
+            }
+        } else {
+            attributes.clear();
+            setAttributes((Map<AttributeKey<?>, Object>) data);
+        }
         for (Figure child : getChildren()) {
             child.restoreAttributesTo(i.next());
         }
@@ -13,6 +13,7 @@ import java.io.*;
 import java.util.*;
 import org.jhotdraw.draw.AttributeKey;
 import org.jhotdraw.draw.AttributeKeys;
+import org.jhotdraw.draw.LevelOfDetail;
 import static org.jhotdraw.draw.AttributeKeys.*;
 import org.jhotdraw.geom.Dimension2DDouble;
 import org.jhotdraw.geom.Geom;
@@ -40,6 +41,12 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
      * be changed by put().
      */
     private HashSet<AttributeKey<?>> forbiddenAttributes;
+    /**
+     * The colour of the box which is drawn instead of the figure, when the
+     * figure is very small on the device. This is a cached value, it is reset
+     * when an attribute changes.
+     */
+    private transient Color cachedBoxColor;
 
     /**
      * Creates a new instance.
@@ -80,9 +87,25 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
     }
 
     @Override
+    public Object getAttributesRestoreData(Set<AttributeKey<?>> keys) {
+        return new AttributeRestoreData(attributes, keys);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
     public void restoreAttributesTo(Object restoreData) {
+        if (restoreData instanceof AttributeRestoreData) {
+            AttributeRestoreData data = (AttributeRestoreData) restoreData;
+            for (int i = 0, n = data.size(); i < n; i++) {
+                if (data.isSet(i)) {
+                    set((AttributeKey<Object>) data.getKey(i), data.getValue(i));
+                } else {
+                    removeAttribute(data.getKey(i));
+                }
+            }
+            return;
+        }
         attributes.clear();
-        @SuppressWarnings("unchecked")
         HashMap<AttributeKey<?>, Object> restoreDataHashMap = (HashMap<AttributeKey<?>, Object>) restoreData;
         setAttributes(restoreDataHashMap);
     }
@@ -97,6 +120,7 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
                 || !forbiddenAttributes.contains(key)) {
             @SuppressWarnings("unchecked")
             T oldValue = key.put(attributes, newValue);
+            cachedBoxColor = null;
             fireAttributeChanged(key, oldValue, newValue);
         }
     }
@@ -109,8 +133,20 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
         return key.get(attributes);
     }
 
+    /**
+     * Draws the figure.
+     * <p>
+     * If the graphics has a {@link LevelOfDetail} rendering hint, figures
+     * which are very small on the device are skipped or drawn as a box of
+     * the {@link #getBoxColor box colour}, and text which is very small on
+     * the device is drawn with {@link #drawTextBars}.
+     */
     @Override
     public void draw(Graphics2D g) {
+        LevelOfDetail lod = LevelOfDetail.get(g);
+        if (lod != null && drawReducedDetail(g, lod)) {
+            return;
+        }
         if (get(FILL_COLOR) != null) {
             g.setColor(get(FILL_COLOR));
             drawFill(g);
@@ -121,6 +157,11 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
             drawStroke(g);
         }
         if (get(TEXT_COLOR) != null) {
+            if (lod != null && get(FONT_SIZE) * LevelOfDetail.getDeviceScale(g) < lod.getMinTextHeight()) {
+                g.setColor(lod.getTextBarColor());
+                drawTextBars(g);
+                return;
+            }
             if (get(TEXT_SHADOW_COLOR) != null
                     && get(TEXT_SHADOW_OFFSET) != null) {
                 Dimension2DDouble d = get(TEXT_SHADOW_OFFSET);
@@ -184,6 +225,49 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
     protected void drawText(java.awt.Graphics2D g) {
     }
 
+    /**
+     * This method is called by method draw() instead of drawText(), when the
+     * text is too small on the device to be legible. AbstractAttributedFigure
+     * configures the Graphics2D object with the text bar colour before calling
+     * this method. Figures which draw text should fill the area of the text
+     * lines. This implementation does nothing.
+     */
+    protected void drawTextBars(java.awt.Graphics2D g) {
+    }
+
+    /**
+     * Skips the figure or draws it as a box, if it is too small on the device
+     * for the specified level of detail.
+     *
+     * @param g the graphics.
+     * @param lod the level of detail.
+     * @return true if the figure has been skipped or drawn as a box.
+     */
+    protected boolean drawReducedDetail(Graphics2D g, LevelOfDetail lod) {
+        return lod.drawReducedDetail(g, getBounds(), getBoxColor());
+    }
+
+    /**
+     * Returns the colour with which the figure is drawn when it is too small
+     * on the device to show any detail. This is the fill colour, or if there
+     * is none, the stroke or the text colour.
+     */
+    protected Color getBoxColor() {
+        if (cachedBoxColor == null) {
+            cachedBoxColor = get(FILL_COLOR);
+            if (cachedBoxColor == null) {
+                cachedBoxColor = get(STROKE_COLOR);
+            }
+            if (cachedBoxColor == null) {
+                cachedBoxColor = get(TEXT_COLOR);
+            }
+            if (cachedBoxColor == null) {
+                cachedBoxColor = new Color(0, true);
+            }
+        }
+        return cachedBoxColor;
+    }
+
     @Override
     public AbstractAttributedFigure clone() {
         AbstractAttributedFigure that = (AbstractAttributedFigure) super.clone();
@@ -282,6 +366,7 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
         if (hasAttribute(key)) {
             T oldValue = get(key);
             attributes.remove(key);
+            cachedBoxColor = null;
             fireAttributeChanged(key, oldValue, key.getDefaultValue());
         }
     }
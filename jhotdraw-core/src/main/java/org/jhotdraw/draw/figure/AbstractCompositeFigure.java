@@ -24,6 +24,7 @@ import org.jhotdraw.draw.handle.BoundsOutlineHandle;
 import org.jhotdraw.draw.handle.Handle;
 import org.jhotdraw.draw.handle.TransformHandleKit;
 import org.jhotdraw.draw.layouter.Layouter;
+import org.jhotdraw.geom.BoundsUnionTree;
 import org.jhotdraw.geom.Dimension2DDouble;
 import org.jhotdraw.util.*;
 import org.jhotdraw.xml.DOMInput;
@@ -62,6 +63,25 @@ public abstract class AbstractCompositeFigure
      * Caches the bounds to improve the performance of method {@link #getBounds}.
      */
     protected transient Rectangle2D.Double cachedBounds;
+    /**
+     * Maps each child to its index in the bounds trees.
+     */
+    private transient HashMap<Figure, Integer> childIndices;
+    /**
+     * Holds the bounds of the children.
+     */
+    private transient BoundsUnionTree childBounds;
+    /**
+     * Holds the drawing areas of the children at scale factor 1.0.
+     */
+    private transient BoundsUnionTree childDrawingAreas;
+    /**
+     * Holds the drawing areas of the children at the scale factor
+     * {@code scaledChildDrawingAreasFactor}, which is the last scale factor
+     * other than 1.0 that has been requested.
+     */
+    private transient BoundsUnionTree scaledChildDrawingAreas;
+    private transient double scaledChildDrawingAreasFactor;
     /**
      * Handles figure changes in the children.
      */
@@ -81,10 +101,16 @@ public abstract class AbstractCompositeFigure
             if (!isChanging()) {
                 Rectangle2D.Double invalidatedArea = getDrawingArea();
                 invalidatedArea.add(e.getInvalidatedArea());
-                // We call invalidate/validate here, because we must layout
-                // the figure again.
-                invalidate();
-                validate();
+                if (getLayouter() == null) {
+                    // Without a layouter, the other children are not
+                    // affected, so we only update the bounds of the child.
+                    invalidateChild(e.getFigure());
+                } else {
+                    // We call invalidate/validate here, because we must layout
+                    // the figure again.
+                    invalidate();
+                    validate();
+                }
                 // Forward the figureChanged event to listeners on AbstractCompositeFigure.
                 invalidatedArea.add(getDrawingArea());
                 fireFigureChanged(invalidatedArea);
@@ -361,6 +387,15 @@ public abstract class AbstractCompositeFigure
         return data;
     }
 
+    @Override
+    public Object getAttributesRestoreData(Set<AttributeKey<?>> keys) {
+        LinkedList<Object> data = new LinkedList<>();
+        for (Figure child : getChildren()) {
+            data.add(child.getAttributesRestoreData(keys));
+        }
+        return data;
+    }
+
     @Override
     public void restoreAttributesTo(Object newData) {
         @SuppressWarnings("unchecked")
@@ -528,8 +563,8 @@ public abstract class AbstractCompositeFigure
     @Override
     public void read(DOMInput in) throws IOException {
         in.openElement("children");
-        for (int i = 0; i < in.getElementCount(); i++) {
-            basicAdd((Figure) in.readObject(i));
+        while (in.hasNextElement()) {
+            basicAdd((Figure) in.readNextObject());
         }
         in.closeElement();
     }
@@ -567,6 +602,7 @@ public abstract class AbstractCompositeFigure
     public void basicAdd(int index, Figure figure) {
         children.add(index, figure);
         figure.addFigureListener(eventHandler);
+        invalidateChildIndices();
     }
 
     @Override
@@ -595,6 +631,10 @@ public abstract class AbstractCompositeFigure
     @Override
     public AbstractCompositeFigure clone() {
         AbstractCompositeFigure that = (AbstractCompositeFigure) super.clone();
+        that.childIndices = null;
+        that.childBounds = null;
+        that.childDrawingAreas = null;
+        that.scaledChildDrawingAreas = null;
         that.children = new ArrayList<>();
         that.eventHandler = that.createEventHandler();
         for (Figure thisChild : this.children) {
@@ -615,6 +655,91 @@ public abstract class AbstractCompositeFigure
     protected void invalidate() {
         cachedBounds = null;
         cachedDrawingArea = null;
+        invalidateChildIndices();
+    }
+
+    /**
+     * Invalidates the cached bounds after the specified child has changed.
+     * <p>
+     * This only updates the bounds of the changed child in the bounds
+     * trees, which costs O(log n). If the child is unknown, this method
+     * falls back to {@link #invalidate}. Subclasses which cache other data
+     * that depends on the children must override this method.
+     */
+    protected void invalidateChild(Figure child) {
+        Integer index = (childIndices == null || childIndices.size() != children.size())
+                ? null : childIndices.get(child);
+        if (index == null) {
+            invalidate();
+            return;
+        }
+        cachedBounds = null;
+        cachedDrawingArea = null;
+        if (childBounds != null) {
+            childBounds.set(index, child.getBounds());
+        }
+        if (childDrawingAreas != null) {
+            childDrawingAreas.set(index, child.getDrawingArea());
+        }
+        if (scaledChildDrawingAreas != null) {
+            scaledChildDrawingAreas.set(index, child.getDrawingArea(scaledChildDrawingAreasFactor));
+        }
+    }
+
+    /**
+     * Discards the child indices and the bounds trees. Subclasses must call
+     * this method whenever they add, remove or reorder children without going
+     * through {@link #basicAdd(int, Figure)} or {@link #basicRemoveChild}.
+     */
+    protected void invalidateChildIndices() {
+        childIndices = null;
+        childBounds = null;
+        childDrawingAreas = null;
+        scaledChildDrawingAreas = null;
+    }
+
+    /**
+     * Ensures that the child indices match the children. If they do not,
+     * all bounds trees are discarded.
+     */
+    private void ensureChildIndices() {
+        if (childIndices == null || childIndices.size() != children.size()) {
+            childIndices = new HashMap<>(children.size() * 2);
+            for (int i = 0, n = children.size(); i < n; i++) {
+                childIndices.put(children.get(i), i);
+            }
+            childBounds = null;
+            childDrawingAreas = null;
+            scaledChildDrawingAreas = null;
+        }
+    }
+
+    /**
+     * Returns the union of the drawing areas of the children.
+     */
+    private Rectangle2D.Double getChildDrawingAreaUnion(double factor) {
+        ensureChildIndices();
+        BoundsUnionTree tree;
+        if (factor == 1.0) {
+            if (childDrawingAreas == null) {
+                childDrawingAreas = new BoundsUnionTree(children.size());
+                for (int i = 0, n = children.size(); i < n; i++) {
+                    childDrawingAreas.set(i, children.get(i).getDrawingArea());
+                }
+            }
+            tree = childDrawingAreas;
+        } else {
+            if (scaledChildDrawingAreas == null || scaledChildDrawingAreasFactor != factor) {
+                scaledChildDrawingAreas = new BoundsUnionTree(children.size());
+                scaledChildDrawingAreasFactor = factor;
+                for (int i = 0, n = children.size(); i < n; i++) {
+                    scaledChildDrawingAreas.set(i, children.get(i).getDrawingArea(factor));
+                }
+            }
+            tree = scaledChildDrawingAreas;
+        }
+        Rectangle2D.Double union = tree.getUnion();
+        return (union == null) ? new Rectangle2D.Double() : union;
     }
 
     @Override
@@ -652,20 +777,22 @@ public abstract class AbstractCompositeFigure
         return getDrawingArea(1.0);
     }
 
+    /**
+     * Returns the drawing area. Only the drawing area at scale factor 1.0 is
+     * kept in {@code cachedDrawingArea}. The drawing areas of the children are
+     * aggregated incrementally for scale factor 1.0 and for the last other
+     * scale factor.
+     */
     @Override
     public Rectangle2D.Double getDrawingArea(double factor) {
+        if (getChildCount() == 0) {
+            return new Rectangle2D.Double();
+        }
+        if (factor != 1.0) {
+            return getChildDrawingAreaUnion(factor);
+        }
         if (cachedDrawingArea == null) {
-            if (getChildCount() == 0) {
-                cachedDrawingArea = new Rectangle2D.Double();
-            } else {
-                for (Figure f : children) {
-                    if (cachedDrawingArea == null) {
-                        cachedDrawingArea = f.getDrawingArea(factor);
-                    } else {
-                        cachedDrawingArea.add(f.getDrawingArea(factor));
-                    }
-                }
-            }
+            cachedDrawingArea = getChildDrawingAreaUnion(factor);
         }
         return (Rectangle2D.Double) cachedDrawingArea.clone();
     }
@@ -676,13 +803,15 @@ public abstract class AbstractCompositeFigure
             if (getChildCount() == 0) {
                 cachedBounds = new Rectangle2D.Double();
             } else {
-                for (Figure f : children) {
-                    if (cachedBounds == null) {
-                        cachedBounds = f.getBounds();
-                    } else {
-                        cachedBounds.add(f.getBounds());
+                ensureChildIndices();
+                if (childBounds == null) {
+                    childBounds = new BoundsUnionTree(children.size());
+                    for (int i = 0, n = children.size(); i < n; i++) {
+                        childBounds.set(i, children.get(i).getBounds());
                     }
                 }
+                Rectangle2D.Double union = childBounds.getUnion();
+                cachedBounds = (union == null) ? new Rectangle2D.Double() : union;
             }
         }
         return (Rectangle2D.Double) cachedBounds.clone();
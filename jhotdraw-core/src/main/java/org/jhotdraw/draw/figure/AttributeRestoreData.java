@@ -0,0 +1,84 @@
+/*
+ * @(#)AttributeRestoreData.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.figure;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+import org.jhotdraw.draw.AttributeKey;
+
+/**
+ * Holds the values of some of the attributes of a figure, so that they can be
+ * restored after the attributes have been changed.
+ * <p>
+ * Unlike a copy of the whole attribute map, this only holds the attributes
+ * which are about to be changed. It also remembers which of them had not been
+ * set on the figure, so that they can be removed again.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ * @see Figure#getAttributesRestoreData(java.util.Set)
+ */
+public final class AttributeRestoreData implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Marks an attribute which had not been set on the figure. This is an
+     * enum, so that the marker survives serialization.
+     */
+    private enum Absent {
+        ABSENT
+    }
+    private static final Object ABSENT = Absent.ABSENT;
+    private final AttributeKey<?>[] keys;
+    private final Object[] values;
+
+    /**
+     * Creates restore data for the specified keys.
+     *
+     * @param attributes The attributes of the figure.
+     * @param keys The keys of the attributes which are about to be changed.
+     */
+    AttributeRestoreData(Map<AttributeKey<?>, Object> attributes, Set<AttributeKey<?>> keys) {
+        this.keys = keys.toArray(new AttributeKey<?>[keys.size()]);
+        this.values = new Object[this.keys.length];
+        for (int i = 0; i < this.keys.length; i++) {
+            Object value = attributes.get(this.keys[i]);
+            values[i] = (value == null && !attributes.containsKey(this.keys[i])) ? ABSENT : value;
+        }
+    }
+
+    int size() {
+        return keys.length;
+    }
+
+    AttributeKey<?> getKey(int i) {
+        return keys[i];
+    }
+
+    /**
+     * Returns true if the attribute had been set on the figure.
+     */
+    boolean isSet(int i) {
+        return values[i] != ABSENT;
+    }
+
+    Object getValue(int i) {
+        return values[i];
+    }
+
+    /**
+     * Returns an estimate of the memory used by this object in bytes. Only
+     * the arrays are counted, because attribute keys and values are usually
+     * immutable objects which are shared by many figures.
+     */
+    public long getEstimatedSize() {
+        return 48 + 16L * keys.length;
+    }
+}
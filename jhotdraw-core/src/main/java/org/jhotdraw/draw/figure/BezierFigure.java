@@ -25,6 +25,7 @@ import org.jhotdraw.draw.handle.BezierScaleHandle;
 import org.jhotdraw.draw.handle.Handle;
 import org.jhotdraw.draw.handle.TransformHandleKit;
 import org.jhotdraw.geom.BezierPath;
+import org.jhotdraw.geom.FlattenedOutline;
 import org.jhotdraw.geom.Geom;
 import org.jhotdraw.geom.GrowStroke;
 import org.jhotdraw.util.*;
@@ -67,6 +68,16 @@ public class BezierFigure extends AbstractAttributedFigure {
      * speed of the figure.
      */
     private transient BezierPath cappedPath;
+    /**
+     * The path grown by the perpendicular hit growth. We cache it to increase
+     * the speed of hit testing.
+     */
+    private transient Shape cachedGrowShape;
+    /**
+     * The flattened outline of the cappedPath. We cache it to increase the
+     * speed of hit testing.
+     */
+    private transient FlattenedOutline cachedOutline;
 
     /**
      * Creates an empty <code>BezierFigure</code>, for example without any
@@ -174,11 +185,7 @@ public class BezierFigure extends AbstractAttributedFigure {
             if (path.contains(p)) {
                 return true;
             }
-            double grow = AttributeKeys.getPerpendicularHitGrowth(this, 1.0) * 2d;
-            GrowStroke gs = new GrowStroke(grow,
-                    AttributeKeys.getStrokeTotalWidth(this, 1.0)
-                    * get(STROKE_MITER_LIMIT));
-            if (gs.createStrokedShape(path).contains(p)) {
+            if (getGrowShape().contains(p)) {
                 return true;
             } else {
                 if (isClosed()) {
@@ -187,7 +194,7 @@ public class BezierFigure extends AbstractAttributedFigure {
             }
         }
         if (!isClosed()) {
-            if (getCappedPath().outlineContains(p, tolerance)) {
+            if (getOutline(tolerance).outlineContains(p.x, p.y, tolerance)) {
                 return true;
             }
             if (get(START_DECORATION) != null) {
@@ -262,6 +269,8 @@ public class BezierFigure extends AbstractAttributedFigure {
         super.validate();
         path.invalidatePath();
         cappedPath = null;
+        cachedGrowShape = null;
+        cachedOutline = null;
     }
 
     /**
@@ -323,6 +332,8 @@ public class BezierFigure extends AbstractAttributedFigure {
         super.invalidate();
         path.invalidatePath();
         cappedPath = null;
+        cachedGrowShape = null;
+        cachedOutline = null;
     }
 
     /**
@@ -337,8 +348,8 @@ public class BezierFigure extends AbstractAttributedFigure {
             } else {
                 if (cappedPath.size() > 1) {
                     if (get(START_DECORATION) != null) {
-                        BezierPath.Node p0 = cappedPath.get(0);
-                        BezierPath.Node p1 = cappedPath.get(1);
+                        BezierPath.Node p0 = cappedPath.copyNode(0);
+                        BezierPath.Node p1 = cappedPath.copyNode(1);
                         Point2D.Double pp;
                         if ((p0.getMask() & BezierPath.C2_MASK) != 0) {
                             pp = p0.getControlPoint(2);
@@ -352,8 +363,8 @@ public class BezierFigure extends AbstractAttributedFigure {
                         cappedPath.set(0, 0, Geom.cap(pp, p0.getControlPoint(0), -Math.min(radius, lineLength)));
                     }
                     if (get(END_DECORATION) != null) {
-                        BezierPath.Node p0 = cappedPath.get(cappedPath.size() - 1);
-                        BezierPath.Node p1 = cappedPath.get(cappedPath.size() - 2);
+                        BezierPath.Node p0 = cappedPath.copyNode(cappedPath.size() - 1);
+                        BezierPath.Node p1 = cappedPath.copyNode(cappedPath.size() - 2);
                         Point2D.Double pp;
                         if ((p0.getMask() & BezierPath.C1_MASK) != 0) {
                             pp = p0.getControlPoint(1);
@@ -373,6 +384,31 @@ public class BezierFigure extends AbstractAttributedFigure {
         return cappedPath;
     }
 
+    /**
+     * Returns the path grown by the perpendicular hit growth of the figure.
+     */
+    protected Shape getGrowShape() {
+        if (cachedGrowShape == null) {
+            double grow = AttributeKeys.getPerpendicularHitGrowth(this, 1.0) * 2d;
+            GrowStroke gs = new GrowStroke(grow,
+                    AttributeKeys.getStrokeTotalWidth(this, 1.0)
+                    * get(STROKE_MITER_LIMIT));
+            cachedGrowShape = gs.createStrokedShape(path);
+        }
+        return cachedGrowShape;
+    }
+
+    /**
+     * Returns the flattened outline of the capped path for the specified
+     * tolerance.
+     */
+    protected FlattenedOutline getOutline(double tolerance) {
+        if (cachedOutline == null || cachedOutline.getFlatness() != tolerance) {
+            cachedOutline = new FlattenedOutline(getCappedPath(), tolerance);
+        }
+        return cachedOutline;
+    }
+
     public void layout() {
     }
 
@@ -387,7 +423,7 @@ public class BezierFigure extends AbstractAttributedFigure {
      * Adds a node to the list of points.
      */
     public void addNode(final int index, BezierPath.Node p) {
-        path.add(index, p);
+        path.addNode(index, p);
         invalidate();
     }
 
@@ -395,7 +431,7 @@ public class BezierFigure extends AbstractAttributedFigure {
      * Sets a control point.
      */
     public void setNode(int index, BezierPath.Node p) {
-        path.set(index, p);
+        path.setNode(index, p);
         invalidate();
     }
 
@@ -403,7 +439,7 @@ public class BezierFigure extends AbstractAttributedFigure {
      * Gets a control point.
      */
     public BezierPath.Node getNode(int index) {
-        return (BezierPath.Node) path.get(index).clone();
+        return path.copyNode(index);
     }
 
     /**
@@ -411,27 +447,23 @@ public class BezierFigure extends AbstractAttributedFigure {
      * specified node.
      */
     public Point2D.Double getPoint(int index) {
-        return path.get(index).getControlPoint(0);
+        return path.get(index, 0);
     }
 
     /**
      * Gets the point coordinate of a control point.
      */
     public Point2D.Double getPoint(int index, int coord) {
-        return path.get(index).getControlPoint(coord);
+        return path.get(index, coord);
     }
 
     /**
      * Sets the point coordinate of control point 0 at the specified node.
      */
     public void setPoint(int index, Point2D.Double p) {
-        BezierPath.Node node = path.get(index);
-        double dx = p.x - node.x[0];
-        double dy = p.y - node.y[0];
-        for (int i = 0; i < node.x.length; i++) {
-            node.x[i] += dx;
-            node.y[i] += dy;
-        }
+        BezierPath.Node node = path.copyNode(index);
+        node.moveTo(p);
+        path.setNode(index, node);
         invalidate();
     }
 
@@ -439,7 +471,7 @@ public class BezierFigure extends AbstractAttributedFigure {
      * Sets the point coordinate of a control point.
      */
     public void setPoint(int index, int coord, Point2D.Double p) {
-        BezierPath.Node cp = new BezierPath.Node(path.get(index));
+        BezierPath.Node cp = path.copyNode(index);
         cp.setControlPoint(coord, p);
         setNode(index, cp);
     }
@@ -493,8 +525,7 @@ public class BezierFigure extends AbstractAttributedFigure {
     public int findNode(Point2D.Double p) {
         BezierPath tp = path;
         for (int i = 0; i < tp.size(); i++) {
-            BezierPath.Node p2 = tp.get(i);
-            if (p2.x[0] == p.x && p2.y[0] == p.y) {
+            if (tp.getX(i, 0) == p.x && tp.getY(i, 0) == p.y) {
                 return i;
             }
         }
@@ -608,7 +639,7 @@ public class BezierFigure extends AbstractAttributedFigure {
     }
 
     public Point2D.Double getOutermostPoint() {
-        return path.get(path.indexOfOutermostNode()).getControlPoint(0);
+        return path.get(path.indexOfOutermostNode(), 0);
     }
 
     /**
@@ -720,7 +751,7 @@ public class BezierFigure extends AbstractAttributedFigure {
                     in.getAttribute("c2x", in.getAttribute("x", 0d)),
                     in.getAttribute("c2y", in.getAttribute("y", 0d)));
             node.keepColinear = in.getAttribute("colinear", true);
-            path.add(node);
+            path.addNode(path.size(), node);
             path.invalidatePath();
             in.closeElement();
         }
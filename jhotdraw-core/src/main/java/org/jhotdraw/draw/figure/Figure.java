@@ -332,8 +332,25 @@ public interface Figure extends Cloneable, Serializable {
      */
     public Object getAttributesRestoreData();
 
+    /**
+     * Gets data which can be used to restore the specified attributes of the
+     * figure after a set has been applied to them.
+     * <p>
+     * Unlike {@link #getAttributesRestoreData()}, the data only needs to hold
+     * the specified attributes. This keeps undo edits small, which change a
+     * few attributes of many figures. The default implementation returns
+     * {@code getAttributesRestoreData()}.
+     *
+     * @param keys The keys of the attributes which are about to be changed.
+     */
+    public default Object getAttributesRestoreData(Set<AttributeKey<?>> keys) {
+        return getAttributesRestoreData();
+    }
+
     /**
      * Restores the attributes of the figure to a previously stored state.
+     * The restore data has been obtained from one of the
+     * getAttributesRestoreData methods.
      */
     public void restoreAttributesTo(Object restoreData);
 
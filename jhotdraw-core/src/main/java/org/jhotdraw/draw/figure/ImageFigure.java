@@ -15,6 +15,7 @@ import java.util.*;
 import javax.imageio.*;
 import javax.swing.*;
 import org.jhotdraw.draw.AttributeKeys;
+import org.jhotdraw.draw.LevelOfDetail;
 import static org.jhotdraw.draw.AttributeKeys.*;
 import org.jhotdraw.draw.connector.ChopRectangleConnector;
 import org.jhotdraw.draw.connector.Connector;
@@ -46,6 +47,11 @@ public class ImageFigure extends AbstractAttributedDecoratedFigure
      * The buffered image. This can be null, if we haven't yet parsed the imageData.
      */
     private transient BufferedImage bufferedImage;
+    /**
+     * This is used to draw the image at a resolution which matches the
+     * scale of the graphics.
+     */
+    private transient ImagePyramid imagePyramid;
 
     /**
      * Creates a new instance.
@@ -61,6 +67,10 @@ public class ImageFigure extends AbstractAttributedDecoratedFigure
     // DRAWING
     @Override
     protected void drawFigure(Graphics2D g) {
+        LevelOfDetail lod = LevelOfDetail.get(g);
+        if (lod != null && drawReducedDetail(g, lod)) {
+            return;
+        }
         if (get(FILL_COLOR) != null) {
             g.setColor(get(FILL_COLOR));
             drawFill(g);
@@ -94,7 +104,7 @@ public class ImageFigure extends AbstractAttributedDecoratedFigure
     }
 
     protected void drawImage(Graphics2D g) {
-        BufferedImage image = getBufferedImage();
+        BufferedImage image = getImage(g, rectangle);
         if (image != null) {
             g.drawImage(image, (int) rectangle.x, (int) rectangle.y, (int) rectangle.width, (int) rectangle.height, null);
         } else {
@@ -199,6 +209,7 @@ public class ImageFigure extends AbstractAttributedDecoratedFigure
     public ImageFigure clone() {
         ImageFigure that = (ImageFigure) super.clone();
         that.rectangle = (Rectangle2D.Double) this.rectangle.clone();
+        that.imagePyramid = null;
         return that;
     }
 
@@ -237,6 +248,7 @@ public class ImageFigure extends AbstractAttributedDecoratedFigure
         willChange();
         this.imageData = imageData;
         this.bufferedImage = bufferedImage;
+        disposeImagePyramid();
         changed();
     }
 
@@ -250,6 +262,7 @@ public class ImageFigure extends AbstractAttributedDecoratedFigure
         willChange();
         this.imageData = imageData;
         this.bufferedImage = null;
+        disposeImagePyramid();
         changed();
     }
 
@@ -261,6 +274,7 @@ public class ImageFigure extends AbstractAttributedDecoratedFigure
         willChange();
         this.imageData = null;
         this.bufferedImage = image;
+        disposeImagePyramid();
         changed();
     }
 
@@ -273,17 +287,51 @@ public class ImageFigure extends AbstractAttributedDecoratedFigure
         if (bufferedImage == null && imageData != null) {
             try {
                 bufferedImage = ImageIO.read(new ByteArrayInputStream(imageData));
+                disposeImagePyramid();
             } catch (IOException e) {
                 e.printStackTrace();
                 // If we can't create a buffered image from the image data,
                 // there is no use to keep the image data and try again, so
                 // we drop the image data.
                 imageData = null;
+                disposeImagePyramid();
             }
         }
         return bufferedImage;
     }
 
+    /**
+     * Returns the image pyramid of the image, or null if the figure has no
+     * image.
+     */
+    private ImagePyramid getImagePyramid() {
+        if (imagePyramid == null && (imageData != null || bufferedImage != null)) {
+            imagePyramid = new ImagePyramid(imageData, bufferedImage);
+        }
+        return imagePyramid;
+    }
+
+    private void disposeImagePyramid() {
+        if (imagePyramid != null) {
+            imagePyramid.dispose();
+            imagePyramid = null;
+        }
+    }
+
+    /**
+     * Returns the image for drawing it into the specified rectangle with the
+     * specified graphics. If the graphics is scaled down, this is an image
+     * with a reduced resolution.
+     */
+    private BufferedImage getImage(Graphics2D g, Rectangle2D.Double r) {
+        ImagePyramid pyramid = getImagePyramid();
+        if (pyramid == null) {
+            return null;
+        }
+        double scale = Math.abs(AttributeKeys.getScaleFactorFromGraphics(g));
+        return pyramid.getImage(r.width / scale, r.height / scale);
+    }
+
     /**
      * Gets the image data. If necessary, this method creates the image data from the buffered
      * image.
@@ -337,6 +385,7 @@ public class ImageFigure extends AbstractAttributedDecoratedFigure
         }
         imageData = baos.toByteArray();
         bufferedImage = img;
+        disposeImagePyramid();
     }
 
     private void writeObject(ObjectOutputStream out) throws IOException {
@@ -12,6 +12,7 @@ import java.awt.geom.*;
 import java.io.*;
 import java.util.*;
 import javax.swing.undo.*;
+import org.jhotdraw.draw.ConnectionIndex;
 import org.jhotdraw.draw.Drawing;
 import org.jhotdraw.draw.DrawingView;
 import org.jhotdraw.draw.connector.Connector;
@@ -53,6 +54,12 @@ public class LineConnectionFigure extends LineFigure
      * end figure.
      */
     private ConnectionHandler connectionHandler = new ConnectionHandler(this);
+    /**
+     * The connection index of the drawing, if this figure has been added to
+     * it. The index updates the connection when the start or the end figure
+     * changes.
+     */
+    private transient ConnectionIndex connectionIndex;
 
     private static class ConnectionHandler extends FigureAdapter implements Serializable {
 
@@ -79,7 +86,7 @@ public class LineConnectionFigure extends LineFigure
 
         @Override
         public void figureChanged(FigureEvent e) {
-            if (!owner.isChanging()) {
+            if (owner.connectionIndex == null && !owner.isChanging()) {
                 if (e.getSource() == owner.getStartFigure()
                         || e.getSource() == owner.getEndFigure()) {
                     owner.willChange();
@@ -105,7 +112,9 @@ public class LineConnectionFigure extends LineFigure
     @Override
     public void transform(AffineTransform tx) {
         super.transform(tx);
-        updateConnection(); // make sure that we are still connected
+        if (connectionIndex == null || !connectionIndex.deferUpdate(this)) {
+            updateConnection(); // make sure that we are still connected
+        }
     }
 
     // ATTRIBUTES
@@ -167,7 +176,10 @@ public class LineConnectionFigure extends LineFigure
     @Override
     public void validate() {
         super.validate();
-        lineout();
+        // A deferred update lays out the connection at the end of the update
+        if (connectionIndex == null || !connectionIndex.isUpdateDeferred(this)) {
+            lineout();
+        }
     }
 
     @Override
@@ -207,6 +219,9 @@ public class LineConnectionFigure extends LineFigure
                 }
             }
             endConnector = newEnd;
+            if (connectionIndex != null) {
+                connectionIndex.add(this);
+            }
             if (endConnector != null) {
                 getEndFigure().addFigureListener(connectionHandler);
                 if (getStartFigure() != null && getEndFigure() != null) {
@@ -229,6 +244,9 @@ public class LineConnectionFigure extends LineFigure
                 }
             }
             startConnector = newStart;
+            if (connectionIndex != null) {
+                connectionIndex.add(this);
+            }
             if (startConnector != null) {
                 getStartFigure().addFigureListener(connectionHandler);
                 if (getStartFigure() != null && getEndFigure() != null) {
@@ -287,6 +305,13 @@ public class LineConnectionFigure extends LineFigure
     @Override
     public void addNotify(Drawing drawing) {
         super.addNotify(drawing);
+        if (connectionIndex != null) {
+            connectionIndex.remove(this);
+        }
+        connectionIndex = drawing.getConnectionIndex();
+        if (connectionIndex != null) {
+            connectionIndex.add(this);
+        }
         if (getStartConnector() != null && getEndConnector() != null) {
             handleConnect(getStartConnector(), getEndConnector());
             updateConnection();
@@ -312,6 +337,10 @@ public class LineConnectionFigure extends LineFigure
         setStartConnector(null);
         setEndConnector(null);
          */
+        if (connectionIndex != null) {
+            connectionIndex.remove(this);
+            connectionIndex = null;
+        }
         super.removeNotify(drawing);
     }
 
@@ -343,6 +372,7 @@ public class LineConnectionFigure extends LineFigure
     public LineConnectionFigure clone() {
         LineConnectionFigure that = (LineConnectionFigure) super.clone();
         that.connectionHandler = new ConnectionHandler(that);
+        that.connectionIndex = null;
         if (this.liner != null) {
             that.liner = this.liner.clone();
         }
@@ -505,6 +535,9 @@ public class LineConnectionFigure extends LineFigure
     public void setLiner(Liner newValue) {
         Liner oldValue = liner;
         this.liner = newValue;
+        if (connectionIndex != null) {
+            connectionIndex.add(this);
+        }
         firePropertyChange(LINER_PROPERTY, oldValue, newValue);
     }
 
@@ -553,6 +586,15 @@ public class LineConnectionFigure extends LineFigure
         }
     }
 
+    /**
+     * Returns the drawing of this connection. This method is public, so that
+     * liners which avoid figures can look up the figures near the connection.
+     */
+    @Override
+    public Drawing getDrawing() {
+        return super.getDrawing();
+    }
+
     /**
      * FIXME - Liner must work with API of LineConnection!
      */
@@ -16,7 +16,7 @@ import static org.jhotdraw.draw.AttributeKeys.*;
 import org.jhotdraw.draw.event.FigureAdapter;
 import org.jhotdraw.draw.event.FigureEvent;
 import org.jhotdraw.geom.Dimension2DDouble;
-import org.jhotdraw.geom.QuadTree;
+import org.jhotdraw.geom.ArrayQuadTree;
 import org.jhotdraw.util.*;
 
 /**
@@ -30,7 +30,7 @@ public abstract class QuadTreeCompositeFigure
         extends AbstractCompositeFigure {
 
     private static final long serialVersionUID = 1L;
-    private QuadTree<Figure> quadTree = new QuadTree<>();
+    private ArrayQuadTree<Figure> quadTree = new ArrayQuadTree<>();
     private boolean needsSorting = false;
     private FigureHandler figureHandler;
     private Dimension2DDouble canvasSize;
@@ -56,6 +56,7 @@ public abstract class QuadTreeCompositeFigure
         children.add(index, figure);
         quadTree.add(figure, figure.getDrawingArea());
         figure.addFigureListener(figureHandler);
+        invalidateChildIndices();
         needsSorting = true;
     }
 
@@ -65,6 +66,7 @@ public abstract class QuadTreeCompositeFigure
         children.remove(index);
         quadTree.remove(figure);
         figure.removeFigureListener(figureHandler);
+        invalidateChildIndices();
         needsSorting = true;
         return figure;
     }
@@ -73,7 +75,7 @@ public abstract class QuadTreeCompositeFigure
     public void draw(Graphics2D g) {
         Rectangle2D clipBounds = g.getClipBounds();
         if (clipBounds != null) {
-            Collection<Figure> c = quadTree.findIntersects(clipBounds);
+            Collection<Figure> c = quadTree.findIntersects(clipBounds, new HashSet<Figure>());
             Collection<Figure> toDraw = sort(c);
             draw(g, toDraw);
         } else {
@@ -102,7 +104,7 @@ public abstract class QuadTreeCompositeFigure
     }
 
     public java.util.List<Figure> getFigures(Rectangle2D.Double bounds) {
-        return new LinkedList<>(quadTree.findInside(bounds));
+        return quadTree.findInside(bounds, new LinkedList<Figure>());
     }
 
     @Override
@@ -112,7 +114,7 @@ public abstract class QuadTreeCompositeFigure
 
     @Override
     public Figure findFigureInside(Point2D.Double p) {
-        Collection<Figure> c = quadTree.findContains(p);
+        Collection<Figure> c = quadTree.findContains(p, new HashSet<Figure>());
         for (Figure f : getFiguresFrontToBack()) {
             if (c.contains(f) && f.contains(p)) {
                 return f.findFigureInside(p);
@@ -131,7 +133,7 @@ public abstract class QuadTreeCompositeFigure
     }
 
     public Figure findFigure(Point2D.Double p) {
-        Collection<Figure> c = quadTree.findContains(p);
+        Collection<Figure> c = quadTree.findContains(p, new HashSet<Figure>());
         switch (c.size()) {
             case 0:
                 return null;
@@ -151,7 +153,7 @@ public abstract class QuadTreeCompositeFigure
     }
 
     public Figure findFigureExcept(Point2D.Double p, Figure ignore) {
-        Collection<Figure> c = quadTree.findContains(p);
+        Collection<Figure> c = quadTree.findContains(p, new HashSet<Figure>());
         switch (c.size()) {
             case 0: 
                 return null;
@@ -169,7 +171,7 @@ public abstract class QuadTreeCompositeFigure
     }
 
     public Figure findFigureExcept(Point2D.Double p, Collection<Figure> ignore) {
-        Collection<Figure> c = quadTree.findContains(p);
+        Collection<Figure> c = quadTree.findContains(p, new HashSet<Figure>());
         switch (c.size()) {
             case 0:
                 return null;
@@ -217,7 +219,7 @@ public abstract class QuadTreeCompositeFigure
     }
 
     public java.util.List<Figure> findFigures(Rectangle2D.Double r) {
-        LinkedList<Figure> c = new LinkedList<>(quadTree.findIntersects(r));
+        LinkedList<Figure> c = quadTree.findIntersects(r, new LinkedList<Figure>());
         switch (c.size()) {
             case 0:
             // fall through
@@ -246,6 +248,7 @@ public abstract class QuadTreeCompositeFigure
     public void bringToFront(Figure figure) {
         if (children.remove(figure)) {
             children.add(figure);
+            invalidateChildIndices();
             needsSorting = true;
             fireAreaInvalidated(figure.getDrawingArea());
         }
@@ -255,6 +258,7 @@ public abstract class QuadTreeCompositeFigure
     public void sendToBack(Figure figure) {
         if (children.remove(figure)) {
             children.add(0, figure);
+            invalidateChildIndices();
             needsSorting = true;
             fireAreaInvalidated(figure.getDrawingArea());
         }
@@ -271,6 +275,7 @@ public abstract class QuadTreeCompositeFigure
     private void ensureSorted() {
         if (needsSorting) {
             Collections.sort(children, FigureLayerComparator.INSTANCE);
+            invalidateChildIndices();
             needsSorting = false;
         }
     }
@@ -306,8 +311,7 @@ public abstract class QuadTreeCompositeFigure
 
         @Override
         public void figureChanged(FigureEvent e) {
-            quadTree.remove(e.getFigure());
-            quadTree.add(e.getFigure(), e.getFigure().getDrawingArea());
+            quadTree.update(e.getFigure(), e.getFigure().getDrawingArea());
             needsSorting = true;
             if (!isChanging()) {
                 fireAreaInvalidated(e.getInvalidatedArea());
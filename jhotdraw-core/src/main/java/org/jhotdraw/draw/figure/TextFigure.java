@@ -89,6 +89,14 @@ public class TextFigure extends AbstractAttributedDecoratedFigure
         }
     }
 
+    @Override
+    protected void drawTextBars(Graphics2D g) {
+        if (getText() != null) {
+            TextLayout layout = getTextLayout();
+            g.fill(new Rectangle2D.Double(origin.x, origin.y, layout.getVisibleAdvance(), layout.getAscent()));
+        }
+    }
+
     // SHAPE AND BOUNDS
     @Override
     public void transform(AffineTransform tx) {
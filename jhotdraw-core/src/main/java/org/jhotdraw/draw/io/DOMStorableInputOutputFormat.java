@@ -59,6 +59,11 @@ public class DOMStorableInputOutputFormat implements OutputFormat, InputFormat {
      * The data flavor constructed from the mime type.
      */
     private DataFlavor dataFlavor;
+    /**
+     * Whether the streaming StAX implementations of DOMInput and DOMOutput
+     * are used.
+     */
+    private boolean streaming;
 
     /**
      * Creates a new instance with format name "Drawing", file extension "xml"
@@ -92,6 +97,27 @@ public class DOMStorableInputOutputFormat implements OutputFormat, InputFormat {
         }
     }
 
+    /**
+     * If set to true, drawings are read with {@link StaxDOMInput} and written
+     * with {@link StaxDOMOutput}, which need much less memory than
+     * {@link JavaxDOMInput} and {@link JavaxDOMOutput}. The default value is
+     * false.
+     */
+    public void setStreaming(boolean newValue) {
+        streaming = newValue;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Creates a DOMInput for the specified input stream.
+     */
+    protected DOMInput createDOMInput(InputStream in) throws IOException {
+        return streaming ? new StaxDOMInput(factory, in) : new JavaxDOMInput(factory, in);
+    }
+
     @Override
     public javax.swing.filechooser.FileFilter getFileFilter() {
         return new FileNameExtensionFilter(description, fileExtension);
@@ -113,12 +139,12 @@ public class DOMStorableInputOutputFormat implements OutputFormat, InputFormat {
      * in the element that represents the drawing.
      */
     protected void read(URL url, InputStream in, Drawing drawing, LinkedList<Figure> figures) throws IOException {
-        JavaxDOMInput domi = new JavaxDOMInput(factory, in);
+        DOMInput domi = createDOMInput(in);
         domi.openElement(factory.getName(drawing));
         domi.openElement("figures", 0);
         figures.clear();
-        for (int i = 0, n = domi.getElementCount(); i < n; i++) {
-            Figure f = (Figure) domi.readObject();
+        while (domi.hasNextElement()) {
+            Figure f = (Figure) domi.readNextObject();
             figures.add(f);
         }
         domi.closeElement();
@@ -149,11 +175,19 @@ public class DOMStorableInputOutputFormat implements OutputFormat, InputFormat {
 
     @Override
     public void write(OutputStream out, Drawing drawing) throws IOException {
-        JavaxDOMOutput domo = new JavaxDOMOutput(factory);
-        domo.openElement(factory.getName(drawing));
-        drawing.write(domo);
-        domo.closeElement();
-        domo.save(out);
+        if (streaming) {
+            StaxDOMOutput domo = new StaxDOMOutput(factory, out);
+            domo.openElement(factory.getName(drawing));
+            drawing.write(domo);
+            domo.closeElement();
+            domo.finish();
+        } else {
+            JavaxDOMOutput domo = new JavaxDOMOutput(factory);
+            domo.openElement(factory.getName(drawing));
+            drawing.write(domo);
+            domo.closeElement();
+            domo.save(out);
+        }
     }
 
     @Override
@@ -178,7 +212,7 @@ public class DOMStorableInputOutputFormat implements OutputFormat, InputFormat {
 
     @Override
     public void read(InputStream in, Drawing drawing, boolean replace) throws IOException {
-        JavaxDOMInput domi = new JavaxDOMInput(factory, in);
+        DOMInput domi = createDOMInput(in);
         domi.openElement(factory.getName(drawing));
         if (replace) {
             drawing.removeAllChildren();
@@ -187,14 +221,33 @@ public class DOMStorableInputOutputFormat implements OutputFormat, InputFormat {
         domi.closeElement();
     }
 
+    /**
+     * Accepts XML documents with a root element from which the DOM factory
+     * creates a drawing. XML documents, which have a prolog that is longer
+     * than the header, are accepted as well, because their root element is
+     * unknown.
+     */
+    @Override
+    public boolean probe(byte[] header) {
+        String name = InputFormats.getXMLRootElementName(header);
+        if (name == null) {
+            return InputFormats.isXMLPrologTruncated(header);
+        }
+        try {
+            return factory.create(name) instanceof Drawing;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
     @Override
     public void read(Transferable t, Drawing drawing, boolean replace) throws UnsupportedFlavorException, IOException {
         LinkedList<Figure> figures = new LinkedList<>();
         InputStream in = (InputStream) t.getTransferData(new DataFlavor(mimeType, description));
-        JavaxDOMInput domi = new JavaxDOMInput(factory, in);
+        DOMInput domi = createDOMInput(in);
         domi.openElement("Drawing-Clip");
-        for (int i = 0, n = domi.getElementCount(); i < n; i++) {
-            Figure f = (Figure) domi.readObject(i);
+        while (domi.hasNextElement()) {
+            Figure f = (Figure) domi.readNextObject();
             figures.add(f);
         }
         domi.closeElement();
@@ -207,13 +260,23 @@ public class DOMStorableInputOutputFormat implements OutputFormat, InputFormat {
     @Override
     public Transferable createTransferable(Drawing drawing, List<Figure> figures, double scaleFactor) throws IOException {
         ByteArrayOutputStream buf = new ByteArrayOutputStream();
-        JavaxDOMOutput domo = new JavaxDOMOutput(factory);
-        domo.openElement("Drawing-Clip");
-        for (Figure f : figures) {
-            domo.writeObject(f);
+        if (streaming) {
+            StaxDOMOutput domo = new StaxDOMOutput(factory, buf);
+            domo.openElement("Drawing-Clip");
+            for (Figure f : figures) {
+                domo.writeObject(f);
+            }
+            domo.closeElement();
+            domo.finish();
+        } else {
+            JavaxDOMOutput domo = new JavaxDOMOutput(factory);
+            domo.openElement("Drawing-Clip");
+            for (Figure f : figures) {
+                domo.writeObject(f);
+            }
+            domo.closeElement();
+            domo.save(buf);
         }
-        domo.closeElement();
-        domo.save(buf);
         return new InputStreamTransferable(new DataFlavor(mimeType, description), buf.toByteArray());
     }
 }
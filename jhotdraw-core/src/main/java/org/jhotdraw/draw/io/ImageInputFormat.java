@@ -16,6 +16,10 @@ import java.io.*;
 import java.net.URI;
 import java.util.*;
 import javax.imageio.*;
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import org.jhotdraw.draw.*;
@@ -176,6 +180,58 @@ public class ImageInputFormat implements InputFormat {
         return figure;
     }
 
+    /**
+     * Accepts data which can be decoded by an image reader for this image
+     * format. The image readers only look at the magic numbers of their
+     * formats.
+     */
+    @Override
+    public boolean probe(byte[] header) {
+        try (ImageInputStream in = new MemoryCacheImageInputStream(new ByteArrayInputStream(header))) {
+            for (Iterator<ImageReaderSpi> i = IIORegistry.getDefaultInstance().getServiceProviders(ImageReaderSpi.class, true); i.hasNext();) {
+                ImageReaderSpi spi = i.next();
+                if (isReaderForThisFormat(spi) && spi.canDecodeInput(in)) {
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            // the header is too short for the image readers
+        }
+        return false;
+    }
+
+    /**
+     * Returns true, if the image reader supports the format name, one of the
+     * mime types or one of the file extensions of this input format.
+     */
+    private boolean isReaderForThisFormat(ImageReaderSpi spi) {
+        if (containsIgnoreCase(spi.getFormatNames(), formatName)) {
+            return true;
+        }
+        for (String mimeType : mimeTypes) {
+            if (containsIgnoreCase(spi.getMIMETypes(), mimeType)) {
+                return true;
+            }
+        }
+        for (String fileExtension : fileExtensions) {
+            if (containsIgnoreCase(spi.getFileSuffixes(), fileExtension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsIgnoreCase(String[] values, String value) {
+        if (values != null) {
+            for (String v : values) {
+                if (v.equalsIgnoreCase(value)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     @Override
     public boolean isDataFlavorSupported(DataFlavor flavor) {
         if (DataFlavor.imageFlavor.match(flavor)) {
@@ -14,6 +14,7 @@ import java.awt.geom.*;
 import java.awt.image.*;
 import java.io.*;
 import java.net.URI;
+import java.util.concurrent.locks.Lock;
 import javax.imageio.*;
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
@@ -182,12 +183,18 @@ public class ImageOutputFormat implements OutputFormat {
         }
         // Determine the draw bounds of the figures
         Rectangle2D.Double drawBounds = null;
-        for (Figure f : figures) {
-            if (drawBounds == null) {
-                drawBounds = f.getDrawingArea();
-            } else {
-                drawBounds.add(f.getDrawingArea());
+        Lock readLock = drawing.getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            for (Figure f : figures) {
+                if (drawBounds == null) {
+                    drawBounds = f.getDrawingArea();
+                } else {
+                    drawBounds.add(f.getDrawingArea());
+                }
             }
+        } finally {
+            readLock.unlock();
         }
         if (clipToFigures) {
             AffineTransform transform = new AffineTransform();
@@ -249,8 +256,14 @@ public class ImageOutputFormat implements OutputFormat {
         // Draw the figures onto the buffered image
         setRenderingHints(g);
         g.transform(transform);
-        for (Figure f : figures) {
-            f.draw(g);
+        Lock readLock = drawing.getReadWriteLock().readLock();
+        readLock.lock();
+        try {
+            for (Figure f : figures) {
+                f.draw(g);
+            }
+        } finally {
+            readLock.unlock();
         }
         g.dispose();
         // Convert the image, if it does not have the specified image type
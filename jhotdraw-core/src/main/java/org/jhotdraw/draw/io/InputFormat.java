@@ -22,6 +22,11 @@ import org.jhotdraw.draw.*;
  * To identify the format used by a file, an appropriate {@code FileFilter}
  * for a javax.swing.JFileChooser component can be requested from {@code InputFormat}.
  * <p>
+ * The format of a file can also be recognized from its content. Before a file
+ * is parsed, the first bytes of the file can be passed to {@link #probe}, see
+ * {@link InputFormats#findInputFormat}. This allows to pick the input format
+ * without trial parsing the file with each input format.
+ * <p>
  * This interface intentionally contains many identical operations like
  * OutputFormat to make it easy, to write classes that implement both interfaces.
  *
@@ -40,6 +45,12 @@ import org.jhotdraw.draw.*;
  */
 public interface InputFormat {
 
+    /**
+     * The maximal number of bytes from the start of a file, which are passed
+     * to {@link #probe}.
+     */
+    public static final int PROBE_LENGTH = 4096;
+
     /**
      * Return a FileFilter that can be used to identify files which can be read
      * with this input format. Typically, each input format has its own
@@ -114,4 +125,43 @@ public interface InputFormat {
      * dropped or pasted into the drawing view).
      */
     public void read(Transferable t, Drawing drawing, boolean replace) throws UnsupportedFlavorException, IOException;
+
+    /**
+     * Returns true, if data which starts with the specified bytes looks like
+     * data which can be read by this input format.
+     * <p>
+     * Implementations must only look at the header, and must not attempt to
+     * parse it fully. Implementations which can not tell, return true.
+     * <p>
+     * The default implementation returns true.
+     *
+     * @param header The first bytes of the data. The array is shorter than
+     * {@link #PROBE_LENGTH}, if the data is shorter.
+     * @return false, if this input format can not read the data.
+     */
+    public default boolean probe(byte[] header) {
+        return true;
+    }
+
+    /**
+     * Returns true, if this input format can read the specified URI. This
+     * method reads the first bytes of the URI and passes them to
+     * {@link #probe}.
+     *
+     * @param uri The URI.
+     */
+    public default boolean canRead(URI uri) throws IOException {
+        return probe(InputFormats.readHeader(uri));
+    }
+
+    /**
+     * Returns true, if this input format accepts almost any data, for
+     * example plain text. A fallback format is only used, if no other
+     * input format recognizes the data.
+     * <p>
+     * The default implementation returns false.
+     */
+    public default boolean isFallback() {
+        return false;
+    }
 }
@@ -0,0 +1,275 @@
+/*
+ * @(#)InputFormats.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.io;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Provides static utility methods for picking an {@link InputFormat} from the
+ * content of a file.
+ * <p>
+ * Usage:
+ * <pre>
+ * InputFormat format = InputFormats.findInputFormat(
+ *         drawing.getInputFormats(), InputFormats.readHeader(uri), null);
+ * if (format == null) {
+ *     throw new IOException("Unsupported file format.");
+ * }
+ * format.read(uri, drawing, true);
+ * </pre>
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public final class InputFormats {
+
+    /**
+     * Returned by findXMLRootElement, if the data is not an XML document.
+     */
+    private static final int NOT_XML = -1;
+    /**
+     * Returned by findXMLRootElement, if the data ends before the root
+     * element.
+     */
+    private static final int TRUNCATED = -2;
+
+    /**
+     * Prevent instance creation.
+     */
+    private InputFormats() {
+    }
+
+    /**
+     * Reads the first {@link InputFormat#PROBE_LENGTH} bytes from the
+     * specified URI.
+     */
+    public static byte[] readHeader(URI uri) throws IOException {
+        try (InputStream in = "file".equals(uri.getScheme())
+                ? new FileInputStream(new File(uri))
+                : uri.toURL().openStream()) {
+            return readHeader(in);
+        }
+    }
+
+    /**
+     * Reads up to {@link InputFormat#PROBE_LENGTH} bytes from the specified
+     * input stream. The stream is not closed.
+     * <p>
+     * If the input stream supports marks, the stream is reset to its current
+     * position, so that it can be passed to an input format afterwards.
+     */
+    public static byte[] readHeader(InputStream in) throws IOException {
+        boolean isMarkSupported = in.markSupported();
+        if (isMarkSupported) {
+            in.mark(InputFormat.PROBE_LENGTH);
+        }
+        byte[] buf = new byte[InputFormat.PROBE_LENGTH];
+        int count = 0;
+        for (int len; count < buf.length && -1 != (len = in.read(buf, count, buf.length - count));) {
+            count += len;
+        }
+        if (isMarkSupported) {
+            in.reset();
+        }
+        if (count == buf.length) {
+            return buf;
+        }
+        byte[] header = new byte[count];
+        System.arraycopy(buf, 0, header, 0, count);
+        return header;
+    }
+
+    /**
+     * Returns the input format which should read the data with the specified
+     * header.
+     * <p>
+     * The preferred format is returned, if it accepts the header. Otherwise
+     * the first format is returned, which accepts the header and which is not
+     * a {@linkplain InputFormat#isFallback fallback} format. Fallback formats
+     * are only returned, if no other format accepts the header. Thus, data
+     * which is recognized by a format, but is corrupt, is not loaded by a
+     * fallback format instead.
+     *
+     * @param formats The input formats.
+     * @param header The first bytes of the data.
+     * @param preferredFormat The input format which is returned, if it
+     * accepts the header. For example, the format selected by the user. This
+     * parameter can be null.
+     * @return The input format. Returns null, if none of the formats can
+     * read the data.
+     */
+    public static InputFormat findInputFormat(List<InputFormat> formats, byte[] header, InputFormat preferredFormat) {
+        if (preferredFormat != null && preferredFormat.probe(header)) {
+            return preferredFormat;
+        }
+        InputFormat fallbackFormat = null;
+        for (InputFormat format : formats) {
+            if (format != preferredFormat && format.probe(header)) {
+                if (!format.isFallback()) {
+                    return format;
+                }
+                if (fallbackFormat == null) {
+                    fallbackFormat = format;
+                }
+            }
+        }
+        return fallbackFormat;
+    }
+
+    /**
+     * Returns true, if the header starts with the specified magic bytes.
+     */
+    public static boolean startsWith(byte[] header, int... magic) {
+        if (header.length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((header[i] & 0xff) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the header of an XML document. UTF-16 is recognized by its byte
+     * order mark or by the encoding of the first character. Otherwise the
+     * header is decoded with ISO-8859-1, which is sufficient for recognizing
+     * element names and namespaces in ASCII compatible encodings.
+     */
+    public static String decodeXMLHeader(byte[] header) {
+        if (startsWith(header, 0xfe, 0xff)) {
+            return new String(header, 2, header.length - 2, StandardCharsets.UTF_16BE);
+        } else if (startsWith(header, 0xff, 0xfe)) {
+            return new String(header, 2, header.length - 2, StandardCharsets.UTF_16LE);
+        } else if (startsWith(header, 0x00, '<')) {
+            return new String(header, StandardCharsets.UTF_16BE);
+        } else if (startsWith(header, '<', 0x00)) {
+            return new String(header, StandardCharsets.UTF_16LE);
+        } else if (startsWith(header, 0xef, 0xbb, 0xbf)) {
+            return new String(header, 3, header.length - 3, StandardCharsets.ISO_8859_1);
+        }
+        return new String(header, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Returns the qualified name of the root element of an XML document.
+     * The XML declaration, processing instructions, comments and the document
+     * type declaration before the root element are skipped.
+     *
+     * @param header The first bytes of the XML document.
+     * @return The name of the root element, for example "svg" or
+     * "office:document". Returns null, if the header does not contain the
+     * start of the root element, or if it is not an XML document. Use
+     * {@link #isXMLPrologTruncated} to tell these cases apart.
+     */
+    public static String getXMLRootElementName(byte[] header) {
+        String xml = decodeXMLHeader(header);
+        int start = findXMLRootElement(xml);
+        if (start < 0) {
+            return null;
+        }
+        int end = findXMLNameEnd(xml, start);
+        return (end == start || end == xml.length()) ? null : xml.substring(start, end);
+    }
+
+    /**
+     * Returns true, if the header is the start of an XML document, but ends
+     * before the name of the root element. This happens, if the XML
+     * declaration, the comments or the document type declaration before the
+     * root element are longer than the header. In this case, the format of
+     * the data can not be told from the header.
+     * <p>
+     * This is a convenience method for calling
+     * {@code isXMLPrologTruncated(header, header.length < PROBE_LENGTH)}.
+     *
+     * @param header The first bytes of the data.
+     */
+    public static boolean isXMLPrologTruncated(byte[] header) {
+        return isXMLPrologTruncated(header, header.length < InputFormat.PROBE_LENGTH);
+    }
+
+    /**
+     * Returns true, if the header is the start of an XML document, but ends
+     * before the name of the root element.
+     *
+     * @param header The first bytes of the data.
+     * @param isEndOfData True, if the data ends with the header. A complete
+     * XML document without root element is not truncated, it is invalid.
+     */
+    public static boolean isXMLPrologTruncated(byte[] header, boolean isEndOfData) {
+        if (isEndOfData) {
+            return false;
+        }
+        String xml = decodeXMLHeader(header);
+        int start = findXMLRootElement(xml);
+        return start == TRUNCATED || start >= 0 && findXMLNameEnd(xml, start) == xml.length();
+    }
+
+    /**
+     * Returns the index of the name of the root element, or NOT_XML or
+     * TRUNCATED.
+     */
+    private static int findXMLRootElement(String xml) {
+        int length = xml.length();
+        int i = 0;
+        while (i < length) {
+            char c = xml.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c != '<') {
+                return NOT_XML;
+            } else if (xml.startsWith("<?", i)) {
+                i = skip(xml, i, "?>");
+            } else if (xml.startsWith("<!--", i)) {
+                i = skip(xml, i, "-->");
+            } else if (xml.startsWith("<!DOCTYPE", i)) {
+                // The document type declaration may contain an internal subset
+                int end = xml.indexOf('>', i);
+                int subset = xml.indexOf('[', i);
+                if (subset != -1 && subset < end) {
+                    end = xml.indexOf("]", subset);
+                    end = (end == -1) ? -1 : xml.indexOf('>', end);
+                }
+                i = (end == -1) ? length : end + 1;
+            } else if (i + 1 < length && !isXMLNameChar(xml.charAt(i + 1))) {
+                return NOT_XML;
+            } else {
+                return i + 1;
+            }
+        }
+        return (length == 0) ? NOT_XML : TRUNCATED;
+    }
+
+    private static int findXMLNameEnd(String xml, int start) {
+        int i = start;
+        while (i < xml.length() && isXMLNameChar(xml.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the local part of a qualified XML name.
+     */
+    public static String getLocalName(String qualifiedName) {
+        return qualifiedName.substring(qualifiedName.indexOf(':') + 1);
+    }
+
+    private static int skip(String xml, int index, String endDelimiter) {
+        int end = xml.indexOf(endDelimiter, index);
+        return (end == -1) ? xml.length() : end + endDelimiter.length();
+    }
+
+    private static boolean isXMLNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == ':' || c == '_' || c == '-' || c == '.' || c > 0x7f;
+    }
+}
@@ -114,6 +114,15 @@ public class SerializationInputOutputFormat implements InputFormat, OutputFormat
         }
     }
 
+    /**
+     * Accepts data which starts with the magic number and version of the
+     * Java object serialization stream protocol.
+     */
+    @Override
+    public boolean probe(byte[] header) {
+        return InputFormats.startsWith(header, 0xac, 0xed, 0x00, 0x05);
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public void read(InputStream in, Drawing drawing, boolean replace) throws IOException {
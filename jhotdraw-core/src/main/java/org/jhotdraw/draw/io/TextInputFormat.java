@@ -109,6 +109,28 @@ public class TextInputFormat implements InputFormat {
         return null;
     }
 
+    /**
+     * Accepts data which does not contain NUL bytes. Binary data, such as
+     * images and compressed files, almost always contains NUL bytes.
+     */
+    @Override
+    public boolean probe(byte[] header) {
+        for (byte b : header) {
+            if (b == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true, because any text can be read with this input format.
+     */
+    @Override
+    public boolean isFallback() {
+        return true;
+    }
+
     @Override
     public void read(URI uri, Drawing drawing) throws IOException {
         read(new File(uri), drawing);
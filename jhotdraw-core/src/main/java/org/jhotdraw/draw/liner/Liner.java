@@ -48,5 +48,16 @@ public interface Liner extends Cloneable {
      */
     public Collection<Handle> createHandles(BezierPath path);
 
+    /**
+     * Returns true if the liner lays out the connection around other figures
+     * of the drawing. The {@link org.jhotdraw.draw.ConnectionIndex} lays out
+     * such connections again, when a figure near them changes.
+     * <p>
+     * This implementation returns false.
+     */
+    public default boolean avoidsFigures() {
+        return false;
+    }
+
     public Liner clone();
 }
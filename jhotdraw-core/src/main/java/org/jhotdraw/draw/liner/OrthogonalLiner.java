@@ -0,0 +1,547 @@
+/*
+ * @(#)OrthogonalLiner.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.liner;
+
+import java.awt.geom.*;
+import java.util.*;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.connector.Connector;
+import org.jhotdraw.draw.figure.ConnectionFigure;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.figure.LineConnectionFigure;
+import org.jhotdraw.draw.handle.Handle;
+import org.jhotdraw.geom.BezierPath;
+import org.jhotdraw.geom.Geom;
+import org.jhotdraw.xml.DOMInput;
+import org.jhotdraw.xml.DOMOutput;
+import org.jhotdraw.xml.DOMStorable;
+
+/**
+ * A {@link Liner} that routes a connection with orthogonal lines around the
+ * other figures of the drawing.
+ * <p>
+ * The connection leaves the start figure and enters the end figure
+ * perpendicularly to the side on which its connectors are located. In between,
+ * the liner searches the shortest path with the fewest bends using A* on a
+ * sparse grid. The lines of the grid run along the bounds of the figures,
+ * grown by the margin. The figures are looked up with
+ * {@link Drawing#findFigures}, which uses the spatial index of the drawing.
+ * Only the figures in the vicinity of the connected figures are considered.
+ * If no path can be found there, the search area is enlarged a few times.
+ * <p>
+ * Since the path depends on other figures, {@link #avoidsFigures} returns
+ * true. Thus the {@link org.jhotdraw.draw.ConnectionIndex} of the drawing
+ * only routes the connections again, which intersect with a changed figure.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class OrthogonalLiner
+        implements Liner, DOMStorable {
+
+    /**
+     * The maximal number of times the search area is enlarged.
+     */
+    private static final int MAX_SEARCH_ATTEMPTS = 3;
+    /**
+     * Coordinates which differ by less than this are considered equal.
+     */
+    private static final double EPSILON = 1e-6;
+    /**
+     * The distance between the connection and the figures.
+     */
+    private double margin;
+    /**
+     * The cost of a bend, in units of the length of the path.
+     */
+    private double bendCost;
+    /**
+     * The maximal number of figures which are considered as obstacles.
+     */
+    private int maxObstacles;
+
+    /**
+     * Creates a new instance.
+     */
+    public OrthogonalLiner() {
+        this(10);
+    }
+
+    public OrthogonalLiner(double margin) {
+        this.margin = margin;
+        this.bendCost = margin * 4;
+        this.maxObstacles = 400;
+    }
+
+    public double getMargin() {
+        return margin;
+    }
+
+    public void setMargin(double newValue) {
+        margin = newValue;
+    }
+
+    public double getBendCost() {
+        return bendCost;
+    }
+
+    public void setBendCost(double newValue) {
+        bendCost = newValue;
+    }
+
+    public int getMaxObstacles() {
+        return maxObstacles;
+    }
+
+    public void setMaxObstacles(int newValue) {
+        maxObstacles = newValue;
+    }
+
+    @Override
+    public Collection<Handle> createHandles(BezierPath path) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean avoidsFigures() {
+        return true;
+    }
+
+    @Override
+    public void lineout(ConnectionFigure figure) {
+        BezierPath path = ((LineConnectionFigure) figure).getBezierPath();
+        Connector start = figure.getStartConnector();
+        Connector end = figure.getEndConnector();
+        if (start == null || end == null || path == null) {
+            return;
+        }
+        Point2D.Double sp = start.findStart(figure);
+        Point2D.Double ep = end.findEnd(figure);
+        Rectangle2D.Double sb = start.getBounds();
+        Rectangle2D.Double eb = end.getBounds();
+
+        // The connection leaves and enters the figures perpendicularly
+        int sside = getSide(sb, sp);
+        int eside = getSide(eb, ep);
+        Point2D.Double sport = getPort(sb, sp, sside);
+        Point2D.Double eport = getPort(eb, ep, eside);
+        // Avoid tiny jogs caused by rounding errors of the connectors
+        if (Math.abs(sport.x - eport.x) < EPSILON) {
+            eport.x = sport.x;
+        }
+        if (Math.abs(sport.y - eport.y) < EPSILON) {
+            eport.y = sport.y;
+        }
+        if (isHorizontal(eside)) {
+            ep.y = eport.y;
+        } else {
+            ep.x = eport.x;
+        }
+
+        List<Point2D.Double> route = null;
+        if (figure.getStartFigure() != figure.getEndFigure()) {
+            Rectangle2D.Double area = new Rectangle2D.Double(sport.x, sport.y, 0, 0);
+            area.add(eport);
+            area.add(sb);
+            area.add(eb);
+            Geom.grow(area, margin * 4, margin * 4);
+            for (int attempt = 0; route == null && attempt <= MAX_SEARCH_ATTEMPTS; attempt++) {
+                List<Rectangle2D.Double> obstacles = findObstacles(figure, area, sport, eport);
+                route = new Router(obstacles, area, sport, eport, isHorizontal(sside), isHorizontal(eside)).route();
+                if (obstacles.size() >= maxObstacles) {
+                    break;
+                }
+                Geom.grow(area, area.width / 2, area.height / 2);
+            }
+        }
+        if (route == null) {
+            route = new ArrayList<>();
+            route.add(sport);
+            if (isHorizontal(sside)) {
+                route.add(new Point2D.Double(eport.x, sport.y));
+            } else {
+                route.add(new Point2D.Double(sport.x, eport.y));
+            }
+            route.add(eport);
+        }
+
+        path.clear();
+        addNode(path, sp);
+        for (Point2D.Double p : route) {
+            addNode(path, p);
+        }
+        addNode(path, ep);
+        // Ensure all path nodes are straight
+        for (BezierPath.Node node : path) {
+            node.setMask(BezierPath.C0_MASK);
+        }
+        path.invalidatePath();
+    }
+
+    /**
+     * Adds a node to the path, unless it is equal to the last node, or the
+     * last node lies on the line between the node and the node before it.
+     */
+    private static void addNode(BezierPath path, Point2D.Double p) {
+        int n = path.size();
+        if (n > 0) {
+            BezierPath.Node last = path.get(n - 1);
+            if (Math.abs(last.x[0] - p.x) < EPSILON && Math.abs(last.y[0] - p.y) < EPSILON) {
+                return;
+            }
+            if (n > 1) {
+                BezierPath.Node prev = path.get(n - 2);
+                if ((Math.abs(prev.x[0] - last.x[0]) < EPSILON && Math.abs(last.x[0] - p.x) < EPSILON)
+                        || (Math.abs(prev.y[0] - last.y[0]) < EPSILON && Math.abs(last.y[0] - p.y) < EPSILON)) {
+                    path.remove(n - 1);
+                }
+            }
+        }
+        path.add(new BezierPath.Node(p.x, p.y));
+    }
+
+    /**
+     * Returns the side of the bounds which is closest to the point.
+     *
+     * @return One of the Geom.OUT_... constants.
+     */
+    private static int getSide(Rectangle2D.Double b, Point2D.Double p) {
+        double left = Math.abs(p.x - b.x);
+        double right = Math.abs(b.x + b.width - p.x);
+        double top = Math.abs(p.y - b.y);
+        double bottom = Math.abs(b.y + b.height - p.y);
+        double min = Math.min(Math.min(left, right), Math.min(top, bottom));
+        if (min == top) {
+            return Geom.OUT_TOP;
+        } else if (min == bottom) {
+            return Geom.OUT_BOTTOM;
+        } else if (min == left) {
+            return Geom.OUT_LEFT;
+        } else {
+            return Geom.OUT_RIGHT;
+        }
+    }
+
+    private static boolean isHorizontal(int side) {
+        return side == Geom.OUT_LEFT || side == Geom.OUT_RIGHT;
+    }
+
+    /**
+     * Returns the point, where the connection leaves the margin around the
+     * bounds on the specified side.
+     */
+    private Point2D.Double getPort(Rectangle2D.Double b, Point2D.Double p, int side) {
+        switch (side) {
+            case Geom.OUT_LEFT:
+                return new Point2D.Double(b.x - margin, p.y);
+            case Geom.OUT_RIGHT:
+                return new Point2D.Double(b.x + b.width + margin, p.y);
+            case Geom.OUT_TOP:
+                return new Point2D.Double(p.x, b.y - margin);
+            default:
+                return new Point2D.Double(p.x, b.y + b.height + margin);
+        }
+    }
+
+    /**
+     * Returns the bounds of the figures in the area grown by the margin.
+     * Connections and figures which contain one of the ports are not
+     * obstacles.
+     */
+    private List<Rectangle2D.Double> findObstacles(ConnectionFigure figure, Rectangle2D.Double area,
+            Point2D.Double sport, Point2D.Double eport) {
+        ArrayList<Rectangle2D.Double> obstacles = new ArrayList<>();
+        Drawing drawing = ((LineConnectionFigure) figure).getDrawing();
+        if (drawing == null) {
+            return obstacles;
+        }
+        for (Figure f : drawing.findFigures(area)) {
+            if (f == figure || (f instanceof ConnectionFigure) || !f.isVisible()) {
+                continue;
+            }
+            Rectangle2D.Double r = f.getBounds();
+            Geom.grow(r, margin, margin);
+            if (containsStrictly(r, sport.x, sport.y) || containsStrictly(r, eport.x, eport.y)) {
+                continue;
+            }
+            obstacles.add(r);
+        }
+        if (obstacles.size() > maxObstacles) {
+            // Keep the obstacles which are closest to the line between the ports
+            final double cx = (sport.x + eport.x) / 2;
+            final double cy = (sport.y + eport.y) / 2;
+            Collections.sort(obstacles, new Comparator<Rectangle2D.Double>() {
+                @Override
+                public int compare(Rectangle2D.Double a, Rectangle2D.Double b) {
+                    return Double.compare(Point2D.distanceSq(a.getCenterX(), a.getCenterY(), cx, cy),
+                            Point2D.distanceSq(b.getCenterX(), b.getCenterY(), cx, cy));
+                }
+            });
+            obstacles.subList(maxObstacles, obstacles.size()).clear();
+        }
+        return obstacles;
+    }
+
+    private static boolean containsStrictly(Rectangle2D.Double r, double x, double y) {
+        return x > r.x && x < r.x + r.width && y > r.y && y < r.y + r.height;
+    }
+
+    /**
+     * Searches a path on the grid which is formed by the bounds of the
+     * obstacles and the ports.
+     * <p>
+     * Since the grid lines run along all bounds, an obstacle either covers
+     * the whole interval between two adjacent grid lines or nothing of it.
+     * Thus a grid point or a grid segment is blocked, if its center lies
+     * inside of an obstacle.
+     */
+    private class Router {
+
+        private final double[] xs;
+        private final double[] ys;
+        /**
+         * For each column, the obstacles which span it horizontally.
+         */
+        private final List<List<Rectangle2D.Double>> columns;
+        /**
+         * For each gap between two columns, the obstacles which span it.
+         */
+        private final List<List<Rectangle2D.Double>> columnGaps;
+        /**
+         * For each gap between two rows, the obstacles which span it.
+         */
+        private final List<List<Rectangle2D.Double>> rowGaps;
+        private final int startIndex;
+        private final int endIndex;
+        private final boolean startHorizontal;
+        private final boolean endHorizontal;
+        private final double ex;
+        private final double ey;
+
+        public Router(List<Rectangle2D.Double> obstacles, Rectangle2D.Double area,
+                Point2D.Double sport, Point2D.Double eport,
+                boolean startHorizontal, boolean endHorizontal) {
+            this.startHorizontal = startHorizontal;
+            this.endHorizontal = endHorizontal;
+            double[] x = new double[obstacles.size() * 2 + 4];
+            double[] y = new double[x.length];
+            int n = 0;
+            x[n] = sport.x;
+            y[n++] = sport.y;
+            x[n] = eport.x;
+            y[n++] = eport.y;
+            x[n] = area.x;
+            y[n++] = area.y;
+            x[n] = area.x + area.width;
+            y[n++] = area.y + area.height;
+            for (Rectangle2D.Double r : obstacles) {
+                x[n] = r.x;
+                y[n++] = r.y;
+                x[n] = r.x + r.width;
+                y[n++] = r.y + r.height;
+            }
+            xs = unique(x, area.x, area.x + area.width);
+            ys = unique(y, area.y, area.y + area.height);
+            columns = new ArrayList<>(xs.length);
+            columnGaps = new ArrayList<>(xs.length);
+            for (int i = 0; i < xs.length; i++) {
+                ArrayList<Rectangle2D.Double> column = new ArrayList<>();
+                ArrayList<Rectangle2D.Double> gap = new ArrayList<>();
+                for (Rectangle2D.Double r : obstacles) {
+                    if (r.x < xs[i] && r.x + r.width > xs[i]) {
+                        column.add(r);
+                    }
+                    if (i + 1 < xs.length && r.x <= xs[i] && r.x + r.width >= xs[i + 1]) {
+                        gap.add(r);
+                    }
+                }
+                columns.add(column);
+                columnGaps.add(gap);
+            }
+            rowGaps = new ArrayList<>(ys.length);
+            for (int j = 0; j + 1 < ys.length; j++) {
+                ArrayList<Rectangle2D.Double> gap = new ArrayList<>();
+                for (Rectangle2D.Double r : obstacles) {
+                    if (r.y <= ys[j] && r.y + r.height >= ys[j + 1]) {
+                        gap.add(r);
+                    }
+                }
+                rowGaps.add(gap);
+            }
+            startIndex = Arrays.binarySearch(ys, sport.y) * xs.length + Arrays.binarySearch(xs, sport.x);
+            endIndex = Arrays.binarySearch(ys, eport.y) * xs.length + Arrays.binarySearch(xs, eport.x);
+            ex = eport.x;
+            ey = eport.y;
+        }
+
+        private double[] unique(double[] a, double min, double max) {
+            Arrays.sort(a);
+            int n = 0;
+            for (double v : a) {
+                if (v >= min && v <= max && (n == 0 || a[n - 1] != v)) {
+                    a[n++] = v;
+                }
+            }
+            return Arrays.copyOf(a, n);
+        }
+
+        private boolean isNodeFree(int i, int j) {
+            for (Rectangle2D.Double r : columns.get(i)) {
+                if (r.y < ys[j] && r.y + r.height > ys[j]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns true if the segment from (i,j) to (i+1,j) is free.
+         */
+        private boolean isHorizontalSegmentFree(int i, int j) {
+            for (Rectangle2D.Double r : columnGaps.get(i)) {
+                if (r.y < ys[j] && r.y + r.height > ys[j]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns true if the segment from (i,j) to (i,j+1) is free.
+         */
+        private boolean isVerticalSegmentFree(int i, int j) {
+            for (Rectangle2D.Double r : rowGaps.get(j)) {
+                if (r.x < xs[i] && r.x + r.width > xs[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns the points of the path from the start port to the end port,
+         * or null if there is no path.
+         */
+        public List<Point2D.Double> route() {
+            int nx = xs.length;
+            int nodeCount = nx * ys.length;
+            // A state is a grid node and the axis on which it has been reached
+            double[] cost = new double[nodeCount * 2];
+            int[] previous = new int[nodeCount * 2];
+            byte[] free = new byte[nodeCount];
+            Arrays.fill(cost, Double.POSITIVE_INFINITY);
+            PriorityQueue<double[]> queue = new PriorityQueue<>(64, new Comparator<double[]>() {
+                @Override
+                public int compare(double[] a, double[] b) {
+                    return Double.compare(a[0], b[0]);
+                }
+            });
+            int start = startIndex * 2 + (startHorizontal ? 0 : 1);
+            cost[start] = 0;
+            previous[start] = -1;
+            queue.add(new double[]{estimate(startIndex), start});
+            while (!queue.isEmpty()) {
+                double[] entry = queue.poll();
+                int state = (int) entry[1];
+                int node = state / 2;
+                boolean horizontal = state % 2 == 0;
+                if (entry[0] > cost[state] + estimate(node)) {
+                    continue; // outdated entry
+                }
+                if (node == endIndex) {
+                    return toPoints(previous, state);
+                }
+                int i = node % nx;
+                int j = node / nx;
+                if (i > 0 && isHorizontalSegmentFree(i - 1, j)) {
+                    relax(queue, cost, previous, free, state, horizontal, node - 1, true);
+                }
+                if (i + 1 < nx && isHorizontalSegmentFree(i, j)) {
+                    relax(queue, cost, previous, free, state, horizontal, node + 1, true);
+                }
+                if (j > 0 && isVerticalSegmentFree(i, j - 1)) {
+                    relax(queue, cost, previous, free, state, horizontal, node - nx, false);
+                }
+                if (j + 1 < ys.length && isVerticalSegmentFree(i, j)) {
+                    relax(queue, cost, previous, free, state, horizontal, node + nx, false);
+                }
+            }
+            return null;
+        }
+
+        private void relax(PriorityQueue<double[]> queue, double[] cost, int[] previous, byte[] free,
+                int state, boolean horizontal, int next, boolean nextHorizontal) {
+            int nx = xs.length;
+            if (free[next] == 0) {
+                free[next] = (byte) (isNodeFree(next % nx, next / nx) ? 1 : 2);
+            }
+            if (free[next] != 1) {
+                return;
+            }
+            int node = state / 2;
+            double c = cost[state]
+                    + Math.abs(xs[next % nx] - xs[node % nx]) + Math.abs(ys[next / nx] - ys[node / nx]);
+            if (horizontal != nextHorizontal) {
+                c += bendCost;
+            }
+            if (next == endIndex && nextHorizontal != endHorizontal) {
+                c += bendCost;
+            }
+            int nextState = next * 2 + (nextHorizontal ? 0 : 1);
+            if (c < cost[nextState]) {
+                cost[nextState] = c;
+                previous[nextState] = state;
+                queue.add(new double[]{c + estimate(next), nextState});
+            }
+        }
+
+        /**
+         * Returns the Manhattan distance to the end port, which never
+         * overestimates the cost.
+         */
+        private double estimate(int node) {
+            int nx = xs.length;
+            return Math.abs(xs[node % nx] - ex) + Math.abs(ys[node / nx] - ey);
+        }
+
+        private List<Point2D.Double> toPoints(int[] previous, int state) {
+            LinkedList<Point2D.Double> points = new LinkedList<>();
+            int nx = xs.length;
+            for (int s = state; s != -1; s = previous[s]) {
+                int node = s / 2;
+                points.addFirst(new Point2D.Double(xs[node % nx], ys[node / nx]));
+            }
+            return points;
+        }
+    }
+
+    @Override
+    public void read(DOMInput in) {
+        margin = in.getAttribute("margin", 10d);
+        bendCost = in.getAttribute("bendCost", margin * 4);
+        maxObstacles = in.getAttribute("maxObstacles", 400);
+    }
+
+    @Override
+    public void write(DOMOutput out) {
+        out.addAttribute("margin", margin, 10d);
+        out.addAttribute("bendCost", bendCost, margin * 4);
+        out.addAttribute("maxObstacles", maxObstacles, 400);
+    }
+
+    @Override
+    public Liner clone() {
+        try {
+            return (Liner) super.clone();
+        } catch (CloneNotSupportedException ex) {
+            InternalError error = new InternalError(ex.getMessage());
+            error.initCause(ex);
+            throw error;
+        }
+    }
+}
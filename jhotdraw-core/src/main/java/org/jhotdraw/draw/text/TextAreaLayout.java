@@ -0,0 +1,351 @@
+/*
+ * @(#)TextAreaLayout.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.text;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineBreakMeasurer;
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.text.AttributedCharacterIterator;
+import java.text.AttributedString;
+import java.util.Arrays;
+import java.util.Objects;
+import org.jhotdraw.draw.AttributeKeys;
+
+/**
+ * Lays out the text of a text area figure into lines of {@code TextLayout}s.
+ * <p>
+ * The text is broken into paragraphs at LF characters. Each paragraph is
+ * broken into lines at word boundaries, and tab characters are aligned at
+ * regular tab stops. The layout is computed once for the whole text, so that
+ * a figure can keep it and use it for drawing and for the text overflow check,
+ * until the text, the font or the text bounds change.
+ * <p>
+ * Use {@link #isLayoutFor} to check whether a cached layout is still valid.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class TextAreaLayout {
+
+    private final String text;
+    private final Font font;
+    private final boolean underlined;
+    private final int tabSize;
+    private final Rectangle2D.Double textRect;
+    private final float rightMargin;
+    private final FontRenderContext frc;
+    /**
+     * The text layouts of all lines and their horizontal pen positions.
+     */
+    private TextLayout[] segments = new TextLayout[8];
+    private float[] positions = new float[8];
+    private int segmentCount;
+    /**
+     * Index of the first segment, top and baseline of each line.
+     */
+    private int[] lineStarts = new int[8];
+    private float[] lineTops = new float[8];
+    private float[] baselines = new float[8];
+    private int lineCount;
+    /**
+     * The union of the bounds of all paragraphs.
+     */
+    private final Rectangle2D.Double textBounds;
+
+    /**
+     * Lays out the specified text.
+     *
+     * @param text the text, can be null.
+     * @param font the font.
+     * @param underlined whether the text is underlined.
+     * @param tabSize the size of a tab in number of 'm' characters.
+     * @param textRect the location of the text. The text starts at the top
+     * left corner. Tab stops are distributed over the width.
+     * @param rightMargin the right bound of the lines.
+     * @param frc the font render context.
+     */
+    public TextAreaLayout(String text, Font font, boolean underlined, int tabSize,
+            Rectangle2D.Double textRect, float rightMargin, FontRenderContext frc) {
+        this.text = text;
+        this.font = font;
+        this.underlined = underlined;
+        this.tabSize = tabSize;
+        this.textRect = (Rectangle2D.Double) textRect.clone();
+        this.rightMargin = rightMargin;
+        this.frc = frc;
+        float leftMargin = (float) textRect.x;
+        float verticalPos = (float) textRect.y;
+        textBounds = new Rectangle2D.Double(textRect.x, textRect.y, 0, 0);
+        if (text != null && leftMargin < rightMargin) {
+            float tabWidth = (float) (tabSize * font.getStringBounds("m", frc).getWidth());
+            float[] tabStops = new float[(int) (textRect.width / tabWidth)];
+            for (int i = 0; i < tabStops.length; i++) {
+                tabStops[i] = (float) (textRect.x + (int) (tabWidth * (i + 1)));
+            }
+            String[] paragraphs = text.split("\n");
+            for (int i = 0; i < paragraphs.length; i++) {
+                if (paragraphs[i].length() == 0) {
+                    paragraphs[i] = " ";
+                }
+                AttributedString as = new AttributedString(paragraphs[i]);
+                as.addAttribute(TextAttribute.FONT, font);
+                if (underlined) {
+                    as.addAttribute(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_LOW_ONE_PIXEL);
+                }
+                int tabCount = paragraphs[i].split("\t").length - 1;
+                Rectangle2D.Double paragraphBounds = layoutParagraph(as.getIterator(), verticalPos, leftMargin, tabStops, tabCount);
+                verticalPos = (float) (paragraphBounds.y + paragraphBounds.height);
+                textBounds.add(paragraphBounds);
+            }
+        }
+    }
+
+    /**
+     * Lays out a paragraph of text at the specified y location and returns
+     * the bounds of the paragraph.
+     *
+     * @param styledText the text of the paragraph.
+     * @param verticalPos the top bound of the paragraph
+     * @param leftMargin the left bound of the paragraph
+     * @param tabStops an array with tab stops
+     * @param tabCount the number of entries in tabStops which contain actual
+     * values
+     * @return Returns the actual bounds of the paragraph.
+     */
+    private Rectangle2D.Double layoutParagraph(AttributedCharacterIterator styledText,
+            float verticalPos, float leftMargin, float[] tabStops, int tabCount) {
+        // This method is based on the code sample given
+        // in the class comment of java.awt.font.LineBreakMeasurer,
+        Rectangle2D.Double paragraphBounds = new Rectangle2D.Double(leftMargin, verticalPos, 0, 0);
+        int[] tabLocations = new int[tabCount + 1];
+        int i = 0;
+        for (char c = styledText.first(); c != AttributedCharacterIterator.DONE; c = styledText.next()) {
+            if (c == '\t') {
+                tabLocations[i++] = styledText.getIndex();
+            }
+        }
+        tabLocations[tabCount] = styledText.getEndIndex() - 1;
+        // Now tabLocations has an entry for every tab's offset in
+        // the text.  For convenience, the last entry is tabLocations
+        // is the offset of the last character in the text.
+        LineBreakMeasurer measurer = new LineBreakMeasurer(styledText, frc);
+        int currentTab = 0;
+        while (measurer.getPosition() < styledText.getEndIndex()) {
+            // All segments on a line must be computed before we know the
+            // largest ascent on the line.
+            // lineContainsText is true after first segment is laid out
+            boolean lineContainsText = false;
+            boolean lineComplete = false;
+            float maxAscent = 0, maxDescent = 0;
+            float horizontalPos = leftMargin;
+            int first = segmentCount;
+            while (!lineComplete) {
+                float wrappingWidth = rightMargin - horizontalPos;
+                TextLayout layout = measurer.nextLayout(wrappingWidth,
+                        tabLocations[currentTab] + 1,
+                        lineContainsText);
+                // layout can be null if lineContainsText is true
+                if (layout != null) {
+                    addSegment(layout, horizontalPos);
+                    horizontalPos += layout.getAdvance();
+                    maxAscent = Math.max(maxAscent, layout.getAscent());
+                    maxDescent = Math.max(maxDescent,
+                            layout.getDescent() + layout.getLeading());
+                } else {
+                    lineComplete = true;
+                }
+                lineContainsText = true;
+                if (measurer.getPosition() == tabLocations[currentTab] + 1) {
+                    currentTab++;
+                }
+                if (measurer.getPosition() == styledText.getEndIndex()) {
+                    lineComplete = true;
+                } else if (tabStops.length == 0 || horizontalPos >= tabStops[tabStops.length - 1]) {
+                    lineComplete = true;
+                }
+                if (!lineComplete) {
+                    // move to next tab stop
+                    int j;
+                    for (j = 0; horizontalPos >= tabStops[j]; j++) {
+                    }
+                    horizontalPos = tabStops[j];
+                }
+            }
+            addLine(first, verticalPos, verticalPos + maxAscent);
+            verticalPos += maxAscent;
+            for (int s = first; s < segmentCount; s++) {
+                Rectangle2D layoutBounds = segments[s].getBounds();
+                paragraphBounds.add(new Rectangle2D.Double(layoutBounds.getX() + positions[s],
+                        layoutBounds.getY() + verticalPos,
+                        layoutBounds.getWidth(),
+                        layoutBounds.getHeight()));
+            }
+            verticalPos += maxDescent;
+        }
+        return paragraphBounds;
+    }
+
+    private void addSegment(TextLayout layout, float position) {
+        if (segmentCount == segments.length) {
+            segments = Arrays.copyOf(segments, segmentCount * 2);
+            positions = Arrays.copyOf(positions, segmentCount * 2);
+        }
+        segments[segmentCount] = layout;
+        positions[segmentCount] = position;
+        segmentCount++;
+    }
+
+    private void addLine(int firstSegment, float top, float baseline) {
+        if (lineCount == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+            lineTops = Arrays.copyOf(lineTops, lineCount * 2);
+            baselines = Arrays.copyOf(baselines, lineCount * 2);
+        }
+        lineStarts[lineCount] = firstSegment;
+        lineTops[lineCount] = top;
+        baselines[lineCount] = baseline;
+        lineCount++;
+    }
+
+    /**
+     * Returns true, if this layout has been computed with the specified
+     * values.
+     */
+    public boolean isLayoutFor(String text, Font font, boolean underlined, int tabSize,
+            Rectangle2D.Double textRect, float rightMargin, FontRenderContext frc) {
+        return Objects.equals(this.text, text)
+                && this.font.equals(font)
+                && this.underlined == underlined
+                && this.tabSize == tabSize
+                && this.textRect.equals(textRect)
+                && this.rightMargin == rightMargin
+                && this.frc.equals(frc);
+    }
+
+    /**
+     * Returns the number of lines.
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Returns the union of the bounds of all paragraphs, including the top
+     * left corner of the text rectangle.
+     */
+    public Rectangle2D.Double getTextBounds() {
+        return (Rectangle2D.Double) textBounds.clone();
+    }
+
+    /**
+     * Returns true, if the text extends below the bottom of the text
+     * rectangle.
+     */
+    public boolean isTextOverflow() {
+        return textBounds.y + textBounds.height > textRect.y + textRect.height;
+    }
+
+    /**
+     * Draws all lines which start above the bottom of the text rectangle.
+     * The caller is responsible for clipping the graphics.
+     * <p>
+     * Lines with only one segment are aligned horizontally.
+     *
+     * @param g the graphics.
+     * @param alignment the horizontal alignment.
+     */
+    public void draw(Graphics2D g, AttributeKeys.Alignment alignment) {
+        float maxVerticalPos = (float) (textRect.y + textRect.height);
+        for (int line = 0; line < lineCount && lineTops[line] <= maxVerticalPos; line++) {
+            int first = lineStarts[line];
+            int end = (line + 1 < lineCount) ? lineStarts[line + 1] : segmentCount;
+            for (int s = first; s < end; s++) {
+                segments[s].draw(g, getPosition(s, end - first == 1, alignment), baselines[line]);
+            }
+        }
+    }
+
+    /**
+     * Fills a bar from the top to the baseline of each line, which starts
+     * above the bottom of the text rectangle. This can be used instead of
+     * drawing the text, when the text is too small to be legible. The caller
+     * is responsible for clipping the graphics.
+     *
+     * @param g the graphics.
+     * @param alignment the horizontal alignment.
+     */
+    public void fillLineBars(Graphics2D g, AttributeKeys.Alignment alignment) {
+        float maxVerticalPos = (float) (textRect.y + textRect.height);
+        Rectangle2D.Float bar = new Rectangle2D.Float();
+        for (int line = 0; line < lineCount && lineTops[line] <= maxVerticalPos; line++) {
+            int first = lineStarts[line];
+            int end = (line + 1 < lineCount) ? lineStarts[line + 1] : segmentCount;
+            float left = Float.MAX_VALUE;
+            float right = -Float.MAX_VALUE;
+            for (int s = first; s < end; s++) {
+                float position = getPosition(s, end - first == 1, alignment);
+                left = Math.min(left, position);
+                right = Math.max(right, position + segments[s].getVisibleAdvance());
+            }
+            if (left < right) {
+                bar.setRect(left, lineTops[line], right - left, baselines[line] - lineTops[line]);
+                g.fill(bar);
+            }
+        }
+    }
+
+    /**
+     * Returns the horizontal pen position of a segment. Only segments which
+     * are alone on their line are aligned.
+     */
+    private float getPosition(int s, boolean isAlone, AttributeKeys.Alignment alignment) {
+        float position = positions[s];
+        if (isAlone && alignment != null) {
+            float leftMargin = (float) textRect.x;
+            switch (alignment) {
+                case TRAILING:
+                    position = rightMargin - segments[s].getVisibleAdvance() - 1;
+                    break;
+                case CENTER:
+                    position = (rightMargin - 1 - leftMargin - segments[s].getVisibleAdvance()) / 2 + leftMargin;
+                    break;
+                case BLOCK:
+                    // not supported
+                    break;
+                case LEADING:
+                default:
+                    break;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Appends the outlines of all lines, which have their baseline above the
+     * bottom of the text rectangle, to the specified shape.
+     *
+     * @param shape the shape.
+     */
+    public void appendOutline(Path2D.Double shape) {
+        float maxVerticalPos = (float) (textRect.y + textRect.height);
+        AffineTransform tx = new AffineTransform();
+        for (int line = 0; line < lineCount && baselines[line] <= maxVerticalPos; line++) {
+            int end = (line + 1 < lineCount) ? lineStarts[line + 1] : segmentCount;
+            for (int s = lineStarts[line]; s < end; s++) {
+                tx.setToTranslation(positions[s], baselines[line]);
+                shape.append(segments[s].getOutline(tx), false);
+            }
+        }
+    }
+}
@@ -143,11 +143,7 @@ public class DefaultDragTracker extends AbstractTool implements DragTracker {
             tx.translate(
                     constrainedRect.x - previousOrigin.x,
                     constrainedRect.y - previousOrigin.y);
-            for (Figure f : transformedFigures) {
-                f.willChange();
-                f.transform(tx);
-                f.changed();
-            }
+            transformFigures(tx);
             previousPoint = currentPoint;
             previousOrigin = new Point2D.Double(constrainedRect.x, constrainedRect.y);
         }
@@ -171,11 +167,7 @@ public class DefaultDragTracker extends AbstractTool implements DragTracker {
                     tx.translate(
                             anchorOrigin.x - previousOrigin.x,
                             anchorOrigin.y - previousOrigin.y);
-                    for (Figure f : transformedFigures) {
-                        f.willChange();
-                        f.transform(tx);
-                        f.changed();
-                    }
+                    transformFigures(tx);
                     Rectangle r = new Rectangle(anchor.x, anchor.y, 0, 0);
                     r.add(evt.getX(), evt.getY());
                     maybeFireBoundsInvalidated(r);
@@ -199,6 +191,24 @@ public class DefaultDragTracker extends AbstractTool implements DragTracker {
         fireToolDone();
     }
 
+    /**
+     * Transforms the dragged figures. The changes are processed by the
+     * drawing as a single batch.
+     */
+    protected void transformFigures(AffineTransform tx) {
+        Drawing drawing = getDrawing();
+        drawing.beginUpdate();
+        try {
+            for (Figure f : transformedFigures) {
+                f.willChange();
+                f.transform(tx);
+                f.changed();
+            }
+        } finally {
+            drawing.endUpdate();
+        }
+    }
+
     @Override
     public void setDraggedFigure(Figure f) {
         anchorFigure = f;
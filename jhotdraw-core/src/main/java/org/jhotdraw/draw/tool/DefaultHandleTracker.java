@@ -146,8 +146,7 @@ public class DefaultHandleTracker extends AbstractTool implements HandleTracker
             super.keyPressed(evt);
             // Forward key presses to the handler
             if (dragLocation != null) {
-                multicaster.trackStep(anchor, dragLocation,
-                        evt.getModifiersEx(), getView());
+                trackStep(evt.getModifiersEx());
             }
         }
     }
@@ -157,8 +156,7 @@ public class DefaultHandleTracker extends AbstractTool implements HandleTracker
         multicaster.keyReleased(evt);
         // Forward key releases to the handler
         if (dragLocation != null) {
-            multicaster.trackStep(anchor, dragLocation,
-                    evt.getModifiersEx(), getView());
+            trackStep(evt.getModifiersEx());
         }
     }
 
@@ -179,11 +177,24 @@ public class DefaultHandleTracker extends AbstractTool implements HandleTracker
     @Override
     public void mouseDragged(MouseEvent evt) {
         dragLocation = new Point(evt.getX(), evt.getY());
-        multicaster.trackStep(anchor, dragLocation,
-                evt.getModifiersEx(), getView());
+        trackStep(evt.getModifiersEx());
         clearHoverHandles();
     }
 
+    /**
+     * Forwards a track step to the handles. The changes made by all handles
+     * are processed by the drawing as a single batch.
+     */
+    private void trackStep(int modifiersEx) {
+        Drawing drawing = getDrawing();
+        drawing.beginUpdate();
+        try {
+            multicaster.trackStep(anchor, dragLocation, modifiersEx, getView());
+        } finally {
+            drawing.endUpdate();
+        }
+    }
+
     @Override
     public void mouseEntered(MouseEvent evt) {
     }
@@ -0,0 +1,181 @@
+/*
+ * @(#)ConnectionIndexNGTest.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.jhotdraw.draw.connector.ChopRectangleConnector;
+import org.jhotdraw.draw.figure.ConnectionFigure;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.figure.LineConnectionFigure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import org.jhotdraw.draw.liner.ElbowLiner;
+import org.jhotdraw.geom.Geom;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link ConnectionIndex} of {@link QuadTreeDrawing}.
+ */
+public class ConnectionIndexNGTest {
+
+    public ConnectionIndexNGTest() {
+    }
+
+    /**
+     * Counts the invocations of lineout.
+     */
+    private static class CountingLiner extends ElbowLiner {
+
+        private int count;
+
+        @Override
+        public void lineout(ConnectionFigure figure) {
+            count++;
+            super.lineout(figure);
+        }
+
+        @Override
+        public CountingLiner clone() {
+            return this;
+        }
+    }
+
+    private static LineConnectionFigure connect(Drawing drawing, Figure a, Figure b, CountingLiner liner) {
+        LineConnectionFigure c = new LineConnectionFigure();
+        c.setLiner(liner);
+        c.setStartConnector(new ChopRectangleConnector(a));
+        c.setEndConnector(new ChopRectangleConnector(b));
+        drawing.add(c);
+        return c;
+    }
+
+    private static void transform(Drawing drawing, List<Figure> figures, AffineTransform tx, boolean batch) {
+        if (batch) {
+            drawing.beginUpdate();
+        }
+        try {
+            for (Figure f : figures) {
+                f.willChange();
+                f.transform(tx);
+                f.changed();
+            }
+        } finally {
+            if (batch) {
+                drawing.endUpdate();
+            }
+        }
+    }
+
+    private static boolean isOnBounds(Point2D.Double p, Figure f) {
+        Rectangle2D.Double r = f.getBounds();
+        Geom.grow(r, 1, 1);
+        return r.contains(p);
+    }
+
+    @Test
+    public void testIndex() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        RectangleFigure a = new RectangleFigure(0, 0, 10, 10);
+        RectangleFigure b = new RectangleFigure(100, 0, 10, 10);
+        RectangleFigure c = new RectangleFigure(0, 100, 10, 10);
+        drawing.add(a);
+        drawing.add(b);
+        drawing.add(c);
+        ConnectionIndex index = drawing.getConnectionIndex();
+        LineConnectionFigure ab = connect(drawing, a, b, new CountingLiner());
+        LineConnectionFigure ac = connect(drawing, a, c, new CountingLiner());
+        assertEquals(index.getConnections(a).size(), 2);
+        assertEquals(index.getConnections(b).size(), 1);
+        assertTrue(index.getConnections(b).contains(ab));
+
+        ac.setEndConnector(new ChopRectangleConnector(b));
+        assertEquals(index.getConnections(b).size(), 2);
+        assertTrue(index.getConnections(c).isEmpty());
+
+        drawing.remove(ab);
+        assertFalse(index.contains(ab));
+        assertEquals(index.getConnections(a).size(), 1);
+        drawing.add(ab);
+        assertEquals(index.getConnections(a).size(), 2);
+    }
+
+    @Test
+    public void testConnectionFollowsFigure() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        RectangleFigure a = new RectangleFigure(0, 0, 10, 10);
+        RectangleFigure b = new RectangleFigure(100, 0, 10, 10);
+        drawing.add(a);
+        drawing.add(b);
+        LineConnectionFigure ab = connect(drawing, a, b, new CountingLiner());
+        List<Figure> figures = new ArrayList<>();
+        figures.add(b);
+        AffineTransform tx = AffineTransform.getTranslateInstance(0, 50);
+        transform(drawing, figures, tx, false);
+        assertTrue(isOnBounds(ab.getEndPoint(), b), ab.getEndPoint() + " " + b.getBounds());
+        transform(drawing, figures, tx, true);
+        assertTrue(isOnBounds(ab.getEndPoint(), b), ab.getEndPoint() + " " + b.getBounds());
+    }
+
+    @Test(timeOut = 10000)
+    public void testConnectionCycle() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        RectangleFigure a = new RectangleFigure(0, 0, 10, 10);
+        RectangleFigure b = new RectangleFigure(100, 0, 10, 10);
+        drawing.add(a);
+        drawing.add(b);
+        CountingLiner liner = new CountingLiner();
+        // Two connections which are attached to each other
+        LineConnectionFigure ab = connect(drawing, a, b, liner);
+        LineConnectionFigure bab = connect(drawing, b, ab, liner);
+        ab.setEndConnector(new ChopRectangleConnector(bab));
+        List<Figure> figures = new ArrayList<>();
+        figures.add(a);
+        AffineTransform tx = AffineTransform.getTranslateInstance(0, 50);
+
+        liner.count = 0;
+        transform(drawing, figures, tx, true);
+        assertTrue(drawing.getConnectionIndex().isValid());
+        assertTrue(liner.count <= 2, "batched lineouts " + liner.count);
+
+        liner.count = 0;
+        transform(drawing, figures, tx, false);
+        assertTrue(drawing.getConnectionIndex().isValid());
+        assertTrue(liner.count <= 2, "unbatched lineouts " + liner.count);
+    }
+
+    @Test
+    public void testLineoutOncePerBatch() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        Random r = new Random(1);
+        List<Figure> nodes = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            RectangleFigure f = new RectangleFigure(r.nextInt(4000), r.nextInt(4000), 20, 20);
+            nodes.add(f);
+            drawing.add(f);
+        }
+        CountingLiner liner = new CountingLiner();
+        List<Figure> selection = new ArrayList<>(nodes);
+        for (int i = 0; i < 2000; i++) {
+            selection.add(connect(drawing, nodes.get(r.nextInt(nodes.size())), nodes.get(r.nextInt(nodes.size())), liner));
+        }
+        AffineTransform tx = AffineTransform.getTranslateInstance(5, 5);
+
+        liner.count = 0;
+        transform(drawing, selection, tx, false);
+        assertTrue(liner.count > 2 * 2000, "unbatched lineouts " + liner.count);
+
+        liner.count = 0;
+        transform(drawing, selection, tx, true);
+        assertEquals(liner.count, 2000);
+    }
+}
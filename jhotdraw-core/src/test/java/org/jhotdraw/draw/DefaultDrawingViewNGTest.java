@@ -0,0 +1,445 @@
+/*
+ * @(#)DefaultDrawingViewNGTest.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.PaintContext;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
+import static org.jhotdraw.draw.AttributeKeys.*;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the tiled drawing of {@link DefaultDrawingView}.
+ */
+public class DefaultDrawingViewNGTest {
+
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+
+    public DefaultDrawingViewNGTest() {
+    }
+
+    private static Drawing createDrawing(int figureCount, long seed) {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        Random r = new Random(seed);
+        for (int i = 0; i < figureCount; i++) {
+            RectangleFigure f = new RectangleFigure(r.nextInt(4000), r.nextInt(4000), 5 + r.nextInt(40), 5 + r.nextInt(40));
+            f.set(FILL_COLOR, new Color(r.nextInt(0x1000000)));
+            drawing.add(f);
+        }
+        return drawing;
+    }
+
+    private static DefaultDrawingView createView(Drawing drawing, boolean tiled) {
+        DefaultDrawingView view = new DefaultDrawingView();
+        view.setDrawingDoubleBuffered(false);
+        view.setDrawingTiled(tiled);
+        view.setDrawing(drawing);
+        JViewport viewport = new JViewport();
+        viewport.setView(view);
+        viewport.setSize(WIDTH, HEIGHT);
+        view.setSize(view.getPreferredSize());
+        return view;
+    }
+
+    private static void scrollTo(DefaultDrawingView view, int x, int y) {
+        ((JViewport) view.getParent()).setViewPosition(new Point(x, y));
+    }
+
+    /**
+     * Paints the visible rect of the view into the image.
+     */
+    private static void paint(DefaultDrawingView view, BufferedImage img) {
+        Rectangle vr = view.getVisibleRect();
+        Graphics2D g = img.createGraphics();
+        g.setBackground(new Color(0, true));
+        g.clearRect(0, 0, img.getWidth(), img.getHeight());
+        g.translate(-vr.x, -vr.y);
+        g.clipRect(vr.x, vr.y, vr.width, vr.height);
+        view.drawDrawing(g);
+        g.dispose();
+    }
+
+    private static void paintTiled(DefaultDrawingView view, BufferedImage img) {
+        Rectangle vr = view.getVisibleRect();
+        Graphics2D g = img.createGraphics();
+        g.setBackground(new Color(0, true));
+        g.clearRect(0, 0, img.getWidth(), img.getHeight());
+        g.translate(-vr.x, -vr.y);
+        g.clipRect(vr.x, vr.y, vr.width, vr.height);
+        view.drawDrawingTiled(g);
+        g.dispose();
+    }
+
+    private static int countDifferentPixels(BufferedImage a, BufferedImage b) {
+        int count = 0;
+        for (int y = 0; y < a.getHeight(); y++) {
+            for (int x = 0; x < a.getWidth(); x++) {
+                if (a.getRGB(x, y) != b.getRGB(x, y)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testTiledDrawingLooksSame() {
+        Drawing drawing = createDrawing(2000, 1);
+        DefaultDrawingView plain = createView(drawing, false);
+        DefaultDrawingView tiled = createView(drawing, true);
+        BufferedImage expected = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage actual = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        for (Point p : new Point[]{new Point(0, 0), new Point(333, 517), new Point(1000, 250)}) {
+            scrollTo(plain, p.x, p.y);
+            scrollTo(tiled, p.x, p.y);
+            paint(plain, expected);
+            paintTiled(tiled, actual);
+            // Allow for differences in anti-aliasing at the tile borders
+            assertTrue(countDifferentPixels(expected, actual) < WIDTH * HEIGHT / 100, "p=" + p);
+        }
+    }
+
+    @Test
+    public void testChangedFigureInvalidatesTiles() {
+        Drawing drawing = createDrawing(0, 1);
+        RectangleFigure f = new RectangleFigure(10, 10, 20, 20);
+        f.set(FILL_COLOR, Color.RED);
+        drawing.add(f);
+        DefaultDrawingView view = createView(drawing, true);
+        BufferedImage img = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        paintTiled(view, img);
+        Point p = view.drawingToView(new Point2D.Double(20, 20));
+        Rectangle vr = view.getVisibleRect();
+        assertEquals(img.getRGB(p.x - vr.x, p.y - vr.y), Color.RED.getRGB());
+
+        f.willChange();
+        f.set(FILL_COLOR, Color.BLUE);
+        f.changed();
+        paintTiled(view, img);
+        assertEquals(img.getRGB(p.x - vr.x, p.y - vr.y), Color.BLUE.getRGB());
+
+        f.willChange();
+        f.transform(AffineTransform.getTranslateInstance(100, 0));
+        f.changed();
+        paintTiled(view, img);
+        assertEquals(img.getRGB(p.x - vr.x, p.y - vr.y), 0);
+    }
+
+    /**
+     * Runs the runnable on the event dispatch thread and waits until it is
+     * done.
+     */
+    private static void onEDT(Runnable r) throws Exception {
+        SwingUtilities.invokeAndWait(r);
+    }
+
+    /**
+     * Waits until the view has received all tiles which are rendered in
+     * the background.
+     */
+    private static void waitForTiles(final DefaultDrawingView view) throws Exception {
+        final int[] pending = new int[1];
+        for (int i = 0; i < 1000; i++) {
+            onEDT(new Runnable() {
+                @Override
+                public void run() {
+                    pending[0] = view.getPendingTileCount();
+                }
+            });
+            if (pending[0] == 0) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("tiles have not been rendered");
+    }
+
+    private static boolean isEmpty(BufferedImage img) {
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                if (img.getRGB(x, y) != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Test
+    public void testBackgroundRendering() throws Exception {
+        final Drawing drawing = createDrawing(2000, 3);
+        final DefaultDrawingView[] views = new DefaultDrawingView[2];
+        final BufferedImage expected = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        final BufferedImage actual = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        onEDT(new Runnable() {
+            @Override
+            public void run() {
+                views[0] = createView(drawing, false);
+                views[1] = createView(drawing, true);
+                views[1].setDrawingRenderedInBackground(true);
+                scrollTo(views[0], 300, 200);
+                scrollTo(views[1], 300, 200);
+                paint(views[0], expected);
+                paintTiled(views[1], actual);
+                // Nothing has been rendered yet
+                assertTrue(isEmpty(actual));
+                assertTrue(views[1].getPendingTileCount() > 0);
+            }
+        });
+        waitForTiles(views[1]);
+        onEDT(new Runnable() {
+            @Override
+            public void run() {
+                paintTiled(views[1], actual);
+                assertEquals(views[1].getPendingTileCount(), 0);
+                assertTrue(countDifferentPixels(expected, actual) < WIDTH * HEIGHT / 100);
+
+                // Zooming shows the tiles of the previous scale factor
+                // until the new tiles have been rendered
+                views[1].setScaleFactor(0.5);
+                paintTiled(views[1], actual);
+                assertTrue(views[1].getPendingTileCount() > 0);
+                assertFalse(isEmpty(actual));
+
+                // Scrolling away cancels the rendering of invisible tiles
+                scrollTo(views[1], 1500, 1200);
+                paintTiled(views[1], actual);
+                int size = DrawingTileCache.TILE_SIZE;
+                int maxVisibleTiles = (WIDTH / size + 2) * (HEIGHT / size + 2);
+                assertTrue(views[1].getPendingTileCount() <= maxVisibleTiles);
+            }
+        });
+        waitForTiles(views[1]);
+    }
+
+    /**
+     * A colour which records the threads on which it is rasterized, and
+     * which can hold up the rasterization until a gate is opened.
+     */
+    private static class ThreadRecordingPaint implements Paint {
+
+        private final Color color;
+        private final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+        private volatile CountDownLatch gate;
+
+        ThreadRecordingPaint(Color color) {
+            this.color = color;
+        }
+
+        @Override
+        public PaintContext createContext(ColorModel cm, Rectangle deviceBounds, Rectangle2D userBounds, AffineTransform xform, RenderingHints hints) {
+            threads.add(Thread.currentThread().getName());
+            CountDownLatch g = gate;
+            if (g != null) {
+                try {
+                    g.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return color.createContext(cm, deviceBounds, userBounds, xform, hints);
+        }
+
+        @Override
+        public int getTransparency() {
+            return color.getTransparency();
+        }
+    }
+
+    /**
+     * A rectangle which is filled with a paint.
+     */
+    private static class PaintedRectangleFigure extends RectangleFigure {
+
+        private static final long serialVersionUID = 1L;
+        private Paint paint;
+
+        PaintedRectangleFigure(double x, double y, double width, double height, Paint paint) {
+            super(x, y, width, height);
+            this.paint = paint;
+            set(FILL_COLOR, Color.BLACK);
+        }
+
+        void setPaint(Paint newValue) {
+            willChange();
+            paint = newValue;
+            changed();
+        }
+
+        @Override
+        protected void drawFill(Graphics2D g) {
+            g.setPaint(paint);
+            super.drawFill(g);
+        }
+    }
+
+    @Test
+    public void testTilesAreRasterizedByWorkerThreads() throws Exception {
+        final Drawing drawing = createDrawing(0, 1);
+        final ThreadRecordingPaint paint = new ThreadRecordingPaint(Color.RED);
+        drawing.add(new PaintedRectangleFigure(10, 10, 500, 500, paint));
+        final DefaultDrawingView[] view = new DefaultDrawingView[1];
+        final BufferedImage img = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        final String[] edt = new String[1];
+        onEDT(new Runnable() {
+            @Override
+            public void run() {
+                edt[0] = Thread.currentThread().getName();
+                view[0] = createView(drawing, true);
+                view[0].setDrawingRenderedInBackground(true);
+                paintTiled(view[0], img);
+            }
+        });
+        waitForTiles(view[0]);
+        onEDT(new Runnable() {
+            @Override
+            public void run() {
+                paintTiled(view[0], img);
+                Point p = view[0].drawingToView(new Point2D.Double(100, 100));
+                Rectangle vr = view[0].getVisibleRect();
+                assertEquals(img.getRGB(p.x - vr.x, p.y - vr.y), Color.RED.getRGB());
+            }
+        });
+        assertFalse(paint.threads.isEmpty());
+        assertFalse(paint.threads.contains(edt[0]), paint.threads.toString());
+        for (String name : paint.threads) {
+            assertEquals(name, "DrawingTileRenderer");
+        }
+    }
+
+    @Test
+    public void testChangeWhileRasterizingMakesTileStale() throws Exception {
+        final Drawing drawing = createDrawing(0, 1);
+        final ThreadRecordingPaint red = new ThreadRecordingPaint(Color.RED);
+        final CountDownLatch gate = new CountDownLatch(1);
+        red.gate = gate;
+        final PaintedRectangleFigure f = new PaintedRectangleFigure(10, 10, 20, 20, red);
+        drawing.add(f);
+        final DefaultDrawingView[] view = new DefaultDrawingView[1];
+        final BufferedImage img = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        try {
+            onEDT(new Runnable() {
+                @Override
+                public void run() {
+                    view[0] = createView(drawing, true);
+                    view[0].setDrawingRenderedInBackground(true);
+                    paintTiled(view[0], img);
+                }
+            });
+            // Wait until the tile has been recorded and is being rasterized
+            for (int i = 0; i < 1000 && red.threads.isEmpty(); i++) {
+                Thread.sleep(10);
+            }
+            assertFalse(red.threads.isEmpty());
+            onEDT(new Runnable() {
+                @Override
+                public void run() {
+                    f.setPaint(Color.BLUE);
+                }
+            });
+        } finally {
+            gate.countDown();
+        }
+        waitForTiles(view[0]);
+        final Point[] p = new Point[1];
+        onEDT(new Runnable() {
+            @Override
+            public void run() {
+                // The recording still has the old paint, but the tile is stale
+                paintTiled(view[0], img);
+                p[0] = view[0].drawingToView(new Point2D.Double(20, 20));
+                p[0].translate(-view[0].getVisibleRect().x, -view[0].getVisibleRect().y);
+                assertEquals(img.getRGB(p[0].x, p[0].y), Color.RED.getRGB());
+                assertTrue(view[0].getPendingTileCount() > 0);
+            }
+        });
+        waitForTiles(view[0]);
+        onEDT(new Runnable() {
+            @Override
+            public void run() {
+                paintTiled(view[0], img);
+                assertEquals(img.getRGB(p[0].x, p[0].y), Color.BLUE.getRGB());
+            }
+        });
+    }
+
+    /**
+     * Counts how often it is drawn.
+     */
+    private static class CountingRectangleFigure extends RectangleFigure {
+
+        private static final long serialVersionUID = 1L;
+        private final int[] drawCount;
+
+        CountingRectangleFigure(double x, double y, double width, double height, int[] drawCount) {
+            super(x, y, width, height);
+            this.drawCount = drawCount;
+        }
+
+        @Override
+        public void draw(Graphics2D g) {
+            drawCount[0]++;
+            super.draw(g);
+        }
+    }
+
+    @Test
+    public void testPanningReusesTiles() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        int[] drawCount = new int[1];
+        Random r = new Random(2);
+        for (int i = 0; i < 20000; i++) {
+            drawing.add(new CountingRectangleFigure(r.nextInt(4000), r.nextInt(4000), 5 + r.nextInt(40), 5 + r.nextInt(40), drawCount));
+        }
+        int[] counts = new int[2];
+        for (int mode = 0; mode < 2; mode++) {
+            boolean tiled = mode == 1;
+            DefaultDrawingView view = createView(drawing, tiled);
+            view.setMaxTileCount(512);
+            BufferedImage img = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+            drawCount[0] = 0;
+            for (int zoom = 0; zoom < 3; zoom++) {
+                view.setScaleFactor(zoom == 1 ? 0.5 : 1.0);
+                for (int step = 0; step < 20; step++) {
+                    // Pan right, then back to the left
+                    int x = (step < 10 ? step : 20 - step) * 100;
+                    scrollTo(view, x, x / 2);
+                    if (tiled) {
+                        paintTiled(view, img);
+                    } else {
+                        paint(view, img);
+                    }
+                }
+            }
+            counts[mode] = drawCount[0];
+        }
+        // Panning back and returning to a scale factor draws the figures
+        // from the cached tiles
+        assertTrue(counts[1] > 0);
+        assertTrue(counts[1] < counts[0] / 2, "untiled " + counts[0] + ", tiled " + counts[1]);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * @(#)DrawingNGTest.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the default methods of {@link Drawing}.
+ */
+public class DrawingNGTest {
+
+    public DrawingNGTest() {
+    }
+
+    /**
+     * Creates a drawing which only implements the abstract methods of the
+     * interface by throwing an exception.
+     */
+    private static Drawing createDrawing() {
+        return (Drawing) Proxy.newProxyInstance(Drawing.class.getClassLoader(),
+                new Class<?>[]{Drawing.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.isDefault()) {
+                    return InvocationHandler.invokeDefault(proxy, method, args);
+                }
+                switch (method.getName()) {
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testDefaultReadWriteLock() {
+        Drawing a = createDrawing();
+        Drawing b = createDrawing();
+        assertNotNull(a.getReadWriteLock());
+        assertTrue(a.getReadWriteLock() == a.getReadWriteLock());
+        assertFalse(a.getReadWriteLock() == b.getReadWriteLock());
+    }
+
+    @Test
+    public void testDefaultUpdate() {
+        Drawing d = createDrawing();
+        d.beginUpdate();
+        assertFalse(d.isUpdating());
+        d.endUpdate();
+        assertNull(d.getConnectionIndex());
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * @(#)LevelOfDetailNGTest.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import static org.jhotdraw.draw.AttributeKeys.*;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import org.jhotdraw.draw.figure.TextAreaFigure;
+import org.jhotdraw.draw.figure.TextFigure;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the drawing of figures with a {@link LevelOfDetail}.
+ */
+public class LevelOfDetailNGTest {
+
+    private static final int SIZE = 100;
+
+    public LevelOfDetailNGTest() {
+    }
+
+    /**
+     * Draws the figure at the specified scale into a new image.
+     */
+    private static BufferedImage draw(Figure f, double scale, LevelOfDetail lod) {
+        BufferedImage img = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        if (lod != null) {
+            g.setRenderingHint(LevelOfDetail.KEY_LEVEL_OF_DETAIL, lod);
+        }
+        g.scale(scale, scale);
+        f.draw(g);
+        g.dispose();
+        return img;
+    }
+
+    private static int countPixels(BufferedImage img, Color color) {
+        int count = 0;
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                if (color == null ? img.getRGB(x, y) != 0 : img.getRGB(x, y) == color.getRGB()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testTinyFigureIsSkipped() {
+        RectangleFigure f = new RectangleFigure(20, 20, 4, 4);
+        f.set(FILL_COLOR, Color.RED);
+        assertTrue(countPixels(draw(f, 0.1, null), null) > 0);
+        assertEquals(countPixels(draw(f, 0.1, new LevelOfDetail()), null), 0);
+    }
+
+    @Test
+    public void testSmallFigureIsDrawnAsBox() {
+        RectangleFigure f = new RectangleFigure(20, 20, 15, 5);
+        f.set(FILL_COLOR, null);
+        f.set(STROKE_COLOR, Color.BLUE);
+        BufferedImage img = draw(f, 0.1, new LevelOfDetail());
+        assertTrue(countPixels(img, Color.BLUE) > 0);
+        assertEquals(countPixels(img, null), countPixels(img, Color.BLUE));
+
+        // The cached colour of the box changes with the attributes
+        f.set(FILL_COLOR, Color.RED);
+        img = draw(f, 0.1, new LevelOfDetail());
+        assertTrue(countPixels(img, Color.RED) > 0);
+        assertEquals(countPixels(img, Color.BLUE), 0);
+
+        // Figures above the box size are drawn with full detail
+        img = draw(f, 1, new LevelOfDetail());
+        assertTrue(countPixels(img, Color.RED) > 0);
+        assertTrue(countPixels(img, Color.BLUE) > 0);
+    }
+
+    @Test
+    public void testSmallTextIsDrawnAsBars() {
+        TextFigure f = new TextFigure("The quick brown fox");
+        f.setBounds(new Point2D.Double(10, 10), new Point2D.Double(10, 10));
+        f.set(FONT_SIZE, 12d);
+        f.set(TEXT_COLOR, Color.BLACK);
+        LevelOfDetail lod = new LevelOfDetail(0.5, 2, 4, Color.GREEN);
+        BufferedImage img = draw(f, 0.25, lod);
+        int bars = countPixels(img, Color.GREEN);
+        assertTrue(bars > 0);
+        assertEquals(countPixels(img, null), bars);
+        img = draw(f, 0.5, lod);
+        assertEquals(countPixels(img, Color.GREEN), 0);
+        assertTrue(countPixels(img, null) > 0);
+    }
+
+    @Test
+    public void testSmallTextAreaIsDrawnAsBars() {
+        TextAreaFigure f = new TextAreaFigure("The quick brown fox\njumps over the lazy dog.");
+        f.setBounds(new Point2D.Double(10, 10), new Point2D.Double(300, 200));
+        f.set(FILL_COLOR, null);
+        f.set(STROKE_COLOR, null);
+        f.set(TEXT_COLOR, Color.BLACK);
+        LevelOfDetail lod = new LevelOfDetail(0.5, 2, 4, Color.GREEN);
+        BufferedImage img = draw(f, 0.25, lod);
+        int bars = countPixels(img, Color.GREEN);
+        assertTrue(bars > 0);
+        assertEquals(countPixels(img, null), bars);
+        assertEquals(countPixels(draw(f, 0.25, null), Color.GREEN), 0);
+    }
+
+    /**
+     * Counts how often its fill is drawn with full detail.
+     */
+    private static class CountingRectangleFigure extends RectangleFigure {
+
+        private static final long serialVersionUID = 1L;
+        private final int[] counts;
+
+        CountingRectangleFigure(double x, double y, double width, double height, int[] counts) {
+            super(x, y, width, height);
+            this.counts = counts;
+        }
+
+        @Override
+        protected void drawFill(Graphics2D g) {
+            counts[0]++;
+            super.drawFill(g);
+        }
+    }
+
+    /**
+     * Counts how often its text is drawn with full detail.
+     */
+    private static class CountingTextAreaFigure extends TextAreaFigure {
+
+        private static final long serialVersionUID = 1L;
+        private final int[] counts;
+
+        CountingTextAreaFigure(String text, int[] counts) {
+            super(text);
+            this.counts = counts;
+        }
+
+        @Override
+        protected void drawText(Graphics2D g) {
+            counts[1]++;
+            super.drawText(g);
+        }
+    }
+
+    /**
+     * Creates a drawing of rectangles and text areas. The counts array
+     * receives the number of filled rectangles and the number of texts
+     * which are drawn with full detail.
+     */
+    private static Drawing createDrawing(int figureCount, long seed, int[] counts) {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        Random r = new Random(seed);
+        for (int i = 0; i < figureCount; i++) {
+            Figure f;
+            if (i % 10 == 0) {
+                f = new CountingTextAreaFigure("Lorem ipsum dolor sit amet, consectetur adipiscing elit.", counts);
+                Point2D.Double p = new Point2D.Double(r.nextInt(8000), r.nextInt(8000));
+                f.setBounds(p, new Point2D.Double(p.x + 100 + r.nextInt(100), p.y + 40 + r.nextInt(40)));
+            } else {
+                f = new CountingRectangleFigure(r.nextInt(8000), r.nextInt(8000), 5 + r.nextInt(40), 5 + r.nextInt(40), counts);
+            }
+            f.set(FILL_COLOR, new Color(r.nextInt(0x1000000)));
+            f.set(STROKE_COLOR, Color.BLACK);
+            drawing.add(f);
+        }
+        return drawing;
+    }
+
+    @Test
+    public void testZoomedOutDrawingHasLessDetail() {
+        int[] counts = new int[2];
+        Drawing drawing = createDrawing(20000, 1, counts);
+        DefaultDrawingView view = new DefaultDrawingView();
+        view.setDrawingDoubleBuffered(false);
+        view.setDrawing(drawing);
+        view.setScaleFactor(0.1);
+        view.setSize(view.getPreferredSize());
+        BufferedImage img = new BufferedImage(800, 800, BufferedImage.TYPE_INT_ARGB);
+        int[][] detailCounts = new int[2][];
+        for (int mode = 0; mode < 2; mode++) {
+            view.setLevelOfDetail(mode == 1 ? new LevelOfDetail() : null);
+            counts[0] = counts[1] = 0;
+            Graphics2D g = img.createGraphics();
+            g.clipRect(0, 0, 800, 800);
+            view.setViewRenderingHints(g);
+            view.drawDrawing(g);
+            g.dispose();
+            detailCounts[mode] = counts.clone();
+        }
+        assertEquals(detailCounts[0][0], 18000);
+        assertEquals(detailCounts[0][1], 2000);
+        // At scale 0.1, the smallest rectangles are drawn as boxes, and the
+        // text is 1.2 pixels high and drawn as bars
+        assertTrue(detailCounts[1][0] > 0);
+        assertTrue(detailCounts[1][0] < detailCounts[0][0], "full detail fills " + detailCounts[1][0]);
+        assertEquals(detailCounts[1][1], 0);
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.draw;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import org.jhotdraw.draw.event.FigureAdapter;
+import org.jhotdraw.draw.event.FigureEvent;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests batched updates and the z-order of {@link QuadTreeDrawing}.
+ */
+public class QuadTreeDrawingNGTest {
+
+    public QuadTreeDrawingNGTest() {
+    }
+
+    /**
+     * A rectangle figure with a changeable layer.
+     */
+    private static class LayerFigure extends RectangleFigure {
+
+        private static final long serialVersionUID = 1L;
+        private int layer;
+
+        LayerFigure(double x, double y, int layer) {
+            super(x, y, 10, 10);
+            this.layer = layer;
+        }
+
+        @Override
+        public int getLayer() {
+            return layer;
+        }
+
+        public void setLayer(int newValue) {
+            willChange();
+            layer = newValue;
+            changed();
+        }
+    }
+
+    @Test
+    public void testBatchedUpdate() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        List<Figure> figures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Figure f = new RectangleFigure(i * 20, 0, 10, 10);
+            figures.add(f);
+            drawing.add(f);
+        }
+        final List<Rectangle2D.Double> invalidatedAreas = new ArrayList<>();
+        drawing.addFigureListener(new FigureAdapter() {
+            @Override
+            public void areaInvalidated(FigureEvent e) {
+                invalidatedAreas.add(e.getInvalidatedArea());
+            }
+        });
+        // The areas of the events of the children must not be changed
+        final List<Rectangle2D.Double> childAreas = new ArrayList<>();
+        final List<Rectangle2D.Double> childAreaCopies = new ArrayList<>();
+        figures.get(0).addFigureListener(new FigureAdapter() {
+            @Override
+            public void areaInvalidated(FigureEvent e) {
+                childAreas.add(e.getInvalidatedArea());
+                childAreaCopies.add((Rectangle2D.Double) e.getInvalidatedArea().clone());
+            }
+        });
+        AffineTransform tx = AffineTransform.getTranslateInstance(0, 100);
+        drawing.beginUpdate();
+        try {
+            for (Figure f : figures) {
+                f.willChange();
+                f.transform(tx);
+                f.changed();
+            }
+            assertTrue(drawing.isUpdating());
+            assertTrue(invalidatedAreas.isEmpty());
+        } finally {
+            drawing.endUpdate();
+        }
+        assertFalse(drawing.isUpdating());
+        assertEquals(invalidatedAreas.size(), 1);
+        Rectangle2D.Double area = invalidatedAreas.get(0);
+        assertTrue(area.contains(new Point2D.Double(5, 5)));
+        assertTrue(area.contains(new Point2D.Double(45, 105)));
+        assertFalse(childAreas.isEmpty());
+        assertEquals(childAreas, childAreaCopies);
+        for (int i = 0; i < 3; i++) {
+            assertSame(drawing.findFigure(new Point2D.Double(i * 20 + 5, 105)), figures.get(i));
+            assertNull(drawing.findFigure(new Point2D.Double(i * 20 + 5, 5)));
+        }
+    }
+
+    @Test
+    public void testChildrenAreSortedByLayerOnChange() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        LayerFigure front = new LayerFigure(0, 0, 1);
+        LayerFigure back = new LayerFigure(5, 5, 0);
+        drawing.add(front);
+        drawing.add(back);
+        // The children are sorted when they are changed, not when they are read
+        assertEquals(drawing.getChildren(), Arrays.asList(back, front));
+        assertSame(drawing.findFigure(new Point2D.Double(7, 7)), front);
+
+        back.setLayer(2);
+        assertEquals(drawing.getChildren(), Arrays.asList(front, back));
+        assertSame(drawing.findFigure(new Point2D.Double(7, 7)), back);
+        assertSame(drawing.findFigureBehind(new Point2D.Double(7, 7), back), front);
+    }
+
+    @Test
+    public void testConcurrentReaders() throws InterruptedException {
+        final QuadTreeDrawing drawing = new QuadTreeDrawing();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] readers = new Thread[2];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (!Thread.currentThread().isInterrupted()) {
+                            drawing.getReadWriteLock().readLock().lock();
+                            try {
+                                drawing.findFigure(new Point2D.Double(50, 50));
+                                drawing.findFigures(new Rectangle2D.Double(0, 0, 100, 100));
+                                for (Figure f : drawing.getFiguresFrontToBack()) {
+                                    f.getLayer();
+                                }
+                            } finally {
+                                drawing.getReadWriteLock().readLock().unlock();
+                            }
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+            readers[i].start();
+        }
+        Random r = new Random(1);
+        List<LayerFigure> figures = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            LayerFigure f = new LayerFigure(r.nextInt(100), r.nextInt(100), r.nextInt(3));
+            figures.add(f);
+            drawing.add(f);
+            figures.get(r.nextInt(figures.size())).setLayer(r.nextInt(3));
+        }
+        for (Thread reader : readers) {
+            reader.interrupt();
+            reader.join();
+        }
+        assertNull(failure.get());
+        List<Figure> children = drawing.getChildren();
+        for (int i = 1; i < children.size(); i++) {
+            assertTrue(children.get(i - 1).getLayer() <= children.get(i).getLayer());
+        }
+    }
+
+    /**
+     * Returns the union of the drawing areas of the children.
+     */
+    private static Rectangle2D.Double unionOfChildDrawingAreas(Drawing drawing, double factor) {
+        Rectangle2D.Double r = null;
+        for (Figure f : drawing.getChildren()) {
+            if (r == null) {
+                r = f.getDrawingArea(factor);
+            } else {
+                r.add(f.getDrawingArea(factor));
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Moves the figure and checks the drawing area of the drawing. The
+     * drawing area is computed at the specified factor before the move, so
+     * that the children are indexed in their current order.
+     */
+    private static void moveAndCheckDrawingArea(Drawing drawing, Figure f, double dx, double dy, double factor) {
+        assertEquals(drawing.getDrawingArea(factor), unionOfChildDrawingAreas(drawing, factor));
+        f.willChange();
+        f.transform(AffineTransform.getTranslateInstance(dx, dy));
+        f.changed();
+        assertEquals(drawing.getDrawingArea(factor), unionOfChildDrawingAreas(drawing, factor));
+    }
+
+    @Test
+    public void testDrawingAreaAfterReorderAndMove() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        LayerFigure[] figures = new LayerFigure[4];
+        for (int i = 0; i < figures.length; i++) {
+            figures[i] = new LayerFigure(i * 20, i * 20, 0);
+            drawing.add(figures[i]);
+        }
+        moveAndCheckDrawingArea(drawing, figures[2], 5, 5, 2);
+
+        drawing.bringToFront(figures[0]);
+        moveAndCheckDrawingArea(drawing, figures[0], -100, -100, 3);
+        drawing.sendToBack(figures[3]);
+        moveAndCheckDrawingArea(drawing, figures[3], 200, 200, 4);
+        figures[1].setLayer(-1);
+        moveAndCheckDrawingArea(drawing, figures[1], -300, 0, 5);
+        moveAndCheckDrawingArea(drawing, figures[2], 0, 400, 6);
+    }
+
+    /**
+     * Checks that the query results are sorted in the order of the children.
+     */
+    private static void assertZOrder(QuadTreeDrawing drawing) {
+        List<Figure> children = new ArrayList<>(drawing.getChildren());
+        assertEquals(drawing.findFigures(new Rectangle2D.Double(-1000, -1000, 3000, 3000)), children);
+        List<Figure> reversed = new ArrayList<>(children);
+        Collections.reverse(reversed);
+        assertEquals(drawing.sort(reversed), children);
+    }
+
+    @Test
+    public void testZOrderAfterBringToFrontSendToBackAndRemove() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        LayerFigure[] figures = new LayerFigure[5];
+        for (int i = 0; i < figures.length; i++) {
+            figures[i] = new LayerFigure(i * 2, i * 2, 0);
+            drawing.add(figures[i]);
+        }
+        assertZOrder(drawing);
+        Point2D.Double p = new Point2D.Double(9, 9);
+        assertSame(drawing.findFigure(p), figures[4]);
+
+        drawing.bringToFront(figures[0]);
+        assertEquals(drawing.getChild(4), figures[0]);
+        assertZOrder(drawing);
+        assertSame(drawing.findFigure(p), figures[0]);
+        assertSame(drawing.findFigureBehind(p, figures[0]), figures[4]);
+
+        drawing.sendToBack(figures[4]);
+        assertEquals(drawing.getChild(0), figures[4]);
+        assertZOrder(drawing);
+        assertSame(drawing.findFigureBehind(p, figures[0]), figures[3]);
+
+        drawing.remove(figures[3]);
+        assertZOrder(drawing);
+        assertSame(drawing.findFigureBehind(p, figures[0]), figures[2]);
+
+        drawing.basicAdd(2, figures[3]);
+        assertZOrder(drawing);
+        assertSame(drawing.findFigureBehind(p, figures[0]), figures[2]);
+    }
+
+    @Test
+    public void testZOrderAfterManyReorders() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        List<LayerFigure> figures = new ArrayList<>();
+        Random r = new Random(3);
+        for (int i = 0; i < 50; i++) {
+            LayerFigure f = new LayerFigure(r.nextInt(100), r.nextInt(100), 0);
+            figures.add(f);
+            drawing.add(f);
+        }
+        // Inserting at the same position many times uses up the gaps
+        for (int k = 0; k < 2000; k++) {
+            LayerFigure f = figures.get(r.nextInt(figures.size()));
+            switch (r.nextInt(5)) {
+                case 0:
+                    drawing.bringToFront(f);
+                    break;
+                case 1:
+                    drawing.sendToBack(f);
+                    break;
+                case 2:
+                    drawing.remove(f);
+                    drawing.basicAdd(drawing.getChildCount() / 2, f);
+                    break;
+                case 3:
+                    drawing.remove(f);
+                    drawing.add(f);
+                    break;
+                default:
+                    f.setLayer(r.nextInt(3));
+                    break;
+            }
+            if (k % 100 == 0) {
+                assertZOrder(drawing);
+            }
+        }
+        assertZOrder(drawing);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testEndUpdateWithoutBeginUpdate() {
+        new QuadTreeDrawing().endUpdate();
+    }
+}
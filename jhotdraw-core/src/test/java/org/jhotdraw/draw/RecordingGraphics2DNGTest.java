@@ -0,0 +1,129 @@
+/*
+ * @(#)RecordingGraphics2DNGTest.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import static org.jhotdraw.draw.AttributeKeys.*;
+import org.jhotdraw.draw.figure.EllipseFigure;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import org.jhotdraw.draw.figure.TextFigure;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the replay of a {@link RecordingGraphics2D}.
+ */
+public class RecordingGraphics2DNGTest {
+
+    private static final int SIZE = 200;
+
+    public RecordingGraphics2DNGTest() {
+    }
+
+    private static Drawing createDrawing() {
+        Drawing drawing = new QuadTreeDrawing();
+        RectangleFigure r = new RectangleFigure(10, 10, 80, 60);
+        r.set(FILL_COLOR, Color.RED);
+        r.set(STROKE_WIDTH, 3d);
+        drawing.add(r);
+        EllipseFigure e = new EllipseFigure(60, 40, 100, 90);
+        e.set(FILL_COLOR, new Color(0, 0, 255, 128));
+        drawing.add(e);
+        TextFigure t = new TextFigure("Recorded");
+        t.setBounds(new Point2D.Double(20, 150), new Point2D.Double(180, 180));
+        drawing.add(t);
+        return drawing;
+    }
+
+    private static void draw(Graphics2D g, Drawing drawing) {
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.translate(5, 5);
+        g.scale(0.9, 0.9);
+        for (Figure f : drawing.getChildren()) {
+            f.draw(g);
+        }
+    }
+
+    private static BufferedImage createImage() {
+        return new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    @Test
+    public void testReplayLooksSameAsDirectDrawing() {
+        Drawing drawing = createDrawing();
+        BufferedImage direct = createImage();
+        Graphics2D g = direct.createGraphics();
+        draw(g, drawing);
+        g.dispose();
+
+        RecordingGraphics2D recording = new RecordingGraphics2D();
+        draw(recording, drawing);
+        recording.dispose();
+        assertTrue(recording.getCommandCount() > 0);
+        BufferedImage replayed = createImage();
+        g = replayed.createGraphics();
+        recording.replay(g);
+        g.dispose();
+
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                assertEquals(replayed.getRGB(x, y), direct.getRGB(x, y), "pixel " + x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    public void testRecordingIsSnapshot() {
+        Drawing drawing = createDrawing();
+        RecordingGraphics2D recording = new RecordingGraphics2D();
+        draw(recording, drawing);
+        recording.dispose();
+
+        RectangleFigure r = (RectangleFigure) drawing.getChild(0);
+        r.willChange();
+        r.set(FILL_COLOR, Color.GREEN);
+        r.setBounds(new Point2D.Double(100, 100), new Point2D.Double(110, 110));
+        r.changed();
+
+        BufferedImage replayed = createImage();
+        Graphics2D g = replayed.createGraphics();
+        recording.replay(g);
+        g.dispose();
+        assertEquals(replayed.getRGB(30, 30), Color.RED.getRGB());
+    }
+
+    @Test
+    public void testChildGraphicsStateDoesNotLeak() {
+        RecordingGraphics2D recording = new RecordingGraphics2D();
+        recording.setColor(Color.BLUE);
+        Graphics2D child = (Graphics2D) recording.create();
+        child.translate(100, 100);
+        child.setColor(Color.RED);
+        child.setStroke(new BasicStroke(5f));
+        child.fillRect(0, 0, 10, 10);
+        child.dispose();
+        recording.fillRect(0, 0, 10, 10);
+        assertEquals(recording.getColor(), Color.BLUE);
+        assertTrue(recording.getTransform().isIdentity());
+        recording.dispose();
+
+        BufferedImage replayed = createImage();
+        Graphics2D g = replayed.createGraphics();
+        recording.replay(g);
+        g.dispose();
+        assertEquals(replayed.getRGB(5, 5), Color.BLUE.getRGB());
+        assertEquals(replayed.getRGB(105, 105), Color.RED.getRGB());
+        assertEquals(replayed.getRGB(50, 50), 0);
+    }
+}
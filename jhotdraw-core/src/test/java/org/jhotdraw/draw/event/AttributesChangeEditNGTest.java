@@ -0,0 +1,203 @@
+/*
+ * @(#)AttributesChangeEditNGTest.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.event;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import org.jhotdraw.draw.AttributeKey;
+import static org.jhotdraw.draw.AttributeKeys.*;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.figure.GroupFigure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import org.jhotdraw.undo.CompositeEdit;
+import org.jhotdraw.undo.UndoRedoManager;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+public class AttributesChangeEditNGTest {
+
+    public AttributesChangeEditNGTest() {
+    }
+
+    private static Map<AttributeKey<?>, Object> strokeColor(Color c) {
+        return Collections.<AttributeKey<?>, Object>singletonMap(STROKE_COLOR, c);
+    }
+
+    /**
+     * Creates the edit and then applies the new values, like the attribute
+     * actions do.
+     */
+    @SuppressWarnings("unchecked")
+    private static AttributesChangeEdit change(ArrayList<? extends Figure> figures, Map<AttributeKey<?>, Object> a) {
+        AttributesChangeEdit edit = new AttributesChangeEdit("change", figures, a);
+        for (Figure f : figures) {
+            f.willChange();
+            for (Map.Entry<AttributeKey<?>, Object> entry : a.entrySet()) {
+                f.set((AttributeKey<Object>) entry.getKey(), entry.getValue());
+            }
+            f.changed();
+        }
+        return edit;
+    }
+
+    @Test
+    public void testUndoRedo() {
+        RectangleFigure a = new RectangleFigure(0, 0, 10, 10);
+        RectangleFigure b = new RectangleFigure(0, 0, 10, 10);
+        a.set(STROKE_COLOR, Color.RED);
+        a.set(FILL_COLOR, Color.YELLOW);
+        b.set(STROKE_COLOR, Color.GREEN);
+        ArrayList<RectangleFigure> figures = new ArrayList<>();
+        figures.add(a);
+        figures.add(b);
+        AttributesChangeEdit edit = change(figures, strokeColor(Color.BLUE));
+        assertEquals(a.get(STROKE_COLOR), Color.BLUE);
+        assertEquals(b.get(STROKE_COLOR), Color.BLUE);
+        edit.undo();
+        assertEquals(a.get(STROKE_COLOR), Color.RED);
+        assertEquals(b.get(STROKE_COLOR), Color.GREEN);
+        assertEquals(a.get(FILL_COLOR), Color.YELLOW);
+        edit.redo();
+        assertEquals(a.get(STROKE_COLOR), Color.BLUE);
+        assertEquals(b.get(STROKE_COLOR), Color.BLUE);
+    }
+
+    @Test
+    public void testUndoRemovesAttributeWhichWasNotSet() {
+        RectangleFigure f = new RectangleFigure(0, 0, 10, 10);
+        f.removeAttribute(STROKE_DASH_PHASE);
+        assertFalse(f.hasAttribute(STROKE_DASH_PHASE));
+        ArrayList<RectangleFigure> figures = new ArrayList<>();
+        figures.add(f);
+        AttributesChangeEdit edit = change(figures,
+                Collections.<AttributeKey<?>, Object>singletonMap(STROKE_DASH_PHASE, 3d));
+        assertTrue(f.hasAttribute(STROKE_DASH_PHASE));
+        edit.undo();
+        assertFalse(f.hasAttribute(STROKE_DASH_PHASE));
+    }
+
+    @Test
+    public void testUndoRestoresChildrenOfGroup() {
+        GroupFigure group = new GroupFigure();
+        RectangleFigure a = new RectangleFigure(0, 0, 10, 10);
+        RectangleFigure b = new RectangleFigure(20, 0, 10, 10);
+        a.set(STROKE_COLOR, Color.RED);
+        b.set(STROKE_COLOR, Color.GREEN);
+        group.add(a);
+        group.add(b);
+        ArrayList<GroupFigure> figures = new ArrayList<>();
+        figures.add(group);
+        AttributesChangeEdit edit = change(figures, strokeColor(Color.BLUE));
+        assertEquals(a.get(STROKE_COLOR), Color.BLUE);
+        assertEquals(b.get(STROKE_COLOR), Color.BLUE);
+        edit.undo();
+        assertEquals(a.get(STROKE_COLOR), Color.RED);
+        assertEquals(b.get(STROKE_COLOR), Color.GREEN);
+    }
+
+    @Test
+    public void testEstimatedSizeIsSmallerThanFullRestoreData() {
+        ArrayList<RectangleFigure> figures = new ArrayList<>();
+        long fullSize = 0;
+        for (int i = 0; i < 1000; i++) {
+            RectangleFigure f = new RectangleFigure(i, i, 10, 10);
+            // Figures created by tools usually have about a dozen attributes
+            f.set(FILL_COLOR, Color.WHITE);
+            f.set(STROKE_COLOR, Color.BLACK);
+            f.set(STROKE_WIDTH, 1d);
+            f.set(STROKE_MITER_LIMIT, 3d);
+            f.set(STROKE_DASH_PHASE, 0d);
+            f.set(TEXT_COLOR, Color.BLACK);
+            f.set(FONT_SIZE, 12d);
+            f.set(FONT_BOLD, false);
+            f.set(FONT_ITALIC, false);
+            f.set(FONT_UNDERLINE, false);
+            fullSize += AttributesChangeEdit.estimateRestoreDataSize(f.getAttributesRestoreData());
+            figures.add(f);
+        }
+        AttributesChangeEdit edit = change(figures, strokeColor(Color.BLUE));
+        assertTrue(edit.getEstimatedSize() > 0);
+        assertTrue(edit.getEstimatedSize() * 4 < fullSize,
+                edit.getEstimatedSize() + " vs " + fullSize);
+    }
+
+    @Test
+    public void testUndoRedoManagerMemoryLimit() {
+        UndoRedoManager manager = new UndoRedoManager();
+        ArrayList<RectangleFigure> figures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            figures.add(new RectangleFigure(i, i, 10, 10));
+        }
+        AttributesChangeEdit first = change(figures, strokeColor(Color.RED));
+        long editSize = first.getEstimatedSize();
+        manager.setMemoryLimit(editSize * 3);
+        manager.addEdit(first);
+        manager.addEdit(change(figures, strokeColor(Color.GREEN)));
+        manager.addEdit(change(figures, strokeColor(Color.BLUE)));
+        assertEquals(manager.getEstimatedSize(), editSize * 3);
+        // The fourth edit evicts the first edit
+        manager.addEdit(change(figures, strokeColor(Color.BLACK)));
+        assertEquals(manager.getEstimatedSize(), editSize * 3);
+        // The most recent edit is kept, even if it exceeds the limit
+        manager.setMemoryLimit(1);
+        assertEquals(manager.getEstimatedSize(), editSize);
+        manager.undo();
+        assertEquals(figures.get(0).get(STROKE_COLOR), Color.BLUE);
+        assertFalse(manager.canUndo());
+    }
+
+    @Test
+    public void testUndoRedoManagerMemoryLimitKeepsRedoEdits() {
+        UndoRedoManager manager = new UndoRedoManager();
+        ArrayList<RectangleFigure> figures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            figures.add(new RectangleFigure(i, i, 10, 10));
+        }
+        AttributesChangeEdit first = change(figures, strokeColor(Color.RED));
+        long editSize = first.getEstimatedSize();
+        manager.addEdit(first);
+        manager.addEdit(change(figures, strokeColor(Color.GREEN)));
+        manager.addEdit(change(figures, strokeColor(Color.BLUE)));
+        manager.addEdit(change(figures, strokeColor(Color.BLACK)));
+        manager.undo();
+        manager.undo();
+        assertEquals(figures.get(0).get(STROKE_COLOR), Color.GREEN);
+        // Only the edits before the current position are discarded
+        manager.setMemoryLimit(1);
+        assertEquals(manager.getEstimatedSize(), editSize * 2);
+        assertFalse(manager.canUndo());
+        manager.redo();
+        assertEquals(figures.get(0).get(STROKE_COLOR), Color.BLUE);
+        manager.redo();
+        assertEquals(figures.get(0).get(STROKE_COLOR), Color.BLACK);
+        assertFalse(manager.canRedo());
+        manager.undo();
+        assertEquals(figures.get(0).get(STROKE_COLOR), Color.BLUE);
+    }
+
+    @Test
+    public void testUndoRedoManagerDoesNotTrimCompositeEditInProgress() {
+        UndoRedoManager manager = new UndoRedoManager();
+        ArrayList<RectangleFigure> figures = new ArrayList<>();
+        figures.add(new RectangleFigure(0, 0, 10, 10));
+        manager.addEdit(change(figures, strokeColor(Color.RED)));
+        CompositeEdit composite = new CompositeEdit("composite");
+        manager.addEdit(composite);
+        manager.setMemoryLimit(1);
+        manager.addEdit(change(figures, strokeColor(Color.GREEN)));
+        manager.addEdit(change(figures, strokeColor(Color.BLUE)));
+        assertTrue(manager.getEstimatedSize() > composite.getEstimatedSize());
+        // Ending the composite edit evicts the older edit
+        manager.addEdit(composite);
+        assertEquals(manager.getEstimatedSize(), composite.getEstimatedSize());
+        manager.undo();
+        assertEquals(figures.get(0).get(STROKE_COLOR), Color.RED);
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * @(#)DrawingUndoStoreNGTest.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.event;
+
+import java.awt.Color;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotUndoException;
+import org.jhotdraw.draw.AttributeKey;
+import static org.jhotdraw.draw.AttributeKeys.*;
+import org.jhotdraw.draw.figure.BezierFigure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import org.jhotdraw.geom.BezierPath;
+import org.jhotdraw.undo.CompositeEdit;
+import org.jhotdraw.undo.UndoRedoManager;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+public class DrawingUndoStoreNGTest {
+
+    public DrawingUndoStoreNGTest() {
+    }
+
+    private static AttributesChangeEdit changeStrokeColor(RectangleFigure f, Color c) {
+        ArrayList<RectangleFigure> figures = new ArrayList<>();
+        figures.add(f);
+        AttributesChangeEdit edit = new AttributesChangeEdit("color", figures,
+                Collections.<AttributeKey<?>, Object>singletonMap(STROKE_COLOR, c));
+        f.willChange();
+        f.set(STROKE_COLOR, c);
+        f.changed();
+        return edit;
+    }
+
+    private static TransformEdit translate(RectangleFigure f, double dx) {
+        AffineTransform tx = AffineTransform.getTranslateInstance(dx, 0);
+        f.willChange();
+        f.transform(tx);
+        f.changed();
+        return new TransformEdit(f, tx);
+    }
+
+    private static BezierNodeEdit moveNode(BezierFigure f, int index, double x) {
+        BezierPath.Node oldValue = f.getNode(index);
+        BezierPath.Node newValue = f.getNode(index);
+        newValue.moveTo(x, newValue.y[0]);
+        f.willChange();
+        f.setNode(index, newValue);
+        f.changed();
+        return new BezierNodeEdit(f, index, oldValue, newValue);
+    }
+
+    private static String state(RectangleFigure r, BezierFigure b) {
+        return r.get(STROKE_COLOR) + " " + r.getBounds() + " " + b.getNode(0) + " " + b.getNode(1);
+    }
+
+    @Test
+    public void testUndoRedoThroughSpilledEdits() throws Exception {
+        RectangleFigure r = new RectangleFigure(0, 0, 10, 10);
+        r.set(STROKE_COLOR, Color.BLACK);
+        BezierFigure b = new BezierFigure();
+        b.addNode(new BezierPath.Node(0, 0));
+        b.addNode(new BezierPath.Node(10, 10));
+        UndoRedoManager manager = new UndoRedoManager();
+        DrawingUndoStore store = new DrawingUndoStore();
+        store.setLiveEditCount(4);
+        manager.setUndoStore(store);
+
+        ArrayList<String> states = new ArrayList<>();
+        states.add(state(r, b));
+        for (int i = 0; i < 60; i++) {
+            switch (i % 4) {
+                case 0:
+                    manager.addEdit(changeStrokeColor(r, new Color(i * 4, 0, 0)));
+                    break;
+                case 1:
+                    manager.addEdit(translate(r, i));
+                    break;
+                case 2:
+                    manager.addEdit(moveNode(b, (i / 4) % 2, i));
+                    break;
+                default:
+                    CompositeFigureEdit composite = new CompositeFigureEdit(r);
+                    manager.addEdit(composite);
+                    manager.addEdit(changeStrokeColor(r, new Color(0, i * 4, 0)));
+                    manager.addEdit(translate(r, -i));
+                    manager.addEdit(composite);
+                    break;
+            }
+            states.add(state(r, b));
+        }
+        assertEquals(manager.getSpilledEditCount(), 56);
+        assertTrue(store.getFileLength() > 0);
+        assertTrue(manager.getUndoPresentationName().length() > 0);
+
+        for (int i = states.size() - 2; i >= 0; i--) {
+            assertTrue(manager.canUndo());
+            manager.undo();
+            assertEquals(state(r, b), states.get(i), "undo to " + i);
+        }
+        assertFalse(manager.canUndo());
+        assertEquals(manager.getSpilledEditCount(), 56);
+        for (int i = 1; i < states.size(); i++) {
+            assertTrue(manager.canRedo());
+            manager.redo();
+            assertEquals(state(r, b), states.get(i), "redo to " + i);
+        }
+        assertFalse(manager.canRedo());
+
+        File file = store.getFile();
+        manager.discardAllEdits();
+        assertEquals(store.getFileLength(), 0L);
+        store.close();
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testUnknownEditsStayLive() throws Exception {
+        final int[] count = new int[1];
+        UndoRedoManager manager = new UndoRedoManager();
+        DrawingUndoStore store = new DrawingUndoStore();
+        store.setLiveEditCount(1);
+        manager.setUndoStore(store);
+        RectangleFigure r = new RectangleFigure(0, 0, 10, 10);
+        CompositeEdit composite = new CompositeEdit("composite");
+        manager.addEdit(composite);
+        manager.addEdit(new AbstractUndoableEdit() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void undo() {
+                super.undo();
+                count[0]--;
+            }
+        });
+        manager.addEdit(composite);
+        manager.addEdit(translate(r, 5));
+        manager.addEdit(translate(r, 5));
+        assertEquals(manager.getSpilledEditCount(), 1);
+        manager.undo();
+        manager.undo();
+        manager.undo();
+        assertEquals(count[0], -1);
+        assertEquals(r.getBounds().x, 0d);
+        store.close();
+    }
+
+    @Test
+    public void testFiguresAreNotCopied() throws Exception {
+        UndoRedoManager manager = new UndoRedoManager();
+        DrawingUndoStore store = new DrawingUndoStore();
+        store.setLiveEditCount(1);
+        manager.setUndoStore(store);
+        RectangleFigure r = new RectangleFigure(0, 0, 10, 10);
+        for (int i = 0; i < 10; i++) {
+            manager.addEdit(translate(r, 1));
+        }
+        assertEquals(manager.getSpilledEditCount(), 9);
+        long length = store.getFileLength();
+        // The figure is only referenced, so each edit needs about the same space
+        manager.addEdit(translate(r, 1));
+        assertTrue(store.getFileLength() - length < length / 9 * 2);
+        while (manager.canUndo()) {
+            manager.undo();
+        }
+        assertEquals(r.getBounds().getMinX(), 0d);
+        assertEquals(r.getStartPoint(), new Point2D.Double(0, 0));
+        store.close();
+    }
+
+    @Test
+    public void testEditsAreWrittenOncePerState() throws Exception {
+        UndoRedoManager manager = new UndoRedoManager();
+        DrawingUndoStore store = new DrawingUndoStore();
+        store.setLiveEditCount(2);
+        manager.setUndoStore(store);
+        RectangleFigure r = new RectangleFigure(0, 0, 10, 10);
+        for (int i = 0; i < 20; i++) {
+            manager.addEdit(translate(r, 1));
+        }
+        long length = store.getFileLength();
+        while (manager.canUndo()) {
+            manager.undo();
+        }
+        // The edits are written once more in the undone state
+        long undoneLength = store.getFileLength();
+        assertTrue(undoneLength > length);
+        for (int pass = 0; pass < 3; pass++) {
+            while (manager.canRedo()) {
+                manager.redo();
+            }
+            while (manager.canUndo()) {
+                manager.undo();
+            }
+            assertEquals(store.getFileLength(), undoneLength);
+        }
+        assertEquals(r.getBounds().getMinX(), 0d);
+        store.close();
+    }
+
+    @Test
+    public void testTrimmedEditsAreReleased() throws Exception {
+        UndoRedoManager manager = new UndoRedoManager();
+        manager.setMemoryLimit(4096);
+        DrawingUndoStore store = new DrawingUndoStore();
+        store.setLiveEditCount(1);
+        manager.setUndoStore(store);
+        long maxLength = 0;
+        for (int i = 0; i < 2000; i++) {
+            manager.addEdit(translate(new RectangleFigure(0, 0, 10, 10), 1));
+            maxLength = Math.max(maxLength, store.getFileLength());
+        }
+        // Only the figures of the remaining edits are referenced
+        assertTrue(store.getLiveObjectCount() <= manager.getSpilledEditCount());
+        // The file has been compacted
+        assertTrue(maxLength < 256 * 1024, "maxLength=" + maxLength);
+        store.close();
+    }
+
+    @Test
+    public void testUnreadableEditCannotBeUndone() throws Exception {
+        UndoRedoManager manager = new UndoRedoManager();
+        DrawingUndoStore store = new DrawingUndoStore();
+        store.setLiveEditCount(1);
+        manager.setUndoStore(store);
+        RectangleFigure r = new RectangleFigure(0, 0, 10, 10);
+        for (int i = 0; i < 3; i++) {
+            manager.addEdit(translate(r, 1));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(store.getFile(), "rw")) {
+            file.write(new byte[(int) store.getFileLength()]);
+        }
+        manager.undo();
+        try {
+            manager.undo();
+            fail("the edit is unreadable");
+        } catch (CannotUndoException e) {
+            assertNotNull(e.getCause());
+        }
+        store.close();
+    }
+
+    @Test
+    public void testLiveEditsFollowPosition() throws Exception {
+        UndoRedoManager manager = new UndoRedoManager();
+        DrawingUndoStore store = new DrawingUndoStore();
+        store.setLiveEditCount(2);
+        manager.setUndoStore(store);
+        RectangleFigure r = new RectangleFigure(0, 0, 10, 10);
+        for (int i = 0; i < 20; i++) {
+            manager.addEdit(translate(r, 1));
+        }
+        assertEquals(manager.getSpilledEditCount(), 18);
+        for (int i = 0; i < 10; i++) {
+            manager.undo();
+        }
+        // The undone edits have been read back, and all but the two edits
+        // after the position have been spilled again
+        assertEquals(manager.getSpilledEditCount(), 18);
+        TransformEdit last = translate(r, 1);
+        manager.addEdit(last);
+        assertEquals(manager.getSpilledEditCount(), 10);
+        manager.setMemoryLimit(UndoRedoManager.getEstimatedSize(last) + 500);
+        int spilledCount = manager.getSpilledEditCount();
+        assertTrue(spilledCount < 10);
+        while (manager.canUndo()) {
+            manager.undo();
+        }
+        // The two oldest edits are live instead of the most recent one
+        assertEquals(manager.getSpilledEditCount(), spilledCount - 1);
+        store.close();
+    }
+
+    @Test
+    public void testEstimatedSizeOfSpilledEdits() throws Exception {
+        UndoRedoManager liveManager = new UndoRedoManager();
+        UndoRedoManager manager = new UndoRedoManager();
+        DrawingUndoStore store = new DrawingUndoStore();
+        store.setLiveEditCount(2);
+        manager.setUndoStore(store);
+        RectangleFigure r = new RectangleFigure(0, 0, 10, 10);
+        for (int i = 0; i < 20; i++) {
+            liveManager.addEdit(translate(r, 0));
+            manager.addEdit(translate(r, 0));
+        }
+        assertTrue(manager.getEstimatedSize() < liveManager.getEstimatedSize());
+        // Edits which are read back and spilled again have the same size
+        long size = 0;
+        for (int pass = 0; pass < 3; pass++) {
+            while (manager.canUndo()) {
+                manager.undo();
+            }
+            while (manager.canRedo()) {
+                manager.redo();
+            }
+            if (pass > 0) {
+                assertEquals(manager.getEstimatedSize(), size);
+            }
+            size = manager.getEstimatedSize();
+        }
+        manager.discardAllEdits();
+        assertEquals(manager.getEstimatedSize(), 0L);
+        store.close();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * @(#)TextAreaFigureNGTest.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.figure;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import static org.jhotdraw.draw.AttributeKeys.*;
+import org.jhotdraw.draw.text.TextAreaLayout;
+import org.jhotdraw.geom.Dimension2DDouble;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+public class TextAreaFigureNGTest {
+
+    public TextAreaFigureNGTest() {
+    }
+
+    private static TextAreaFigure createFigure(String text, double width, double height) {
+        TextAreaFigure f = new TextAreaFigure(text);
+        f.setBounds(new Point2D.Double(10, 10), new Point2D.Double(10 + width, 10 + height));
+        return f;
+    }
+
+    @Test
+    public void testLayoutIsCached() {
+        TextAreaFigure f = createFigure("The quick brown fox\njumps over\tthe lazy dog.", 200, 100);
+        TextAreaLayout layout = f.getTextAreaLayout();
+        BufferedImage img = new BufferedImage(50, 50, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        f.draw(g);
+        g.dispose();
+        f.invalidate();
+        f.isTextOverflow();
+        assertSame(f.getTextAreaLayout(), layout);
+    }
+
+    @Test
+    public void testLayoutChangesWithTextAndBounds() {
+        TextAreaFigure f = createFigure("The quick brown fox", 200, 100);
+        TextAreaLayout layout = f.getTextAreaLayout();
+        f.willChange();
+        f.setText("jumps over the lazy dog");
+        f.changed();
+        assertNotSame(f.getTextAreaLayout(), layout);
+        layout = f.getTextAreaLayout();
+        f.willChange();
+        f.setBounds(new Point2D.Double(0, 0), new Point2D.Double(20, 100));
+        f.changed();
+        assertNotSame(f.getTextAreaLayout(), layout);
+        layout = f.getTextAreaLayout();
+        f.willChange();
+        f.set(FONT_SIZE, 24d);
+        f.changed();
+        assertNotSame(f.getTextAreaLayout(), layout);
+    }
+
+    @Test
+    public void testTextOverflow() {
+        TextAreaFigure f = createFigure("a\nb\nc\nd\ne\nf\ng\nh", 100, 20);
+        assertTrue(f.isTextOverflow());
+        assertTrue(f.getTextAreaLayout().getLineCount() == 8);
+        f.willChange();
+        f.setBounds(new Point2D.Double(10, 10), new Point2D.Double(110, 400));
+        f.changed();
+        assertFalse(f.isTextOverflow());
+    }
+
+    @Test
+    public void testPreferredTextSizeWrapsLines() {
+        TextAreaFigure f = createFigure("The quick brown fox jumps over the lazy dog.", 200, 100);
+        Dimension2DDouble wide = f.getPreferredTextSize(Double.MAX_VALUE);
+        Dimension2DDouble narrow = f.getPreferredTextSize(60);
+        assertTrue(narrow.width < wide.width);
+        assertTrue(narrow.height > wide.height);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * @(#)InputFormatsNGTest.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.io;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.imageio.ImageIO;
+import org.jhotdraw.draw.DefaultDrawing;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.figure.ImageFigure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import org.jhotdraw.draw.figure.TextFigure;
+import org.jhotdraw.xml.DefaultDOMFactory;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests {@link InputFormats} and the {@link InputFormat#probe} method of the
+ * input formats.
+ */
+public class InputFormatsNGTest {
+
+    public InputFormatsNGTest() {
+    }
+
+    /**
+     * Counts the invocations of read.
+     */
+    private static class CountingInputFormat extends DOMStorableInputOutputFormat {
+
+        private int count;
+
+        CountingInputFormat(DefaultDOMFactory factory) {
+            super(factory);
+        }
+
+        @Override
+        public void read(File file, Drawing drawing, boolean replace) throws IOException {
+            count++;
+            super.read(file, drawing, replace);
+        }
+    }
+
+    private static DefaultDOMFactory createFactory() {
+        DefaultDOMFactory factory = new DefaultDOMFactory();
+        factory.addStorableClass("Drawing", DefaultDrawing.class);
+        factory.addStorableClass("Rect", RectangleFigure.class);
+        return factory;
+    }
+
+    private static Drawing createDrawing() {
+        Drawing drawing = new DefaultDrawing();
+        drawing.add(new RectangleFigure(10, 20, 30, 40));
+        return drawing;
+    }
+
+    private static byte[] header(byte[] data) throws IOException {
+        return InputFormats.readHeader(new ByteArrayInputStream(data));
+    }
+
+    @Test
+    public void testXMLRootElementName() {
+        assertEquals(InputFormats.getXMLRootElementName(
+                "<?xml version=\"1.0\"?>\n<!-- <a> -->\n<svg:svg xmlns:svg=\"x\">".getBytes(StandardCharsets.UTF_8)), "svg:svg");
+        assertEquals(InputFormats.getXMLRootElementName(
+                "<!DOCTYPE a [<!ENTITY e \"<b>\">]><a/>".getBytes(StandardCharsets.UTF_8)), "a");
+        assertEquals(InputFormats.getXMLRootElementName(
+                "\uFEFF<Drawing>".getBytes(StandardCharsets.UTF_8)), "Drawing");
+        assertEquals(InputFormats.getXMLRootElementName(
+                "<Drawing>".getBytes(StandardCharsets.UTF_16)), "Drawing");
+        assertEquals(InputFormats.getXMLRootElementName(
+                "<Drawing>".getBytes(StandardCharsets.UTF_16LE)), "Drawing");
+        assertNull(InputFormats.getXMLRootElementName("Hello <World>".getBytes(StandardCharsets.UTF_8)));
+        assertNull(InputFormats.getXMLRootElementName("<?xml version=\"1.0\"?><Draw".getBytes(StandardCharsets.UTF_8)));
+        assertNull(InputFormats.getXMLRootElementName(new byte[0]));
+    }
+
+    @Test
+    public void testXMLPrologTruncated() throws IOException {
+        StringBuilder buf = new StringBuilder("<?xml version=\"1.0\"?>\n<!--");
+        while (buf.length() < InputFormat.PROBE_LENGTH) {
+            buf.append(" comment");
+        }
+        buf.append(" -->\n<Drawing></Drawing>");
+        byte[] data = buf.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] truncated = header(data);
+        assertNull(InputFormats.getXMLRootElementName(truncated));
+        assertTrue(InputFormats.isXMLPrologTruncated(truncated));
+        assertTrue(new DOMStorableInputOutputFormat(createFactory()).probe(truncated));
+        assertFalse(new SerializationInputOutputFormat().probe(truncated));
+
+        // The complete document is not truncated
+        assertEquals(InputFormats.getXMLRootElementName(data), "Drawing");
+        assertFalse(InputFormats.isXMLPrologTruncated(data));
+
+        // A short document without root element is invalid
+        byte[] invalid = "<?xml version=\"1.0\"?><Draw".getBytes(StandardCharsets.UTF_8);
+        assertFalse(InputFormats.isXMLPrologTruncated(invalid));
+        assertTrue(InputFormats.isXMLPrologTruncated(invalid, false));
+        assertFalse(InputFormats.isXMLPrologTruncated("Hello <World>".getBytes(StandardCharsets.UTF_8), false));
+        assertFalse(InputFormats.isXMLPrologTruncated(new byte[0], false));
+    }
+
+    @Test
+    public void testReadHeaderResetsStream() throws IOException {
+        byte[] data = new byte[InputFormat.PROBE_LENGTH * 2];
+        Arrays.fill(data, (byte) 'x');
+        ByteArrayInputStream in = new ByteArrayInputStream(data);
+        assertEquals(InputFormats.readHeader(in).length, InputFormat.PROBE_LENGTH);
+        assertEquals(in.available(), data.length);
+        assertEquals(header(new byte[]{1, 2, 3}).length, 3);
+    }
+
+    @Test
+    public void testProbeRecognizesFormats() throws IOException {
+        DOMStorableInputOutputFormat domFormat = new DOMStorableInputOutputFormat(createFactory());
+        SerializationInputOutputFormat serializationFormat = new SerializationInputOutputFormat();
+        ImageInputFormat imageFormat = new ImageInputFormat(new ImageFigure());
+        ImageInputFormat jpegFormat = new ImageInputFormat(new ImageFigure(), "JPEG", "JPEG", "jpg", "image/jpeg");
+        TextInputFormat textFormat = new TextInputFormat(new TextFigure());
+        List<InputFormat> formats = new ArrayList<>();
+        formats.add(domFormat);
+        formats.add(serializationFormat);
+        formats.add(imageFormat);
+        formats.add(jpegFormat);
+        formats.add(textFormat);
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        domFormat.write(buf, createDrawing());
+        byte[] dom = header(buf.toByteArray());
+        assertTrue(textFormat.probe(dom));
+        // The text format is a fallback, it is not used for a drawing
+        assertEquals(InputFormats.findInputFormat(formats, dom, null), domFormat);
+
+        buf.reset();
+        serializationFormat.write(buf, createDrawing());
+        assertEquals(InputFormats.findInputFormat(formats, header(buf.toByteArray()), null), serializationFormat);
+
+        buf.reset();
+        ImageIO.write(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), "png", buf);
+        assertEquals(InputFormats.findInputFormat(formats, header(buf.toByteArray()), null), imageFormat);
+
+        byte[] text = "Hello World".getBytes(StandardCharsets.UTF_8);
+        assertEquals(InputFormats.findInputFormat(formats, text, null), textFormat);
+        assertNull(InputFormats.findInputFormat(formats, new byte[]{1, 0, 2}, null));
+
+        // The preferred format is used, if it accepts the header
+        assertEquals(InputFormats.findInputFormat(formats, text, domFormat), textFormat);
+        assertEquals(InputFormats.findInputFormat(formats, dom, textFormat), textFormat);
+    }
+
+    @Test
+    public void testReadParsesOnce() throws IOException {
+        DefaultDOMFactory factory = createFactory();
+        CountingInputFormat domFormat = new CountingInputFormat(factory);
+        File file = File.createTempFile("InputFormatsNGTest", ".xml");
+        try {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                domFormat.write(out, createDrawing());
+            }
+            CountingInputFormat otherFormat = new CountingInputFormat(factory);
+            List<InputFormat> formats = new ArrayList<>();
+            formats.add(new SerializationInputOutputFormat());
+            formats.add(new ImageInputFormat(new ImageFigure()));
+            formats.add(domFormat);
+            formats.add(otherFormat);
+            Drawing drawing = new DefaultDrawing();
+            formats.add(new TextInputFormat(new TextFigure()));
+            InputFormat format = InputFormats.findInputFormat(formats, InputFormats.readHeader(file.toURI()), null);
+            assertEquals(format, domFormat);
+            format.read(file.toURI(), drawing, true);
+            assertEquals(domFormat.count, 1);
+            assertEquals(otherFormat.count, 0);
+            assertEquals(drawing.getChildCount(), 1);
+            assertTrue(domFormat.canRead(file.toURI()));
+            assertFalse(formats.get(0).canRead(file.toURI()));
+        } finally {
+            file.delete();
+        }
+    }
+}
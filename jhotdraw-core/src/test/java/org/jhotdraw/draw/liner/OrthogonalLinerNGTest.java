@@ -0,0 +1,230 @@
+/*
+ * @(#)OrthogonalLinerNGTest.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.liner;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.QuadTreeDrawing;
+import org.jhotdraw.draw.connector.ChopRectangleConnector;
+import org.jhotdraw.draw.figure.ConnectionFigure;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.figure.LineConnectionFigure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import org.jhotdraw.geom.BezierPath;
+import org.jhotdraw.xml.JavaPrimitivesDOMFactory;
+import org.jhotdraw.xml.JavaxDOMInput;
+import org.jhotdraw.xml.JavaxDOMOutput;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests {@link OrthogonalLiner}.
+ */
+public class OrthogonalLinerNGTest {
+
+    public OrthogonalLinerNGTest() {
+    }
+
+    /**
+     * Counts the invocations of lineout.
+     */
+    private static class CountingLiner extends OrthogonalLiner {
+
+        private int count;
+
+        @Override
+        public void lineout(ConnectionFigure figure) {
+            count++;
+            super.lineout(figure);
+        }
+
+        @Override
+        public CountingLiner clone() {
+            return this;
+        }
+    }
+
+    private static LineConnectionFigure connect(Drawing drawing, Figure a, Figure b, Liner liner) {
+        LineConnectionFigure c = new LineConnectionFigure();
+        c.setLiner(liner);
+        c.setStartConnector(new ChopRectangleConnector(a));
+        c.setEndConnector(new ChopRectangleConnector(b));
+        drawing.add(c);
+        return c;
+    }
+
+    private static void move(Drawing drawing, Figure f, double dx, double dy) {
+        drawing.beginUpdate();
+        try {
+            f.willChange();
+            f.transform(AffineTransform.getTranslateInstance(dx, dy));
+            f.changed();
+        } finally {
+            drawing.endUpdate();
+        }
+    }
+
+    /**
+     * Returns true if a segment of the connection passes through the
+     * interior of the figure.
+     */
+    private static boolean crosses(LineConnectionFigure c, Figure f) {
+        Rectangle2D.Double r = f.getBounds();
+        r.x += 1;
+        r.y += 1;
+        r.width -= 2;
+        r.height -= 2;
+        BezierPath path = c.getBezierPath();
+        for (int i = 1; i < path.size(); i++) {
+            if (new Line2D.Double(path.get(i - 1).x[0], path.get(i - 1).y[0],
+                    path.get(i).x[0], path.get(i).y[0]).intersects(r)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void assertOrthogonal(LineConnectionFigure c) {
+        BezierPath path = c.getBezierPath();
+        for (int i = 1; i < path.size(); i++) {
+            BezierPath.Node p = path.get(i - 1);
+            BezierPath.Node q = path.get(i);
+            assertTrue(p.x[0] == q.x[0] || p.y[0] == q.y[0], "segment " + i + " of " + path);
+        }
+    }
+
+    @Test
+    public void testRoutesAroundObstacle() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        RectangleFigure a = new RectangleFigure(0, 0, 40, 40);
+        RectangleFigure b = new RectangleFigure(300, 0, 40, 40);
+        RectangleFigure obstacle = new RectangleFigure(140, -40, 40, 120);
+        drawing.add(a);
+        drawing.add(b);
+        drawing.add(obstacle);
+        LineConnectionFigure c = connect(drawing, a, b, new OrthogonalLiner());
+        assertOrthogonal(c);
+        assertFalse(crosses(c, obstacle), c.getBezierPath().toString());
+        assertFalse(crosses(c, a));
+        assertFalse(crosses(c, b));
+        assertEquals(c.getStartPoint().x, 40d, 1d);
+        assertEquals(c.getEndPoint().x, 300d, 1d);
+
+        // Without obstacle, the connection is a straight line
+        drawing.remove(obstacle);
+        c.willChange();
+        c.updateConnection();
+        c.changed();
+        assertEquals(c.getNodeCount(), 2, c.getBezierPath().toString());
+    }
+
+    @Test
+    public void testReroutesOnlyAffectedConnections() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        RectangleFigure a = new RectangleFigure(0, 0, 40, 40);
+        RectangleFigure b = new RectangleFigure(300, 0, 40, 40);
+        RectangleFigure c = new RectangleFigure(0, 1000, 40, 40);
+        RectangleFigure d = new RectangleFigure(300, 1000, 40, 40);
+        RectangleFigure obstacle = new RectangleFigure(140, 500, 40, 120);
+        for (Figure f : new Figure[]{a, b, c, d, obstacle}) {
+            drawing.add(f);
+        }
+        CountingLiner abLiner = new CountingLiner();
+        CountingLiner cdLiner = new CountingLiner();
+        LineConnectionFigure ab = connect(drawing, a, b, abLiner);
+        LineConnectionFigure cd = connect(drawing, c, d, cdLiner);
+        assertEquals(ab.getNodeCount(), 2);
+        abLiner.count = 0;
+        cdLiner.count = 0;
+
+        // Moving the obstacle onto the connection routes it around the obstacle
+        move(drawing, obstacle, 0, -540);
+        assertTrue(abLiner.count > 0);
+        assertEquals(cdLiner.count, 0);
+        assertFalse(crosses(ab, obstacle), ab.getBezierPath().toString());
+        assertOrthogonal(ab);
+
+        // Moving it away again straightens the connection
+        abLiner.count = 0;
+        move(drawing, obstacle, 0, 540);
+        assertTrue(abLiner.count > 0);
+        assertEquals(cdLiner.count, 0);
+        assertEquals(ab.getNodeCount(), 2);
+    }
+
+    @Test
+    public void testReroutingWithThousandsOfEdges() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        Random r = new Random(1);
+        int columns = 40;
+        int rows = 25;
+        List<Figure> nodes = new ArrayList<>();
+        for (int j = 0; j < rows; j++) {
+            for (int i = 0; i < columns; i++) {
+                RectangleFigure f = new RectangleFigure(i * 120 + r.nextInt(30), j * 120 + r.nextInt(30), 40, 30);
+                nodes.add(f);
+                drawing.add(f);
+            }
+        }
+        CountingLiner liner = new CountingLiner();
+        int edgeCount = 3000;
+        for (int k = 0; k < edgeCount; k++) {
+            int i = r.nextInt(columns);
+            int j = r.nextInt(rows);
+            int i2 = Math.max(0, Math.min(columns - 1, i + r.nextInt(7) - 3));
+            int j2 = Math.max(0, Math.min(rows - 1, j + r.nextInt(7) - 3));
+            if (i == i2 && j == j2) {
+                i2 = (i + 1) % columns;
+            }
+            connect(drawing, nodes.get(j * columns + i), nodes.get(j2 * columns + i2), liner);
+        }
+
+        // Dragging a node reroutes only its connections and those near it
+        Figure node = nodes.get(12 * columns + 20);
+        liner.count = 0;
+        int moves = 20;
+        for (int k = 0; k < moves; k++) {
+            move(drawing, node, k % 2 == 0 ? 7 : -7, 3);
+        }
+        int reroutedPerMove = liner.count / moves;
+        assertTrue(reroutedPerMove > 0);
+        assertTrue(reroutedPerMove < edgeCount / 10, "rerouted " + reroutedPerMove);
+    }
+
+    @Test
+    public void testReadWrite() throws IOException {
+        OrthogonalLiner liner = new OrthogonalLiner();
+        liner.setMargin(6);
+        liner.setBendCost(50);
+        liner.setMaxObstacles(25);
+        JavaxDOMOutput out = new JavaxDOMOutput(new JavaPrimitivesDOMFactory());
+        out.openElement("liner");
+        liner.write(out);
+        out.closeElement();
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        out.save(buf);
+
+        JavaxDOMInput in = new JavaxDOMInput(new JavaPrimitivesDOMFactory(),
+                new ByteArrayInputStream(buf.toByteArray()));
+        in.openElement("liner");
+        OrthogonalLiner read = new OrthogonalLiner();
+        read.read(in);
+        in.closeElement();
+        assertEquals(read.getMargin(), 6d);
+        assertEquals(read.getBendCost(), 50d);
+        assertEquals(read.getMaxObstacles(), 25);
+    }
+}
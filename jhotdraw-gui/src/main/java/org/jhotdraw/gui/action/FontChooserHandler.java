@@ -11,13 +11,13 @@ import java.awt.Font;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
 import javax.swing.JPopupMenu;
-import javax.swing.undo.AbstractUndoableEdit;
 import javax.swing.undo.UndoableEdit;
 import org.jhotdraw.draw.AttributeKey;
 import org.jhotdraw.draw.AttributeKeys;
 import org.jhotdraw.draw.DrawingEditor;
+import org.jhotdraw.draw.event.AttributesChangeEdit;
 import org.jhotdraw.draw.figure.Figure;
 import org.jhotdraw.draw.figure.TextHolderFigure;
 import org.jhotdraw.draw.action.AbstractSelectedAction;
@@ -63,55 +63,15 @@ public class FontChooserHandler extends AbstractSelectedAction
 
     protected void applySelectedFontToFigures() {
         final ArrayList<Figure> selectedFigures = new ArrayList<>(getView().getSelectedFigures());
-        final ArrayList<Object> restoreData = new ArrayList<>(selectedFigures.size());
+        Font selectedFont = fontChooser.getSelectedFont();
+        UndoableEdit edit = new AttributesChangeEdit(AttributeKeys.FONT_FACE.getPresentationName(), selectedFigures,
+                Collections.<AttributeKey<?>, Object>singletonMap(key, selectedFont));
         for (Figure figure : selectedFigures) {
-            restoreData.add(figure.getAttributesRestoreData());
             figure.willChange();
-            figure.set(key, fontChooser.getSelectedFont());
+            figure.set(key, selectedFont);
             figure.changed();
         }
-        getEditor().setDefaultAttribute(key, fontChooser.getSelectedFont());
-        final Font undoValue = fontChooser.getSelectedFont();
-        UndoableEdit edit = new AbstractUndoableEdit() {
-            private static final long serialVersionUID = 1L;
-
-            @Override
-            public String getPresentationName() {
-                return AttributeKeys.FONT_FACE.getPresentationName();
-                /*
-            String name = (String) getValue(Actions.UNDO_PRESENTATION_NAME_KEY);
-            if (name == null) {
-            name = (String) getValue(AbstractAction.NAME);
-            }
-            if (name == null) {
-            ResourceBundleUtil labels = ResourceBundleUtil.getBundle("org.jhotdraw.draw.Labels");
-            name = labels.getString("attribute.text");
-            }
-            return name;*/
-            }
-
-            @Override
-            public void undo() {
-                super.undo();
-                Iterator<Object> iRestore = restoreData.iterator();
-                for (Figure figure : selectedFigures) {
-                    figure.willChange();
-                    figure.restoreAttributesTo(iRestore.next());
-                    figure.changed();
-                }
-            }
-
-            @Override
-            public void redo() {
-                super.redo();
-                for (Figure figure : selectedFigures) {
-                    //restoreData.add(figure.getAttributesRestoreData());
-                    figure.willChange();
-                    figure.set(key, undoValue);
-                    figure.changed();
-                }
-            }
-        };
+        getEditor().setDefaultAttribute(key, selectedFont);
         fireUndoableEditHappened(edit);
     }
 
@@ -32,6 +32,7 @@ import org.jhotdraw.draw.io.DOMStorableInputOutputFormat;
 import org.jhotdraw.draw.io.ImageInputFormat;
 import org.jhotdraw.draw.io.ImageOutputFormat;
 import org.jhotdraw.draw.io.InputFormat;
+import org.jhotdraw.draw.io.InputFormats;
 import org.jhotdraw.draw.io.OutputFormat;
 import org.jhotdraw.draw.io.TextInputFormat;
 import org.jhotdraw.draw.print.DrawingPageable;
@@ -155,20 +156,12 @@ public class DrawView extends AbstractView {
     public void read(URI f, URIChooser fc) throws IOException {
         try {
             final Drawing drawing = createDrawing();
-            boolean success = false;
-            for (InputFormat sfi : drawing.getInputFormats()) {
-                try {
-                    sfi.read(f, drawing, true);
-                    success = true;
-                    break;
-                } catch (Exception e) {
-                    // try with the next input format
-                }
-            }
-            if (!success) {
+            InputFormat format = InputFormats.findInputFormat(drawing.getInputFormats(), InputFormats.readHeader(f), null);
+            if (format == null) {
                 ResourceBundleUtil labels = ResourceBundleUtil.getBundle("org.jhotdraw.app.Labels");
                 throw new IOException(labels.getFormatted("file.open.unsupportedFileFormat.message", URIUtil.getName(f)));
             }
+            format.read(f, drawing, true);
             SwingUtilities.invokeAndWait(new Runnable() {
                 @Override
                 public void run() {
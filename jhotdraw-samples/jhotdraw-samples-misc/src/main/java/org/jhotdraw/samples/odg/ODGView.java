@@ -33,12 +33,14 @@ import org.jhotdraw.draw.GridConstrainer;
 import org.jhotdraw.draw.io.ImageInputFormat;
 import org.jhotdraw.draw.io.ImageOutputFormat;
 import org.jhotdraw.draw.io.InputFormat;
+import org.jhotdraw.draw.io.InputFormats;
 import org.jhotdraw.draw.io.OutputFormat;
 import org.jhotdraw.draw.io.TextInputFormat;
 import org.jhotdraw.draw.print.DrawingPageable;
 import org.jhotdraw.gui.JFileURIChooser;
 import org.jhotdraw.gui.PlacardScrollPaneLayout;
 import org.jhotdraw.gui.action.ButtonFactory;
+import org.jhotdraw.net.URIUtil;
 import org.jhotdraw.samples.odg.io.ODGInputFormat;
 import org.jhotdraw.samples.svg.figures.SVGImageFigure;
 import org.jhotdraw.samples.svg.figures.SVGTextFigure;
@@ -187,10 +189,12 @@ public class ODGView extends AbstractView {
             final Drawing drawing = createDrawing();
             HashMap<FileFilter, InputFormat> fileFilterInputFormatMap = (HashMap<FileFilter, InputFormat>) ((JFileURIChooser) fc).getClientProperty("ffInputFormatMap");
             InputFormat sf = fileFilterInputFormatMap.get(((JFileURIChooser) fc).getFileFilter());
-            if (sf == null) {
-                sf = drawing.getInputFormats().get(0);
+            InputFormat format = InputFormats.findInputFormat(drawing.getInputFormats(), InputFormats.readHeader(f), sf);
+            if (format == null) {
+                ResourceBundleUtil labels = ResourceBundleUtil.getBundle("org.jhotdraw.app.Labels");
+                throw new IOException(labels.getFormatted("file.open.unsupportedFileFormat.message", URIUtil.getName(f)));
             }
-            sf.read(f, drawing, true);
+            format.read(f, drawing, true);
             System.out.println("ODCView read(" + f + ") drawing.childCount=" + drawing.getChildCount());
             SwingUtilities.invokeAndWait(new Runnable() {
                 @Override
@@ -42,6 +42,10 @@ public abstract class ODGAttributedFigure extends AbstractAttributedFigure imple
         double opacity = get(OPACITY);
         opacity = Math.min(Math.max(0d, opacity), 1d);
         if (opacity != 0d) {
+            LevelOfDetail lod = LevelOfDetail.get(g);
+            if (lod != null && drawReducedDetail(g, lod)) {
+                return;
+            }
             if (opacity != 1d) {
                 Rectangle2D.Double drawingArea = getDrawingArea();
                 Rectangle2D clipBounds = g.getClipBounds();
@@ -71,6 +75,26 @@ public abstract class ODGAttributedFigure extends AbstractAttributedFigure imple
         }
     }
 
+    /**
+     * Uses the drawing area for the level of detail, because it includes the
+     * transform of the figure.
+     */
+    @Override
+    protected boolean drawReducedDetail(Graphics2D g, LevelOfDetail lod) {
+        return lod.drawReducedDetail(g, getDrawingArea(), getBoxColor());
+    }
+
+    @Override
+    protected Color getBoxColor() {
+        if (get(FILL_STYLE) != ODGConstants.FillStyle.NONE && get(FILL_COLOR) != null) {
+            return get(FILL_COLOR);
+        }
+        if (get(STROKE_STYLE) != ODGConstants.StrokeStyle.NONE && get(STROKE_COLOR) != null) {
+            return get(STROKE_COLOR);
+        }
+        return new Color(0, true);
+    }
+
     /**
      * This method is invoked before the rendered image of the figure is
      * composited.
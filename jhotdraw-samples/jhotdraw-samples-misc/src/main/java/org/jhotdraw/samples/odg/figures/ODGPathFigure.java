@@ -68,6 +68,10 @@ public class ODGPathFigure extends AbstractAttributedCompositeFigure implements
         double opacity = get(OPACITY);
         opacity = Math.min(Math.max(0d, opacity), 1d);
         if (opacity != 0d) {
+            LevelOfDetail lod = LevelOfDetail.get(g);
+            if (lod != null && lod.drawReducedDetail(g, getDrawingArea(), getBoxColor())) {
+                return;
+            }
             if (opacity != 1d) {
                 Rectangle2D.Double drawingArea = getDrawingArea();
                 Rectangle2D clipBounds = g.getClipBounds();
@@ -97,6 +101,20 @@ public class ODGPathFigure extends AbstractAttributedCompositeFigure implements
         }
     }
 
+    /**
+     * Returns the colour with which the path is drawn when it is too small
+     * on the device to show any detail.
+     */
+    private Color getBoxColor() {
+        if (get(FILL_STYLE) != ODGConstants.FillStyle.NONE && get(FILL_COLOR) != null) {
+            return get(FILL_COLOR);
+        }
+        if (get(STROKE_STYLE) != ODGConstants.StrokeStyle.NONE && get(STROKE_COLOR) != null) {
+            return get(STROKE_COLOR);
+        }
+        return new Color(0, true);
+    }
+
     @Override
     public void drawFigure(Graphics2D g) {
         AffineTransform savedTransform = null;
@@ -144,6 +162,12 @@ public class ODGPathFigure extends AbstractAttributedCompositeFigure implements
         cachedDrawingArea = null;
     }
 
+    @Override
+    protected void invalidateChild(Figure child) {
+        // The cached path depends on all children.
+        invalidate();
+    }
+
     protected Path2D.Double getPath() {
         if (cachedPath == null) {
             cachedPath = new Path2D.Double();
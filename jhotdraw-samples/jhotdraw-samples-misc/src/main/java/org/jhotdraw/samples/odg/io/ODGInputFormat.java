@@ -17,11 +17,9 @@ import java.util.*;
 import java.util.zip.*;
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import org.jhotdraw.draw.*;
 import org.jhotdraw.draw.io.InputFormat;
+import org.jhotdraw.draw.io.InputFormats;
 import org.jhotdraw.geom.BezierPath;
 import org.jhotdraw.io.StreamPosTokenizer;
 import static org.jhotdraw.samples.odg.ODGAttributeKeys.*;
@@ -33,11 +31,11 @@ import org.jhotdraw.samples.odg.figures.ODGGroupFigure;
 import org.jhotdraw.samples.odg.figures.ODGPathFigure;
 import org.jhotdraw.samples.odg.figures.ODGRectFigure;
 import org.jhotdraw.samples.odg.geom.EnhancedPath;
+import org.jhotdraw.xml.XMLPool;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 /**
  * ODGInputFormat.
@@ -103,6 +101,29 @@ public class ODGInputFormat implements InputFormat {
         }
     }
 
+    /**
+     * Accepts ZIP files which contain an open document drawing, and XML
+     * documents which declare the open document office namespace. XML
+     * documents, which have a prolog that is longer than the header, are
+     * accepted as well, because their root element is unknown.
+     * <p>
+     * The first entry of an open document ZIP file is an uncompressed file
+     * named "mimetype" with the mime type of the document. Therefore the mime
+     * type can be found in the header.
+     */
+    @Override
+    public boolean probe(byte[] header) {
+        String str = InputFormats.decodeXMLHeader(header);
+        if (InputFormats.startsWith(header, 'P', 'K', 0x03, 0x04)) {
+            return str.contains("application/vnd.oasis.opendocument.graphics")
+                    || !str.contains("mimetype") && str.contains("content.xml");
+        }
+        if (InputFormats.getXMLRootElementName(header) == null) {
+            return InputFormats.isXMLPrologTruncated(header);
+        }
+        return str.contains(OFFICE_NAMESPACE);
+    }
+
     @Override
     public boolean isDataFlavorSupported(DataFlavor flavor) {
         return flavor.getPrimaryType().equals("application")
@@ -180,16 +201,7 @@ public class ODGInputFormat implements InputFormat {
     @SuppressWarnings("unchecked")
     public void readFiguresFromDocumentContent(InputStream in, Drawing drawing, boolean replace) throws IOException {
         this.figures = new LinkedList<Figure>();
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-
-        try {
-            DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-            Document doc = dBuilder.parse(in);
-        } catch (ParserConfigurationException | SAXException ex) {
-            IOException e = new IOException(ex.getMessage());
-            e.initCause(ex);
-            throw e;
-        }
+        document = XMLPool.parse(in);
 
         if (styles == null) {
             styles = new ODGStylesReader();
@@ -10,16 +10,12 @@ package org.jhotdraw.samples.odg.io;
 import java.awt.Color;
 import java.io.*;
 import java.util.*;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import org.jhotdraw.draw.*;
+import org.jhotdraw.xml.XMLPool;
 import static org.jhotdraw.samples.odg.ODGAttributeKeys.*;
 import static org.jhotdraw.samples.odg.ODGConstants.*;
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 /**
  * ODGStylesReader reads an ODG &lt;document-styles&gt; element,
@@ -129,16 +125,7 @@ public class ODGStylesReader {
      */
     public void read(InputStream in) throws IOException {
         Element document;
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        try {
-            DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-            Document doc = dBuilder.parse(in);
-            document = doc.getDocumentElement();
-        } catch (ParserConfigurationException | SAXException ex) {
-            IOException e = new IOException(ex.getMessage());
-            e.initCause(ex);
-            throw e;
-        }
+        document = XMLPool.parse(in).getDocumentElement();
         read(document);
     }
 
@@ -32,6 +32,7 @@ import org.jhotdraw.draw.io.InputFormat;
 import org.jhotdraw.draw.io.OutputFormat;
 import org.jhotdraw.draw.print.DrawingPageable;
 import org.jhotdraw.gui.PlacardScrollPaneLayout;
+import org.jhotdraw.net.URIUtil;
 import org.jhotdraw.gui.action.ButtonFactory;
 import org.jhotdraw.undo.UndoRedoManager;
 import org.jhotdraw.util.*;
@@ -189,6 +190,10 @@ public class PertView extends AbstractView {
         try {
             final Drawing drawing = createDrawing();
             InputFormat inputFormat = drawing.getInputFormats().get(0);
+            if (!inputFormat.canRead(f)) {
+                ResourceBundleUtil labels = ResourceBundleUtil.getBundle("org.jhotdraw.app.Labels");
+                throw new IOException(labels.getFormatted("file.open.unsupportedFileFormat.message", URIUtil.getName(f)));
+            }
             inputFormat.read(f, drawing, true);
             SwingUtilities.invokeAndWait(new Runnable() {
                 @Override
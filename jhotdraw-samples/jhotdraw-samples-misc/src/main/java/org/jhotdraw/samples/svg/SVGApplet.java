@@ -25,6 +25,7 @@ import org.jhotdraw.draw.Drawing;
 import org.jhotdraw.draw.io.ImageInputFormat;
 import org.jhotdraw.draw.io.ImageOutputFormat;
 import org.jhotdraw.draw.io.InputFormat;
+import org.jhotdraw.draw.io.InputFormats;
 import org.jhotdraw.io.BoundedRangeInputStream;
 import org.jhotdraw.samples.svg.figures.SVGImageFigure;
 import org.jhotdraw.samples.svg.gui.MessagePanel;
@@ -327,34 +328,13 @@ public class SVGApplet extends JApplet {
                     progress.setIndeterminate(false);
                 }
                 BufferedInputStream bin = new BufferedInputStream(in);
-                bin.mark(512);
-                // Read the data using all supported input formats
-                // until we succeed
-                IOException formatException = null;
-                for (InputFormat format : drawing.getInputFormats()) {
-                    try {
-                        bin.reset();
-                    } catch (IOException e) {
-                        uc = url.openConnection();
-                        in = uc.getInputStream();
-                        in = new BoundedRangeInputStream(in);
-                        ((BoundedRangeInputStream) in).setMaximum(contentLength + 1);
-                        progress.setProgressModel((BoundedRangeModel) in);
-                        bin = new BufferedInputStream(in);
-                        bin.mark(512);
-                    }
-                    try {
-                        bin.reset();
-                        format.read(bin, drawing, true);
-                        formatException = null;
-                        break;
-                    } catch (IOException e) {
-                        formatException = e;
-                    }
-                }
-                if (formatException != null) {
-                    throw formatException;
+                // Read the data using the input format which recognizes
+                // the data. readHeader resets the stream to its start.
+                InputFormat format = InputFormats.findInputFormat(drawing.getInputFormats(), InputFormats.readHeader(bin), null);
+                if (format == null) {
+                    throw new IOException("Unsupported file format: " + url);
                 }
+                format.read(bin, drawing, true);
             } finally {
                 in.close();
             }
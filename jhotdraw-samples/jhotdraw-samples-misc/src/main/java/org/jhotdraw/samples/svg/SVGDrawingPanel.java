@@ -40,6 +40,7 @@ import org.jhotdraw.draw.QuadTreeDrawing;
 import org.jhotdraw.draw.io.ImageInputFormat;
 import org.jhotdraw.draw.io.ImageOutputFormat;
 import org.jhotdraw.draw.io.InputFormat;
+import org.jhotdraw.draw.io.InputFormats;
 import org.jhotdraw.draw.io.OutputFormat;
 import org.jhotdraw.draw.io.TextInputFormat;
 import org.jhotdraw.gui.ToolBarLayout;
@@ -278,45 +279,33 @@ public class SVGDrawingPanel extends JPanel implements Disposable {
         if (newDrawing.getInputFormats().size() == 0) {
             throw new InternalError("Drawing object has no input formats.");
         }
-        // Try out all input formats until we succeed
-        IOException firstIOException = null;
-        for (InputFormat format : newDrawing.getInputFormats()) {
+        // Read the file with the input format which recognizes it
+        InputFormat format = InputFormats.findInputFormat(newDrawing.getInputFormats(), InputFormats.readHeader(f), null);
+        if (format == null) {
+            throw new IOException("Unsupported file format: " + f);
+        }
+        format.read(f, newDrawing, true);
+        final Drawing loadedDrawing = newDrawing;
+        Runnable r = new Runnable() {
+            @Override
+            public void run() {
+                // Set the drawing on the Event Dispatcher Thread
+                setDrawing(loadedDrawing);
+            }
+        };
+        if (SwingUtilities.isEventDispatchThread()) {
+            r.run();
+        } else {
             try {
-                format.read(f, newDrawing);
-                final Drawing loadedDrawing = newDrawing;
-                Runnable r = new Runnable() {
-                    @Override
-                    public void run() {
-                        // Set the drawing on the Event Dispatcher Thread
-                        setDrawing(loadedDrawing);
-                    }
-                };
-                if (SwingUtilities.isEventDispatchThread()) {
-                    r.run();
-                } else {
-                    try {
-                        SwingUtilities.invokeAndWait(r);
-                    } catch (InterruptedException ex) {
-                        // suppress silently
-                    } catch (InvocationTargetException ex) {
-                        InternalError ie = new InternalError("Error setting drawing.");
-                        ie.initCause(ex);
-                        throw ie;
-                    }
-                }
-                // We get here if reading was successful.
-                // We can return since we are done.
-                return;
-            } catch (IOException e) {
-                // We get here if reading failed.
-                // We only preserve the exception of the first input format,
-                // because that's the one which is best suited for this drawing.
-                if (firstIOException == null) {
-                    firstIOException = e;
-                }
+                SwingUtilities.invokeAndWait(r);
+            } catch (InterruptedException ex) {
+                // suppress silently
+            } catch (InvocationTargetException ex) {
+                InternalError ie = new InternalError("Error setting drawing.");
+                ie.initCause(ex);
+                throw ie;
             }
         }
-        throw firstIOException;
     }
 
     /**
@@ -23,6 +23,7 @@ import org.jhotdraw.app.AbstractView;
 import org.jhotdraw.draw.Drawing;
 import org.jhotdraw.draw.DrawingEditor;
 import org.jhotdraw.draw.io.InputFormat;
+import org.jhotdraw.draw.io.InputFormats;
 import org.jhotdraw.draw.print.DrawingPageable;
 import org.jhotdraw.gui.JFileURIChooser;
 import org.jhotdraw.net.URIUtil;
@@ -136,9 +137,10 @@ public class SVGView extends AbstractView {
         try {
             JFileURIChooser fc = (JFileURIChooser) chooser;
             final Drawing drawing = createDrawing();
-            // We start with the selected uri format in the uri chooser,
-            // and then try out all formats we can import.
-            // We need to try out all formats, because the user may have
+            // We use the selected uri format in the uri chooser, if it
+            // recognizes the first bytes of the uri, and otherwise the format
+            // which recognizes them.
+            // We need to look at the other formats, because the user may have
             // chosen to load a uri without having used the uri chooser.
             HashMap<javax.swing.filechooser.FileFilter, InputFormat> fileFilterInputFormatMap = null;
             if (fc != null) {
@@ -146,33 +148,12 @@ public class SVGView extends AbstractView {
             }
             //private HashMap<javax.swing.filechooser.FileFilter, OutputFormat> fileFilterOutputFormatMap;
             InputFormat selectedFormat = (fc == null) ? null : fileFilterInputFormatMap.get(fc.getFileFilter());
-            boolean success = false;
-            if (selectedFormat != null) {
-                try {
-                    selectedFormat.read(uri, drawing, true);
-                    success = true;
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    // try with the next input format
-                }
-            }
-            if (!success) {
-                for (InputFormat sfi : drawing.getInputFormats()) {
-                    if (sfi != selectedFormat) {
-                        try {
-                            sfi.read(uri, drawing, true);
-                            success = true;
-                            break;
-                        } catch (Exception e) {
-                            // try with the next input format
-                        }
-                    }
-                }
-            }
-            if (!success) {
+            InputFormat format = InputFormats.findInputFormat(drawing.getInputFormats(), InputFormats.readHeader(uri), selectedFormat);
+            if (format == null) {
                 ResourceBundleUtil labels = ResourceBundleUtil.getBundle("org.jhotdraw.app.Labels");
                 throw new IOException(labels.getFormatted("file.open.unsupportedFileFormat.message", URIUtil.getName(uri)));
             }
+            format.read(uri, drawing, true);
             SwingUtilities.invokeAndWait(new Runnable() {
                 @Override
                 public void run() {
@@ -42,6 +42,10 @@ public abstract class SVGAttributedFigure extends AbstractAttributedFigure {
         double opacity = get(OPACITY);
         opacity = Math.min(Math.max(0d, opacity), 1d);
         if (opacity != 0d) {
+            LevelOfDetail lod = LevelOfDetail.get(g);
+            if (lod != null && drawReducedDetail(g, lod)) {
+                return;
+            }
             if (opacity != 1d) {
                 Rectangle2D.Double drawingArea = getDrawingArea();
                 Rectangle2D clipBounds = g.getClipBounds();
@@ -71,6 +75,15 @@ public abstract class SVGAttributedFigure extends AbstractAttributedFigure {
         }
     }
 
+    /**
+     * Uses the drawing area for the level of detail, because it includes the
+     * transform of the figure.
+     */
+    @Override
+    protected boolean drawReducedDetail(Graphics2D g, LevelOfDetail lod) {
+        return lod.drawReducedDetail(g, getDrawingArea(), getBoxColor());
+    }
+
     /**
      * This method is invoked before the rendered image of the figure is
      * composited.
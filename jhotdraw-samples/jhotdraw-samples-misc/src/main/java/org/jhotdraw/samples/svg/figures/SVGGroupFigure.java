@@ -72,6 +72,12 @@ public class SVGGroupFigure extends GroupFigure implements SVGFigure {
         double opacity = get(OPACITY);
         opacity = Math.min(Math.max(0d, opacity), 1d);
         if (opacity != 0d) {
+            // Tiny groups are skipped, the children of small groups draw
+            // their own boxes
+            LevelOfDetail lod = LevelOfDetail.get(g);
+            if (lod != null && lod.drawReducedDetail(g, getDrawingArea(), null)) {
+                return;
+            }
             if (opacity != 1d) {
                 Rectangle2D.Double drawingArea = getDrawingArea();
                 Rectangle2D clipBounds = g.getClipBounds();
@@ -59,6 +59,11 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
      * imageData.
      */
     private BufferedImage bufferedImage;
+    /**
+     * This is used to draw the image at a resolution which matches the
+     * scale of the graphics.
+     */
+    private transient ImagePyramid imagePyramid;
 
     /**
      * Creates a new instance.
@@ -80,30 +85,35 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
         double opacity = get(OPACITY);
         opacity = Math.min(Math.max(0d, opacity), 1d);
         if (opacity != 0d) {
+            LevelOfDetail lod = LevelOfDetail.get(g);
+            if (lod != null && drawReducedDetail(g, lod)) {
+                return;
+            }
             Composite savedComposite = g.getComposite();
             if (opacity != 1d) {
                 g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float) opacity));
             }
-            BufferedImage image = getBufferedImage();
+            Graphics2D gx = g;
+            if (get(TRANSFORM) != null) {
+                // FIXME - We should cache the transformed image.
+                //         Drawing a transformed image appears to be very slow.
+                gx = (Graphics2D) g.create();
+                // Use same rendering hints like parent graphics
+                gx.setRenderingHints(g.getRenderingHints());
+                gx.transform(get(TRANSFORM));
+            }
+            BufferedImage image = getImage(gx, rectangle);
             if (image != null) {
-                if (get(TRANSFORM) != null) {
-                    // FIXME - We should cache the transformed image.
-                    //         Drawing a transformed image appears to be very slow.
-                    Graphics2D gx = (Graphics2D) g.create();
-                    // Use same rendering hints like parent graphics
-                    gx.setRenderingHints(g.getRenderingHints());
-                    gx.transform(get(TRANSFORM));
-                    gx.drawImage(image, (int) rectangle.x, (int) rectangle.y, (int) rectangle.width, (int) rectangle.height, null);
-                    gx.dispose();
-                } else {
-                    g.drawImage(image, (int) rectangle.x, (int) rectangle.y, (int) rectangle.width, (int) rectangle.height, null);
-                }
+                gx.drawImage(image, (int) rectangle.x, (int) rectangle.y, (int) rectangle.width, (int) rectangle.height, null);
             } else {
                 Shape shape = getTransformedShape();
                 g.setColor(Color.red);
                 g.setStroke(new BasicStroke());
                 g.draw(shape);
             }
+            if (gx != g) {
+                gx.dispose();
+            }
             if (opacity != 1d) {
                 g.setComposite(savedComposite);
             }
@@ -273,9 +283,12 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
                 }
             });
         }
-        if (bufferedImage != null) {
-            if (rectangle.width != bufferedImage.getWidth()
-                    || rectangle.height != bufferedImage.getHeight()) {
+        ImagePyramid pyramid = getImagePyramid();
+        final int imageWidth = (pyramid == null) ? -1 : pyramid.getWidth();
+        final int imageHeight = (pyramid == null) ? -1 : pyramid.getHeight();
+        if (imageWidth > 0 && imageHeight > 0) {
+            if (rectangle.width != imageWidth
+                    || rectangle.height != imageHeight) {
                 actions.add(new AbstractAction(labels.getString("edit.setToImageSize.text")) {
                     private static final long serialVersionUID = 1L;
 
@@ -284,17 +297,17 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
                         Object geometry = getTransformRestoreData();
                         willChange();
                         rectangle = new Rectangle2D.Double(
-                                rectangle.x - (bufferedImage.getWidth() - rectangle.width) / 2d,
-                                rectangle.y - (bufferedImage.getHeight() - rectangle.height) / 2d,
-                                bufferedImage.getWidth(),
-                                bufferedImage.getHeight());
+                                rectangle.x - (imageWidth - rectangle.width) / 2d,
+                                rectangle.y - (imageHeight - rectangle.height) / 2d,
+                                imageWidth,
+                                imageHeight);
                         fireUndoableEditHappened(
                                 new TransformRestoreEdit(SVGImageFigure.this, geometry, getTransformRestoreData()));
                         changed();
                     }
                 });
             }
-            double imageRatio = bufferedImage.getHeight() / (double) bufferedImage.getWidth();
+            double imageRatio = imageHeight / (double) imageWidth;
             double figureRatio = rectangle.height / rectangle.width;
             if (Math.abs(imageRatio - figureRatio) > 0.001) {
                 actions.add(new AbstractAction(labels.getString("edit.adjustHeightToImageAspect.text")) {
@@ -304,7 +317,7 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
                     public void actionPerformed(ActionEvent evt) {
                         Object geometry = getTransformRestoreData();
                         willChange();
-                        double newHeight = bufferedImage.getHeight() * rectangle.width / bufferedImage.getWidth();
+                        double newHeight = imageHeight * rectangle.width / imageWidth;
                         rectangle = new Rectangle2D.Double(rectangle.x, rectangle.y - (newHeight - rectangle.height) / 2d, rectangle.width, newHeight);
                         fireUndoableEditHappened(
                                 new TransformRestoreEdit(SVGImageFigure.this, geometry, getTransformRestoreData()));
@@ -318,7 +331,7 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
                     public void actionPerformed(ActionEvent evt) {
                         Object geometry = getTransformRestoreData();
                         willChange();
-                        double newWidth = bufferedImage.getWidth() * rectangle.height / bufferedImage.getHeight();
+                        double newWidth = imageWidth * rectangle.height / imageHeight;
                         rectangle = new Rectangle2D.Double(rectangle.x - (newWidth - rectangle.width) / 2d, rectangle.y, newWidth, rectangle.height);
                         fireUndoableEditHappened(
                                 new TransformRestoreEdit(SVGImageFigure.this, geometry, getTransformRestoreData()));
@@ -339,6 +352,7 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
         that.rectangle = (Rectangle2D.Double) this.rectangle.clone();
         that.cachedTransformedShape = null;
         that.cachedHitShape = null;
+        that.imagePyramid = null;
         return that;
     }
 
@@ -372,6 +386,7 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
         willChange();
         this.imageData = imageData;
         this.bufferedImage = bufferedImage;
+        disposeImagePyramid();
         changed();
     }
 
@@ -387,6 +402,7 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
         willChange();
         this.imageData = imageData;
         this.bufferedImage = null;
+        disposeImagePyramid();
         changed();
     }
 
@@ -399,6 +415,7 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
         willChange();
         this.imageData = null;
         this.bufferedImage = image;
+        disposeImagePyramid();
         changed();
     }
 
@@ -412,17 +429,51 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
             //System.out.println("recreateing bufferedImage");
             try {
                 bufferedImage = ImageIO.read(new ByteArrayInputStream(imageData));
+                disposeImagePyramid();
             } catch (Throwable e) {
                 e.printStackTrace();
                 // If we can't create a buffered image from the image data,
                 // there is no use to keep the image data and try again, so
                 // we drop the image data.
                 imageData = null;
+                disposeImagePyramid();
             }
         }
         return bufferedImage;
     }
 
+    /**
+     * Returns the image pyramid of the image, or null if the figure has no
+     * image.
+     */
+    private ImagePyramid getImagePyramid() {
+        if (imagePyramid == null && (imageData != null || bufferedImage != null)) {
+            imagePyramid = new ImagePyramid(imageData, bufferedImage);
+        }
+        return imagePyramid;
+    }
+
+    private void disposeImagePyramid() {
+        if (imagePyramid != null) {
+            imagePyramid.dispose();
+            imagePyramid = null;
+        }
+    }
+
+    /**
+     * Returns the image for drawing it into the specified rectangle with the
+     * specified graphics. If the graphics is scaled down, this is an image
+     * with a reduced resolution.
+     */
+    private BufferedImage getImage(Graphics2D g, Rectangle2D.Double r) {
+        ImagePyramid pyramid = getImagePyramid();
+        if (pyramid == null) {
+            return null;
+        }
+        double scale = Math.abs(AttributeKeys.getScaleFactorFromGraphics(g));
+        return pyramid.getImage(r.width / scale, r.height / scale);
+    }
+
     /**
      * Gets the image data. If necessary, this method creates the image
      * data from the buffered image.
@@ -485,5 +536,6 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
         }
         imageData = baos.toByteArray();
         bufferedImage = img;
+        disposeImagePyramid();
     }
 }
@@ -27,9 +27,9 @@ import org.jhotdraw.draw.figure.AbstractAttributedCompositeFigure;
 import org.jhotdraw.draw.figure.Figure;
 import org.jhotdraw.draw.handle.Handle;
 import org.jhotdraw.draw.handle.TransformHandleKit;
+import org.jhotdraw.geom.FlattenedOutline;
 import org.jhotdraw.geom.Geom;
 import org.jhotdraw.geom.GrowStroke;
-import org.jhotdraw.geom.Shapes;
 import org.jhotdraw.samples.svg.Gradient;
 import org.jhotdraw.samples.svg.SVGAttributeKeys;
 import static org.jhotdraw.samples.svg.SVGAttributeKeys.*;
@@ -53,6 +53,14 @@ public class SVGPathFigure extends AbstractAttributedCompositeFigure implements
      * This is used to perform faster hit testing.
      */
     private transient Shape cachedHitShape;
+    /**
+     * This is used to perform faster hit testing of filled paths.
+     */
+    private transient Shape cachedGrowShape;
+    /**
+     * This is used to perform faster hit testing of open paths.
+     */
+    private transient FlattenedOutline cachedOutline;
     private static final boolean DEBUG = false;
 
     /**
@@ -76,6 +84,10 @@ public class SVGPathFigure extends AbstractAttributedCompositeFigure implements
         double opacity = get(OPACITY);
         opacity = Math.min(Math.max(0d, opacity), 1d);
         if (opacity != 0d) {
+            LevelOfDetail lod = LevelOfDetail.get(g);
+            if (lod != null && lod.drawReducedDetail(g, getDrawingArea(), getBoxColor())) {
+                return;
+            }
             if (opacity != 1d) {
                 Rectangle2D.Double drawingArea = getDrawingArea();
                 Rectangle2D clipBounds = g.getClipBounds();
@@ -105,6 +117,20 @@ public class SVGPathFigure extends AbstractAttributedCompositeFigure implements
         }
     }
 
+    /**
+     * Returns the colour with which the path is drawn when it is too small
+     * on the device to show any detail.
+     */
+    private Color getBoxColor() {
+        if (get(FILL_COLOR) != null) {
+            return get(FILL_COLOR);
+        }
+        if (get(STROKE_COLOR) != null) {
+            return get(STROKE_COLOR);
+        }
+        return new Color(0, true);
+    }
+
     @Override
     public void drawFigure(Graphics2D g) {
         AffineTransform savedTransform = null;
@@ -149,6 +175,14 @@ public class SVGPathFigure extends AbstractAttributedCompositeFigure implements
         cachedPath = null;
         cachedDrawingArea = null;
         cachedHitShape = null;
+        cachedGrowShape = null;
+        cachedOutline = null;
+    }
+
+    @Override
+    protected void invalidateChild(Figure child) {
+        // The cached path depends on all children.
+        invalidate();
     }
 
     protected Path2D.Double getPath() {
@@ -173,6 +207,30 @@ public class SVGPathFigure extends AbstractAttributedCompositeFigure implements
         return cachedHitShape;
     }
 
+    /**
+     * Returns the path grown by the perpendicular hit growth of the figure.
+     */
+    protected Shape getGrowShape() {
+        if (cachedGrowShape == null) {
+            double grow = AttributeKeys.getPerpendicularHitGrowth(this, 1.0);
+            GrowStroke gs = new GrowStroke(grow,
+                    (AttributeKeys.getStrokeTotalWidth(this, 1.0)
+                    * get(STROKE_MITER_LIMIT)));
+            cachedGrowShape = gs.createStrokedShape(getPath());
+        }
+        return cachedGrowShape;
+    }
+
+    /**
+     * Returns the flattened outline of the path for the specified tolerance.
+     */
+    protected FlattenedOutline getOutline(double tolerance) {
+        if (cachedOutline == null || cachedOutline.getFlatness() != tolerance) {
+            cachedOutline = new FlattenedOutline(getPath(), tolerance);
+        }
+        return cachedOutline;
+    }
+
     // int count;
     @Override
     public Rectangle2D.Double getDrawingArea() {
@@ -223,14 +281,7 @@ public class SVGPathFigure extends AbstractAttributedCompositeFigure implements
             if (getPath().contains(p)) {
                 return true;
             }
-            double grow = AttributeKeys.getPerpendicularHitGrowth(this, 1.0) /**
-                     * 2d
-                     */
-                    ;
-            GrowStroke gs = new GrowStroke(grow,
-                    (AttributeKeys.getStrokeTotalWidth(this, 1.0)
-                    * get(STROKE_MITER_LIMIT)));
-            if (gs.createStrokedShape(getPath()).contains(p)) {
+            if (getGrowShape().contains(p)) {
                 return true;
             } else {
                 if (isClosed) {
@@ -239,7 +290,7 @@ public class SVGPathFigure extends AbstractAttributedCompositeFigure implements
             }
         }
         if (!isClosed) {
-            if (Shapes.outlineContains(getPath(), p, tolerance)) {
+            if (getOutline(tolerance).outlineContains(p.x, p.y, tolerance)) {
                 return true;
             }
         }
@@ -18,12 +18,8 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import org.jhotdraw.datatransfer.InputStreamTransferable;
@@ -41,6 +37,7 @@ import org.jhotdraw.samples.svg.figures.SVGRectFigure;
 import org.jhotdraw.samples.svg.figures.SVGTextAreaFigure;
 import org.jhotdraw.samples.svg.figures.SVGTextFigure;
 import org.jhotdraw.util.*;
+import org.jhotdraw.xml.XMLPool;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
@@ -135,15 +132,7 @@ public class ImageMapOutputFormat implements OutputFormat {
             AffineTransform drawingTransform, Dimension imageSize) throws IOException {
         this.drawingTransform = (drawingTransform == null) ? new AffineTransform() : drawingTransform;
         this.bounds = (imageSize == null) ? new Rectangle(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE) : new Rectangle(0, 0, imageSize.width, imageSize.height);
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dBuilder;
-        try {
-            dBuilder = dbFactory.newDocumentBuilder();
-        } catch (ParserConfigurationException ex) {
-            Logger.getLogger(ImageMapOutputFormat.class.getName()).log(Level.SEVERE, null, ex);
-            throw new IOException(ex);
-        }
-        Element document = dBuilder.newDocument().createElement("map");
+        Element document = XMLPool.newDocument().createElement("map");
         // Note: Image map elements need to be written from front to back
         for (Figure f : new ReversedList<Figure>(figures)) {
             writeElement(document, f);
@@ -161,8 +150,7 @@ public class ImageMapOutputFormat implements OutputFormat {
         }
         try {
             // Write XML content
-            TransformerFactory tf = TransformerFactory.newInstance();
-            Transformer t = tf.newTransformer();
+            Transformer t = XMLPool.getTransformer();
             NodeList list = document.getChildNodes();
             for (int i = list.getLength() - 1; i >= 0; i--) {
                 Element child = (Element) list.item(i);
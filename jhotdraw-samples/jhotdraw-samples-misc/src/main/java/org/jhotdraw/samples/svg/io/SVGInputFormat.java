@@ -27,10 +27,9 @@ import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultStyledDocument;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import org.jhotdraw.draw.*;
 import org.jhotdraw.draw.io.InputFormat;
+import org.jhotdraw.draw.io.InputFormats;
 import org.jhotdraw.formatter.FontFormatter;
 import org.jhotdraw.geom.BezierPath;
 import org.jhotdraw.io.Base64;
@@ -43,7 +42,10 @@ import org.jhotdraw.samples.svg.figures.SVGFigure;
 import org.jhotdraw.util.LocaleUtil;
 import org.jhotdraw.xml.css.CSSParser;
 import org.jhotdraw.xml.css.StyleManager;
+import org.jhotdraw.xml.XMLPool;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
@@ -146,6 +148,96 @@ public class SVGInputFormat implements InputFormat {
      * here.
      */
     private Stack<Viewport> viewportStack;
+
+    /**
+     * Holds the inherited properties of an element, as they result from
+     * the cascade of its ancestors.
+     * <p>
+     * Instances are immutable. An element which does not specify any
+     * inherited property shares the instance of its parent, and elements
+     * with identical properties share a single instance.
+     */
+    private static class ComputedStyle {
+
+        /**
+         * The specified values in the order of {@code INHERITED_PROPERTIES}.
+         * A null value means, that neither the element nor any of its
+         * ancestors specifies the property.
+         */
+        private final String[] values;
+        /**
+         * The nearest absolute 'font-size' value, or null.
+         */
+        private final String fontSizeBase;
+        /**
+         * The product of the relative 'font-size' values which have been
+         * specified below the element that specifies {@code fontSizeBase}.
+         */
+        private final double fontSizeFactor;
+
+        public ComputedStyle(String[] values, String fontSizeBase, double fontSizeFactor) {
+            this.values = values;
+            this.fontSizeBase = fontSizeBase;
+            this.fontSizeFactor = fontSizeFactor;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof ComputedStyle)) {
+                return false;
+            }
+            ComputedStyle that = (ComputedStyle) obj;
+            return fontSizeFactor == that.fontSizeFactor
+                    && (fontSizeBase == null ? that.fontSizeBase == null : fontSizeBase.equals(that.fontSizeBase))
+                    && Arrays.equals(values, that.values);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = Arrays.hashCode(values);
+            hash = 31 * hash + (fontSizeBase == null ? 0 : fontSizeBase.hashCode());
+            long bits = Double.doubleToLongBits(fontSizeFactor);
+            return 31 * hash + (int) (bits ^ (bits >>> 32));
+        }
+    }
+    /**
+     * The properties which are inherited by child elements, except for
+     * 'font-size' which is computed separately.
+     */
+    private static final String[] INHERITED_PROPERTIES = {
+        "color", "color-rendering", "display-align", "fill", "fill-opacity",
+        "fill-rule", "font-family", "font-style", "font-variant", "font-weight",
+        "image-rendering", "line-increment", "pointer-events", "shape-rendering",
+        "stroke", "stroke-dasharray", "stroke-dashoffset", "stroke-linecap",
+        "stroke-linejoin", "stroke-miterlimit", "stroke-opacity", "stroke-width",
+        "text-align", "text-anchor", "text-rendering", "viewport-fill",
+        "visibility", "xml:space"
+    };
+    /**
+     * Maps the names in {@code INHERITED_PROPERTIES} to their index.
+     */
+    private static final HashMap<String, Integer> INHERITED_PROPERTY_INDICES = new HashMap<String, Integer>();
+
+    static {
+        for (int i = 0; i < INHERITED_PROPERTIES.length; i++) {
+            INHERITED_PROPERTY_INDICES.put(INHERITED_PROPERTIES[i], i);
+        }
+    }
+    /**
+     * The style of elements which do not inherit any properties.
+     */
+    private static final ComputedStyle INITIAL_STYLE = new ComputedStyle(new String[INHERITED_PROPERTIES.length], null, 1d);
+    /**
+     * Holds the computed style of each element.
+     */
+    private HashMap<Element, ComputedStyle> computedStyles;
+    /**
+     * Holds one instance of each distinct computed style.
+     */
+    private HashMap<ComputedStyle, ComputedStyle> sharedStyles;
     /**
      * Holds the style manager used for applying cascading style sheet CSS rules
      * to the document.
@@ -223,19 +315,12 @@ public class SVGInputFormat implements InputFormat {
             start = System.currentTimeMillis();
         }
         this.figures = new LinkedList<Figure>();
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder;
-        try {
-            builder = factory.newDocumentBuilder();
-        } catch (ParserConfigurationException ex) {
-            Logger.getLogger(SVGInputFormat.class.getName()).log(Level.SEVERE, null, ex);
-            throw new IOException(ex);
-        }
+        DocumentBuilder builder = XMLPool.getDocumentBuilder();
         if (DEBUG) {
             System.out.println("SVGInputFormat parser created " + (System.currentTimeMillis() - start));
         }
         try {
-            document = (Element) builder.parse(in);
+            document = builder.parse(in).getDocumentElement();
         } catch (SAXException ex) {
             Logger.getLogger(SVGInputFormat.class.getName()).log(Level.SEVERE, null, ex);
             throw new IOException(ex);
@@ -305,10 +390,14 @@ public class SVGInputFormat implements InputFormat {
         elementObjects.clear();
         viewportStack.clear();
         styleManager.clear();
+        computedStyles.clear();
+        sharedStyles.clear();
         document = null;
         identifiedElements = null;
         elementObjects = null;
         viewportStack = null;
+        computedStyles = null;
+        sharedStyles = null;
         styleManager = null;
     }
 
@@ -319,12 +408,15 @@ public class SVGInputFormat implements InputFormat {
         viewportStack = new Stack<Viewport>();
         viewportStack.push(new Viewport());
         styleManager = new StyleManager();
+        computedStyles = new HashMap<Element, ComputedStyle>();
+        sharedStyles = new HashMap<ComputedStyle, ComputedStyle>();
     }
 
     /**
      * Flattens all CSS styles.
      * Styles defined in a "style" attribute and in CSS rules are converted
-     * into attributes with the same name.
+     * into attributes with the same name. Computes the style of each element
+     * on the way down.
      */
     private void flattenStyles(Element elem)
             throws IOException {
@@ -349,6 +441,7 @@ public class SVGInputFormat implements InputFormat {
                     }
                 }
                 styleManager.applyStylesTo(elem);
+                getComputedStyle(elem);
                 NodeList list = elem.getChildNodes();
                 for (int i = 0; i < list.getLength(); i++) {
                     Element child = (Element) list.item(i);
@@ -687,7 +780,7 @@ public class SVGInputFormat implements InputFormat {
                 int semicolonPos = href.indexOf(';');
                 if (semicolonPos != -1) {
                     if (href.indexOf(";base64,") == semicolonPos) {
-                        imageData = Base64.decode(href.substring(semicolonPos + 8));
+                        imageData = decodeBase64(href, semicolonPos + 8);
                     } else {
                         throw new IOException("Unsupported encoding in data href in image element:" + href);
                     }
@@ -749,6 +842,29 @@ public class SVGInputFormat implements InputFormat {
         return figure;
     }
 
+    /**
+     * Decodes the Base64 data of a data URI, starting at the specified
+     * index. The data is decoded into an array of the expected size,
+     * without making a copy of the encoded data.
+     */
+    private byte[] decodeBase64(String str, int start) throws IOException {
+        int end = str.length();
+        int padding = 0;
+        while (end - padding > start && padding < 2 && str.charAt(end - padding - 1) == '=') {
+            padding++;
+        }
+        byte[] data = new byte[Math.max(0, (end - start) / 4 * 3 - padding)];
+        StringReader reader = new StringReader(str);
+        reader.skip(start);
+        InputStream in = new Base64.InputStream(reader, Base64.DECODE);
+        int count = 0;
+        for (int n; count < data.length && (n = in.read(data, count, data.length - count)) > 0;) {
+            count += n;
+        }
+        // The estimate is too big if the data contains white space
+        return (count == data.length) ? data : Arrays.copyOf(data, count);
+    }
+
     /**
      * Reads an SVG "line" element.
      */
@@ -1105,30 +1221,96 @@ public class SVGInputFormat implements InputFormat {
     }
 
     /**
-     * Reads an attribute that is inherited.
-     */
-    private String readInheritAttribute(Element elem, String attributeName, String defaultValue) {
-        if (elem.hasAttributeNS(SVG_NAMESPACE, attributeName)) {
-            String value = elem.getAttributeNS(SVG_NAMESPACE, attributeName);
-            if ("inherit".equals(value)) {
-                return readInheritAttribute((Element) elem.getParentNode(), attributeName, defaultValue);
+     * Returns the computed style of an element.
+     * The style is computed from the style of the parent element, and then
+     * cached.
+     */
+    private ComputedStyle getComputedStyle(Element elem) {
+        ComputedStyle style = computedStyles.get(elem);
+        if (style == null) {
+            ComputedStyle parentStyle;
+            Node parent = elem.getParentNode();
+            if (parent instanceof Element
+                    && (parent.getPrefix() == null
+                    || parent.getPrefix().equals(SVG_NAMESPACE))) {
+                parentStyle = getComputedStyle((Element) parent);
             } else {
-                return value;
+                parentStyle = INITIAL_STYLE;
             }
-        } else if (elem.hasAttribute(attributeName)) {
-            String value = elem.getAttribute(attributeName);
+            style = computeStyle(elem, parentStyle);
+            computedStyles.put(elem, style);
+        }
+        return style;
+    }
+
+    /**
+     * Computes the style of an element from the style of its parent.
+     */
+    private ComputedStyle computeStyle(Element elem, ComputedStyle parentStyle) {
+        String[] values = null;
+        String fontSize = null;
+        NamedNodeMap attributes = elem.getAttributes();
+        for (int i = 0, n = attributes.getLength(); i < n; i++) {
+            Node attr = attributes.item(i);
+            boolean isSVG = SVG_NAMESPACE.equals(attr.getNamespaceURI());
+            String name = isSVG ? attr.getLocalName() : attr.getNodeName();
+            if ("font-size".equals(name)) {
+                if (isSVG || !elem.hasAttributeNS(SVG_NAMESPACE, name)) {
+                    fontSize = attr.getNodeValue();
+                }
+                continue;
+            }
+            Integer index = INHERITED_PROPERTY_INDICES.get(name);
+            if (index == null
+                    || !isSVG && elem.hasAttributeNS(SVG_NAMESPACE, name)) {
+                continue;
+            }
+            String value = attr.getNodeValue();
             if ("inherit".equals(value)) {
-                return readInheritAttribute((Element) elem.getParentNode(), attributeName, defaultValue);
+                continue;
+            }
+            if (values == null) {
+                values = parentStyle.values.clone();
+            }
+            values[index] = value;
+        }
+        String fontSizeBase = parentStyle.fontSizeBase;
+        double fontSizeFactor = parentStyle.fontSizeFactor;
+        if (fontSize != null && !"inherit".equals(fontSize)) {
+            if (SVG_RELATIVE_FONT_SIZES.containsKey(fontSize)) {
+                fontSizeFactor *= SVG_RELATIVE_FONT_SIZES.get(fontSize);
+            } else if (fontSize.endsWith("%")) {
+                try {
+                    fontSizeFactor *= Double.valueOf(fontSize.substring(0, fontSize.length() - 1));
+                } catch (NumberFormatException e) {
+                    // ignore illegal values
+                }
             } else {
-                return value;
+                fontSizeBase = fontSize;
+                fontSizeFactor = 1d;
             }
-        } else if (elem.getParentNode() != null
-                && (elem.getParentNode().getPrefix() == null
-                || elem.getParentNode().getPrefix().equals(SVG_NAMESPACE))) {
-            return readInheritAttribute((Element) elem.getParentNode(), attributeName, defaultValue);
-        } else {
-            return defaultValue;
         }
+        if (values == null
+                && fontSizeFactor == parentStyle.fontSizeFactor
+                && fontSizeBase == parentStyle.fontSizeBase) {
+            return parentStyle;
+        }
+        ComputedStyle style = new ComputedStyle(values == null ? parentStyle.values : values,
+                fontSizeBase, fontSizeFactor);
+        ComputedStyle shared = sharedStyles.get(style);
+        if (shared == null) {
+            sharedStyles.put(style, style);
+            shared = style;
+        }
+        return shared;
+    }
+
+    /**
+     * Reads an attribute that is inherited.
+     */
+    private String readInheritAttribute(Element elem, String attributeName, String defaultValue) {
+        String value = getComputedStyle(elem).values[INHERITED_PROPERTY_INDICES.get(attributeName)];
+        return (value == null) ? defaultValue : value;
     }
 
     /**
@@ -1137,27 +1319,10 @@ public class SVGInputFormat implements InputFormat {
      * "currentColor" magic attribute value.
      */
     private String readInheritColorAttribute(Element elem, String attributeName, String defaultValue) {
-        String value = null;
-        if (elem.hasAttributeNS(SVG_NAMESPACE, attributeName)) {
-            value = elem.getAttributeNS(SVG_NAMESPACE, attributeName);
-            if ("inherit".equals(value)) {
-                return readInheritColorAttribute((Element) elem.getParentNode(), attributeName, defaultValue);
-            }
-        } else if (elem.hasAttribute(attributeName)) {
-            value = elem.getAttribute(attributeName);
-            if ("inherit".equals(value)) {
-                return readInheritColorAttribute((Element) elem.getParentNode(), attributeName, defaultValue);
-            }
-        } else if (elem.getParentNode() != null
-                && (elem.getParentNode().getPrefix() == null
-                || elem.getParentNode().getPrefix().equals(SVG_NAMESPACE))) {
-            value = readInheritColorAttribute((Element) elem.getParentNode(), attributeName, defaultValue);
-        } else {
-            value = defaultValue;
-        }
+        String value = readInheritAttribute(elem, attributeName, defaultValue);
         if (value != null && value.toLowerCase().equals("currentcolor") && !attributeName.equals("color")) {
             // Lets do some magic stuff for "currentColor" attribute value
-            value = readInheritColorAttribute(elem, "color", "defaultValue");
+            value = readInheritAttribute(elem, "color", "black");
         }
         return value;
     }
@@ -1170,31 +1335,16 @@ public class SVGInputFormat implements InputFormat {
      */
     private double readInheritFontSizeAttribute(Element elem, String attributeName, String defaultValue)
             throws IOException {
-        String value = null;
-        if (elem.hasAttributeNS(SVG_NAMESPACE, attributeName)) {
-            value = elem.getAttributeNS(SVG_NAMESPACE, attributeName);
-        } else if (elem.hasAttribute(attributeName)) {
-            value = elem.getAttribute(attributeName);
-        } else if (elem.getParentNode() != null
-                && (elem.getParentNode().getPrefix() == null
-                || elem.getParentNode().getPrefix().equals(SVG_NAMESPACE))) {
-            return readInheritFontSizeAttribute((Element) elem.getParentNode(), attributeName, defaultValue);
+        ComputedStyle style = getComputedStyle(elem);
+        String value = (style.fontSizeBase == null) ? defaultValue : style.fontSizeBase;
+        double size;
+        if (SVG_ABSOLUTE_FONT_SIZES.containsKey(value)) {
+            size = SVG_ABSOLUTE_FONT_SIZES.get(value);
         } else {
-            value = defaultValue;
-        }
-        if ("inherit".equals(value)) {
-            return readInheritFontSizeAttribute((Element) elem.getParentNode(), attributeName, defaultValue);
-        } else if (SVG_ABSOLUTE_FONT_SIZES.containsKey(value)) {
-            return SVG_ABSOLUTE_FONT_SIZES.get(value);
-        } else if (SVG_RELATIVE_FONT_SIZES.containsKey(value)) {
-            return SVG_RELATIVE_FONT_SIZES.get(value) * readInheritFontSizeAttribute((Element) elem.getParentNode(), attributeName, defaultValue);
-        } else if (value.endsWith("%")) {
-            double factor = Double.valueOf(value.substring(0, value.length() - 1));
-            return factor * readInheritFontSizeAttribute((Element) elem.getParentNode(), attributeName, defaultValue);
-        } else {
-            //return toScaledNumber(elem, value);
-            return toNumber(elem, value);
+            //size = toScaledNumber(elem, value);
+            size = toNumber(elem, value);
         }
+        return style.fontSizeFactor * size;
     }
 
     /**
@@ -3206,6 +3356,32 @@ public class SVGInputFormat implements InputFormat {
         return null;
     }
 
+    /**
+     * Accepts XML documents with an 'svg' root element, and XML documents
+     * which declare the SVG namespace. XML documents, which have a prolog
+     * that is longer than the header, are accepted as well, because their
+     * root element is unknown.
+     */
+    @Override
+    public boolean probe(byte[] header) {
+        return probe(header, header.length < PROBE_LENGTH);
+    }
+
+    /**
+     * Probes the header.
+     *
+     * @param header The first bytes of the SVG document.
+     * @param isEndOfData True, if the document ends with the header.
+     */
+    protected boolean probe(byte[] header, boolean isEndOfData) {
+        String name = InputFormats.getXMLRootElementName(header);
+        if (name == null) {
+            return InputFormats.isXMLPrologTruncated(header, isEndOfData);
+        }
+        return InputFormats.getLocalName(name).equals("svg")
+                || InputFormats.decodeXMLHeader(header).contains(SVG_NAMESPACE);
+    }
+
     @Override
     public boolean isDataFlavorSupported(DataFlavor flavor) {
         return flavor.getPrimaryType().equals("image")
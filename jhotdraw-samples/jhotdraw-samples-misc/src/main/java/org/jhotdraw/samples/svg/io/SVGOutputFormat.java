@@ -22,13 +22,12 @@ import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultStyledDocument;
 import javax.swing.text.StyledDocument;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import org.jhotdraw.datatransfer.InputStreamTransferable;
@@ -49,8 +48,11 @@ import org.jhotdraw.samples.svg.figures.SVGPathFigure;
 import org.jhotdraw.samples.svg.figures.SVGRectFigure;
 import org.jhotdraw.samples.svg.figures.SVGTextAreaFigure;
 import org.jhotdraw.samples.svg.figures.SVGTextFigure;
+import org.jhotdraw.xml.XMLPool;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
 
 /**
  * An output format for storing drawings as
@@ -87,6 +89,16 @@ public class SVGOutputFormat implements OutputFormat {
      * Set this to true for pretty printing.
      */
     private boolean isPrettyPrint;
+    /**
+     * Set this to false to build a DOM of the entire drawing before writing
+     * it.
+     */
+    private boolean isStreaming = true;
+    /**
+     * While streaming, holds the image data of image elements. The image
+     * data is encoded when the element is written.
+     */
+    private IdentityHashMap<Element, byte[]> streamedImageData;
     private static final HashMap<Integer, String> STROKE_LINEJOIN;
 
     static {
@@ -133,6 +145,20 @@ public class SVGOutputFormat implements OutputFormat {
         return isPrettyPrint;
     }
 
+    /**
+     * If streaming is on, figures are written one by one, and only the
+     * elements of the figure which is currently being written are kept in
+     * memory. If streaming is off, a DOM of the entire drawing is built
+     * before it is written. Streaming is on by default.
+     */
+    public void setStreaming(boolean newValue) {
+        isStreaming = newValue;
+    }
+
+    public boolean isStreaming() {
+        return isStreaming;
+    }
+
     protected void writeElement(Element parent, Figure f) throws IOException {
         // Write link attribute as encosing "a" element
         if (f.get(LINK) != null && f.get(LINK).trim().length() > 0) {
@@ -325,12 +351,28 @@ public class SVGOutputFormat implements OutputFormat {
         writeAttribute(elem, "y", y, 0d);
         writeAttribute(elem, "width", w, 0d);
         writeAttribute(elem, "height", h, 0d);
-        writeAttribute(elem, "xlink:href", "data:image;base64," + Base64.encodeBytes(imageData), "");
+        if (streamedImageData != null) {
+            streamedImageData.put(elem, imageData);
+        } else {
+            writeAttribute(elem, "xlink:href", toDataURI(imageData), "");
+        }
         writeOpacityAttribute(elem, attributes);
         writeTransformAttribute(elem, attributes);
         return elem;
     }
 
+    /**
+     * Encodes the image data as a data URI.
+     */
+    private static String toDataURI(byte[] imageData) throws IOException {
+        StringWriter buf = new StringWriter(19 + (imageData.length + 2) / 3 * 4);
+        buf.write("data:image;base64,");
+        Base64.OutputStream b64 = new Base64.OutputStream(buf, Base64.ENCODE | Base64.DONT_BREAK_LINES);
+        b64.write(imageData);
+        b64.flushBase64();
+        return buf.toString();
+    }
+
     protected void writePathElement(Element parent, SVGPathFigure f) throws IOException {
         BezierPath[] beziers = new BezierPath[f.getChildCount()];
         for (int i = 0; i < beziers.length; i++) {
@@ -564,9 +606,7 @@ public class SVGOutputFormat implements OutputFormat {
             if (i != 0) {
                 elem.appendChild(doc.getOwnerDocument().createElement("tbreak"));
             }
-            Element contentElement = doc.getOwnerDocument().createElement(null);
-            contentElement.setTextContent(lines[i]);
-            elem.appendChild(contentElement);
+            elem.appendChild(doc.getOwnerDocument().createTextNode(lines[i]));
         }
         writeShapeAttributes(elem, attributes);
         writeTransformAttribute(elem, attributes);
@@ -616,38 +656,7 @@ public class SVGOutputFormat implements OutputFormat {
         // Computed value:    "none", system paint, specified <color> value or absolute IRI
         Gradient gradient = FILL_GRADIENT.get(m);
         if (gradient != null) {
-            String id;
-            if (gradientToIDMap.containsKey(gradient)) {
-                id = gradientToIDMap.get(gradient);
-            } else {
-                Element gradientElem;
-                if (gradient instanceof LinearGradient) {
-                    LinearGradient lg = (LinearGradient) gradient;
-                    gradientElem = createLinearGradient(document,
-                            lg.getX1(), lg.getY1(),
-                            lg.getX2(), lg.getY2(),
-                            lg.getStopOffsets(),
-                            lg.getStopColors(),
-                            lg.getStopOpacities(),
-                            lg.isRelativeToFigureBounds(),
-                            lg.getTransform());
-                } else /*if (gradient instanceof RadialGradient)*/ {
-                    RadialGradient rg = (RadialGradient) gradient;
-                    gradientElem = createRadialGradient(document,
-                            rg.getCX(), rg.getCY(),
-                            rg.getFX(), rg.getFY(),
-                            rg.getR(),
-                            rg.getStopOffsets(),
-                            rg.getStopColors(),
-                            rg.getStopOpacities(),
-                            rg.isRelativeToFigureBounds(),
-                            rg.getTransform());
-                }
-                id = getId(gradientElem);
-                gradientElem.setAttributeNS("xml", "id", id);
-                defs.appendChild(gradientElem);
-                gradientToIDMap.put(gradient, id);
-            }
+            String id = getGradientId(gradient);
             writeAttribute(elem, "fill", "url(#" + id + ")", "#000");
         } else {
             writeAttribute(elem, "fill", toColor(FILL_COLOR.get(m)), "#000");
@@ -686,38 +695,7 @@ public class SVGOutputFormat implements OutputFormat {
         // or absolute IRI
         gradient = STROKE_GRADIENT.get(m);
         if (gradient != null) {
-            String id;
-            if (gradientToIDMap.containsKey(gradient)) {
-                id = gradientToIDMap.get(gradient);
-            } else {
-                Element gradientElem;
-                if (gradient instanceof LinearGradient) {
-                    LinearGradient lg = (LinearGradient) gradient;
-                    gradientElem = createLinearGradient(document,
-                            lg.getX1(), lg.getY1(),
-                            lg.getX2(), lg.getY2(),
-                            lg.getStopOffsets(),
-                            lg.getStopColors(),
-                            lg.getStopOpacities(),
-                            lg.isRelativeToFigureBounds(),
-                            lg.getTransform());
-                } else /*if (gradient instanceof RadialGradient)*/ {
-                    RadialGradient rg = (RadialGradient) gradient;
-                    gradientElem = createRadialGradient(document,
-                            rg.getCX(), rg.getCY(),
-                            rg.getFX(), rg.getFY(),
-                            rg.getR(),
-                            rg.getStopOffsets(),
-                            rg.getStopColors(),
-                            rg.getStopOpacities(),
-                            rg.isRelativeToFigureBounds(),
-                            rg.getTransform());
-                }
-                id = getId(gradientElem);
-                gradientElem.setAttributeNS("xml", "id", id);
-                defs.appendChild(gradientElem);
-                gradientToIDMap.put(gradient, id);
-            }
+            String id = getGradientId(gradient);
             writeAttribute(elem, "stroke", "url(#" + id + ")", "none");
         } else {
             writeAttribute(elem, "stroke", toColor(STROKE_COLOR.get(m)), "none");
@@ -804,6 +782,44 @@ public class SVGOutputFormat implements OutputFormat {
         writeAttribute(elem, "stroke-width", STROKE_WIDTH.get(m), 1d);
     }
 
+    /**
+     * Returns the id of the definition of the specified gradient. Adds the
+     * definition to the defs element if the gradient has not been written yet.
+     */
+    private String getGradientId(Gradient gradient) throws IOException {
+        String id = gradientToIDMap.get(gradient);
+        if (id == null) {
+            Element gradientElem;
+            if (gradient instanceof LinearGradient) {
+                LinearGradient lg = (LinearGradient) gradient;
+                gradientElem = createLinearGradient(document,
+                        lg.getX1(), lg.getY1(),
+                        lg.getX2(), lg.getY2(),
+                        lg.getStopOffsets(),
+                        lg.getStopColors(),
+                        lg.getStopOpacities(),
+                        lg.isRelativeToFigureBounds(),
+                        lg.getTransform());
+            } else /*if (gradient instanceof RadialGradient)*/ {
+                RadialGradient rg = (RadialGradient) gradient;
+                gradientElem = createRadialGradient(document,
+                        rg.getCX(), rg.getCY(),
+                        rg.getFX(), rg.getFY(),
+                        rg.getR(),
+                        rg.getStopOffsets(),
+                        rg.getStopColors(),
+                        rg.getStopOpacities(),
+                        rg.isRelativeToFigureBounds(),
+                        rg.getTransform());
+            }
+            id = getId(gradientElem);
+            gradientElem.setAttributeNS(XMLConstants.XML_NS_URI, "xml:id", id);
+            defs.appendChild(gradientElem);
+            gradientToIDMap.put(gradient, id);
+        }
+        return id;
+    }
+
     /* Writes the opacity attribute.
      */
     protected void writeOpacityAttribute(Element elem, Map<AttributeKey<?>, Object> m)
@@ -1285,15 +1301,7 @@ public class SVGOutputFormat implements OutputFormat {
      * All other write methods delegate their work to here.
      */
     public void write(OutputStream out, Drawing drawing, java.util.List<Figure> figures) throws IOException {
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dBuilder;
-        try {
-            dBuilder = dbFactory.newDocumentBuilder();
-        } catch (ParserConfigurationException ex) {
-            Logger.getLogger(ImageMapOutputFormat.class.getName()).log(Level.SEVERE, null, ex);
-            throw new IOException(ex);
-        }
-        Document doc = dBuilder.newDocument();
+        Document doc = XMLPool.newDocument();
         document = doc.createElementNS(SVG_NAMESPACE, "svg");
         document.setAttribute("xmlns:xlink", "http://www.w3.org/1999/xlink");
         document.setAttribute("version", "1.2");
@@ -1301,18 +1309,25 @@ public class SVGOutputFormat implements OutputFormat {
         writeViewportAttributes(document, drawing.getAttributes());
         initStorageContext(document);
         defs = doc.createElement("defs");
+        if (isStreaming) {
+            writeStream(out, figures);
+        } else {
+            writeDocument(out, figures);
+        }
+    }
+
+    /**
+     * Builds a DOM of all figures, and then writes it.
+     */
+    private void writeDocument(OutputStream out, java.util.List<Figure> figures) throws IOException {
         document.appendChild(defs);
         for (Figure f : figures) {
             writeElement(document, f);
         }
-        // Write XML prolog
-        PrintWriter writer = new PrintWriter(
-                new OutputStreamWriter(out, "UTF-8"));
-        writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
-        // Write XML content
-        Transformer t;
+        // Write XML prolog and XML content
+        Transformer t = XMLPool.getTransformer();
         try {
-            t = TransformerFactory.newInstance().newTransformer();
+            t.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
             if (isPrettyPrint) {
                 t.setOutputProperty(OutputKeys.INDENT, "yes");
             }
@@ -1320,11 +1335,152 @@ public class SVGOutputFormat implements OutputFormat {
         } catch (TransformerException ex) {
             Logger.getLogger(SVGOutputFormat.class.getName()).log(Level.SEVERE, null, ex);
         }
-        // Flush writer
-        writer.flush();
+    }
+
+    /**
+     * Writes the figures one by one. The gradients are collected before
+     * the figures are written, so that the defs element can be written
+     * first. The data of an image is only encoded when its element is
+     * written, so that at most one encoded image is held in memory.
+     */
+    private void writeStream(OutputStream out, java.util.List<Figure> figures) throws IOException {
+        for (Figure f : figures) {
+            collectGradients(f);
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+        streamedImageData = new IdentityHashMap<Element, byte[]>();
+        try {
+            XMLStreamWriter w = XMLPool.getXMLOutputFactory().createXMLStreamWriter(writer);
+            w.writeStartDocument("UTF-8", "1.0");
+            w.writeStartElement("svg");
+            w.writeDefaultNamespace(SVG_NAMESPACE);
+            writeAttributes(w, document);
+            writeNode(w, defs, 1);
+            int defsCount = defs.getChildNodes().getLength();
+            for (Figure f : figures) {
+                writeElement(document, f);
+                for (Node child = document.getFirstChild(); child != null; child = document.getFirstChild()) {
+                    writeNode(w, child, 1);
+                    document.removeChild(child);
+                }
+            }
+            if (defs.getChildNodes().getLength() > defsCount) {
+                // A subclass has written gradients that we did not collect
+                // in advance. Put them in a second defs element.
+                Element lateDefs = document.getOwnerDocument().createElement("defs");
+                while (defsCount-- > 0) {
+                    defs.removeChild(defs.getFirstChild());
+                }
+                while (defs.hasChildNodes()) {
+                    lateDefs.appendChild(defs.getFirstChild());
+                }
+                writeNode(w, lateDefs, 1);
+            }
+            if (isPrettyPrint) {
+                w.writeCharacters("\n");
+            }
+            w.writeEndElement();
+            w.writeEndDocument();
+            w.close();
+            writer.flush();
+        } catch (XMLStreamException ex) {
+            IOException e = new IOException(ex.getMessage());
+            e.initCause(ex);
+            throw e;
+        } finally {
+            streamedImageData = null;
+        }
+    }
+
+    /**
+     * Adds the definitions of the gradients used by the specified figure
+     * to the defs element, in the order in which {@code writeElement}
+     * would add them.
+     */
+    private void collectGradients(Figure f) throws IOException {
+        if (f instanceof SVGGroupFigure) {
+            for (Figure child : ((SVGGroupFigure) f).getChildren()) {
+                collectGradients(child);
+            }
+        } else if (f instanceof SVGEllipseFigure
+                || f instanceof SVGPathFigure
+                || f instanceof SVGRectFigure
+                || f instanceof SVGTextFigure
+                || f instanceof SVGTextAreaFigure) {
+            if (f.get(FILL_GRADIENT) != null) {
+                getGradientId(f.get(FILL_GRADIENT));
+            }
+            if (f.get(STROKE_GRADIENT) != null) {
+                getGradientId(f.get(STROKE_GRADIENT));
+            }
+        }
+    }
+
+    /**
+     * Writes a DOM node and its descendants to the stream writer.
+     */
+    private void writeNode(XMLStreamWriter w, Node node, int depth) throws XMLStreamException, IOException {
+        if (node.getNodeType() == Node.TEXT_NODE) {
+            w.writeCharacters(node.getNodeValue());
+            return;
+        }
+        // Indenting elements with text content would change the text
+        boolean isIndenting = isPrettyPrint && depth >= 0;
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.TEXT_NODE) {
+                isIndenting = false;
+                break;
+            }
+        }
+        if (isPrettyPrint) {
+            writeIndent(w, depth);
+        }
+        if (node.hasChildNodes()) {
+            w.writeStartElement(node.getNodeName());
+            writeAttributes(w, (Element) node);
+            for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                writeNode(w, child, isIndenting ? depth + 1 : -1);
+            }
+            if (isIndenting) {
+                writeIndent(w, depth);
+            }
+            w.writeEndElement();
+        } else {
+            w.writeEmptyElement(node.getNodeName());
+            writeAttributes(w, (Element) node);
+            byte[] imageData = streamedImageData.remove(node);
+            if (imageData != null) {
+                w.writeAttribute("xlink:href", toDataURI(imageData));
+            }
+        }
+    }
+
+    private void writeIndent(XMLStreamWriter w, int depth) throws XMLStreamException {
+        if (depth >= 0) {
+            StringBuilder buf = new StringBuilder(depth * 4 + 1);
+            buf.append('\n');
+            for (int i = 0; i < depth; i++) {
+                buf.append("    ");
+            }
+            w.writeCharacters(buf.toString());
+        }
+    }
+
+    private void writeAttributes(XMLStreamWriter w, Element elem) throws XMLStreamException {
+        NamedNodeMap attributes = elem.getAttributes();
+        for (int i = 0, n = attributes.getLength(); i < n; i++) {
+            Node attr = attributes.item(i);
+            String name = attr.getNodeName();
+            if (name.startsWith("xmlns:")) {
+                w.writeNamespace(name.substring(6), attr.getNodeValue());
+            } else {
+                w.writeAttribute(name, attr.getNodeValue());
+            }
+        }
     }
 
     private void initStorageContext(Element root) {
+        nextId = 0;
         identifiedElements = new HashMap<Element, String>();
         gradientToIDMap = new HashMap<Gradient, String>();
     }
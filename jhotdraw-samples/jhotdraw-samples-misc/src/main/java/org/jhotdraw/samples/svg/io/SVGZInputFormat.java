@@ -11,6 +11,7 @@ import java.io.*;
 import java.util.zip.GZIPInputStream;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import org.jhotdraw.draw.*;
+import org.jhotdraw.draw.io.InputFormats;
 
 /**
  * SVGZInputFormat supports reading of uncompressed and compressed SVG images.
@@ -31,6 +32,30 @@ public class SVGZInputFormat extends SVGInputFormat {
         return new FileNameExtensionFilter("Scalable Vector Graphics (SVG, SVGZ)", new String[]{"svg", "svgz"});
     }
 
+    /**
+     * Accepts SVG documents, and GZIP compressed data which starts with an
+     * SVG document. Only the compressed bytes in the header are decompressed.
+     */
+    @Override
+    public boolean probe(byte[] header) {
+        if (InputFormats.startsWith(header, GZIPInputStream.GZIP_MAGIC & 0xff, GZIPInputStream.GZIP_MAGIC >>> 8)) {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            boolean isEndOfData = false;
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(header))) {
+                byte[] b = new byte[512];
+                int len = 0;
+                while (buf.size() < PROBE_LENGTH && -1 != (len = in.read(b))) {
+                    buf.write(b, 0, len);
+                }
+                isEndOfData = len == -1;
+            } catch (IOException e) {
+                // the header ends in the middle of the compressed data
+            }
+            return super.probe(buf.toByteArray(), isEndOfData);
+        }
+        return super.probe(header);
+    }
+
     @Override
     public void read(InputStream in, Drawing drawing, boolean replace) throws IOException {
         BufferedInputStream bin = (in instanceof BufferedInputStream) ? (BufferedInputStream) in : new BufferedInputStream(in);
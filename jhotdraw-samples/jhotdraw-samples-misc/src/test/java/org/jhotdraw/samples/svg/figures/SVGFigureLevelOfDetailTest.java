@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2022 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.samples.svg.figures;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import org.jhotdraw.draw.LevelOfDetail;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.geom.BezierPath;
+import static org.jhotdraw.samples.svg.SVGAttributeKeys.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests that the SVG figures are drawn with a reduced level of detail when
+ * they are very small on the device.
+ */
+public class SVGFigureLevelOfDetailTest {
+
+    private static final int SIZE = 100;
+
+    private static BufferedImage draw(Figure f, double scale, LevelOfDetail lod) {
+        BufferedImage img = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        if (lod != null) {
+            g.setRenderingHint(LevelOfDetail.KEY_LEVEL_OF_DETAIL, lod);
+        }
+        g.scale(scale, scale);
+        f.draw(g);
+        g.dispose();
+        return img;
+    }
+
+    private static int countPixels(BufferedImage img) {
+        int count = 0;
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                if (img.getRGB(x, y) != 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static SVGPathFigure createPath(double x, double y, double size) {
+        SVGPathFigure f = new SVGPathFigure();
+        SVGBezierFigure b = (SVGBezierFigure) f.getChild(0);
+        b.addNode(new BezierPath.Node(x, y));
+        b.addNode(new BezierPath.Node(x + size, y));
+        b.addNode(new BezierPath.Node(x + size, y + size));
+        b.set(PATH_CLOSED, true);
+        f.set(FILL_COLOR, Color.RED);
+        f.set(STROKE_COLOR, null);
+        return f;
+    }
+
+    /**
+     * Skips figures below 20 pixels and draws figures below 40 pixels as a
+     * box.
+     */
+    private static LevelOfDetail createLevelOfDetail() {
+        return new LevelOfDetail(20, 40, 4, Color.LIGHT_GRAY);
+    }
+
+    @Test
+    public void testTinyFiguresAreSkipped() {
+        SVGRectFigure rect = new SVGRectFigure(10, 10, 10, 10);
+        rect.set(FILL_COLOR, Color.RED);
+        rect.set(STROKE_COLOR, null);
+        SVGPathFigure path = createPath(30, 30, 10);
+        SVGGroupFigure group = new SVGGroupFigure();
+        group.add(createPath(50, 50, 10));
+        group.set(OPACITY, 0.5);
+        for (Figure f : new Figure[]{rect, path, group}) {
+            assertTrue(countPixels(draw(f, 1, null)) > 0);
+            assertEquals(0, countPixels(draw(f, 1, createLevelOfDetail())));
+        }
+    }
+
+    @Test
+    public void testSmallFiguresAreDrawnAsBox() {
+        // The box fills the inside of the outline
+        SVGRectFigure rect = new SVGRectFigure(20, 20, 30, 30);
+        rect.set(FILL_COLOR, null);
+        rect.set(STROKE_COLOR, Color.BLUE);
+        assertEquals(0, draw(rect, 1, null).getRGB(35, 35));
+        assertEquals(Color.BLUE.getRGB(), draw(rect, 1, createLevelOfDetail()).getRGB(35, 35));
+
+        // The box fills the corner which the triangle leaves out
+        SVGPathFigure path = createPath(20, 20, 30);
+        assertEquals(0, draw(path, 1, null).getRGB(22, 48));
+        assertEquals(Color.RED.getRGB(), draw(path, 1, createLevelOfDetail()).getRGB(22, 48));
+    }
+
+    @Test
+    public void testTransformedFigureIsMeasuredWithTransform() {
+        SVGRectFigure rect = new SVGRectFigure(0, 0, 1, 1);
+        rect.set(FILL_COLOR, Color.RED);
+        rect.set(STROKE_COLOR, null);
+        rect.set(TRANSFORM, AffineTransform.getScaleInstance(100, 100));
+        assertTrue(countPixels(draw(rect, 0.5, new LevelOfDetail())) > 1000);
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2022 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.samples.svg.io;
+
+import java.awt.Color;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.imageio.ImageIO;
+import org.jhotdraw.draw.DefaultDrawing;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.geom.BezierPath;
+import org.jhotdraw.samples.svg.LinearGradient;
+import org.jhotdraw.samples.svg.RadialGradient;
+import static org.jhotdraw.samples.svg.SVGAttributeKeys.*;
+import org.jhotdraw.samples.svg.figures.SVGBezierFigure;
+import org.jhotdraw.samples.svg.figures.SVGEllipseFigure;
+import org.jhotdraw.samples.svg.figures.SVGGroupFigure;
+import org.jhotdraw.samples.svg.figures.SVGImageFigure;
+import org.jhotdraw.samples.svg.figures.SVGPathFigure;
+import org.jhotdraw.samples.svg.figures.SVGRectFigure;
+import org.jhotdraw.samples.svg.figures.SVGTextAreaFigure;
+import org.jhotdraw.samples.svg.figures.SVGTextFigure;
+import org.jhotdraw.xml.XMLPool;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Tests that the streaming and the DOM based write path of
+ * {@link SVGOutputFormat} produce equivalent documents.
+ */
+public class SVGOutputFormatTest {
+
+    @Test
+    public void testStreamingOutputEqualsDocumentOutput() throws IOException {
+        Drawing drawing = createDrawing();
+        assertEquals(toString(write(drawing, false, false)), toString(write(drawing, true, false)));
+    }
+
+    @Test
+    public void testPrettyPrintKeepsContent() throws IOException {
+        Drawing drawing = createDrawing();
+        assertEquals(toString(write(drawing, true, false)), toString(write(drawing, true, true)));
+    }
+
+    @Test
+    public void testImageDataRoundTrip() throws IOException {
+        BufferedImage bufferedImage = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < 64; i++) {
+            bufferedImage.setRGB(i, i % 48, 0xff00ff);
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(bufferedImage, "png", png);
+        Drawing drawing = new DefaultDrawing();
+        SVGImageFigure image = new SVGImageFigure(0, 0, 64, 48);
+        image.setImageData(png.toByteArray());
+        drawing.add(image);
+
+        SVGOutputFormat format = new SVGOutputFormat();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        format.write(out, drawing);
+        Drawing result = new DefaultDrawing();
+        new SVGInputFormat().read(new ByteArrayInputStream(out.toByteArray()), result, true);
+        assertEquals(1, result.getChildCount());
+        assertArrayEquals(png.toByteArray(), ((SVGImageFigure) result.getChild(0)).getImageData());
+    }
+
+    private static Drawing createDrawing() {
+        Drawing drawing = new DefaultDrawing();
+        LinearGradient linear = new LinearGradient(0, 0, 1, 0,
+                new double[]{0, 1}, new Color[]{Color.RED, Color.BLUE}, new double[]{1, 0.5},
+                true, new AffineTransform());
+        RadialGradient radial = new RadialGradient(0.5, 0.5, 0.25, 0.25, 0.5,
+                new double[]{0, 1}, new Color[]{Color.WHITE, Color.BLACK}, new double[]{1, 1},
+                true, new AffineTransform());
+
+        SVGRectFigure rect = new SVGRectFigure(1, 2, 3, 4, 1, 1);
+        rect.set(FILL_GRADIENT, linear);
+        rect.set(STROKE_GRADIENT, radial);
+        rect.set(LINK, "http://www.jhotdraw.org/?a=1&b=<2>");
+        drawing.add(rect);
+
+        SVGGroupFigure group = new SVGGroupFigure();
+        SVGEllipseFigure ellipse = new SVGEllipseFigure(0, 0, 10, 20);
+        ellipse.set(FILL_GRADIENT, radial);
+        group.add(ellipse);
+        group.add(new SVGTextFigure("a<b & \"c\""));
+        SVGPathFigure line = new SVGPathFigure();
+        ((SVGBezierFigure) line.getChild(0)).addNode(new BezierPath.Node(0, 0));
+        ((SVGBezierFigure) line.getChild(0)).addNode(new BezierPath.Node(5, 5));
+        group.add(line);
+        // An image which is the last child of its parent
+        SVGImageFigure groupImage = new SVGImageFigure(1, 1, 2, 2);
+        groupImage.setImageData(new byte[]{1, 2, 3, 4, 5});
+        groupImage.set(OPACITY, 0.5);
+        groupImage.set(TRANSFORM, AffineTransform.getRotateInstance(0.5));
+        group.add(groupImage);
+        drawing.add(group);
+
+        drawing.add(new SVGTextAreaFigure("first line\nsecond line"));
+        SVGImageFigure image = new SVGImageFigure(0, 0, 5, 5);
+        byte[] imageData = new byte[1000];
+        for (int i = 0; i < imageData.length; i++) {
+            imageData[i] = (byte) (i * 31);
+        }
+        image.setImageData(imageData);
+        drawing.add(image);
+        return drawing;
+    }
+
+    private static Element write(Drawing drawing, boolean isStreaming, boolean isPrettyPrint) throws IOException {
+        SVGOutputFormat format = new SVGOutputFormat();
+        format.setStreaming(isStreaming);
+        format.setPrettyPrint(isPrettyPrint);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        format.write(out, drawing);
+        return XMLPool.parse(new ByteArrayInputStream(out.toByteArray())).getDocumentElement();
+    }
+
+    /**
+     * Returns a canonical string of an element. Attributes are sorted and
+     * whitespace between elements is ignored.
+     */
+    private static String toString(Node node) {
+        StringBuilder buf = new StringBuilder();
+        toString(node, buf);
+        return buf.toString();
+    }
+
+    private static void toString(Node node, StringBuilder buf) {
+        if (node.getNodeType() == Node.TEXT_NODE) {
+            if (node.getNodeValue().trim().length() > 0) {
+                buf.append(node.getNodeValue());
+            }
+            return;
+        }
+        buf.append('<').append('{').append(node.getNamespaceURI()).append('}').append(node.getLocalName());
+        NamedNodeMap attributes = node.getAttributes();
+        List<String> list = new ArrayList<String>();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attr = attributes.item(i);
+            list.add("{" + attr.getNamespaceURI() + "}" + attr.getLocalName() + "=" + attr.getNodeValue());
+        }
+        Collections.sort(list);
+        for (String attr : list) {
+            buf.append(' ').append(attr);
+        }
+        buf.append('>');
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            toString(child, buf);
+        }
+        buf.append("</").append(node.getLocalName()).append('>');
+    }
+}
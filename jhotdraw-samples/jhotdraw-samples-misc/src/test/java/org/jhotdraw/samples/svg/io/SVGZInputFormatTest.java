@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2022 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.samples.svg.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.jhotdraw.draw.DefaultDrawing;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.io.InputFormat;
+import org.jhotdraw.draw.io.InputFormats;
+import org.jhotdraw.samples.odg.io.ODGInputFormat;
+import org.jhotdraw.samples.svg.figures.SVGRectFigure;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests that {@link SVGInputFormat}, {@link SVGZInputFormat} and
+ * {@link ODGInputFormat} recognize their files from the first bytes.
+ */
+public class SVGZInputFormatTest {
+
+    @Test
+    public void testProbeSVG() throws IOException {
+        byte[] svg = header(write(createDrawing(), false));
+        assertTrue(new SVGInputFormat().probe(svg));
+        assertTrue(new SVGZInputFormat().probe(svg));
+        assertFalse(new ODGInputFormat().probe(svg));
+    }
+
+    @Test
+    public void testProbeCompressedSVG() throws IOException {
+        byte[] data = write(createDrawing(), true);
+        // The header ends in the middle of the compressed data
+        assertTrue(data.length > InputFormat.PROBE_LENGTH);
+        byte[] svgz = header(data);
+        assertFalse(new SVGInputFormat().probe(svgz));
+        assertTrue(new SVGZInputFormat().probe(svgz));
+        assertFalse(new ODGInputFormat().probe(svgz));
+
+        Drawing drawing = new DefaultDrawing();
+        new SVGZInputFormat().read(new ByteArrayInputStream(data), drawing, true);
+        assertEquals(2000, drawing.getChildCount());
+    }
+
+    @Test
+    public void testProbeSVGWithLongProlog() throws IOException {
+        String svg = new String(write(createDrawing(), false), StandardCharsets.UTF_8);
+        StringBuilder comment = new StringBuilder("<!--");
+        while (comment.length() < InputFormat.PROBE_LENGTH) {
+            comment.append(" comment");
+        }
+        comment.append(" -->\n");
+        int rootElement = svg.indexOf("<svg");
+        byte[] data = (svg.substring(0, rootElement) + comment + svg.substring(rootElement)).getBytes(StandardCharsets.UTF_8);
+        byte[] header = header(data);
+        assertTrue(new SVGInputFormat().probe(header));
+        assertTrue(new SVGZInputFormat().probe(header));
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(buf)) {
+            out.write(data);
+        }
+        assertTrue(new SVGZInputFormat().probe(header(buf.toByteArray())));
+
+        Drawing drawing = new DefaultDrawing();
+        new SVGInputFormat().read(new ByteArrayInputStream(data), drawing, true);
+        assertEquals(2000, drawing.getChildCount());
+    }
+
+    @Test
+    public void testProbeODG() throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(buf)) {
+            byte[] mimeType = "application/vnd.oasis.opendocument.graphics".getBytes(StandardCharsets.US_ASCII);
+            ZipEntry entry = new ZipEntry("mimetype");
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(mimeType.length);
+            CRC32 crc = new CRC32();
+            crc.update(mimeType);
+            entry.setCrc(crc.getValue());
+            out.putNextEntry(entry);
+            out.write(mimeType);
+            out.putNextEntry(new ZipEntry("content.xml"));
+            out.write("<office:document-content/>".getBytes(StandardCharsets.US_ASCII));
+        }
+        byte[] odg = header(buf.toByteArray());
+        assertTrue(new ODGInputFormat().probe(odg));
+        assertFalse(new SVGZInputFormat().probe(odg));
+    }
+
+    private static Drawing createDrawing() {
+        Drawing drawing = new DefaultDrawing();
+        Random r = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            drawing.add(new SVGRectFigure(r.nextInt(1000), r.nextInt(1000), r.nextInt(100), r.nextInt(100), 0, 0));
+        }
+        return drawing;
+    }
+
+    private static byte[] write(Drawing drawing, boolean compressed) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        (compressed ? new SVGZOutputFormat() : new SVGOutputFormat()).write(out, drawing);
+        return out.toByteArray();
+    }
+
+    private static byte[] header(byte[] data) throws IOException {
+        return InputFormats.readHeader(new ByteArrayInputStream(data));
+    }
+}
@@ -0,0 +1,763 @@
+/*
+ * @(#)ArrayQuadTree.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.geom;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A compact QuadTree which keeps all coordinates in primitive arrays.
+ * <p>
+ * Unlike {@link QuadTree}, this tree stores every object exactly once: in the
+ * smallest node whose bounds fully contain the bounds of the object. The nodes
+ * and the objects are kept in parallel {@code double[]} and {@code int[]}
+ * arrays, the objects of a node are chained through a doubly linked list of
+ * array indices. Hence, adding an object does not clone its bounds, and
+ * queries never produce duplicates, so that they can write directly into a
+ * collection supplied by the caller or into a {@link Visitor} without
+ * allocating intermediate sets.
+ * <p>
+ * Objects which do not fit into the bounds of the root node are kept in a
+ * separate list. If this list grows too large, the tree is reorganized to
+ * cover the union of all bounds.
+ * <p>
+ * The semantics of {@link #findContains}, {@link #findIntersects} and
+ * {@link #findInside} are the same as the ones of {@link QuadTree}.
+ * <p>
+ * Queries do not modify the tree, so that many threads may query the tree at
+ * the same time. Adding, updating and removing objects must be synchronized
+ * externally.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class ArrayQuadTree<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Receives the objects found by a query.
+     */
+    public interface Visitor<T> {
+
+        /**
+         * Visits an object found by a query.
+         *
+         * @param object the object
+         * @return true to continue the query, false to stop it.
+         */
+        boolean visit(T object);
+    }
+    private static final int CONTAINS = 0;
+    private static final int INTERSECTS = 1;
+    private static final int INSIDE = 2;
+    /**
+     * Index of the pseudo node which holds the objects outside of the root.
+     */
+    private static final int OUTSIDE = 0;
+    /**
+     * Index of the root node.
+     */
+    private static final int ROOT = 1;
+    private static final int NONE = -1;
+    private int maxCapacity = 32;
+    private double minSize = 32;
+    private int maxOutside = 32;
+    /**
+     * Node bounds, four values per node: x, y, width, height.
+     */
+    private double[] nodeBounds;
+    /**
+     * Index of the first of the four children of a node, or {@code NONE} if
+     * the node is a leaf.
+     */
+    private int[] nodeChildren;
+    /**
+     * Index of the first object of a node, or {@code NONE}.
+     */
+    private int[] nodeHead;
+    /**
+     * Number of objects of a node.
+     */
+    private int[] nodeSize;
+    private int nodeCount;
+    /**
+     * The objects. Free slots are null.
+     */
+    private Object[] items;
+    /**
+     * Object bounds, four values per object: x, y, width, height.
+     */
+    private double[] itemBounds;
+    private int[] itemNode;
+    private int[] itemNext;
+    private int[] itemPrev;
+    /**
+     * Number of slots which have been used so far.
+     */
+    private int itemCount;
+    /**
+     * Head of the list of free slots, chained through {@code itemNext}.
+     */
+    private int freeHead = NONE;
+    private HashMap<T, Integer> slots = new HashMap<>();
+    private boolean isReorganizing;
+
+    /**
+     * Creates a new instance.
+     */
+    public ArrayQuadTree() {
+        this(new Rectangle2D.Double(0, 0, 800, 600));
+    }
+
+    public ArrayQuadTree(Rectangle2D.Double bounds) {
+        items = new Object[16];
+        itemBounds = new double[16 * 4];
+        itemNode = new int[16];
+        itemNext = new int[16];
+        itemPrev = new int[16];
+        nodeBounds = new double[16 * 4];
+        nodeChildren = new int[16];
+        nodeHead = new int[16];
+        nodeSize = new int[16];
+        initNodes(bounds.x, bounds.y, bounds.width, bounds.height);
+    }
+
+    /**
+     * Returns the number of objects in the tree.
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Returns true if the tree contains the specified object.
+     */
+    public boolean contains(T o) {
+        return slots.containsKey(o);
+    }
+
+    /**
+     * Removes all objects from the tree.
+     */
+    public void clear() {
+        Arrays.fill(items, 0, itemCount, null);
+        itemCount = 0;
+        freeHead = NONE;
+        slots.clear();
+        initNodes(nodeBounds[ROOT * 4], nodeBounds[ROOT * 4 + 1], nodeBounds[ROOT * 4 + 2], nodeBounds[ROOT * 4 + 3]);
+    }
+
+    /**
+     * Adds an object to the tree. If the object is already in the tree, its
+     * bounds are updated.
+     * <p>
+     * The tree copies the coordinates of the bounds, it does not keep a
+     * reference to the bounds object.
+     */
+    public void add(T o, Rectangle2D.Double bounds) {
+        Integer slot = slots.get(o);
+        if (slot != null) {
+            update(slot, bounds.x, bounds.y, bounds.width, bounds.height);
+        } else {
+            int s = allocateSlot(o, bounds.x, bounds.y, bounds.width, bounds.height);
+            slots.put(o, s);
+            insert(s);
+        }
+    }
+
+    /**
+     * Updates the bounds of an object. This is cheaper than removing and
+     * adding the object, if the object stays within the same node. If the
+     * object is not in the tree, it is added.
+     */
+    public void update(T o, Rectangle2D.Double bounds) {
+        add(o, bounds);
+    }
+
+    /**
+     * Removes an object from the tree.
+     */
+    public void remove(T o) {
+        Integer slot = slots.remove(o);
+        if (slot != null) {
+            int s = slot;
+            unlink(s);
+            items[s] = null;
+            itemNode[s] = NONE;
+            itemNext[s] = freeHead;
+            freeHead = s;
+        }
+    }
+
+    /**
+     * Replaces the contents of the tree by the specified objects.
+     * <p>
+     * The root bounds are computed from the union of all bounds, so that the
+     * tree never has to be reorganized while loading. The objects are inserted
+     * in the order of the Hilbert curve index of their centers, so that
+     * objects which are close to each other in space are also close to each
+     * other in the arrays.
+     *
+     * @param objects the objects
+     * @param boundsFunction returns the bounds of an object
+     */
+    public void bulkLoad(List<? extends T> objects, Function<? super T, ? extends Rectangle2D> boundsFunction) {
+        int n = objects.size();
+        double[] b = new double[n * 4];
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            Rectangle2D r = boundsFunction.apply(objects.get(i));
+            double x = r.getX(), y = r.getY(), w = r.getWidth(), h = r.getHeight();
+            b[i * 4] = x;
+            b[i * 4 + 1] = y;
+            b[i * 4 + 2] = w;
+            b[i * 4 + 3] = h;
+            if (isFinite(x, y, w, h)) {
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, y);
+                maxX = Math.max(maxX, x + w);
+                maxY = Math.max(maxY, y + h);
+            }
+        }
+        Arrays.fill(items, 0, itemCount, null);
+        itemCount = 0;
+        freeHead = NONE;
+        slots.clear();
+        if (minX <= maxX) {
+            initNodes(minX, minY, maxX - minX, maxY - minY);
+        } else {
+            clear();
+        }
+        // Sort by Hilbert index. The index goes into the upper 32 bits,
+        // the position in the list into the lower 31 bits.
+        long[] order = new long[n];
+        double sx = (maxX > minX) ? 65535 / (maxX - minX) : 0;
+        double sy = (maxY > minY) ? 65535 / (maxY - minY) : 0;
+        for (int i = 0; i < n; i++) {
+            long key;
+            if (isFinite(b[i * 4], b[i * 4 + 1], b[i * 4 + 2], b[i * 4 + 3])) {
+                int hx = (int) ((b[i * 4] + b[i * 4 + 2] / 2 - minX) * sx);
+                int hy = (int) ((b[i * 4 + 1] + b[i * 4 + 3] / 2 - minY) * sy);
+                key = hilbertIndex(hx, hy);
+            } else {
+                key = 0xffffffffL;
+            }
+            order[i] = (key << 31) | i;
+        }
+        Arrays.sort(order);
+        for (int j = 0; j < n; j++) {
+            int i = (int) (order[j] & 0x7fffffffL);
+            T o = objects.get(i);
+            Integer slot = slots.get(o);
+            if (slot != null) {
+                update(slot, b[i * 4], b[i * 4 + 1], b[i * 4 + 2], b[i * 4 + 3]);
+            } else {
+                int s = allocateSlot(o, b[i * 4], b[i * 4 + 1], b[i * 4 + 2], b[i * 4 + 3]);
+                slots.put(o, s);
+                insert(s);
+            }
+        }
+    }
+
+    /**
+     * Reorganizes the tree, so that the root node covers the bounds of all
+     * objects.
+     */
+    public void reorganize() {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int s = 0; s < itemCount; s++) {
+            if (itemNode[s] != NONE) {
+                double x = itemBounds[s * 4], y = itemBounds[s * 4 + 1];
+                double w = itemBounds[s * 4 + 2], h = itemBounds[s * 4 + 3];
+                if (isFinite(x, y, w, h)) {
+                    minX = Math.min(minX, x);
+                    minY = Math.min(minY, y);
+                    maxX = Math.max(maxX, x + w);
+                    maxY = Math.max(maxY, y + h);
+                }
+            }
+        }
+        if (minX > maxX) {
+            return;
+        }
+        isReorganizing = true;
+        try {
+            initNodes(minX, minY, maxX - minX, maxY - minY);
+            for (int s = 0; s < itemCount; s++) {
+                if (itemNode[s] != NONE) {
+                    insert(s);
+                }
+            }
+        } finally {
+            isReorganizing = false;
+        }
+    }
+
+    /**
+     * Returns all objects whose bounds contain the specified point.
+     */
+    public Collection<T> findContains(Point2D.Double p) {
+        return findContains(p, new ArrayList<T>());
+    }
+
+    /**
+     * Adds all objects whose bounds contain the specified point to the
+     * specified collection.
+     *
+     * @return the collection
+     */
+    public <C extends Collection<? super T>> C findContains(Point2D.Double p, C result) {
+        search(CONTAINS, p.x, p.y, 0, 0, result, null);
+        return result;
+    }
+
+    /**
+     * Returns all objects whose bounds intersect the specified rectangle.
+     */
+    public Collection<T> findIntersects(Rectangle2D r) {
+        return findIntersects(r, new ArrayList<T>());
+    }
+
+    /**
+     * Adds all objects whose bounds intersect the specified rectangle to the
+     * specified collection.
+     *
+     * @return the collection
+     */
+    public <C extends Collection<? super T>> C findIntersects(Rectangle2D r, C result) {
+        search(INTERSECTS, r.getX(), r.getY(), r.getWidth(), r.getHeight(), result, null);
+        return result;
+    }
+
+    /**
+     * Returns all objects whose bounds are inside the specified rectangle.
+     */
+    public Collection<T> findInside(Rectangle2D r) {
+        return findInside(r, new ArrayList<T>());
+    }
+
+    /**
+     * Adds all objects whose bounds are inside the specified rectangle to the
+     * specified collection.
+     *
+     * @return the collection
+     */
+    public <C extends Collection<? super T>> C findInside(Rectangle2D r, C result) {
+        search(INSIDE, r.getX(), r.getY(), r.getWidth(), r.getHeight(), result, null);
+        return result;
+    }
+
+    /**
+     * Visits all objects whose bounds contain the specified point.
+     *
+     * @return false if the visitor stopped the query
+     */
+    public boolean visitContains(Point2D.Double p, Visitor<? super T> visitor) {
+        return search(CONTAINS, p.x, p.y, 0, 0, null, visitor);
+    }
+
+    /**
+     * Visits all objects whose bounds intersect the specified rectangle.
+     *
+     * @return false if the visitor stopped the query
+     */
+    public boolean visitIntersects(Rectangle2D r, Visitor<? super T> visitor) {
+        return search(INTERSECTS, r.getX(), r.getY(), r.getWidth(), r.getHeight(), null, visitor);
+    }
+
+    /**
+     * Visits all objects whose bounds are inside the specified rectangle.
+     *
+     * @return false if the visitor stopped the query
+     */
+    public boolean visitInside(Rectangle2D r, Visitor<? super T> visitor) {
+        return search(INSIDE, r.getX(), r.getY(), r.getWidth(), r.getHeight(), null, visitor);
+    }
+
+    /**
+     * Adds the {@code k} objects whose bounds are nearest to the specified
+     * point to the specified list, nearest first. The distance of an object
+     * is the distance from the point to its bounds, it is zero if the bounds
+     * contain the point.
+     *
+     * @return the list
+     */
+    public <L extends List<? super T>> L findNearest(Point2D.Double p, int k, L result) {
+        if (k <= 0 || slots.isEmpty()) {
+            return result;
+        }
+        Nearest nearest = new Nearest(Math.min(k, slots.size()));
+        nearestInNode(OUTSIDE, p.x, p.y, nearest);
+        nearestInNode(ROOT, p.x, p.y, nearest);
+        for (int i = 0; i < nearest.count; i++) {
+            @SuppressWarnings("unchecked")
+            T o = (T) items[nearest.slots[i]];
+            result.add(o);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the object whose bounds are nearest to the specified point, or
+     * null if the tree is empty.
+     */
+    public T findNearest(Point2D.Double p) {
+        ArrayList<T> result = findNearest(p, 1, new ArrayList<T>(1));
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    // ------------------------------------------------------------------
+    // Implementation
+    // ------------------------------------------------------------------
+    private void initNodes(double x, double y, double w, double h) {
+        nodeCount = 0;
+        int outside = allocateNode(0, 0, 0, 0);
+        int root = allocateNode(x, y, w, h);
+        assert outside == OUTSIDE && root == ROOT;
+    }
+
+    private int allocateNode(double x, double y, double w, double h) {
+        if (nodeCount == nodeChildren.length) {
+            int capacity = nodeCount * 2;
+            nodeBounds = Arrays.copyOf(nodeBounds, capacity * 4);
+            nodeChildren = Arrays.copyOf(nodeChildren, capacity);
+            nodeHead = Arrays.copyOf(nodeHead, capacity);
+            nodeSize = Arrays.copyOf(nodeSize, capacity);
+        }
+        int n = nodeCount++;
+        nodeBounds[n * 4] = x;
+        nodeBounds[n * 4 + 1] = y;
+        nodeBounds[n * 4 + 2] = w;
+        nodeBounds[n * 4 + 3] = h;
+        nodeChildren[n] = NONE;
+        nodeHead[n] = NONE;
+        nodeSize[n] = 0;
+        return n;
+    }
+
+    private int allocateSlot(T o, double x, double y, double w, double h) {
+        int s;
+        if (freeHead != NONE) {
+            s = freeHead;
+            freeHead = itemNext[s];
+        } else {
+            if (itemCount == items.length) {
+                int capacity = itemCount * 2;
+                items = Arrays.copyOf(items, capacity);
+                itemBounds = Arrays.copyOf(itemBounds, capacity * 4);
+                itemNode = Arrays.copyOf(itemNode, capacity);
+                itemNext = Arrays.copyOf(itemNext, capacity);
+                itemPrev = Arrays.copyOf(itemPrev, capacity);
+            }
+            s = itemCount++;
+        }
+        items[s] = o;
+        itemBounds[s * 4] = x;
+        itemBounds[s * 4 + 1] = y;
+        itemBounds[s * 4 + 2] = w;
+        itemBounds[s * 4 + 3] = h;
+        itemNode[s] = NONE;
+        return s;
+    }
+
+    private void update(int s, double x, double y, double w, double h) {
+        itemBounds[s * 4] = x;
+        itemBounds[s * 4 + 1] = y;
+        itemBounds[s * 4 + 2] = w;
+        itemBounds[s * 4 + 3] = h;
+        int node = itemNode[s];
+        if (node != OUTSIDE && nodeContains(node, s)
+                && (nodeChildren[node] == NONE || childContaining(node, s) == NONE)) {
+            return;
+        }
+        unlink(s);
+        insert(s);
+    }
+
+    private void insert(int s) {
+        if (!nodeContains(ROOT, s)) {
+            link(OUTSIDE, s);
+            if (!isReorganizing && nodeSize[OUTSIDE] > maxOutside) {
+                reorganize();
+            }
+            return;
+        }
+        int node = ROOT;
+        while (true) {
+            if (nodeChildren[node] == NONE) {
+                if (nodeSize[node] >= maxCapacity
+                        && nodeBounds[node * 4 + 2] > minSize
+                        && nodeBounds[node * 4 + 3] > minSize) {
+                    split(node);
+                } else {
+                    link(node, s);
+                    return;
+                }
+            }
+            int child = childContaining(node, s);
+            if (child == NONE) {
+                link(node, s);
+                return;
+            }
+            node = child;
+        }
+    }
+
+    private void split(int node) {
+        double x = nodeBounds[node * 4], y = nodeBounds[node * 4 + 1];
+        double w = nodeBounds[node * 4 + 2], h = nodeBounds[node * 4 + 3];
+        double hw = w / 2;
+        double hh = h / 2;
+        int first = allocateNode(x, y, hw, hh);
+        allocateNode(x + hw, y, w - hw, hh);
+        allocateNode(x, y + hh, hw, h - hh);
+        allocateNode(x + hw, y + hh, w - hw, h - hh);
+        nodeChildren[node] = first;
+        for (int s = nodeHead[node]; s != NONE;) {
+            int next = itemNext[s];
+            int child = childContaining(node, s);
+            if (child != NONE) {
+                unlink(s);
+                link(child, s);
+            }
+            s = next;
+        }
+    }
+
+    private void link(int node, int s) {
+        int head = nodeHead[node];
+        itemPrev[s] = NONE;
+        itemNext[s] = head;
+        if (head != NONE) {
+            itemPrev[head] = s;
+        }
+        nodeHead[node] = s;
+        nodeSize[node]++;
+        itemNode[s] = node;
+    }
+
+    private void unlink(int s) {
+        int node = itemNode[s];
+        int prev = itemPrev[s];
+        int next = itemNext[s];
+        if (prev != NONE) {
+            itemNext[prev] = next;
+        } else {
+            nodeHead[node] = next;
+        }
+        if (next != NONE) {
+            itemPrev[next] = prev;
+        }
+        nodeSize[node]--;
+        itemNode[s] = NONE;
+    }
+
+    private int childContaining(int node, int s) {
+        int first = nodeChildren[node];
+        for (int c = first; c < first + 4; c++) {
+            if (nodeContains(c, s)) {
+                return c;
+            }
+        }
+        return NONE;
+    }
+
+    private boolean nodeContains(int node, int s) {
+        double nx = nodeBounds[node * 4], ny = nodeBounds[node * 4 + 1];
+        double x = itemBounds[s * 4], y = itemBounds[s * 4 + 1];
+        return x >= nx && y >= ny
+                && x + itemBounds[s * 4 + 2] <= nx + nodeBounds[node * 4 + 2]
+                && y + itemBounds[s * 4 + 3] <= ny + nodeBounds[node * 4 + 3];
+    }
+
+    private boolean search(int mode, double qx, double qy, double qw, double qh,
+            Collection<? super T> result, Visitor<? super T> visitor) {
+        if (mode != CONTAINS && (qw <= 0 || qh <= 0)) {
+            // An empty rectangle neither intersects nor contains anything.
+            return true;
+        }
+        return searchItems(OUTSIDE, mode, qx, qy, qw, qh, result, visitor)
+                && searchNode(ROOT, mode, qx, qy, qw, qh, result, visitor);
+    }
+
+    private boolean searchNode(int node, int mode, double qx, double qy, double qw, double qh,
+            Collection<? super T> result, Visitor<? super T> visitor) {
+        double nx = nodeBounds[node * 4], ny = nodeBounds[node * 4 + 1];
+        if (qx > nx + nodeBounds[node * 4 + 2] || qy > ny + nodeBounds[node * 4 + 3]
+                || qx + qw < nx || qy + qh < ny) {
+            return true;
+        }
+        if (!searchItems(node, mode, qx, qy, qw, qh, result, visitor)) {
+            return false;
+        }
+        int first = nodeChildren[node];
+        if (first != NONE) {
+            for (int c = first; c < first + 4; c++) {
+                if (!searchNode(c, mode, qx, qy, qw, qh, result, visitor)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean searchItems(int node, int mode, double qx, double qy, double qw, double qh,
+            Collection<? super T> result, Visitor<? super T> visitor) {
+        for (int s = nodeHead[node]; s != NONE; s = itemNext[s]) {
+            double x = itemBounds[s * 4], y = itemBounds[s * 4 + 1];
+            double w = itemBounds[s * 4 + 2], h = itemBounds[s * 4 + 3];
+            boolean match;
+            switch (mode) {
+                case CONTAINS:
+                    match = qx >= x && qy >= y && qx < x + w && qy < y + h;
+                    break;
+                case INTERSECTS:
+                    match = w > 0 && h > 0
+                            && qx + qw > x && qy + qh > y && qx < x + w && qy < y + h;
+                    break;
+                default:
+                    match = w > 0 && h > 0
+                            && x >= qx && y >= qy && x + w <= qx + qw && y + h <= qy + qh;
+                    break;
+            }
+            if (match) {
+                @SuppressWarnings("unchecked")
+                T o = (T) items[s];
+                if (visitor != null) {
+                    if (!visitor.visit(o)) {
+                        return false;
+                    }
+                } else {
+                    result.add(o);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void nearestInNode(int node, double px, double py, Nearest nearest) {
+        if (node != OUTSIDE && nearest.isFull()
+                && distanceSq(px, py, nodeBounds, node) > nearest.worst()) {
+            return;
+        }
+        for (int s = nodeHead[node]; s != NONE; s = itemNext[s]) {
+            nearest.offer(s, distanceSq(px, py, itemBounds, s));
+        }
+        int first = nodeChildren[node];
+        if (first != NONE) {
+            // Visit the children nearest first, so that we can prune early.
+            double d0 = distanceSq(px, py, nodeBounds, first);
+            double d1 = distanceSq(px, py, nodeBounds, first + 1);
+            double d2 = distanceSq(px, py, nodeBounds, first + 2);
+            double d3 = distanceSq(px, py, nodeBounds, first + 3);
+            for (int visited = 0; visited < 4; visited++) {
+                int c;
+                if (d0 <= d1 && d0 <= d2 && d0 <= d3) {
+                    c = 0;
+                    d0 = Double.POSITIVE_INFINITY;
+                } else if (d1 <= d2 && d1 <= d3) {
+                    c = 1;
+                    d1 = Double.POSITIVE_INFINITY;
+                } else if (d2 <= d3) {
+                    c = 2;
+                    d2 = Double.POSITIVE_INFINITY;
+                } else {
+                    c = 3;
+                    d3 = Double.POSITIVE_INFINITY;
+                }
+                nearestInNode(first + c, px, py, nearest);
+            }
+        }
+    }
+
+    /**
+     * Returns the squared distance from a point to a rectangle stored in the
+     * specified array.
+     */
+    private static double distanceSq(double px, double py, double[] bounds, int index) {
+        double x = bounds[index * 4], y = bounds[index * 4 + 1];
+        double dx = Math.max(0, Math.max(x - px, px - (x + bounds[index * 4 + 2])));
+        double dy = Math.max(0, Math.max(y - py, py - (y + bounds[index * 4 + 3])));
+        return dx * dx + dy * dy;
+    }
+
+    private static boolean isFinite(double x, double y, double w, double h) {
+        return !Double.isNaN(x + y + w + h) && !Double.isInfinite(x + y + w + h);
+    }
+
+    /**
+     * Returns the index of the point on a Hilbert curve covering a grid of
+     * 65536 by 65536 cells.
+     */
+    private static long hilbertIndex(int x, int y) {
+        long d = 0;
+        for (int s = 1 << 15; s > 0; s >>= 1) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = 65535 - x;
+                    y = 65535 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Holds the best candidates of a nearest neighbour query, sorted by
+     * ascending distance.
+     */
+    private static class Nearest {
+
+        private final int[] slots;
+        private final double[] distances;
+        private int count;
+
+        Nearest(int k) {
+            slots = new int[k];
+            distances = new double[k];
+        }
+
+        boolean isFull() {
+            return count == slots.length;
+        }
+
+        double worst() {
+            return distances[count - 1];
+        }
+
+        void offer(int slot, double distance) {
+            if (Double.isNaN(distance) || isFull() && distance >= worst()) {
+                return;
+            }
+            int i = isFull() ? count - 1 : count++;
+            while (i > 0 && distances[i - 1] > distance) {
+                distances[i] = distances[i - 1];
+                slots[i] = slots[i - 1];
+                i--;
+            }
+            distances[i] = distance;
+            slots[i] = slot;
+        }
+    }
+}
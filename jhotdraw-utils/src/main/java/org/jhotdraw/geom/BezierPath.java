@@ -9,6 +9,8 @@ package org.jhotdraw.geom;
 
 import java.awt.*;
 import java.awt.geom.*;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.*;
 
@@ -20,14 +22,32 @@ import java.util.*;
  * C0, C1, C2. A mask defines which control points are in use. At a node,
  * the path passes through C0. C1 controls the curve going towards C0. C2
  * controls the curve going away from C0.
+ * <p>
+ * The nodes are stored in packed arrays: six coordinates and one flag byte
+ * per node. The path implements {@code Shape} directly on top of these
+ * arrays.
+ * <p>
+ * A {@link Node} object is only created for a node, when the node is accessed
+ * with {@link #get(int)} or with an iterator, or when it is inserted with
+ * {@link #add(int, Node)} or {@link #set(int, Node)}. The node object stays
+ * attached to the path until it is removed from the path, so that changes to
+ * the node object are reflected in the path, like with a list of nodes.
+ * <p>
+ * The methods {@link #getMask}, {@link #getX}, {@link #getY},
+ * {@link #copyNode}, {@link #setNode} and {@link #addNode} access the nodes
+ * without creating node objects.
+ * <p>
+ * Up to version 1 of the serialized form, this class extended
+ * {@code ArrayList}. The serialized form of version 2 contains the packed
+ * arrays. It is not compatible with version 1.
  *
  * @author Werner Randelshofer
  * @version $Id$
  */
-public class BezierPath extends ArrayList<BezierPath.Node>
-        implements Shape, Serializable, Cloneable {
+public class BezierPath extends AbstractList<BezierPath.Node>
+        implements Shape, Serializable, Cloneable, RandomAccess {
 
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
     /**
      * Constant for having only control point C0 in effect. C0 is the point
      * through whitch the curve passes.
@@ -49,13 +69,41 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      */
     public static final int C1C2_MASK = C1_MASK | C2_MASK;
     /**
-     * We cache a Path2D.Double instance to speed up Shape operations.
+     * Flag for the keepColinear hint of a packed node.
      */
-    private transient Path2D.Double generalPath;
+    private static final int KEEP_COLINEAR_FLAG = 4;
+    private static final double[] EMPTY_COORDS = new double[0];
+    private static final byte[] EMPTY_FLAGS = new byte[0];
+    /**
+     * The packed control points with six values per node: x0, y0, x1, y1, x2,
+     * y2. The values of a node which has an attached node object are not
+     * used.
+     */
+    private double[] coords = EMPTY_COORDS;
+    /**
+     * The packed mask and keepColinear hint with one value per node. The
+     * value of a node which has an attached node object is not used.
+     */
+    private byte[] flags = EMPTY_FLAGS;
+    /**
+     * The number of nodes.
+     */
+    private int size;
+    /**
+     * The node objects, which are attached to the path. The array has the
+     * same capacity as the packed arrays. This is null, if no node object
+     * is attached.
+     */
+    private transient Node[] attached;
     /**
      * We cache a Rectangle2D.Double instance to speed up getBounds operations.
      */
     private transient Rectangle2D.Double bounds;
+    /**
+     * We cache the arc lengths of the flattened path to speed up
+     * getPointOnPath and getRelativePositionOnPath.
+     */
+    private transient ArcLengthTable arcLengths;
     /**
      * We cache the index of the outermost node to speed up method indexOfOutermostNode();
      */
@@ -248,12 +296,439 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         }
     }
 
+    /**
+     * The flattened path with the cumulated length at each point.
+     */
+    private static class ArcLengthTable {
+
+        private final double flatness;
+        private int size;
+        /**
+         * Coordinates of the points: x0, y0, x1, y1, ...
+         */
+        private double[] points = new double[32];
+        /**
+         * The length of the path from the first point to each point.
+         */
+        private double[] lengths = new double[16];
+        /**
+         * The bounds tree of the segments, created on the first reverse
+         * lookup. Four values per node: min x, min y, max x, max y.
+         */
+        private double[] bounds;
+        private int leafCount;
+
+        public ArcLengthTable(BezierPath path, double flatness) {
+            this.flatness = flatness;
+            double[] coords = new double[6];
+            for (PathIterator i = path.getPathIterator(null, flatness); !i.isDone(); i.next()) {
+                switch (i.currentSegment(coords)) {
+                    case PathIterator.SEG_MOVETO:
+                    case PathIterator.SEG_LINETO:
+                        add(coords[0], coords[1]);
+                        break;
+                    default:
+                        // The closing segment is returned as a line by the
+                        // path iterator.
+                        break;
+                }
+            }
+        }
+
+        private void add(double x, double y) {
+            if (size == lengths.length) {
+                lengths = Arrays.copyOf(lengths, size * 2);
+                points = Arrays.copyOf(points, size * 4);
+            }
+            points[size * 2] = x;
+            points[size * 2 + 1] = y;
+            lengths[size] = (size == 0) ? 0
+                    : lengths[size - 1] + Geom.length(points[size * 2 - 2], points[size * 2 - 1], x, y);
+            size++;
+        }
+
+        public double getLength() {
+            return (size == 0) ? 0 : lengths[size - 1];
+        }
+
+        /**
+         * Returns the point at the specified length from the first point.
+         */
+        public Point2D.Double getPoint(double length) {
+            int i = Arrays.binarySearch(lengths, 0, size, length);
+            if (i >= 0) {
+                return new Point2D.Double(points[i * 2], points[i * 2 + 1]);
+            }
+            i = -i - 1;
+            if (i == 0) {
+                return new Point2D.Double(points[0], points[1]);
+            } else if (i == size) {
+                return new Point2D.Double(points[size * 2 - 2], points[size * 2 - 1]);
+            }
+            double factor = (length - lengths[i - 1]) / (lengths[i] - lengths[i - 1]);
+            return new Point2D.Double(
+                    points[i * 2 - 2] * (1 - factor) + points[i * 2] * factor,
+                    points[i * 2 - 1] * (1 - factor) + points[i * 2 + 1] * factor);
+        }
+
+        /**
+         * Returns the length from the first point to the specified point, or
+         * -1 if the point is not on the path.
+         * <p>
+         * If the point is on more than one segment, the length is measured
+         * up to the nearest one.
+         */
+        public double getLength(Point2D.Double p, double tolerance) {
+            if (size < 2) {
+                return -1;
+            }
+            if (bounds == null) {
+                buildBounds();
+            }
+            double grow = Math.max(2, Math.ceil(tolerance));
+            int nearest = -1;
+            double nearestDistance = Double.POSITIVE_INFINITY;
+            int[] stack = new int[64];
+            int top = 0;
+            stack[top++] = 1;
+            while (top > 0) {
+                int node = stack[--top];
+                int b = node * 4;
+                if (p.x < bounds[b] - grow || p.y < bounds[b + 1] - grow
+                        || p.x > bounds[b + 2] + grow || p.y > bounds[b + 3] + grow) {
+                    continue;
+                }
+                if (node < leafCount) {
+                    stack[top++] = node * 2 + 1;
+                    stack[top++] = node * 2;
+                    continue;
+                }
+                int i = node - leafCount + 1;
+                double x1 = points[i * 2 - 2], y1 = points[i * 2 - 1];
+                double x2 = points[i * 2], y2 = points[i * 2 + 1];
+                if (Geom.lineContainsPoint(x1, y1, x2, y2, p.x, p.y, tolerance)) {
+                    double distance = Line2D.ptSegDistSq(x1, y1, x2, y2, p.x, p.y);
+                    if (distance < nearestDistance) {
+                        nearest = i;
+                        nearestDistance = distance;
+                    }
+                }
+            }
+            if (nearest == -1) {
+                return -1;
+            }
+            return lengths[nearest - 1]
+                    + Geom.length(points[nearest * 2 - 2], points[nearest * 2 - 1], p.x, p.y);
+        }
+
+        /**
+         * Builds the bounds tree of the segments. The segments are the
+         * leaves of a balanced binary tree, each inner node holds the union
+         * of its two children. The layout is the same as in
+         * {@link BoundsUnionTree}.
+         */
+        private void buildBounds() {
+            int count = size - 1;
+            leafCount = 1;
+            while (leafCount < count) {
+                leafCount <<= 1;
+            }
+            bounds = new double[leafCount * 2 * 4];
+            for (int node = 1; node < leafCount * 2; node++) {
+                int b = node * 4;
+                bounds[b] = Double.POSITIVE_INFINITY;
+                bounds[b + 1] = Double.POSITIVE_INFINITY;
+                bounds[b + 2] = Double.NEGATIVE_INFINITY;
+                bounds[b + 3] = Double.NEGATIVE_INFINITY;
+            }
+            for (int i = 1; i < size; i++) {
+                int b = (leafCount + i - 1) * 4;
+                bounds[b] = Math.min(points[i * 2 - 2], points[i * 2]);
+                bounds[b + 1] = Math.min(points[i * 2 - 1], points[i * 2 + 1]);
+                bounds[b + 2] = Math.max(points[i * 2 - 2], points[i * 2]);
+                bounds[b + 3] = Math.max(points[i * 2 - 1], points[i * 2 + 1]);
+            }
+            for (int node = leafCount - 1; node > 0; node--) {
+                int b = node * 4;
+                int left = node * 2 * 4;
+                int right = left + 4;
+                bounds[b] = Math.min(bounds[left], bounds[right]);
+                bounds[b + 1] = Math.min(bounds[left + 1], bounds[right + 1]);
+                bounds[b + 2] = Math.max(bounds[left + 2], bounds[right + 2]);
+                bounds[b + 3] = Math.max(bounds[left + 3], bounds[right + 3]);
+            }
+        }
+    }
+
     /**
      * Creates a new instance.
      */
     public BezierPath() {
     }
 
+    // PACKED NODES
+    /**
+     * Returns the mask of the specified node.
+     */
+    public int getMask(int index) {
+        Node node = getAttached(Objects.checkIndex(index, size));
+        return (node != null) ? node.mask : flags[index] & C1C2_MASK;
+    }
+
+    /**
+     * Returns the x coordinate of a control point of the specified node.
+     *
+     * @param index The index of the node.
+     * @param ctrlIndex Either C0_MASK, C1_MASK or C2_MASK.
+     */
+    public double getX(int index, int ctrlIndex) {
+        Node node = getAttached(Objects.checkIndex(index, size));
+        return (node != null) ? node.x[ctrlIndex] : coords[index * 6 + ctrlIndex * 2];
+    }
+
+    /**
+     * Returns the y coordinate of a control point of the specified node.
+     *
+     * @param index The index of the node.
+     * @param ctrlIndex Either C0_MASK, C1_MASK or C2_MASK.
+     */
+    public double getY(int index, int ctrlIndex) {
+        Node node = getAttached(Objects.checkIndex(index, size));
+        return (node != null) ? node.y[ctrlIndex] : coords[index * 6 + ctrlIndex * 2 + 1];
+    }
+
+    /**
+     * Returns a copy of the specified node. Unlike {@link #get(int)}, this
+     * method does not create a node object which is attached to the path.
+     */
+    public Node copyNode(int index) {
+        return readNode(index, new Node());
+    }
+
+    /**
+     * Sets the values of the specified node to the values of the provided
+     * node. Unlike {@link #set(int, Node)}, this method does not keep a
+     * reference to the provided node.
+     */
+    public void setNode(int index, Node node) {
+        writeNode(Objects.checkIndex(index, size), node.mask, node.x[0], node.y[0], node.x[1], node.y[1], node.x[2], node.y[2], node.keepColinear);
+    }
+
+    /**
+     * Inserts a copy of the provided node at the specified index. Unlike
+     * {@link #add(int, Node)}, this method does not keep a reference to the
+     * provided node.
+     */
+    public void addNode(int index, Node node) {
+        insertNode(index, node.mask, node.x[0], node.y[0], node.x[1], node.y[1], node.x[2], node.y[2], node.keepColinear);
+    }
+
+    /**
+     * Trims the capacity of the packed arrays to the number of nodes.
+     */
+    public void trimToSize() {
+        if (flags.length != size) {
+            setCapacity(size);
+        }
+    }
+
+    /**
+     * Increases the capacity of the packed arrays, so that they can hold at
+     * least the specified number of nodes.
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > flags.length) {
+            setCapacity(minCapacity);
+        }
+    }
+
+    private void setCapacity(int capacity) {
+        coords = Arrays.copyOf(coords, capacity * 6);
+        flags = Arrays.copyOf(flags, capacity);
+        if (attached != null) {
+            attached = Arrays.copyOf(attached, capacity);
+        }
+    }
+
+    /**
+     * Returns the node object which is attached to the specified node, or
+     * null.
+     */
+    private Node getAttached(int index) {
+        return (attached == null) ? null : attached[index];
+    }
+
+    private void setAttached(int index, Node node) {
+        if (attached == null) {
+            if (node == null) {
+                return;
+            }
+            attached = new Node[flags.length];
+        }
+        attached[index] = node;
+    }
+
+    /**
+     * Copies the specified node into the provided node object.
+     */
+    private Node readNode(int index, Node node) {
+        Node a = getAttached(Objects.checkIndex(index, size));
+        if (a != null) {
+            node.setTo(a);
+        } else {
+            int c = index * 6;
+            node.mask = flags[index] & C1C2_MASK;
+            node.keepColinear = (flags[index] & KEEP_COLINEAR_FLAG) != 0;
+            node.x[0] = coords[c];
+            node.y[0] = coords[c + 1];
+            node.x[1] = coords[c + 2];
+            node.y[1] = coords[c + 3];
+            node.x[2] = coords[c + 4];
+            node.y[2] = coords[c + 5];
+        }
+        return node;
+    }
+
+    private void writeNode(int index, int mask,
+            double x0, double y0, double x1, double y1, double x2, double y2,
+            boolean keepColinear) {
+        Node node = getAttached(index);
+        if (node != null) {
+            node.mask = mask;
+            node.x[0] = x0;
+            node.y[0] = y0;
+            node.x[1] = x1;
+            node.y[1] = y1;
+            node.x[2] = x2;
+            node.y[2] = y2;
+            node.keepColinear = keepColinear;
+        } else {
+            writePacked(coords, flags, index, mask, x0, y0, x1, y1, x2, y2, keepColinear);
+        }
+    }
+
+    private static void writePacked(double[] coords, byte[] flags, int index, int mask,
+            double x0, double y0, double x1, double y1, double x2, double y2,
+            boolean keepColinear) {
+        int c = index * 6;
+        coords[c] = x0;
+        coords[c + 1] = y0;
+        coords[c + 2] = x1;
+        coords[c + 3] = y1;
+        coords[c + 4] = x2;
+        coords[c + 5] = y2;
+        flags[index] = (byte) ((mask & C1C2_MASK) | (keepColinear ? KEEP_COLINEAR_FLAG : 0));
+    }
+
+    private void insertNode(int index, int mask,
+            double x0, double y0, double x1, double y1, double x2, double y2,
+            boolean keepColinear) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("index:" + index + " size:" + size);
+        }
+        if (size == flags.length) {
+            setCapacity(Math.max(8, size + (size >> 1)));
+        }
+        System.arraycopy(coords, index * 6, coords, index * 6 + 6, (size - index) * 6);
+        System.arraycopy(flags, index, flags, index + 1, size - index);
+        if (attached != null) {
+            System.arraycopy(attached, index, attached, index + 1, size - index);
+            attached[index] = null;
+        }
+        writePacked(coords, flags, index, mask, x0, y0, x1, y1, x2, y2, keepColinear);
+        size++;
+        modCount++;
+    }
+
+    /**
+     * Returns the packed arrays with the values of the attached node objects.
+     * The arrays have the length of the path.
+     */
+    private Object[] toPackedArrays() {
+        double[] c = Arrays.copyOf(coords, size * 6);
+        byte[] f = Arrays.copyOf(flags, size);
+        if (attached != null) {
+            for (int i = 0; i < size; i++) {
+                Node node = attached[i];
+                if (node != null) {
+                    writePacked(c, f, i, node.mask, node.x[0], node.y[0], node.x[1], node.y[1], node.x[2], node.y[2], node.keepColinear);
+                }
+            }
+        }
+        return new Object[]{c, f};
+    }
+
+    // LIST
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the specified node. The node object stays attached to the path
+     * until it is removed from the path, so that changes to it are reflected
+     * in the path.
+     */
+    @Override
+    public Node get(int index) {
+        Node node = getAttached(Objects.checkIndex(index, size));
+        if (node == null) {
+            node = readNode(index, new Node());
+            setAttached(index, node);
+        }
+        return node;
+    }
+
+    /**
+     * Replaces the specified node. The provided node object is attached to
+     * the path.
+     */
+    @Override
+    public Node set(int index, Node node) {
+        Node old = getAttached(Objects.checkIndex(index, size));
+        if (old == null) {
+            old = copyNode(index);
+        }
+        writePacked(coords, flags, index, node.mask, node.x[0], node.y[0], node.x[1], node.y[1], node.x[2], node.y[2], node.keepColinear);
+        setAttached(index, node);
+        return old;
+    }
+
+    /**
+     * Inserts a node. The provided node object is attached to the path.
+     */
+    @Override
+    public void add(int index, Node node) {
+        addNode(index, node);
+        setAttached(index, node);
+    }
+
+    @Override
+    public Node remove(int index) {
+        Node removed = getAttached(Objects.checkIndex(index, size));
+        if (removed == null) {
+            removed = copyNode(index);
+        }
+        System.arraycopy(coords, index * 6 + 6, coords, index * 6, (size - index - 1) * 6);
+        System.arraycopy(flags, index + 1, flags, index, size - index - 1);
+        if (attached != null) {
+            System.arraycopy(attached, index + 1, attached, index, size - index - 1);
+            attached[size - 1] = null;
+        }
+        size--;
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        attached = null;
+        coords = EMPTY_COORDS;
+        flags = EMPTY_FLAGS;
+        size = 0;
+        modCount++;
+    }
+
     /**
      * Adds a node to the path.
      * <p>
@@ -261,7 +736,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * point C0 to the path.
      */
     public void add(Point2D.Double c0) {
-        add(new Node(0, c0, c0, c0));
+        insertNode(size(), 0, c0.x, c0.y, c0.x, c0.y, c0.x, c0.y, true);
     }
 
     /**
@@ -271,7 +746,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * point C0 to the path.
      */
     public void add(double x, double y) {
-        add(new Node(0, x, y, x, y, x, y));
+        insertNode(size(), 0, x, y, x, y, x, y, true);
     }
 
     /**
@@ -286,7 +761,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @param c2 The coordinates of the C2 control point.
      */
     public void add(int ctrlMask, Point2D.Double c0, Point2D.Double c1, Point2D.Double c2) {
-        add(new Node(ctrlMask, c0, c1, c2));
+        insertNode(size(), ctrlMask, c0.x, c0.y, c1.x, c1.y, c2.x, c2.y, true);
     }
 
     /**
@@ -297,7 +772,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      */
     public void addPolyline(Collection<Point2D.Double> points) {
         for (Point2D.Double c0 : points) {
-            add(new Node(0, c0, c0, c0));
+            add(c0);
         }
     }
 
@@ -309,9 +784,15 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @param p The control point. The coordinates will be cloned.
      */
     public void set(int nodeIndex, int ctrlIndex, Point2D.Double p) {
-        Node c = get(nodeIndex);
-        c.x[ctrlIndex] = p.x;
-        c.y[ctrlIndex] = p.y;
+        Node node = getAttached(Objects.checkIndex(nodeIndex, size));
+        if (node != null) {
+            node.x[ctrlIndex] = p.x;
+            node.y[ctrlIndex] = p.y;
+        } else {
+            int c = nodeIndex * 6 + ctrlIndex * 2;
+            coords[c] = p.x;
+            coords[c + 1] = p.y;
+        }
     }
 
     /**
@@ -322,112 +803,58 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @return Returns a clone of the control point.
      */
     public Point2D.Double get(int nodeIndex, int ctrlIndex) {
-        Node c = get(nodeIndex);
         return new Point2D.Double(
-                c.x[ctrlIndex],
-                c.y[ctrlIndex]);
+                getX(nodeIndex, ctrlIndex),
+                getY(nodeIndex, ctrlIndex));
     }
 
     /**
      * This must be called after the BezierPath has been changed.
      */
     public void invalidatePath() {
-        generalPath = null;
         bounds = null;
+        arcLengths = null;
         outer = -1;
     }
 
     /**
      * Recomputes the BezierPath, if it is invalid.
+     * <p>
+     * The shape operations work directly on the nodes, so there is nothing
+     * to recompute.
      */
     public void validatePath() {
-        if (generalPath == null) {
-            generalPath = toGeneralPath();
-        }
     }
 
     /**
      * Converts the BezierPath into a Path2D.Double.
      */
     public Path2D.Double toGeneralPath() {
-        Path2D.Double gp = new Path2D.Double();
-        gp.setWindingRule(windingRule);
-        if (size() == 0) {
-            gp.moveTo(0, 0);
-            gp.lineTo(0, 0 + 1);
-        } else if (size() == 1) {
-            Node current = get(0);
-            gp.moveTo(current.x[0], current.y[0]);
-            gp.lineTo(current.x[0], current.y[0] + 1);
+        Path2D.Double gp = new Path2D.Double(windingRule, Math.max(2, size() + (isClosed ? 2 : 0)));
+        if (size() < 2) {
+            double x = (size() == 0) ? 0 : getX(0, 0);
+            double y = (size() == 0) ? 0 : getY(0, 0);
+            gp.moveTo(x, y);
+            gp.lineTo(x, y + 1);
         } else {
-            Node previous;
-            Node current;
-            previous = current = get(0);
-            gp.moveTo(current.x[0], current.y[0]);
-            for (int i = 1, n = size(); i < n; i++) {
-                previous = current;
-                current = get(i);
-                if ((previous.mask & C2_MASK) == 0) {
-                    if ((current.mask & C1_MASK) == 0) {
-                        gp.lineTo(
-                                current.x[0], current.y[0]);
-                    } else {
-                        gp.quadTo(
-                                current.x[1], current.y[1],
-                                current.x[0], current.y[0]);
-                    }
-                } else {
-                    if ((current.mask & C1_MASK) == 0) {
-                        gp.quadTo(
-                                previous.x[2], previous.y[2],
-                                current.x[0], current.y[0]);
-                    } else {
-                        gp.curveTo(
-                                previous.x[2], previous.y[2],
-                                current.x[1], current.y[1],
-                                current.x[0], current.y[0]);
-                    }
-                }
-            }
-            if (isClosed) {
-                if (size() > 1) {
-                    previous = get(size() - 1);
-                    current = get(0);
-                    if ((previous.mask & C2_MASK) == 0) {
-                        if ((current.mask & C1_MASK) == 0) {
-                            gp.lineTo(
-                                    current.x[0], current.y[0]);
-                        } else {
-                            gp.quadTo(
-                                    current.x[1], current.y[1],
-                                    current.x[0], current.y[0]);
-                        }
-                    } else {
-                        if ((current.mask & C1_MASK) == 0) {
-                            gp.quadTo(
-                                    previous.x[2], previous.y[2],
-                                    current.x[0], current.y[0]);
-                        } else {
-                            gp.curveTo(
-                                    previous.x[2], previous.y[2],
-                                    current.x[1], current.y[1],
-                                    current.x[0], current.y[0]);
-                        }
-                    }
-                }
-                gp.closePath();
-            }
+            gp.append(getPathIterator(null), false);
         }
         return gp;
     }
 
+    /**
+     * Returns a path iterator for the shape operations. A path with less than
+     * two nodes is treated like a vertical line with a length of 1.
+     */
+    private PathIterator getShapeIterator() {
+        return (size() < 2) ? toGeneralPath().getPathIterator(null) : getPathIterator(null);
+    }
+
     @Override
     public boolean contains(Point2D p) {
-        validatePath();
-        return generalPath.contains(p);
+        return Path2D.contains(getShapeIterator(), p);
     }
 
-    ;
     /**
      * Returns true, if the outline of this bezier path contains the specified
      * point.
@@ -441,8 +868,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
 
     @Override
     public boolean intersects(Rectangle2D r) {
-        validatePath();
-        return generalPath.intersects(r);
+        return Path2D.intersects(getShapeIterator(), r);
     }
 
     @Override
@@ -457,14 +883,12 @@ public class BezierPath extends ArrayList<BezierPath.Node>
 
     @Override
     public boolean contains(Rectangle2D r) {
-        validatePath();
-        return generalPath.contains(r);
+        return Path2D.contains(getShapeIterator(), r);
     }
 
     @Override
     public boolean intersects(double x, double y, double w, double h) {
-        validatePath();
-        return generalPath.intersects(x, y, w, h);
+        return Path2D.intersects(getShapeIterator(), x, y, w, h);
     }
 
     @Override
@@ -477,7 +901,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
             } else {
                 double x, y;
                 // handle first node
-                Node node = get(0);
+                Node node = readNode(0, new Node());
                 y1 = y2 = node.y[0];
                 x1 = x2 = node.x[0];
                 if (isClosed && (node.mask & C1_MASK) != 0) {
@@ -513,7 +937,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
                     }
                 }
                 // handle last node
-                node = get(size - 1);
+                readNode(size - 1, node);
                 y = node.y[0];
                 x = node.x[0];
                 if (x < x1) {
@@ -562,7 +986,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
                 }
                 // handle all other nodes
                 for (int i = 1, n = size - 1; i < n; i++) {
-                    node = get(i);
+                    readNode(i, node);
                     y = node.y[0];
                     x = node.x[0];
                     if (x < x1) {
@@ -623,14 +1047,12 @@ public class BezierPath extends ArrayList<BezierPath.Node>
 
     @Override
     public boolean contains(double x, double y, double w, double h) {
-        validatePath();
-        return generalPath.contains(x, y, w, h);
+        return Path2D.contains(getShapeIterator(), x, y, w, h);
     }
 
     @Override
     public boolean contains(double x, double y) {
-        validatePath();
-        return generalPath.contains(x, y);
+        return Path2D.contains(getShapeIterator(), x, y);
     }
 
     public void setClosed(boolean newValue) {
@@ -645,14 +1067,22 @@ public class BezierPath extends ArrayList<BezierPath.Node>
     }
 
     /**
-     * Creates a deep copy of the BezierPath.
+     * Creates a deep copy of the BezierPath. The copy is packed.
      */
     @Override
     public BezierPath clone() {
-        BezierPath that = (BezierPath) super.clone();
-        for (int i = 0, n = this.size(); i < n; i++) {
-            that.set(i, (Node) this.get(i).clone());
+        BezierPath that;
+        try {
+            that = (BezierPath) super.clone();
+        } catch (CloneNotSupportedException e) {
+            InternalError error = new InternalError();
+            error.initCause(e);
+            throw error;
         }
+        Object[] packed = toPackedArrays();
+        that.coords = (double[]) packed[0];
+        that.flags = (byte[]) packed[1];
+        that.attached = null;
         return that;
     }
 
@@ -662,14 +1092,20 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @param tx the transformation.
      */
     public void transform(AffineTransform tx) {
-        Point2D.Double p = new Point2D.Double();
-        for (Node cp : this) {
-            for (int i = 0; i < 3; i++) {
-                p.x = cp.x[i];
-                p.y = cp.y[i];
-                tx.transform(p, p);
-                cp.x[i] = p.x;
-                cp.y[i] = p.y;
+        tx.transform(coords, 0, coords, 0, size * 3);
+        if (attached != null) {
+            Point2D.Double p = new Point2D.Double();
+            for (int n = 0; n < size; n++) {
+                Node cp = attached[n];
+                if (cp != null) {
+                    for (int i = 0; i < 3; i++) {
+                        p.x = cp.x[i];
+                        p.y = cp.y[i];
+                        tx.transform(p, p);
+                        cp.x[i] = p.x;
+                        cp.y[i] = p.y;
+                    }
+                }
             }
         }
         invalidatePath();
@@ -680,15 +1116,24 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * path becomes identical to that path.
      */
     public void setTo(BezierPath that) {
-        while (that.size() < size()) {
-            remove(size() - 1);
-        }
-        for (int i = 0, n = size(); i < n; i++) {
-            get(i).setTo(that.get(i));
-        }
-        while (size() < that.size()) {
-            add((Node) that.get(size()).clone());
+        Object[] packed = that.toPackedArrays();
+        int n = that.size;
+        Node[] oldAttached = attached;
+        int oldSize = size;
+        coords = (double[]) packed[0];
+        flags = (byte[]) packed[1];
+        size = n;
+        attached = null;
+        if (oldAttached != null) {
+            // Node objects of nodes, which are still in the path, stay attached
+            for (int i = 0, m = Math.min(oldSize, n); i < m; i++) {
+                if (oldAttached[i] != null) {
+                    readNode(i, oldAttached[i]);
+                    setAttached(i, oldAttached[i]);
+                }
+            }
         }
+        modCount++;
     }
 
     /**
@@ -697,11 +1142,11 @@ public class BezierPath extends ArrayList<BezierPath.Node>
     public Point2D.Double getCenter() {
         double sx = 0;
         double sy = 0;
-        for (Node p : this) {
-            sx += p.x[0];
-            sy += p.y[0];
-        }
         int n = size();
+        for (int i = 0; i < n; i++) {
+            sx += getX(i, 0);
+            sy += getY(i, 0);
+        }
         return new Point2D.Double(sx / n, sy / n);
     }
 
@@ -724,10 +1169,9 @@ public class BezierPath extends ArrayList<BezierPath.Node>
             outer = 0;
             double dist = 0;
             for (int i = 0, n = size(); i < n; i++) {
-                Node cp = get(i);
                 double d = Geom.length2(ctr.x, ctr.y,
-                        cp.x[0],
-                        cp.y[0]);
+                        getX(i, 0),
+                        getY(i, 0));
                 if (d > dist) {
                     dist = d;
                     outer = i;
@@ -745,48 +1189,18 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @param relative a value between 0 and 1.
      */
     public Point2D.Double getPointOnPath(double relative, double flatness) {
-        // This method works only for straight lines
         if (size() == 0) {
             return null;
         } else if (size() == 1) {
-            return get(0).getControlPoint(0);
+            return get(0, 0);
         }
         if (relative <= 0) {
-            return get(0).getControlPoint(0);
+            return get(0, 0);
         } else if (relative >= 1) {
-            return get(size() - 1).getControlPoint(0);
-        }
-        validatePath();
-        // Compute the relative point on the path
-        double len = getLengthOfPath(flatness);
-        double relativeLen = len * relative;
-        double pos = 0;
-        double[] coords = new double[6];
-        PathIterator i = generalPath.getPathIterator(new AffineTransform(), flatness);
-        double prevX = coords[0];
-        double prevY = coords[1];
-        i.next();
-        for (; !i.isDone(); i.next()) {
-            i.currentSegment(coords);
-            double segLen = Geom.length(prevX, prevY, coords[0], coords[1]);
-            if (pos + segLen >= relativeLen) {
-                //if (true) return new Point2D.Double(coords[0], coords[1]);
-                // Compute the relative Point2D.Double on the line
-                /*
-                return new Point2D.Double(
-                prevX * pos / len + coords[0] * (pos + segLen) / len,
-                prevY * pos / len + coords[1] * (pos + segLen) / len
-                );*/
-                double factor = (relativeLen - pos) / segLen;
-                return new Point2D.Double(
-                        prevX * (1 - factor) + coords[0] * factor,
-                        prevY * (1 - factor) + coords[1] * factor);
-            }
-            pos += segLen;
-            prevX = coords[0];
-            prevY = coords[1];
+            return get(size() - 1, 0);
         }
-        throw new InternalError("We should never get here");
+        ArcLengthTable table = getArcLengths(flatness);
+        return table.getPoint(table.getLength() * relative);
     }
 
     /**
@@ -795,19 +1209,17 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @param flatness the flatness used to approximate the length.
      */
     public double getLengthOfPath(double flatness) {
-        double len = 0;
-        PathIterator i = generalPath.getPathIterator(new AffineTransform(), flatness);
-        double[] coords = new double[6];
-        double prevX = coords[0];
-        double prevY = coords[1];
-        i.next();
-        for (; !i.isDone(); i.next()) {
-            i.currentSegment(coords);
-            len += Geom.length(prevX, prevY, coords[0], coords[1]);
-            prevX = coords[0];
-            prevY = coords[1];
+        return getArcLengths(flatness).getLength();
+    }
+
+    /**
+     * Returns the arc length table for the specified flatness.
+     */
+    private ArcLengthTable getArcLengths(double flatness) {
+        if (arcLengths == null || arcLengths.flatness != flatness) {
+            arcLengths = new ArcLengthTable(this, flatness);
         }
-        return len;
+        return arcLengths;
     }
 
     /**
@@ -819,55 +1231,12 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * Returns -1, if the point is not on the path.
      */
     public double getRelativePositionOnPath(Point2D.Double find, double flatness) {
-        // XXX - This method works only for straight lines!
-        double len = getLengthOfPath(flatness);
-        double relativeLen = 0d;
-        Node v1, v2;
-        BezierPath tempPath = new BezierPath();
-        Node t1, t2;
-        tempPath.add(t1 = new Node());
-        tempPath.add(t2 = new Node());
-        for (int i = 0, n = size() - 1; i < n; i++) {
-            v1 = get(i);
-            v2 = get(i + 1);
-            if (v1.mask == 0 && v2.mask == 0) {
-                if (Geom.lineContainsPoint(v1.x[0], v1.y[0], v2.x[0], v2.y[0], find.x, find.y, flatness)) {
-                    relativeLen += Geom.length(v1.x[0], v1.y[0], find.x, find.y);
-                    return relativeLen / len;
-                } else {
-                    relativeLen += Geom.length(v1.x[0], v1.y[0], v2.x[0], v2.y[0]);
-                }
-            } else {
-                t1.setTo(v1);
-                t2.setTo(v2);
-                tempPath.invalidatePath();
-                if (tempPath.outlineContains(find, flatness)) {
-                    relativeLen += Geom.length(v1.x[0], v1.y[0], find.x, find.y);
-                    return relativeLen / len;
-                } else {
-                    relativeLen += Geom.length(v1.x[0], v1.y[0], v2.x[0], v2.y[0]);
-                }
-            }
-        }
-        if (isClosed && size() > 1) {
-            v1 = get(size() - 1);
-            v2 = get(0);
-            if (v1.mask == 0 && v2.mask == 0) {
-                if (Geom.lineContainsPoint(v1.x[0], v1.y[0], v2.x[0], v2.y[0], find.x, find.y, flatness)) {
-                    relativeLen += Geom.length(v1.x[0], v1.y[0], find.x, find.y);
-                    return relativeLen / len;
-                }
-            } else {
-                t1.setTo(v1);
-                t2.setTo(v2);
-                tempPath.invalidatePath();
-                if (tempPath.outlineContains(find, flatness)) {
-                    relativeLen += Geom.length(v1.x[0], v1.y[0], find.x, find.y);
-                    return relativeLen / len;
-                }
-            }
+        ArcLengthTable table = getArcLengths(flatness);
+        double len = table.getLength(find, flatness);
+        if (len == -1) {
+            return -1;
         }
-        return -1;
+        return (table.getLength() == 0) ? 0 : len / table.getLength();
     }
 
     /**
@@ -878,14 +1247,14 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      */
     public int findSegment(Point2D.Double find, double tolerance) {
         // XXX - This works only for straight lines!
-        Node v1, v2;
+        Node v1 = new Node(), v2 = new Node();
         BezierPath tempPath = new BezierPath();
         Node t1, t2;
         tempPath.add(t1 = new Node());
         tempPath.add(t2 = new Node());
         for (int i = 0, n = size() - 1; i < n; i++) {
-            v1 = get(i);
-            v2 = get(i + 1);
+            readNode(i, v1);
+            readNode(i + 1, v2);
             if (v1.mask == 0 && v2.mask == 0) {
                 if (Geom.lineContainsPoint(v1.x[0], v1.y[0], v2.x[0], v2.y[0], find.x, find.y, tolerance)) {
                     return i;
@@ -900,8 +1269,8 @@ public class BezierPath extends ArrayList<BezierPath.Node>
             }
         }
         if (isClosed && size() > 1) {
-            v1 = get(size() - 1);
-            v2 = get(0);
+            readNode(size() - 1, v1);
+            readNode(0, v2);
             if (v1.mask == 0 && v2.mask == 0) {
                 if (Geom.lineContainsPoint(v1.x[0], v1.y[0], v2.x[0], v2.y[0], find.x, find.y, tolerance)) {
                     return size() - 1;
@@ -926,8 +1295,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      */
     public int joinSegments(Point2D.Double join, double tolerance) {
         for (int i = 0; i < size(); i++) {
-            Node p = get(i);
-            if (Geom.length(p.x[0], p.y[0], join.x, join.y) < tolerance) {
+            if (Geom.length(getX(i, 0), getY(i, 0), join.x, join.y) < tolerance) {
                 remove(i);
                 return i;
             }
@@ -944,22 +1312,24 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         int i = findSegment(split, tolerance);
         int nextI = (i + 1) % size();
         if (i != -1) {
-            if ((get(i).mask & C2_MASK) == C2_MASK
-                    && (get(nextI).mask & C1_MASK) == 0) {
+            int mask;
+            if ((getMask(i) & C2_MASK) == C2_MASK
+                    && (getMask(nextI) & C1_MASK) == 0) {
                 // quadto
-                add(i + 1, new Node(C2_MASK, split, split, split));
-            } else if ((get(i).mask & C2_MASK) == 0
-                    && (get(nextI).mask & C1_MASK) == C1_MASK) {
+                mask = C2_MASK;
+            } else if ((getMask(i) & C2_MASK) == 0
+                    && (getMask(nextI) & C1_MASK) == C1_MASK) {
                 // quadto
-                add(i + 1, new Node(C1_MASK, split, split, split));
-            } else if ((get(i).mask & C2_MASK) == C2_MASK
-                    && (get(nextI).mask & C1_MASK) == C1_MASK) {
+                mask = C1_MASK;
+            } else if ((getMask(i) & C2_MASK) == C2_MASK
+                    && (getMask(nextI) & C1_MASK) == C1_MASK) {
                 // cubicto
-                add(i + 1, new Node(C1_MASK | C2_MASK, split, split, split));
+                mask = C1_MASK | C2_MASK;
             } else {
                 // lineto
-                add(i + 1, new Node(split));
+                mask = 0;
             }
+            insertNode(i + 1, mask, split.x, split.y, split.x, split.y, split.x, split.y, true);
         }
         return i + 1;
     }
@@ -974,9 +1344,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         if (size() != 0) {
             throw new IllegalPathStateException("moveTo only allowed when empty");
         }
-        Node node = new Node(x1, y1);
-        node.keepColinear = false;
-        add(node);
+        insertNode(0, 0, x1, y1, x1, y1, x1, y1, false);
     }
 
     /**
@@ -994,8 +1362,13 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         if (size() == 0) {
             throw new IllegalPathStateException("lineTo only allowed when not empty");
         }
-        get(size() - 1).keepColinear = false;
-        add(new Node(x1, y1));
+        Node lastPoint = getAttached(size - 1);
+        if (lastPoint != null) {
+            lastPoint.keepColinear = false;
+        } else {
+            flags[size - 1] &= ~KEEP_COLINEAR_FLAG;
+        }
+        insertNode(size(), 0, x1, y1, x1, y1, x1, y1, true);
     }
 
     /**
@@ -1014,7 +1387,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         if (size() == 0) {
             throw new IllegalPathStateException("quadTo only allowed when not empty");
         }
-        add(new Node(C1_MASK, x2, y2, x1, y1, x2, y2));
+        insertNode(size(), C1_MASK, x2, y2, x1, y1, x2, y2, true);
     }
 
     /**
@@ -1032,18 +1405,20 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         if (size() == 0) {
             throw new IllegalPathStateException("curveTo only allowed when not empty");
         }
-        Node lastPoint = get(size() - 1);
-        lastPoint.mask |= C2_MASK;
-        lastPoint.x[2] = x1;
-        lastPoint.y[2] = y1;
-        if ((lastPoint.mask & C1C2_MASK) == C1C2_MASK) {
-            lastPoint.keepColinear = Math.abs(
-                    Geom.angle(lastPoint.x[0], lastPoint.y[0],
-                            lastPoint.x[1], lastPoint.y[1])
-                    - Geom.angle(lastPoint.x[2], lastPoint.y[2],
-                            lastPoint.x[0], lastPoint.y[0])) < 0.001;
+        int last = size() - 1;
+        int mask = getMask(last) | C2_MASK;
+        boolean keepColinear;
+        if ((mask & C1C2_MASK) == C1C2_MASK) {
+            keepColinear = Math.abs(
+                    Geom.angle(getX(last, 0), getY(last, 0),
+                            getX(last, 1), getY(last, 1))
+                    - Geom.angle(x1, y1,
+                            getX(last, 0), getY(last, 0))) < 0.001;
+        } else {
+            keepColinear = isKeepColinear(last);
         }
-        add(new Node(C1_MASK, x3, y3, x2, y2, x3, y3));
+        writeNode(last, mask, getX(last, 0), getY(last, 0), getX(last, 1), getY(last, 1), x1, y1, keepColinear);
+        insertNode(size(), C1_MASK, x3, y3, x2, y2, x3, y3, true);
     }
 
     /**
@@ -1084,9 +1459,10 @@ public class BezierPath extends ArrayList<BezierPath.Node>
             return;
         }
         // Get the current (x, y) coordinates of the path
-        Node lastPoint = get(size() - 1);
-        double x0 = ((lastPoint.mask & C2_MASK) == C2_MASK) ? lastPoint.x[2] : lastPoint.x[0];
-        double y0 = ((lastPoint.mask & C2_MASK) == C2_MASK) ? lastPoint.y[2] : lastPoint.y[0];
+        int last = size() - 1;
+        int c = ((getMask(last) & C2_MASK) == C2_MASK) ? 2 : 0;
+        double x0 = getX(last, c);
+        double y0 = getY(last, c);
         if (x0 == x && y0 == y) {
             // If the endpoints (x, y) and (x0, y0) are identical, then this
             // is equivalent to omitting the elliptical arc segment entirely.
@@ -1200,7 +1576,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
     public Point2D.Double[] toPolygonArray() {
         Point2D.Double[] points = new Point2D.Double[size()];
         for (int i = 0, n = size(); i < n; i++) {
-            points[i] = new Point2D.Double(get(i).x[0], get(i).y[0]);
+            points[i] = new Point2D.Double(getX(i, 0), getY(i, 0));
         }
         return points;
     }
@@ -1226,4 +1602,76 @@ public class BezierPath extends ArrayList<BezierPath.Node>
     public int getWindingRule() {
         return windingRule;
     }
+
+    /**
+     * Returns the keepColinear hint of the specified node.
+     */
+    public boolean isKeepColinear(int index) {
+        Node node = getAttached(Objects.checkIndex(index, size));
+        return (node != null) ? node.keepColinear : (flags[index] & KEEP_COLINEAR_FLAG) != 0;
+    }
+
+    // The following methods are overridden, so that they do not create node objects.
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof BezierPath)) {
+            return super.equals(o);
+        }
+        BezierPath that = (BezierPath) o;
+        int n = size();
+        if (that.size() != n) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (getMask(i) != that.getMask(i)) {
+                return false;
+            }
+            for (int c = 0; c < 3; c++) {
+                if (Double.compare(getX(i, c), that.getX(i, c)) != 0
+                        || Double.compare(getY(i, c), that.getY(i, c)) != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 1;
+        Node node = new Node();
+        for (int i = 0, n = size(); i < n; i++) {
+            hashCode = 31 * hashCode + readNode(i, node).hashCode();
+        }
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder("[");
+        Node node = new Node();
+        for (int i = 0, n = size(); i < n; i++) {
+            if (i != 0) {
+                buf.append(", ");
+            }
+            buf.append(readNode(i, node));
+        }
+        return buf.append(']').toString();
+    }
+
+    /**
+     * Writes the packed arrays with the values of the attached node objects.
+     * The path itself is not changed.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        Object[] packed = toPackedArrays();
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("coords", packed[0]);
+        fields.put("flags", packed[1]);
+        fields.put("size", size);
+        fields.put("outer", outer);
+        fields.put("isClosed", isClosed);
+        fields.put("windingRule", windingRule);
+        out.writeFields();
+    }
 }
@@ -39,6 +39,10 @@ public class BezierPathIterator implements PathIterator {
      * ??
      */
     private static final int CURVE_SIZE[] = {2, 2, 4, 6, 0};
+    /**
+     * Segment types by number of points.
+     */
+    private static final int SEGMENT_TYPES[] = {SEG_CLOSE, SEG_LINETO, SEG_QUADTO, SEG_CUBICTO};
 
     /**
      * Constructs an iterator given a BezierPath.
@@ -243,90 +247,24 @@ public class BezierPathIterator implements PathIterator {
     public int currentSegment(double[] coords) {
         int numCoords = 0;
         int type = 0;
-        if (index == path.size()) {
+        int n = path.size();
+        if (index == n) {
             // We only get here for closed paths
-            if (path.size() > 1) {
-                BezierPath.Node previous = path.get(path.size() - 1);
-                BezierPath.Node current = path.get(0);
-                if ((previous.mask & BezierPath.C2_MASK) == 0) {
-                    if ((current.mask & BezierPath.C1_MASK) == 0) {
-                        numCoords = 1;
-                        type = SEG_LINETO;
-                        coords[0] = current.x[0];
-                        coords[1] = current.y[0];
-                    } else {
-                        numCoords = 2;
-                        type = SEG_QUADTO;
-                        coords[0] = current.x[1];
-                        coords[1] = current.y[1];
-                        coords[2] = current.x[0];
-                        coords[3] = current.y[0];
-                    }
-                } else {
-                    if ((current.mask & BezierPath.C1_MASK) == 0) {
-                        numCoords = 2;
-                        type = SEG_QUADTO;
-                        coords[0] = previous.x[2];
-                        coords[1] = previous.y[2];
-                        coords[2] = current.x[0];
-                        coords[3] = current.y[0];
-                    } else {
-                        numCoords = 3;
-                        type = SEG_CUBICTO;
-                        coords[0] = previous.x[2];
-                        coords[1] = previous.y[2];
-                        coords[2] = current.x[1];
-                        coords[3] = current.y[1];
-                        coords[4] = current.x[0];
-                        coords[5] = current.y[0];
-                    }
-                }
+            if (n > 1) {
+                numCoords = segment(n - 1, 0, coords);
+                type = SEGMENT_TYPES[numCoords];
             }
-        } else if (index > path.size()) {
+        } else if (index > n) {
             // We only get here for closed paths
             return SEG_CLOSE;
         } else if (index == 0) {
-            BezierPath.Node current = path.get(index);
-            coords[0] = current.x[0];
-            coords[1] = current.y[0];
+            coords[0] = path.getX(index, 0);
+            coords[1] = path.getY(index, 0);
             numCoords = 1;
             type = SEG_MOVETO;
-        } else if (index < path.size()) {
-            BezierPath.Node current = path.get(index);
-            BezierPath.Node previous = path.get(index - 1);
-            if ((previous.mask & BezierPath.C2_MASK) == 0) {
-                if ((current.mask & BezierPath.C1_MASK) == 0) {
-                    numCoords = 1;
-                    type = SEG_LINETO;
-                    coords[0] = current.x[0];
-                    coords[1] = current.y[0];
-                } else {
-                    numCoords = 2;
-                    type = SEG_QUADTO;
-                    coords[0] = current.x[1];
-                    coords[1] = current.y[1];
-                    coords[2] = current.x[0];
-                    coords[3] = current.y[0];
-                }
-            } else {
-                if ((current.mask & BezierPath.C1_MASK) == 0) {
-                    numCoords = 2;
-                    type = SEG_QUADTO;
-                    coords[0] = previous.x[2];
-                    coords[1] = previous.y[2];
-                    coords[2] = current.x[0];
-                    coords[3] = current.y[0];
-                } else {
-                    numCoords = 3;
-                    type = SEG_CUBICTO;
-                    coords[0] = previous.x[2];
-                    coords[1] = previous.y[2];
-                    coords[2] = current.x[1];
-                    coords[3] = current.y[1];
-                    coords[4] = current.x[0];
-                    coords[5] = current.y[0];
-                }
-            }
+        } else if (index < n) {
+            numCoords = segment(index - 1, index, coords);
+            type = SEGMENT_TYPES[numCoords];
         }
         if (affine != null) {
             affine.transform(coords, 0, coords, 0, numCoords);
@@ -335,4 +273,28 @@ public class BezierPathIterator implements PathIterator {
         }
         return type;
     }
+
+    /**
+     * Stores the coordinates of the segment between the specified nodes.
+     *
+     * @return the number of points.
+     */
+    private int segment(int previous, int current, double[] coords) {
+        boolean c2 = (path.getMask(previous) & BezierPath.C2_MASK) != 0;
+        boolean c1 = (path.getMask(current) & BezierPath.C1_MASK) != 0;
+        int numCoords = 0;
+        if (c2) {
+            coords[0] = path.getX(previous, 2);
+            coords[1] = path.getY(previous, 2);
+            numCoords++;
+        }
+        if (c1) {
+            coords[numCoords * 2] = path.getX(current, 1);
+            coords[numCoords * 2 + 1] = path.getY(current, 1);
+            numCoords++;
+        }
+        coords[numCoords * 2] = path.getX(current, 0);
+        coords[numCoords * 2 + 1] = path.getY(current, 0);
+        return numCoords + 1;
+    }
 }
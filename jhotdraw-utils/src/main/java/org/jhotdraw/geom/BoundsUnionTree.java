@@ -0,0 +1,114 @@
+/*
+ * @(#)BoundsUnionTree.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.geom;
+
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Maintains the union of a fixed number of rectangles.
+ * <p>
+ * The rectangles are the leaves of a balanced binary tree, each inner node
+ * holds the union of its two children. Hence, changing a single rectangle
+ * costs O(log n), and the union of all rectangles is available in O(1).
+ * <p>
+ * The tree is stored in a single {@code double} array with four values per
+ * node: min x, min y, max x, max y. Node 1 is the root, the children of node
+ * {@code i} are the nodes {@code 2i} and {@code 2i+1}.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class BoundsUnionTree {
+
+    private int size;
+    /**
+     * Number of leaves. This is the smallest power of two which is greater
+     * or equal to size.
+     */
+    private int leafCount;
+    private double[] nodes;
+
+    /**
+     * Creates a new instance with the specified number of empty rectangles.
+     */
+    public BoundsUnionTree(int size) {
+        this.size = size;
+        leafCount = 1;
+        while (leafCount < size) {
+            leafCount <<= 1;
+        }
+        nodes = new double[leafCount * 2 * 4];
+        clear();
+    }
+
+    /**
+     * Returns the number of rectangles.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sets the rectangle at the specified index.
+     */
+    public void set(int index, Rectangle2D r) {
+        set(index, r.getX(), r.getY(), r.getWidth(), r.getHeight());
+    }
+
+    /**
+     * Sets the rectangle at the specified index.
+     */
+    public void set(int index, double x, double y, double width, double height) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index:" + index + " size:" + size);
+        }
+        int node = leafCount + index;
+        nodes[node * 4] = x;
+        nodes[node * 4 + 1] = y;
+        nodes[node * 4 + 2] = x + width;
+        nodes[node * 4 + 3] = y + height;
+        for (node >>= 1; node > 0; node >>= 1) {
+            int left = node * 2 * 4;
+            int right = left + 4;
+            nodes[node * 4] = Math.min(nodes[left], nodes[right]);
+            nodes[node * 4 + 1] = Math.min(nodes[left + 1], nodes[right + 1]);
+            nodes[node * 4 + 2] = Math.max(nodes[left + 2], nodes[right + 2]);
+            nodes[node * 4 + 3] = Math.max(nodes[left + 3], nodes[right + 3]);
+        }
+    }
+
+    /**
+     * Returns the union of all rectangles, or null if all rectangles are
+     * empty.
+     */
+    public Rectangle2D.Double getUnion() {
+        double minX = nodes[4], minY = nodes[5];
+        double maxX = nodes[6], maxY = nodes[7];
+        if (minX > maxX || minY > maxY) {
+            return null;
+        }
+        return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    @Override
+    public String toString() {
+        return "BoundsUnionTree{size=" + size + ", union=" + getUnion() + "}";
+    }
+
+    /**
+     * Sets all rectangles to empty.
+     */
+    public final void clear() {
+        for (int i = 0; i < nodes.length; i += 4) {
+            nodes[i] = Double.POSITIVE_INFINITY;
+            nodes[i + 1] = Double.POSITIVE_INFINITY;
+            nodes[i + 2] = Double.NEGATIVE_INFINITY;
+            nodes[i + 3] = Double.NEGATIVE_INFINITY;
+        }
+    }
+}
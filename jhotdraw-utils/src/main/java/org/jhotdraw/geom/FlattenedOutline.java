@@ -0,0 +1,196 @@
+/*
+ * @(#)FlattenedOutline.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.geom;
+
+import java.awt.Shape;
+import java.awt.geom.FlatteningPathIterator;
+import java.awt.geom.PathIterator;
+import static java.lang.Math.*;
+
+/**
+ * The flattened outline of a shape, indexed for fast hit testing.
+ * <p>
+ * The outline is stored as a primitive array of line segments with four
+ * values per segment: x1, y1, x2, y2. Consecutive segments of a flattened
+ * path lie close to each other, so the segments are grouped by index into a
+ * balanced binary tree of bounding boxes, using the same array layout as
+ * {@link BoundsUnionTree}. A hit test only descends into the boxes near the
+ * point. Hence, {@link #outlineContains} costs O(log n) for typical paths and
+ * does not allocate objects.
+ * <p>
+ * Instances are immutable. Figures create an instance lazily and discard it
+ * when their shape changes.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class FlattenedOutline {
+
+    private final double flatness;
+    private final int size;
+    private final double[] segments;
+    /**
+     * Number of leaves. This is the smallest power of two which is greater
+     * or equal to size.
+     */
+    private final int leafCount;
+    /**
+     * Bounding boxes with four values per node: min x, min y, max x, max y.
+     * Node 1 is the root, the children of node {@code i} are the nodes
+     * {@code 2i} and {@code 2i+1}.
+     */
+    private final double[] nodes;
+
+    /**
+     * Flattens the specified shape.
+     *
+     * @param shape The shape.
+     * @param flatness The maximal distance between the flattened segments and
+     * the curves of the shape.
+     */
+    public FlattenedOutline(Shape shape, double flatness) {
+        this.flatness = flatness;
+        double[] segs = new double[64];
+        int n = 0;
+        double[] coords = new double[6];
+        double prevX = 0, prevY = 0;
+        double moveX = 0, moveY = 0;
+        for (PathIterator i = new FlatteningPathIterator(shape.getPathIterator(null, flatness), flatness); !i.isDone(); i.next()) {
+            double x, y;
+            switch (i.currentSegment(coords)) {
+                case PathIterator.SEG_MOVETO:
+                    prevX = moveX = coords[0];
+                    prevY = moveY = coords[1];
+                    continue;
+                case PathIterator.SEG_LINETO:
+                    x = coords[0];
+                    y = coords[1];
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    x = moveX;
+                    y = moveY;
+                    break;
+                default:
+                    // A flattening iterator does not return curves.
+                    continue;
+            }
+            if (n * 4 == segs.length) {
+                double[] tmp = new double[segs.length * 2];
+                System.arraycopy(segs, 0, tmp, 0, segs.length);
+                segs = tmp;
+            }
+            segs[n * 4] = prevX;
+            segs[n * 4 + 1] = prevY;
+            segs[n * 4 + 2] = x;
+            segs[n * 4 + 3] = y;
+            n++;
+            prevX = x;
+            prevY = y;
+        }
+        size = n;
+        segments = segs;
+
+        int leaves = 1;
+        while (leaves < n) {
+            leaves <<= 1;
+        }
+        leafCount = leaves;
+        nodes = new double[leaves * 2 * 4];
+        for (int i = 0; i < leaves; i++) {
+            int node = (leaves + i) * 4;
+            if (i < n) {
+                nodes[node] = min(segs[i * 4], segs[i * 4 + 2]);
+                nodes[node + 1] = min(segs[i * 4 + 1], segs[i * 4 + 3]);
+                nodes[node + 2] = max(segs[i * 4], segs[i * 4 + 2]);
+                nodes[node + 3] = max(segs[i * 4 + 1], segs[i * 4 + 3]);
+            } else {
+                nodes[node] = Double.POSITIVE_INFINITY;
+                nodes[node + 1] = Double.POSITIVE_INFINITY;
+                nodes[node + 2] = Double.NEGATIVE_INFINITY;
+                nodes[node + 3] = Double.NEGATIVE_INFINITY;
+            }
+        }
+        for (int node = leaves - 1; node > 0; node--) {
+            int left = node * 2 * 4;
+            int right = left + 4;
+            nodes[node * 4] = min(nodes[left], nodes[right]);
+            nodes[node * 4 + 1] = min(nodes[left + 1], nodes[right + 1]);
+            nodes[node * 4 + 2] = max(nodes[left + 2], nodes[right + 2]);
+            nodes[node * 4 + 3] = max(nodes[left + 3], nodes[right + 3]);
+        }
+    }
+
+    /**
+     * Returns the flatness which was used for flattening the shape.
+     */
+    public double getFlatness() {
+        return flatness;
+    }
+
+    /**
+     * Returns the number of line segments.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true, if the outline contains the specified point.
+     * <p>
+     * This yields the same result as
+     * {@link Shapes#outlineContains(Shape, java.awt.geom.Point2D.Double, double)}
+     * with a tolerance equal to the flatness of this outline.
+     *
+     * @param px The x coordinate of the point.
+     * @param py The y coordinate of the point.
+     * @param tolerance The tolerance for the test.
+     */
+    public boolean outlineContains(double px, double py, double tolerance) {
+        if (size == 0) {
+            return false;
+        }
+        // Geom.lineContainsPoint rejects points outside of the bounds of a
+        // segment grown by this amount.
+        double grow = max(2, (int) ceil(tolerance));
+        return outlineContains(1, px, py, tolerance, grow);
+    }
+
+    private boolean outlineContains(int node, double px, double py, double tolerance, double grow) {
+        int i = node * 4;
+        if (px < nodes[i] - grow || py < nodes[i + 1] - grow
+                || px > nodes[i + 2] + grow || py > nodes[i + 3] + grow) {
+            return false;
+        }
+        if (node >= leafCount) {
+            int s = (node - leafCount) * 4;
+            return lineContainsPoint(segments[s], segments[s + 1], segments[s + 2], segments[s + 3], px, py, tolerance);
+        }
+        return outlineContains(node * 2, px, py, tolerance, grow)
+                || outlineContains(node * 2 + 1, px, py, tolerance, grow);
+    }
+
+    /**
+     * Same as {@link Geom#lineContainsPoint(double, double, double, double, double, double, double)}
+     * without the bounds check, which has already been done by the caller.
+     */
+    private static boolean lineContainsPoint(double x1, double y1,
+            double x2, double y2,
+            double px, double py, double tolerance) {
+        if (x1 == x2) {
+            return (abs(px - x1) <= tolerance);
+        }
+        if (y1 == y2) {
+            return (abs(py - y1) <= tolerance);
+        }
+        double a = (y1 - y2) / (x1 - x2);
+        double b = y1 - a * x1;
+        double x = (py - b) / a;
+        double y = a * px + b;
+        return (min(abs(x - px), abs(y - py)) <= tolerance);
+    }
+}
@@ -863,6 +863,8 @@ public class Base64 {
         private int numSigBytes;    // Number of meaningful bytes in the buffer
         private int lineLength;
         private boolean breakLines;     // Break lines at less than 80 characters
+        private byte[] chunk;          // Bulk input, lazily created
+        private byte[] b4;             // Scratch for bulk decoding
 
         /**
          * Constructs a {@link Base64.InputStream} in DECODE mode.
@@ -906,6 +908,22 @@ public class Base64 {
             this.lineLength = 0;
         }
 
+        /**
+         * Constructs a {@link Base64.InputStream} which reads Base64
+         * characters from a <tt>java.io.Reader</tt>, and decodes them on the
+         * fly.
+         * <p>
+         * Example: <code>new Base64.InputStream( new StringReader( s ), Base64.DECODE )</code>
+         *
+         * @param in the <tt>java.io.Reader</tt> from which to read characters.
+         * @param options Specified options, must not include ENCODE
+         * @see Base64#DECODE
+         * @since 2.2
+         */
+        public InputStream(java.io.Reader in, int options) {
+            this(new ReaderInputStream(in), options);
+        }
+
         /**
          * Reads enough of the input stream to convert
          * to/from Base64 and returns the next byte.
@@ -1007,6 +1025,9 @@ public class Base64 {
          */
         @Override
         public int read(byte[] dest, int off, int len) throws java.io.IOException {
+            if (!encode && len >= 3) {
+                return readDecoded(dest, off, len);
+            }
             int i;
             int b;
             for (i = 0; i < len; i++) {
@@ -1023,6 +1044,146 @@ public class Base64 {
             }
             return i;
         }
+
+        /**
+         * Decodes whole chunks of the input stream directly into
+         * <var>dest</var>. Falls back to {@link #read()} for the bytes which
+         * are left in the buffer, and for the last bytes which do not fill
+         * a group of three.
+         */
+        private int readDecoded(byte[] dest, int off, int len) throws java.io.IOException {
+            int count = 0;
+            // Drain the bytes of the current group
+            while (position >= 0 && count < len) {
+                int b = read();
+                if (b < 0) {
+                    return count == 0 ? -1 : count;
+                }
+                dest[off + count++] = (byte) b;
+            }
+            if (chunk == null) {
+                chunk = new byte[4096];
+                b4 = new byte[4];
+            }
+            int b4Posn = 0;
+            while (len - count >= 3) {
+                int n = Math.min(chunk.length, (len - count) / 3 * 4);
+                n = in.read(chunk, 0, n);
+                if (n < 0) {
+                    return count == 0 ? -1 : count;
+                }
+                for (int i = 0; i < n || b4Posn != 0; i++) {
+                    int b;
+                    if (i < n) {
+                        b = chunk[i];
+                    } else {
+                        // Complete the group from the input stream
+                        b = in.read();
+                        if (b < 0) {
+                            throw new java.io.IOException("Improperly padded Base64 input.");
+                        }
+                    }
+                    if (DECODABET[b & 0x7f] > WHITE_SPACE_ENC) {
+                        b4[b4Posn++] = (byte) b;
+                        if (b4Posn == 4) {
+                            b4Posn = 0;
+                            int decoded = decode4to3(b4, 0, dest, off + count);
+                            count += decoded;
+                            if (decoded < 3) {
+                                // Padding marks the end of the data
+                                position = 0;
+                                numSigBytes = 0;
+                                return count;
+                            }
+                        }
+                    }
+                }
+            }
+            // Read the last bytes one at a time
+            for (int b; count < len && (b = read()) >= 0;) {
+                dest[off + count++] = (byte) b;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Reads the characters of a <tt>java.io.Reader</tt> as bytes. Characters
+     * outside of the ASCII range are read as '?', which is not a Base64
+     * character.
+     */
+    private static class ReaderInputStream extends java.io.InputStream {
+
+        private java.io.Reader in;
+        private char[] chars;
+
+        public ReaderInputStream(java.io.Reader in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws java.io.IOException {
+            int c = in.read();
+            return c < 0x80 ? c : '?';
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws java.io.IOException {
+            if (chars == null || chars.length < len) {
+                chars = new char[Math.max(len, 256)];
+            }
+            int n = in.read(chars, 0, len);
+            for (int i = 0; i < n; i++) {
+                char c = chars[i];
+                b[off + i] = (byte) (c < 0x80 ? c : '?');
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws java.io.IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes bytes as characters to a <tt>java.io.Writer</tt>. Used for
+     * Base64 output, which only consists of ASCII characters.
+     */
+    private static class WriterOutputStream extends java.io.OutputStream {
+
+        private java.io.Writer out;
+        private char[] chars;
+
+        public WriterOutputStream(java.io.Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws java.io.IOException {
+            out.write(b & 0xff);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws java.io.IOException {
+            if (chars == null || chars.length < len) {
+                chars = new char[Math.max(len, 256)];
+            }
+            for (int i = 0; i < len; i++) {
+                chars[i] = (char) (b[off + i] & 0xff);
+            }
+            out.write(chars, 0, len);
+        }
+
+        @Override
+        public void flush() throws java.io.IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws java.io.IOException {
+            out.close();
+        }
     }
 
     /* ********  I N N E R   C L A S S   O U T P U T S T R E A M  ******** */
@@ -1044,6 +1205,7 @@ public class Base64 {
         private boolean breakLines;
         private byte[] b4; // Scratch used in a few places
         private boolean suspendEncoding;
+        private byte[] chunk; // Bulk output, lazily created
 
         /**
          * Constructs a {@link Base64.OutputStream} in ENCODE mode.
@@ -1088,6 +1250,22 @@ public class Base64 {
             this.b4 = new byte[4];
         }
 
+        /**
+         * Constructs a {@link Base64.OutputStream} in ENCODE mode, which
+         * writes the Base64 characters to a <tt>java.io.Writer</tt>.
+         * <p>
+         * Example: <code>new Base64.OutputStream( writer, Base64.ENCODE | Base64.DONT_BREAK_LINES )</code>
+         *
+         * @param out the <tt>java.io.Writer</tt> to which characters will be written.
+         * @param options Specified options, must include ENCODE
+         * @see Base64#ENCODE
+         * @see Base64#DONT_BREAK_LINES
+         * @since 2.2
+         */
+        public OutputStream(java.io.Writer out, int options) {
+            this(new WriterOutputStream(out), options);
+        }
+
         /**
          * Writes the byte to the output stream after
          * converting to/from Base64 notation.
@@ -1151,8 +1329,66 @@ public class Base64 {
                 super.out.write(theBytes, off, len);
                 return;
             }
-            for (int i = 0; i < len; i++) {
-                write(theBytes[off + i]);
+            int end = off + len;
+            if (chunk == null) {
+                chunk = new byte[4096];
+            }
+            int n = 0;
+            if (encode) {
+                // Complete the current group
+                while (position != 0 && off < end) {
+                    write(theBytes[off++]);
+                }
+                for (; end - off >= 3; off += 3) {
+                    int inBuff = ((theBytes[off] & 0xff) << 16)
+                            | ((theBytes[off + 1] & 0xff) << 8)
+                            | (theBytes[off + 2] & 0xff);
+                    chunk[n] = ALPHABET[inBuff >>> 18];
+                    chunk[n + 1] = ALPHABET[(inBuff >>> 12) & 0x3f];
+                    chunk[n + 2] = ALPHABET[(inBuff >>> 6) & 0x3f];
+                    chunk[n + 3] = ALPHABET[inBuff & 0x3f];
+                    n += 4;
+                    lineLength += 4;
+                    if (breakLines && lineLength >= MAX_LINE_LENGTH) {
+                        chunk[n++] = NEW_LINE;
+                        lineLength = 0;
+                    }
+                    if (n > chunk.length - 5) {
+                        out.write(chunk, 0, n);
+                        n = 0;
+                    }
+                }
+                if (n > 0) {
+                    out.write(chunk, 0, n);
+                }
+                // Buffer the remaining bytes
+                while (off < end) {
+                    write(theBytes[off++]);
+                }
+            } else {
+                for (; off < end; off++) {
+                    byte theByte = theBytes[off];
+                    byte decoded = DECODABET[theByte & 0x7f];
+                    if (decoded > WHITE_SPACE_ENC) {
+                        buffer[position++] = theByte;
+                        if (position >= bufferLength) {
+                            n += Base64.decode4to3(buffer, 0, chunk, n);
+                            position = 0;
+                            if (n > chunk.length - 3) {
+                                out.write(chunk, 0, n);
+                                n = 0;
+                            }
+                        }
+                    } else if (decoded != WHITE_SPACE_ENC) {
+                        if (n > 0) {
+                            out.write(chunk, 0, n);
+                        }
+                        throw new java.io.IOException("Invalid character in Base64 data.");
+                    }
+                }
+                if (n > 0) {
+                    out.write(chunk, 0, n);
+                }
             }
         }
 
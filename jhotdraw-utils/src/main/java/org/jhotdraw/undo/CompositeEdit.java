@@ -32,12 +32,18 @@ import javax.swing.undo.*;
  * @author Werner Randelshofer
  * @version $Id$
  */
-public class CompositeEdit extends CompoundEdit {
+public class CompositeEdit extends CompoundEdit implements SizedUndoableEdit {
 
     private static final long serialVersionUID = 1L;
     private String presentationName;
     private boolean isSignificant;
     private boolean isVerbose;
+    /**
+     * The cached estimated size of this edit. This is 0 if the size has
+     * not been computed yet, or since the edit has been deserialized. When
+     * an edit is added, only the size of the last edit is recomputed.
+     */
+    private transient long estimatedSize;
 
     public void setVerbose(boolean b) {
         isVerbose = b;
@@ -150,8 +156,35 @@ public class CompositeEdit extends CompoundEdit {
         } else if (isInProgress() && (anEdit instanceof CompositeEdit)) {
             return true;
         } else {
-            return super.addEdit(anEdit);
+            int index = edits.size() - 1;
+            long lastSize = (estimatedSize == 0 || index < 0) ? 0 : UndoRedoManager.getEstimatedSize(edits.get(index));
+            boolean success = super.addEdit(anEdit);
+            if (estimatedSize != 0) {
+                // The last edit has been replaced, or it has absorbed anEdit,
+                // or anEdit has been appended
+                estimatedSize -= lastSize;
+                for (int i = Math.max(0, index), n = edits.size(); i < n; i++) {
+                    estimatedSize += UndoRedoManager.getEstimatedSize(edits.get(i));
+                }
+            }
+            return success;
+        }
+    }
+
+    /**
+     * Returns the sum of the estimated sizes of the edits in this
+     * CompositeEdit.
+     */
+    @Override
+    public long getEstimatedSize() {
+        if (estimatedSize == 0) {
+            long size = 64;
+            for (UndoableEdit edit : edits) {
+                size += UndoRedoManager.getEstimatedSize(edit);
+            }
+            estimatedSize = size;
         }
+        return estimatedSize;
     }
 
     /**
@@ -0,0 +1,665 @@
+/*
+ * @(#)FileUndoStore.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.undo;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import javax.swing.undo.*;
+
+/**
+ * Keeps older edits of an {@link UndoRedoManager} in a local file instead of
+ * in memory.
+ * <p>
+ * The undo manager keeps the most recent edits live, and passes all older
+ * edits to {@link #spill}. The store serializes the edit, appends it to the
+ * file, and returns a small proxy edit, which replaces the edit in the undo
+ * history. When the proxy is undone or redone, it reads the edit back from
+ * the file. The file is read through a memory mapped window, so that undoing
+ * through a long history does not need to seek.
+ * <p>
+ * An edit is written at most twice: once in the state in which it can be
+ * undone, and once in the state in which it can be redone. When an edit
+ * which has been read back is spilled again, the record of its current
+ * state is reused. When an edit dies, for example because the undo manager
+ * has trimmed it, its records become garbage. The file is compacted when
+ * more than half of it is garbage.
+ * <p>
+ * Edits usually reference live objects, such as the figures of a drawing.
+ * These must not be copied into the file. Subclasses override
+ * {@link #isLiveObject} to write a handle instead of such an object, and
+ * {@link #isSpillable} to tell which kinds of edits can be stored. Edits
+ * which can not be serialized stay in memory.
+ * <p>
+ * The store keeps strong references to the live objects which are
+ * referenced from the records of edits which have not died yet.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class FileUndoStore implements Closeable {
+
+    /**
+     * The default number of edits which are kept in memory.
+     */
+    public static final int DEFAULT_LIVE_EDIT_COUNT = 32;
+    /**
+     * The size of the memory mapped window into the file.
+     */
+    private static final int WINDOW_SIZE = 16 << 20;
+    /**
+     * The file is not compacted, unless it contains at least this number of
+     * bytes of garbage.
+     */
+    private static final long MIN_GARBAGE_LENGTH = 64 << 10;
+    private final File file;
+    private final boolean deleteOnClose;
+    private FileChannel channel;
+    /**
+     * Maps a window of the file for reading. This is null if nothing has
+     * been read yet, or if the file has been compacted.
+     */
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long fileLength;
+    /**
+     * The number of bytes in the file, which are used by records of edits
+     * which have died.
+     */
+    private long garbageLength;
+    private int liveEditCount = DEFAULT_LIVE_EDIT_COUNT;
+    /**
+     * The records in the file, which belong to edits which have not died.
+     */
+    private final Set<Record> records = Collections.newSetFromMap(new IdentityHashMap<Record, Boolean>());
+    /**
+     * Holds the live objects referenced from the file by their handles.
+     */
+    private final HashMap<Integer, LiveObject> liveObjects = new HashMap<>();
+    private final IdentityHashMap<Object, Integer> liveObjectHandles = new IdentityHashMap<>();
+    private int nextHandle;
+    /**
+     * Edits which could not be serialized. They are not tried again.
+     */
+    private final Set<UndoableEdit> unspillableEdits = Collections.newSetFromMap(new WeakHashMap<UndoableEdit, Boolean>());
+
+    /**
+     * Creates a store which uses a temporary file. The file is deleted when
+     * the store is closed.
+     */
+    public FileUndoStore() throws IOException {
+        this(File.createTempFile("undo", ".tmp"), true);
+    }
+
+    /**
+     * Creates a store which uses the specified file. Existing contents of the
+     * file are discarded.
+     *
+     * @param file The file.
+     * @param deleteOnClose Whether the file is deleted when the store is
+     * closed.
+     */
+    public FileUndoStore(File file, boolean deleteOnClose) throws IOException {
+        this.file = file;
+        this.deleteOnClose = deleteOnClose;
+        if (deleteOnClose) {
+            file.deleteOnExit();
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of bytes which are used in the file.
+     */
+    public synchronized long getFileLength() {
+        return fileLength;
+    }
+
+    /**
+     * Returns the number of live objects which are referenced from the file.
+     */
+    public synchronized int getLiveObjectCount() {
+        return liveObjects.size();
+    }
+
+    /**
+     * Sets the number of the most recent edits which the undo manager keeps
+     * in memory. Edits which are merged with subsequent edits are always
+     * among them, so the value must be at least 1.
+     */
+    public void setLiveEditCount(int newValue) {
+        if (newValue < 1) {
+            throw new IllegalArgumentException("liveEditCount must be at least 1: " + newValue);
+        }
+        liveEditCount = newValue;
+    }
+
+    public int getLiveEditCount() {
+        return liveEditCount;
+    }
+
+    /**
+     * Returns true if edits of the class of the specified edit can be
+     * stored. This method is invoked for the spilled edit and for all edits
+     * which it contains.
+     * <p>
+     * This implementation returns true for {@link CompositeEdit}.
+     */
+    protected boolean isSpillable(UndoableEdit edit) {
+        return edit.getClass() == CompositeEdit.class;
+    }
+
+    /**
+     * Returns true if the specified object is referenced from the file by a
+     * handle instead of being serialized.
+     * <p>
+     * This implementation returns false.
+     */
+    protected boolean isLiveObject(Object obj) {
+        return false;
+    }
+
+    /**
+     * Writes the specified edit into the file, and returns a proxy edit,
+     * which replaces it in the undo history.
+     * <p>
+     * Returns the edit itself, if it can not be stored. If the edit is a
+     * proxy which has been read back from the file, the edit is released
+     * from memory. It is only written again, if it has not been written in
+     * its current state yet.
+     *
+     * @param edit An edit which is not in progress.
+     * @return The proxy or the edit.
+     */
+    public synchronized UndoableEdit spill(UndoableEdit edit) {
+        if (channel == null) {
+            return edit;
+        }
+        if (edit instanceof SpilledEdit) {
+            SpilledEdit spilled = (SpilledEdit) edit;
+            if (spilled.store == this && spilled.liveEdit != null) {
+                try {
+                    spilled.spill();
+                } catch (IOException e) {
+                    // The edit stays in memory
+                }
+            }
+            return spilled;
+        }
+        if (unspillableEdits.contains(edit) || !isSpillable(edit)) {
+            return edit;
+        }
+        SpilledEdit spilled = new SpilledEdit(this, edit);
+        try {
+            spilled.spill();
+        } catch (IOException e) {
+            unspillableEdits.add(edit);
+            return edit;
+        }
+        return spilled.isSpilled() ? spilled : edit;
+    }
+
+    /**
+     * Serializes the edit and appends it to the file.
+     */
+    private Record write(UndoableEdit edit) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        EditOutputStream out = new EditOutputStream(buf);
+        try {
+            out.writeObject(edit);
+            out.close();
+        } catch (IOException | RuntimeException e) {
+            // Forget the handles which have been created for this edit
+            for (Integer handle : out.handles) {
+                if (liveObjects.get(handle).refCount == 0) {
+                    liveObjectHandles.remove(liveObjects.remove(handle).obj);
+                }
+            }
+            throw e;
+        }
+        byte[] bytes = buf.toByteArray();
+        long offset = fileLength;
+        ByteBuffer bb = ByteBuffer.wrap(bytes);
+        while (bb.hasRemaining()) {
+            channel.write(bb, offset + bb.position());
+        }
+        fileLength += bytes.length;
+        Record record = new Record(offset, fileLength, new int[out.handles.size()]);
+        int i = 0;
+        for (Integer handle : out.handles) {
+            liveObjects.get(handle).refCount++;
+            record.handles[i++] = handle;
+        }
+        records.add(record);
+        return record;
+    }
+
+    /**
+     * Reads the edit of the specified record back from the file.
+     */
+    private synchronized UndoableEdit read(Record record) throws IOException {
+        if (channel == null || !records.contains(record)) {
+            throw new IOException("The edit has been discarded from the undo store.");
+        }
+        try {
+            int length = (int) (record.end - record.offset);
+            if (window == null || record.offset < windowStart || record.end > windowStart + window.capacity()) {
+                // Map a window around the record, because undo and redo
+                // read neighbouring records
+                long start = (length > WINDOW_SIZE / 2) ? record.offset : Math.max(0, record.offset - WINDOW_SIZE / 2);
+                long end = Math.min(fileLength, Math.max(record.end, start + WINDOW_SIZE));
+                window = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                windowStart = start;
+            }
+            byte[] bytes = new byte[length];
+            ByteBuffer buf = window.duplicate();
+            buf.position((int) (record.offset - windowStart));
+            buf.get(bytes);
+            try (EditInputStream in = new EditInputStream(new ByteArrayInputStream(bytes))) {
+                return (UndoableEdit) in.readObject();
+            }
+        } catch (ClassNotFoundException | RuntimeException e) {
+            throw new IOException("Could not read edit from " + file, e);
+        }
+    }
+
+    /**
+     * Releases the record of an edit which has died, and the live objects
+     * which are only referenced from it. Compacts the file, if more than
+     * half of it is garbage.
+     */
+    private synchronized void release(Record record) {
+        if (record == null || !records.remove(record)) {
+            return;
+        }
+        for (int handle : record.handles) {
+            LiveObject liveObject = liveObjects.get(handle);
+            if (--liveObject.refCount == 0) {
+                liveObjects.remove(handle);
+                liveObjectHandles.remove(liveObject.obj);
+            }
+        }
+        garbageLength += record.end - record.offset;
+        if (garbageLength >= MIN_GARBAGE_LENGTH && garbageLength > fileLength / 2) {
+            try {
+                compact();
+            } catch (IOException e) {
+                // The garbage stays in the file
+            }
+        }
+    }
+
+    /**
+     * Moves the records of the edits which have not died to the start of
+     * the file, and truncates the file.
+     */
+    private void compact() throws IOException {
+        window = null;
+        ArrayList<Record> sorted = new ArrayList<>(records);
+        Collections.sort(sorted, new Comparator<Record>() {
+            @Override
+            public int compare(Record r1, Record r2) {
+                return Long.compare(r1.offset, r2.offset);
+            }
+        });
+        long position = 0;
+        for (Record record : sorted) {
+            int length = (int) (record.end - record.offset);
+            if (record.offset != position) {
+                // The record is moved towards the start of the file, so it
+                // can only overwrite records which have been moved already
+                ByteBuffer buf = ByteBuffer.allocate(length);
+                while (buf.hasRemaining()) {
+                    if (channel.read(buf, record.offset + buf.position()) < 0) {
+                        throw new EOFException();
+                    }
+                }
+                buf.flip();
+                while (buf.hasRemaining()) {
+                    channel.write(buf, position + buf.position());
+                }
+                record.offset = position;
+                record.end = position + length;
+            }
+            position += length;
+        }
+        fileLength = position;
+        garbageLength = 0;
+        try {
+            channel.truncate(position);
+        } catch (IOException e) {
+            // The file is overwritten anyway
+        }
+    }
+
+    /**
+     * Discards the contents of the file and the references to live objects.
+     * All proxies which have been returned by this store become unusable.
+     */
+    public synchronized void clear() {
+        window = null;
+        fileLength = 0;
+        garbageLength = 0;
+        records.clear();
+        liveObjects.clear();
+        liveObjectHandles.clear();
+        unspillableEdits.clear();
+        if (channel != null) {
+            try {
+                channel.truncate(0);
+            } catch (IOException e) {
+                // The file is overwritten anyway
+            }
+        }
+    }
+
+    /**
+     * Closes the file, and deletes it if the store has been created with
+     * deleteOnClose. All proxies which have been returned by this store
+     * become unusable.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            clear();
+            channel.close();
+            channel = null;
+            if (deleteOnClose) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+    /**
+     * The location of a serialized edit in the file, and the handles of the
+     * live objects which it references.
+     */
+    private static class Record {
+
+        private long offset;
+        private long end;
+        private final int[] handles;
+
+        public Record(long offset, long end, int[] handles) {
+            this.offset = offset;
+            this.end = end;
+            this.handles = handles;
+        }
+    }
+
+    /**
+     * A live object, and the number of records which reference it.
+     */
+    private static class LiveObject {
+
+        private final Object obj;
+        private int refCount;
+
+        public LiveObject(Object obj) {
+            this.obj = obj;
+        }
+    }
+
+    /**
+     * The handle of a live object in the file.
+     */
+    private static class LiveObjectHandle implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private final int index;
+
+        public LiveObjectHandle(int index) {
+            this.index = index;
+        }
+    }
+
+    private class EditOutputStream extends ObjectOutputStream {
+
+        /**
+         * The handles of the live objects which have been written.
+         */
+        private final LinkedHashSet<Integer> handles = new LinkedHashSet<>();
+
+        public EditOutputStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (isLiveObject(obj)) {
+                Integer handle = liveObjectHandles.get(obj);
+                if (handle == null) {
+                    handle = nextHandle++;
+                    liveObjects.put(handle, new LiveObject(obj));
+                    liveObjectHandles.put(obj, handle);
+                }
+                handles.add(handle);
+                return new LiveObjectHandle(handle);
+            }
+            if ((obj instanceof UndoableEdit) && !isSpillable((UndoableEdit) obj)) {
+                throw new NotSerializableException(obj.getClass().getName());
+            }
+            return obj;
+        }
+    }
+
+    private class EditInputStream extends ObjectInputStream {
+
+        public EditInputStream(InputStream in) throws IOException {
+            super(in);
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj instanceof LiveObjectHandle) {
+                LiveObject liveObject = liveObjects.get(((LiveObjectHandle) obj).index);
+                if (liveObject == null) {
+                    throw new InvalidObjectException("The live object has been released.");
+                }
+                return liveObject.obj;
+            }
+            return obj;
+        }
+    }
+
+    /**
+     * Replaces a spilled edit in the undo history.
+     * <p>
+     * The proxy remembers the presentation names and the state of the edit,
+     * so that the undo manager can update its actions without reading the
+     * edit. Once the edit has been read back for undo or redo, it is kept in
+     * memory until it is spilled again.
+     * <p>
+     * The state of a deserialized edit is the state in which it has been
+     * written. Therefore the proxy keeps a record for the state in which the
+     * edit can be undone, and a record for the state in which it can be
+     * redone, and reads the record which matches its current state.
+     */
+    static class SpilledEdit implements SizedUndoableEdit {
+
+        private final FileUndoStore store;
+        private final String presentationName;
+        private final String undoPresentationName;
+        private final String redoPresentationName;
+        private final boolean isSignificant;
+        private boolean canUndo;
+        private boolean canRedo;
+        private boolean isDead;
+        /**
+         * The record of the edit in the state in which it can be undone.
+         */
+        private Record undoRecord;
+        /**
+         * The record of the edit in the state in which it can be redone.
+         */
+        private Record redoRecord;
+        /**
+         * The edit, if it is held in memory.
+         */
+        private UndoableEdit liveEdit;
+
+        public SpilledEdit(FileUndoStore store, UndoableEdit edit) {
+            this.store = store;
+            presentationName = edit.getPresentationName();
+            undoPresentationName = edit.getUndoPresentationName();
+            redoPresentationName = edit.getRedoPresentationName();
+            isSignificant = edit.isSignificant();
+            liveEdit = edit;
+        }
+
+        /**
+         * Writes the edit in its current state, unless it has been written in
+         * this state before, and releases it from memory. An edit which can
+         * neither be undone nor redone stays in memory.
+         */
+        private void spill() throws IOException {
+            boolean isUndoable = liveEdit.canUndo();
+            boolean isRedoable = liveEdit.canRedo();
+            if (isUndoable) {
+                if (undoRecord == null) {
+                    undoRecord = store.write(liveEdit);
+                }
+            } else if (isRedoable) {
+                if (redoRecord == null) {
+                    redoRecord = store.write(liveEdit);
+                }
+            } else {
+                return;
+            }
+            canUndo = isUndoable;
+            canRedo = isRedoable;
+            liveEdit = null;
+        }
+
+        /**
+         * Returns true if the edit is currently only held in the file.
+         */
+        public boolean isSpilled() {
+            return liveEdit == null;
+        }
+
+        private UndoableEdit getEdit() throws IOException {
+            if (liveEdit == null) {
+                liveEdit = store.read(canUndo ? undoRecord : redoRecord);
+            }
+            return liveEdit;
+        }
+
+        @Override
+        public void undo() throws CannotUndoException {
+            if (!canUndo()) {
+                throw new CannotUndoException();
+            }
+            UndoableEdit edit;
+            try {
+                edit = getEdit();
+            } catch (IOException e) {
+                isDead = true;
+                CannotUndoException ex = new CannotUndoException();
+                ex.initCause(e);
+                throw ex;
+            }
+            edit.undo();
+        }
+
+        @Override
+        public boolean canUndo() {
+            return !isDead && (liveEdit == null ? canUndo : liveEdit.canUndo());
+        }
+
+        @Override
+        public void redo() throws CannotRedoException {
+            if (!canRedo()) {
+                throw new CannotRedoException();
+            }
+            UndoableEdit edit;
+            try {
+                edit = getEdit();
+            } catch (IOException e) {
+                isDead = true;
+                CannotRedoException ex = new CannotRedoException();
+                ex.initCause(e);
+                throw ex;
+            }
+            edit.redo();
+        }
+
+        @Override
+        public boolean canRedo() {
+            return !isDead && (liveEdit == null ? canRedo : liveEdit.canRedo());
+        }
+
+        @Override
+        public void die() {
+            if (liveEdit != null) {
+                liveEdit.die();
+                liveEdit = null;
+            }
+            isDead = true;
+            store.release(undoRecord);
+            store.release(redoRecord);
+            undoRecord = redoRecord = null;
+        }
+
+        /**
+         * Returns false, because spilled edits are never merged with
+         * subsequent edits.
+         */
+        @Override
+        public boolean addEdit(UndoableEdit anEdit) {
+            return false;
+        }
+
+        @Override
+        public boolean replaceEdit(UndoableEdit anEdit) {
+            return false;
+        }
+
+        @Override
+        public boolean isSignificant() {
+            return isSignificant;
+        }
+
+        @Override
+        public String getPresentationName() {
+            return presentationName;
+        }
+
+        @Override
+        public String getUndoPresentationName() {
+            return undoPresentationName;
+        }
+
+        @Override
+        public String getRedoPresentationName() {
+            return redoPresentationName;
+        }
+
+        @Override
+        public long getEstimatedSize() {
+            return liveEdit == null ? 96 : 96 + UndoRedoManager.getEstimatedSize(liveEdit);
+        }
+
+        @Override
+        public String toString() {
+            return super.toString() + "[" + (liveEdit == null ? "spilled" : liveEdit) + "]";
+        }
+    }
+}
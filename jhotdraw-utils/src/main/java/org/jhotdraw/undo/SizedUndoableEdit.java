@@ -0,0 +1,32 @@
+/*
+ * @(#)SizedUndoableEdit.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.undo;
+
+import javax.swing.undo.UndoableEdit;
+
+/**
+ * An {@code UndoableEdit} which can estimate how much memory it uses.
+ * <p>
+ * {@link UndoRedoManager} uses the estimate to keep its history within a
+ * memory limit. Edits which do not implement this interface are assumed to
+ * use {@link UndoRedoManager#DEFAULT_EDIT_SIZE} bytes.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public interface SizedUndoableEdit extends UndoableEdit {
+
+    /**
+     * Returns an estimate of the number of bytes, which are kept alive by
+     * this edit, and which would be freed if the edit was discarded.
+     * <p>
+     * The estimate should be cheap to compute, because the undo manager
+     * invokes this method each time an edit is added.
+     */
+    public long getEstimatedSize();
+}
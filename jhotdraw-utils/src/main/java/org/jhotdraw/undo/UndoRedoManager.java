@@ -17,6 +17,13 @@ import org.jhotdraw.util.*;
 /**
  * Same as javax.swing.UndoManager but provides actions for undo and
  * redo operations.
+ * <p>
+ * The history is limited by the estimated memory size of the edits rather
+ * than by their number. When the sum of the estimated sizes exceeds the
+ * memory limit, the oldest edits are discarded. See {@link SizedUndoableEdit}.
+ * <p>
+ * Optionally, edits which are not among the most recent edits are moved into
+ * a {@link FileUndoStore}, see {@link #setUndoStore}.
  *
  * @author Werner Randelshofer
  * @version $Id$
@@ -26,6 +33,42 @@ public class UndoRedoManager extends UndoManager { //javax.swing.undo.UndoManage
     private static final long serialVersionUID = 1L;
     protected PropertyChangeSupport propertySupport = new PropertyChangeSupport(this);
     private static final boolean DEBUG = false;
+    /**
+     * The estimated size of an edit, which does not implement
+     * {@link SizedUndoableEdit}.
+     */
+    public static final long DEFAULT_EDIT_SIZE = 1024;
+    /**
+     * The maximal estimated size of all edits in bytes.
+     */
+    private long memoryLimit = Runtime.getRuntime().maxMemory() / 16;
+    /**
+     * The estimated sizes of the edits, as they were when the edits were
+     * added, undone, redone or moved into the undo store.
+     */
+    private final IdentityHashMap<UndoableEdit, Long> editSizes = new IdentityHashMap<>();
+    /**
+     * The sum of the values in editSizes.
+     */
+    private long estimatedSize;
+    /**
+     * The store for older edits. This is null if all edits are kept in
+     * memory.
+     */
+    private FileUndoStore undoStore;
+    /**
+     * The index at which the next edit will be added. This mirrors the
+     * indexOfNextAdd field of UndoManager, which is not accessible outside
+     * of its package.
+     */
+    private int nextAddIndex;
+    /**
+     * The range of edits, which has been kept in memory by the last
+     * invocation of spillEdits. All other edits have been passed to the
+     * undo store already.
+     */
+    private int liveStart;
+    private int liveEnd;
     /**
      * The resource bundle used for internationalisation.
      */
@@ -137,6 +180,227 @@ public class UndoRedoManager extends UndoManager { //javax.swing.undo.UndoManage
         getLabels();
         undoAction = new UndoAction();
         redoAction = new RedoAction();
+        // The history is limited by memory instead of the number of edits
+        setLimit(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Sets the maximal estimated size of all edits in bytes. If the edits
+     * exceed the limit, the oldest edits are discarded. The most recent edit
+     * is always kept.
+     * <p>
+     * The default value is 1/16 of the maximal memory of the Java VM.
+     */
+    public void setMemoryLimit(long newValue) {
+        memoryLimit = newValue;
+        trimForMemoryLimit();
+        updateActions();
+    }
+
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * Returns the sum of the estimated sizes of all edits in bytes.
+     * <p>
+     * The size of an edit is updated when it is added, undone, redone, or
+     * moved into the undo store. The size of the last edit is also updated,
+     * when an edit is added to it.
+     */
+    public synchronized long getEstimatedSize() {
+        return estimatedSize;
+    }
+
+    /**
+     * Updates the estimated size of the specified edit in the sum of the
+     * estimated sizes.
+     */
+    private void updateEstimatedSize(UndoableEdit edit) {
+        long size = getEstimatedSize(edit);
+        Long oldSize = editSizes.put(edit, size);
+        estimatedSize += (oldSize == null) ? size : size - oldSize;
+    }
+
+    private void removeEstimatedSize(UndoableEdit edit) {
+        Long oldSize = editSizes.remove(edit);
+        if (oldSize != null) {
+            estimatedSize -= oldSize;
+        }
+    }
+
+    /**
+     * Returns the estimated size of the specified edit in bytes.
+     */
+    public static long getEstimatedSize(UndoableEdit edit) {
+        return (edit instanceof SizedUndoableEdit)
+                ? ((SizedUndoableEdit) edit).getEstimatedSize() : DEFAULT_EDIT_SIZE;
+    }
+
+    /**
+     * Discards the oldest edits until the estimated size of all edits is
+     * within the memory limit. Does nothing while the most recent edit is
+     * an edit in progress, because its size is still growing.
+     * <p>
+     * Only edits which can be undone are discarded. Edits which have been
+     * undone and can be redone are kept, even if they exceed the limit.
+     */
+    protected synchronized void trimForMemoryLimit() {
+        if (edits.isEmpty()) {
+            return;
+        }
+        UndoableEdit last = edits.lastElement();
+        if (last instanceof CompoundEdit && ((CompoundEdit) last).isInProgress()) {
+            return;
+        }
+        long size = estimatedSize;
+        int count = 0;
+        int maxCount = Math.min(nextAddIndex, edits.size() - 1);
+        while (size > memoryLimit && count < maxCount) {
+            Long editSize = editSizes.get(edits.get(count));
+            if (editSize != null) {
+                size -= editSize;
+            }
+            count++;
+        }
+        if (count > 0) {
+            trimEdits(0, count - 1);
+        }
+    }
+
+    /**
+     * Sets the store for older edits. If the store is not null, only the
+     * most recent edits, see {@link FileUndoStore#getLiveEditCount}, are
+     * kept in memory. The other edits are moved into the store when edits
+     * are added, undone or redone.
+     * <p>
+     * The store must not be shared with another undo manager. It is cleared
+     * when all edits are discarded.
+     */
+    public void setUndoStore(FileUndoStore newValue) {
+        FileUndoStore oldValue = undoStore;
+        undoStore = newValue;
+        synchronized (this) {
+            liveStart = 0;
+            liveEnd = edits.size();
+            spillEdits();
+        }
+        firePropertyChange("undoStore", oldValue, newValue);
+    }
+
+    public FileUndoStore getUndoStore() {
+        return undoStore;
+    }
+
+    /**
+     * Returns the number of edits which are currently only held in the undo
+     * store.
+     */
+    public synchronized int getSpilledEditCount() {
+        int count = 0;
+        for (UndoableEdit edit : edits) {
+            if (edit instanceof FileUndoStore.SpilledEdit && ((FileUndoStore.SpilledEdit) edit).isSpilled()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Moves the edits into the undo store, which are not among the most
+     * recent edits before or after the current position in the history.
+     * <p>
+     * Only the edits which have been kept in memory by the previous
+     * invocation are visited.
+     */
+    protected synchronized void spillEdits() {
+        if (undoStore == null) {
+            return;
+        }
+        int liveCount = undoStore.getLiveEditCount();
+        int start = Math.max(0, nextAddIndex - liveCount);
+        int end = Math.min(edits.size(), nextAddIndex + liveCount);
+        int oldEnd = Math.min(liveEnd, edits.size());
+        for (int i = liveStart, n = Math.min(start, oldEnd); i < n; i++) {
+            spillEdit(i);
+        }
+        for (int i = Math.max(liveStart, end); i < oldEnd; i++) {
+            spillEdit(i);
+        }
+        liveStart = start;
+        liveEnd = end;
+    }
+
+    private void spillEdit(int index) {
+        UndoableEdit edit = edits.get(index);
+        if (edit instanceof CompoundEdit && ((CompoundEdit) edit).isInProgress()) {
+            return;
+        }
+        UndoableEdit spilled = undoStore.spill(edit);
+        if (spilled != edit) {
+            edits.set(index, spilled);
+            removeEstimatedSize(edit);
+        }
+        updateEstimatedSize(spilled);
+    }
+
+    /**
+     * Removes the edits from index from to index to inclusive, and keeps
+     * track of the edits which are kept in memory.
+     */
+    @Override
+    protected synchronized void trimEdits(int from, int to) {
+        if (from <= to) {
+            for (int i = from; i <= to; i++) {
+                removeEstimatedSize(edits.get(i));
+            }
+            super.trimEdits(from, to);
+            nextAddIndex = trimmedIndex(nextAddIndex, from, to);
+            liveStart = trimmedIndex(liveStart, from, to);
+            liveEnd = trimmedIndex(liveEnd, from, to);
+        }
+    }
+
+    /**
+     * Updates nextAddIndex after an undo or redo operation, and the
+     * estimated sizes of the edits which have been undone or redone. Their
+     * sizes have changed, if they have been read back from the undo store.
+     */
+    private synchronized void updateNextAddIndex(boolean isUndo) {
+        int oldIndex = nextAddIndex;
+        nextAddIndex = findNextAddIndex(isUndo);
+        for (int i = Math.min(oldIndex, nextAddIndex), n = Math.min(Math.max(oldIndex, nextAddIndex), edits.size()); i < n; i++) {
+            updateEstimatedSize(edits.get(i));
+        }
+    }
+
+    /**
+     * UndoManager sets indexOfNextAdd to the index of the edit which is now
+     * to be redone, or after the index of the edit which is now to be
+     * undone. The edit is searched outwards from the previous index.
+     */
+    private int findNextAddIndex(boolean isUndo) {
+        UndoableEdit edit = isUndo ? editToBeRedone() : editToBeUndone();
+        if (edit == null) {
+            return isUndo ? edits.size() : 0;
+        }
+        int offset = isUndo ? 0 : 1;
+        for (int d = 0, n = edits.size(); nextAddIndex - d >= 0 || nextAddIndex + d < n; d++) {
+            if (nextAddIndex - d >= 0 && nextAddIndex - d < n && edits.get(nextAddIndex - d) == edit) {
+                return nextAddIndex - d + offset;
+            }
+            if (nextAddIndex + d < n && edits.get(nextAddIndex + d) == edit) {
+                return nextAddIndex + d + offset;
+            }
+        }
+        return nextAddIndex;
+    }
+
+    private static int trimmedIndex(int index, int from, int to) {
+        if (index > to) {
+            return index - (to - from + 1);
+        }
+        return Math.min(index, from);
     }
 
     public void setLocale(Locale l) {
@@ -149,6 +413,14 @@ public class UndoRedoManager extends UndoManager { //javax.swing.undo.UndoManage
     @Override
     public void discardAllEdits() {
         super.discardAllEdits();
+        synchronized (this) {
+            nextAddIndex = liveStart = liveEnd = 0;
+            editSizes.clear();
+            estimatedSize = 0;
+        }
+        if (undoStore != null) {
+            undoStore.clear();
+        }
         updateActions();
         setHasSignificantEdits(false);
     }
@@ -195,6 +467,17 @@ public class UndoRedoManager extends UndoManager { //javax.swing.undo.UndoManage
             return true;
         }
         boolean success = super.addEdit(anEdit);
+        synchronized (this) {
+            if (isInProgress()) {
+                nextAddIndex = edits.size();
+            }
+            if (success && !edits.isEmpty()) {
+                // The last edit has been added, or it has absorbed anEdit
+                updateEstimatedSize(edits.lastElement());
+            }
+        }
+        trimForMemoryLimit();
+        spillEdits();
         updateActions();
         if (success && anEdit.isSignificant() && editToBeUndone() == anEdit) {
             setHasSignificantEdits(true);
@@ -260,6 +543,8 @@ public class UndoRedoManager extends UndoManager { //javax.swing.undo.UndoManage
             super.undo();
         } finally {
             undoOrRedoInProgress = false;
+            updateNextAddIndex(true);
+            spillEdits();
             updateActions();
         }
     }
@@ -277,6 +562,8 @@ public class UndoRedoManager extends UndoManager { //javax.swing.undo.UndoManage
             super.redo();
         } finally {
             undoOrRedoInProgress = false;
+            updateNextAddIndex(false);
+            spillEdits();
             updateActions();
         }
     }
@@ -294,6 +581,7 @@ public class UndoRedoManager extends UndoManager { //javax.swing.undo.UndoManage
             super.undoOrRedo();
         } finally {
             undoOrRedoInProgress = false;
+            spillEdits();
             updateActions();
         }
     }
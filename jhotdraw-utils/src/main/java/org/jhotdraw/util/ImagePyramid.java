@@ -0,0 +1,399 @@
+/*
+ * @(#)ImagePyramid.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Provides an image at reduced resolutions for drawing it at small scales.
+ * <p>
+ * Level 0 of the pyramid is the image at full resolution, level {@code n}
+ * has {@code 1/2^n} of the width and height of the image. {@link #getImage}
+ * returns the smallest level which still has at least as many pixels as are
+ * needed for drawing the image at the requested size.
+ * <p>
+ * If the pyramid has been created from encoded image data, the levels are
+ * decoded with source subsampling, so that the image never needs to be
+ * decoded at full resolution if it is only drawn at small scales. If the
+ * pyramid has been created from a buffered image, each level is computed by
+ * halving the previous level.
+ * <p>
+ * Decoded levels are kept in a cache which is shared by all pyramids. If the
+ * cache uses more memory than the memory budget, the least recently used
+ * levels are evicted. A full resolution image which has been passed to the
+ * constructor is not part of the cache and does not count against the
+ * budget. The cache does not keep pyramids alive. When a pyramid is garbage
+ * collected, its levels are removed from the cache.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class ImagePyramid {
+
+    /**
+     * The memory budget of the cache in bytes.
+     */
+    private static long memoryBudget = Runtime.getRuntime().maxMemory() / 8;
+    /**
+     * The memory used by the cache in bytes.
+     */
+    private static long memoryUsage;
+    /**
+     * The cached levels of all pyramids, in least recently used order.
+     */
+    private static final LinkedHashMap<LevelKey, BufferedImage> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * Weak references to the pyramids which have levels in the cache, by id.
+     */
+    private static final HashMap<Long, PyramidReference> REFERENCES = new HashMap<>();
+    /**
+     * The references to the pyramids which have been garbage collected.
+     */
+    private static final ReferenceQueue<ImagePyramid> COLLECTED = new ReferenceQueue<>();
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    /**
+     * Key of a cached level. The key holds the id of the pyramid instead of
+     * the pyramid, so that the cache does not keep the pyramid and its image
+     * data alive.
+     */
+    private static class LevelKey {
+
+        private final long id;
+        private final int level;
+
+        public LevelKey(long id, int level) {
+            this.id = id;
+            this.level = level;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof LevelKey)) {
+                return false;
+            }
+            LevelKey that = (LevelKey) obj;
+            return this.id == that.id && this.level == that.level;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(id) * 31 + level;
+        }
+    }
+
+    /**
+     * Weak reference to a pyramid which has levels in the cache.
+     */
+    private static class PyramidReference extends WeakReference<ImagePyramid> {
+
+        private final long id;
+
+        public PyramidReference(ImagePyramid pyramid) {
+            super(pyramid, COLLECTED);
+            this.id = pyramid.id;
+        }
+    }
+    private final long id = NEXT_ID.getAndIncrement();
+    private final byte[] imageData;
+    private final BufferedImage image;
+    private int width = -1;
+    private int height = -1;
+    /**
+     * Set to true, if the image data can not be decoded.
+     */
+    private volatile boolean failed;
+
+    /**
+     * Creates a new pyramid.
+     * <p>
+     * Note: For performance reasons this method stores a reference to the
+     * imageData array instead of cloning it. Do not modify the imageData
+     * array after invoking this method.
+     *
+     * @param imageData The encoded image data. This can be null, if an image
+     * is provided.
+     * @param image The image at full resolution. This can be null, if image
+     * data is provided.
+     */
+    public ImagePyramid(byte[] imageData, BufferedImage image) {
+        if (imageData == null && image == null) {
+            throw new IllegalArgumentException("imageData and image must not both be null");
+        }
+        this.imageData = imageData;
+        this.image = image;
+        if (image != null) {
+            width = image.getWidth();
+            height = image.getHeight();
+        }
+    }
+
+    /**
+     * Sets the memory budget of the cache which is shared by all pyramids.
+     *
+     * @param bytes The budget in bytes.
+     */
+    public static void setMemoryBudget(long bytes) {
+        synchronized (CACHE) {
+            memoryBudget = bytes;
+            evict();
+        }
+    }
+
+    /**
+     * Returns the memory budget of the cache which is shared by all
+     * pyramids.
+     */
+    public static long getMemoryBudget() {
+        synchronized (CACHE) {
+            return memoryBudget;
+        }
+    }
+
+    /**
+     * Returns the memory currently used by the cache which is shared by all
+     * pyramids.
+     */
+    public static long getMemoryUsage() {
+        synchronized (CACHE) {
+            removeCollected();
+            return memoryUsage;
+        }
+    }
+
+    /**
+     * Returns the width of the image at full resolution, or -1 if the image
+     * data can not be decoded.
+     */
+    public int getWidth() {
+        readSize();
+        return width;
+    }
+
+    /**
+     * Returns the height of the image at full resolution, or -1 if the image
+     * data can not be decoded.
+     */
+    public int getHeight() {
+        readSize();
+        return height;
+    }
+
+    /**
+     * Returns the image at the level which is best suited for drawing it
+     * with the specified size in device pixels.
+     *
+     * @param drawWidth The width of the drawn image in device pixels.
+     * @param drawHeight The height of the drawn image in device pixels.
+     * @return The image, or null if the image data can not be decoded.
+     */
+    public BufferedImage getImage(double drawWidth, double drawHeight) {
+        readSize();
+        if (failed) {
+            return null;
+        }
+        return getLevel(getLevel(width, height, drawWidth, drawHeight));
+    }
+
+    /**
+     * Returns the highest level of a pyramid for an image with the specified
+     * size, which has at least the specified number of pixels.
+     *
+     * @param width The width of the image at full resolution.
+     * @param height The height of the image at full resolution.
+     * @param drawWidth The width of the drawn image in device pixels.
+     * @param drawHeight The height of the drawn image in device pixels.
+     */
+    public static int getLevel(int width, int height, double drawWidth, double drawHeight) {
+        int level = 0;
+        while ((width >> (level + 1)) >= Math.max(1, drawWidth)
+                && (height >> (level + 1)) >= Math.max(1, drawHeight)) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Removes all levels of this pyramid from the cache.
+     */
+    public void dispose() {
+        synchronized (CACHE) {
+            PyramidReference ref = REFERENCES.remove(id);
+            if (ref != null) {
+                ref.clear();
+                removeLevels(id);
+            }
+        }
+    }
+
+    /**
+     * Enqueues the weak reference to this pyramid as if the pyramid had been
+     * garbage collected. This method is intended for testing.
+     */
+    void enqueueReference() {
+        synchronized (CACHE) {
+            PyramidReference ref = REFERENCES.get(id);
+            if (ref != null) {
+                ref.enqueue();
+            }
+        }
+    }
+
+    /**
+     * Removes all levels of the specified pyramid from the cache.
+     * The caller must hold the lock on the cache.
+     */
+    private static void removeLevels(long id) {
+        for (Iterator<Map.Entry<LevelKey, BufferedImage>> i = CACHE.entrySet().iterator(); i.hasNext();) {
+            Map.Entry<LevelKey, BufferedImage> entry = i.next();
+            if (entry.getKey().id == id) {
+                memoryUsage -= getMemorySize(entry.getValue());
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes the levels of the pyramids which have been garbage collected
+     * from the cache. The caller must hold the lock on the cache.
+     */
+    private static void removeCollected() {
+        for (PyramidReference ref; null != (ref = (PyramidReference) COLLECTED.poll());) {
+            if (REFERENCES.remove(ref.id) == ref) {
+                removeLevels(ref.id);
+            }
+        }
+    }
+
+    private BufferedImage getLevel(int level) {
+        if (level == 0 && image != null) {
+            return image;
+        }
+        LevelKey key = new LevelKey(id, level);
+        synchronized (CACHE) {
+            removeCollected();
+            BufferedImage cached = CACHE.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        // We decode without holding the lock, so that other threads
+        // can draw other images in the meantime.
+        BufferedImage decoded;
+        if (imageData != null) {
+            decoded = decode(1 << level);
+        } else {
+            BufferedImage previous = getLevel(level - 1);
+            decoded = Images.getScaledInstance(previous,
+                    Math.max(1, previous.getWidth() / 2), Math.max(1, previous.getHeight() / 2));
+        }
+        if (decoded == null) {
+            return null;
+        }
+        synchronized (CACHE) {
+            BufferedImage cached = CACHE.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            if (!REFERENCES.containsKey(id)) {
+                REFERENCES.put(id, new PyramidReference(this));
+            }
+            CACHE.put(key, decoded);
+            memoryUsage += getMemorySize(decoded);
+            evict();
+        }
+        return decoded;
+    }
+
+    /**
+     * Evicts the least recently used levels until the cache fits into the
+     * memory budget. The most recently used level is never evicted.
+     * The caller must hold the lock on the cache.
+     */
+    private static void evict() {
+        for (Iterator<BufferedImage> i = CACHE.values().iterator(); memoryUsage > memoryBudget && CACHE.size() > 1;) {
+            memoryUsage -= getMemorySize(i.next());
+            i.remove();
+        }
+    }
+
+    private static long getMemorySize(BufferedImage img) {
+        DataBuffer buf = img.getRaster().getDataBuffer();
+        return (long) buf.getSize() * buf.getNumBanks() * DataBuffer.getDataTypeSize(buf.getDataType()) / 8;
+    }
+
+    /**
+     * Reads the size of the image from the header of the image data.
+     */
+    private synchronized void readSize() {
+        if (width == -1 && !failed) {
+            try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(imageData))) {
+                ImageReader reader = getReader(in);
+                try {
+                    width = reader.getWidth(0);
+                    height = reader.getHeight(0);
+                } finally {
+                    reader.dispose();
+                }
+            } catch (IOException e) {
+                Logger.getLogger(ImagePyramid.class.getName()).log(Level.FINE, "Can not read image size.", e);
+                failed = true;
+            }
+        }
+    }
+
+    /**
+     * Decodes the image data, taking every n-th pixel in each direction.
+     */
+    private BufferedImage decode(int subsampling) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(imageData))) {
+            ImageReader reader = getReader(in);
+            try {
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            Logger.getLogger(ImagePyramid.class.getName()).log(Level.FINE, "Can not decode image.", e);
+            // If we can't decode the image data, there is no use to
+            // try again.
+            failed = true;
+            return null;
+        }
+    }
+
+    private static ImageReader getReader(ImageInputStream in) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) {
+            throw new IOException("No image reader found for image data.");
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(in, true, true);
+        return reader;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.geom;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Compares {@link ArrayQuadTree} with {@link QuadTree}.
+ */
+public class ArrayQuadTreeNGTest {
+
+    public ArrayQuadTreeNGTest() {
+    }
+
+    private static List<Rectangle2D.Double> createRectangles(Random r, int n) {
+        List<Rectangle2D.Double> list = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            list.add(new Rectangle2D.Double(
+                    r.nextDouble() * 4000 - 500, r.nextDouble() * 3000 - 500,
+                    r.nextDouble() * 200, r.nextDouble() * 200));
+        }
+        return list;
+    }
+
+    @Test
+    public void testQueriesMatchQuadTree() {
+        Random r = new Random(1);
+        List<Rectangle2D.Double> rects = createRectangles(r, 3000);
+        QuadTree<Integer> expected = new QuadTree<>();
+        ArrayQuadTree<Integer> instance = new ArrayQuadTree<>();
+        for (int i = 0; i < rects.size(); i++) {
+            expected.add(i, rects.get(i));
+            instance.add(i, rects.get(i));
+        }
+        // Remove and move some of the objects
+        for (int i = 0; i < 500; i++) {
+            expected.remove(i);
+            instance.remove(i);
+        }
+        for (int i = 500; i < 1000; i++) {
+            Rectangle2D.Double rect = rects.get(i);
+            rect.x += 300;
+            expected.remove(i);
+            expected.add(i, rect);
+            instance.update(i, rect);
+        }
+        assertEquals(instance.size(), 2500);
+        for (int i = 0; i < 200; i++) {
+            Rectangle2D.Double q = new Rectangle2D.Double(
+                    r.nextDouble() * 4000 - 500, r.nextDouble() * 3000 - 500,
+                    r.nextDouble() * 600, r.nextDouble() * 600);
+            assertSameElements(instance.findIntersects(q), expected.findIntersects(q));
+            assertSameElements(instance.findInside(q), expected.findInside(q));
+            Point2D.Double p = new Point2D.Double(q.x, q.y);
+            assertSameElements(instance.findContains(p), expected.findContains(p));
+        }
+    }
+
+    @Test
+    public void testBulkLoad() {
+        Random r = new Random(2);
+        List<Rectangle2D.Double> rects = createRectangles(r, 2000);
+        ArrayQuadTree<Rectangle2D.Double> added = new ArrayQuadTree<>();
+        for (Rectangle2D.Double rect : rects) {
+            added.add(rect, rect);
+        }
+        ArrayQuadTree<Rectangle2D.Double> loaded = new ArrayQuadTree<>();
+        loaded.bulkLoad(rects, rect -> rect);
+        assertEquals(loaded.size(), rects.size());
+        for (int i = 0; i < 100; i++) {
+            Rectangle2D.Double q = new Rectangle2D.Double(
+                    r.nextDouble() * 4000, r.nextDouble() * 3000, 300, 300);
+            assertSameElements(loaded.findIntersects(q), added.findIntersects(q));
+        }
+    }
+
+    @Test
+    public void testFindNearest() {
+        Random r = new Random(3);
+        List<Rectangle2D.Double> rects = createRectangles(r, 1000);
+        ArrayQuadTree<Rectangle2D.Double> instance = new ArrayQuadTree<>();
+        instance.bulkLoad(rects, rect -> rect);
+        for (int i = 0; i < 50; i++) {
+            Point2D.Double p = new Point2D.Double(r.nextDouble() * 4000, r.nextDouble() * 3000);
+            List<Rectangle2D.Double> nearest = instance.findNearest(p, 5, new ArrayList<Rectangle2D.Double>());
+            assertEquals(nearest.size(), 5);
+            // Brute force: no other rectangle may be nearer than the fifth.
+            double fifth = distance(nearest.get(4), p);
+            int nearer = 0;
+            for (Rectangle2D.Double rect : rects) {
+                if (distance(rect, p) < fifth) {
+                    nearer++;
+                }
+            }
+            assertTrue(nearer <= 4);
+            for (int j = 1; j < 5; j++) {
+                assertTrue(distance(nearest.get(j - 1), p) <= distance(nearest.get(j), p));
+            }
+        }
+    }
+
+    private static <T> void assertSameElements(Collection<T> actual, Collection<T> expected) {
+        Set<T> actualSet = new HashSet<>(actual);
+        Set<T> expectedSet = new HashSet<>(expected);
+        assertEquals(actual.size(), actualSet.size());
+        assertEquals(actualSet, expectedSet);
+    }
+
+    private static double distance(Rectangle2D.Double rect, Point2D.Double p) {
+        double dx = Math.max(0, Math.max(rect.x - p.x, p.x - rect.getMaxX()));
+        double dy = Math.max(0, Math.max(rect.y - p.y, p.y - rect.getMaxY()));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
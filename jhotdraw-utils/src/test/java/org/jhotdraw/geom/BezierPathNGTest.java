@@ -18,9 +18,15 @@
  */
 package org.jhotdraw.geom;
 
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Path2D;
 import java.awt.geom.PathIterator;
 import java.awt.geom.Point2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
 import static org.testng.Assert.*;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.AfterMethod;
@@ -135,4 +141,205 @@ public class BezierPathNGTest {
             pathIterator.next();
         }
     }
+
+    private static BezierPath createPath() {
+        BezierPath instance = new BezierPath();
+        instance.moveTo(10, 10);
+        instance.lineTo(100, 10);
+        instance.quadTo(150, 50, 100, 100);
+        instance.curveTo(80, 120, 30, 120, 10, 100);
+        instance.setClosed(true);
+        return instance;
+    }
+
+    private static void assertSameSegments(PathIterator expected, PathIterator actual) {
+        double[] e = new double[6];
+        double[] a = new double[6];
+        while (!expected.isDone()) {
+            assertFalse(actual.isDone());
+            assertEquals(actual.currentSegment(a), expected.currentSegment(e));
+            assertTrue(Arrays.equals(a, e), Arrays.toString(a) + " != " + Arrays.toString(e));
+            expected.next();
+            actual.next();
+        }
+        assertTrue(actual.isDone());
+    }
+
+    @Test
+    public void testPackedAndAttachedNodesAreEqual() {
+        BezierPath packed = createPath();
+        BezierPath expanded = createPath();
+        for (BezierPath.Node node : expanded) {
+            assertNotNull(node);
+        }
+        assertEquals(packed, expanded);
+        assertEquals(packed.hashCode(), expanded.hashCode());
+        assertEquals(packed.getBounds2D(), expanded.getBounds2D());
+        assertSameSegments(expanded.getPathIterator(null), packed.getPathIterator(null));
+        assertSameSegments(expanded.toGeneralPath().getPathIterator(null), packed.getPathIterator(null));
+        assertTrue(packed.contains(50, 50));
+        assertFalse(packed.contains(200, 50));
+        assertEquals(packed.isKeepColinear(0), expanded.get(0).keepColinear);
+        assertEquals(packed.isKeepColinear(2), expanded.get(2).keepColinear);
+    }
+
+    @Test
+    public void testNodeChangesAreReflectedWhileNodeIsInPath() {
+        BezierPath instance = createPath();
+        BezierPath.Node node = instance.get(1);
+        assertTrue(instance.get(1) == node);
+        node.moveTo(110, 20);
+        assertEquals(instance.get(1, 0), new Point2D.Double(110, 20));
+        instance.trimToSize();
+        node.moveTo(0, 0);
+        assertEquals(instance.get(1, 0), new Point2D.Double(0, 0));
+        instance.addNode(0, new BezierPath.Node(50, 0));
+        node.moveTo(5, 5);
+        assertEquals(instance.get(2, 0), new Point2D.Double(5, 5));
+        instance.setNode(2, new BezierPath.Node(7, 7));
+        assertEquals(node.getControlPoint(0), new Point2D.Double(7, 7));
+        instance.transform(AffineTransform.getTranslateInstance(1, 0));
+        assertEquals(node.getControlPoint(0), new Point2D.Double(8, 7));
+
+        // A replaced node is no longer attached
+        instance.set(2, new BezierPath.Node(9, 9));
+        node.moveTo(0, 0);
+        assertEquals(instance.get(2, 0), new Point2D.Double(9, 9));
+    }
+
+    @Test
+    public void testReadsDoNotChangePath() {
+        BezierPath instance = createPath();
+        BezierPath.Node node = instance.copyNode(1);
+        node.moveTo(0, 0);
+        assertEquals(instance, createPath());
+        assertEquals(instance.toString(), createPath().toString());
+        instance.getBounds2D();
+        instance.contains(50, 50);
+        assertEquals(instance.hashCode(), createPath().hashCode());
+    }
+
+    @Test
+    public void testEditPackedPath() {
+        BezierPath instance = createPath();
+        BezierPath.Node node = instance.copyNode(2);
+        node.moveTo(120, 120);
+        instance.setNode(2, node);
+        instance.addNode(1, new BezierPath.Node(50, 0));
+        instance.remove(0);
+        assertEquals(instance.size(), 4);
+        assertEquals(instance.get(0, 0), new Point2D.Double(50, 0));
+        assertEquals(instance.copyNode(2), node);
+
+        BezierPath expected = createPath();
+        expected.set(2, node);
+        expected.add(1, new BezierPath.Node(50, 0));
+        expected.remove(0);
+        assertEquals(instance, expected);
+    }
+
+    @Test
+    public void testCloneAndTransform() {
+        BezierPath instance = createPath();
+        BezierPath.Node node = instance.get(0);
+        BezierPath clone = instance.clone();
+        assertEquals(clone, instance);
+        // The clone does not share the node objects
+        node.moveTo(node.x[0] + 1, node.y[0]);
+        assertFalse(clone.equals(instance));
+        node.moveTo(node.x[0] - 1, node.y[0]);
+        AffineTransform tx = AffineTransform.getTranslateInstance(5, 7);
+        clone.transform(tx);
+        instance.transform(tx);
+        assertEquals(clone, instance);
+        assertEquals(clone.get(0, 0), new Point2D.Double(15, 17));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        BezierPath instance = createPath();
+        instance.get(0).moveTo(1, 2);
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(buf)) {
+            out.writeObject(instance);
+        }
+        BezierPath copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buf.toByteArray()))) {
+            copy = (BezierPath) in.readObject();
+        }
+        assertEquals(copy, instance);
+        assertTrue(copy.isClosed());
+        assertSameSegments(instance.getPathIterator(null), copy.getPathIterator(null));
+    }
+
+    @Test
+    public void testPointOnPath() {
+        BezierPath instance = new BezierPath();
+        instance.moveTo(100, 100);
+        instance.lineTo(200, 100);
+        instance.lineTo(200, 200);
+        assertEquals(instance.getLengthOfPath(1), 200.0, 1e-9);
+        assertEquals(instance.getPointOnPath(0.25, 1), new Point2D.Double(150, 100));
+        assertEquals(instance.getPointOnPath(0.75, 1), new Point2D.Double(200, 150));
+        assertEquals(instance.getRelativePositionOnPath(new Point2D.Double(175, 100), 1), 0.375, 1e-9);
+        assertEquals(instance.getRelativePositionOnPath(new Point2D.Double(0, 0), 1), -1.0);
+
+        instance.transform(AffineTransform.getScaleInstance(2, 2));
+        assertEquals(instance.getLengthOfPath(1), 400.0, 1e-9);
+        assertEquals(instance.getPointOnPath(0.25, 1), new Point2D.Double(300, 200));
+    }
+
+    @Test
+    public void testPointOnCurvedPath() {
+        BezierPath instance = createPath();
+        double flatness = 0.5;
+        double len = instance.getLengthOfPath(flatness);
+        for (int i = 1; i < 10; i++) {
+            double relative = i / 10.0;
+            Point2D.Double p = instance.getPointOnPath(relative, flatness);
+            assertTrue(instance.outlineContains(p, flatness), "relative=" + relative + " p=" + p);
+            assertEquals(instance.getRelativePositionOnPath(p, flatness), relative, 0.01);
+        }
+        assertTrue(len > 0);
+    }
+
+    @Test
+    public void testPointOnLongPath() {
+        BezierPath instance = new BezierPath();
+        instance.moveTo(0, 0);
+        for (int i = 1; i <= 10000; i++) {
+            instance.curveTo(i * 10 - 7, 5, i * 10 - 3, -5, i * 10, 0);
+        }
+        for (int i = 1; i < 1000; i++) {
+            assertEquals(instance.getPointOnPath(i / 1000.0, 3).x, i * 100, 10, "i=" + i);
+        }
+        assertEquals(instance.getPointOnPath(0.5, 3).x, 50000, 1);
+    }
+
+    @Test
+    public void testRelativePositionOnLongPath() {
+        BezierPath instance = new BezierPath();
+        instance.moveTo(0, 0);
+        for (int i = 1; i <= 10000; i++) {
+            instance.curveTo(i * 10 - 7, 5, i * 10 - 3, -5, i * 10, 0);
+        }
+        for (int i = 1; i < 1000; i++) {
+            Point2D.Double p = instance.getPointOnPath(i / 1000.0, 3);
+            assertEquals(instance.getRelativePositionOnPath(p, 3), i / 1000.0, 1e-6, "i=" + i);
+        }
+        assertEquals(instance.getRelativePositionOnPath(new Point2D.Double(50000, 20), 3), -1.0);
+        assertEquals(instance.getRelativePositionOnPath(new Point2D.Double(100020, 0), 3), -1.0);
+    }
+
+    @Test
+    public void testRelativePositionOnNearestSegment() {
+        BezierPath instance = new BezierPath();
+        instance.moveTo(0, 0);
+        instance.lineTo(100, 0);
+        instance.lineTo(100, 2);
+        instance.lineTo(0, 2);
+        // (50, 2) is within the tolerance of the first segment too
+        assertEquals(instance.getRelativePositionOnPath(new Point2D.Double(50, 0), 3), 50 / 202.0, 1e-9);
+        assertEquals(instance.getRelativePositionOnPath(new Point2D.Double(50, 2), 3), 152 / 202.0, 1e-9);
+    }
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.geom;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Compares {@link BoundsUnionTree} with {@link Rectangle2D#add}.
+ */
+public class BoundsUnionTreeNGTest {
+
+    public BoundsUnionTreeNGTest() {
+    }
+
+    @Test
+    public void testUnionAfterUpdates() {
+        Random r = new Random(1);
+        Rectangle2D.Double[] rects = new Rectangle2D.Double[37];
+        BoundsUnionTree instance = new BoundsUnionTree(rects.length);
+        assertNull(instance.getUnion());
+        for (int i = 0; i < rects.length; i++) {
+            rects[i] = new Rectangle2D.Double(r.nextDouble() * 1000, r.nextDouble() * 1000,
+                    r.nextDouble() * 100, r.nextDouble() * 100);
+            instance.set(i, rects[i]);
+        }
+        for (int j = 0; j < 200; j++) {
+            int i = r.nextInt(rects.length);
+            rects[i] = new Rectangle2D.Double(r.nextDouble() * 1000 - 500, r.nextDouble() * 1000,
+                    r.nextDouble() * 100, r.nextDouble() * 100);
+            instance.set(i, rects[i]);
+            Rectangle2D.Double expected = (Rectangle2D.Double) rects[0].clone();
+            for (Rectangle2D.Double rect : rects) {
+                expected.add(rect);
+            }
+            Rectangle2D.Double union = instance.getUnion();
+            assertEquals(union.getMinX(), expected.getMinX(), 1e-9);
+            assertEquals(union.getMinY(), expected.getMinY(), 1e-9);
+            assertEquals(union.getMaxX(), expected.getMaxX(), 1e-9);
+            assertEquals(union.getMaxY(), expected.getMaxY(), 1e-9);
+        }
+    }
+}
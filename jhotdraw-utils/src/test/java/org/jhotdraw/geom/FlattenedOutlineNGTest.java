@@ -0,0 +1,134 @@
+/*
+ * @(#)FlattenedOutlineNGTest.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.geom;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.util.Random;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+public class FlattenedOutlineNGTest {
+
+    public FlattenedOutlineNGTest() {
+    }
+
+    private static Path2D.Double createPath(int nodeCount, boolean closed, long seed) {
+        Random r = new Random(seed);
+        Path2D.Double path = new Path2D.Double();
+        double x = 500, y = 500;
+        path.moveTo(x, y);
+        for (int i = 0; i < nodeCount; i++) {
+            double nx = x + r.nextGaussian() * 20;
+            double ny = y + r.nextGaussian() * 20;
+            switch (i % 3) {
+                case 0:
+                    path.lineTo(nx, ny);
+                    break;
+                case 1:
+                    path.quadTo(x + r.nextGaussian() * 20, y + r.nextGaussian() * 20, nx, ny);
+                    break;
+                default:
+                    path.curveTo(x + r.nextGaussian() * 20, y + r.nextGaussian() * 20,
+                            nx + r.nextGaussian() * 20, ny + r.nextGaussian() * 20, nx, ny);
+                    break;
+            }
+            x = nx;
+            y = ny;
+        }
+        if (closed) {
+            path.closePath();
+        }
+        return path;
+    }
+
+    @Test
+    public void testEmpty() {
+        FlattenedOutline instance = new FlattenedOutline(new Path2D.Double(), 2);
+        assertEquals(instance.size(), 0);
+        assertFalse(instance.outlineContains(0, 0, 2));
+    }
+
+    @Test
+    public void testLine() {
+        Path2D.Double path = new Path2D.Double();
+        path.moveTo(0, 0);
+        path.lineTo(100, 100);
+        FlattenedOutline instance = new FlattenedOutline(path, 2);
+        assertEquals(instance.size(), 1);
+        assertTrue(instance.outlineContains(50, 51, 2));
+        assertFalse(instance.outlineContains(50, 60, 2));
+        assertFalse(instance.outlineContains(110, 110, 2));
+    }
+
+    @Test
+    public void testCloseSegment() {
+        Path2D.Double path = new Path2D.Double();
+        path.moveTo(0, 0);
+        path.lineTo(100, 0);
+        path.lineTo(100, 100);
+        path.closePath();
+        FlattenedOutline instance = new FlattenedOutline(path, 2);
+        assertEquals(instance.size(), 3);
+        assertTrue(instance.outlineContains(50, 50, 2));
+        assertFalse(instance.outlineContains(30, 10, 2));
+    }
+
+    @Test
+    public void testSameResultAsShapes() {
+        for (boolean closed : new boolean[]{false, true}) {
+            Path2D.Double path = createPath(500, closed, 7);
+            double tolerance = 3;
+            FlattenedOutline instance = new FlattenedOutline(path, tolerance);
+            Random r = new Random(11);
+            java.awt.geom.Rectangle2D b = path.getBounds2D();
+            int hits = 0;
+            for (int i = 0; i < 5000; i++) {
+                Point2D.Double p = new Point2D.Double(
+                        b.getX() + r.nextDouble() * b.getWidth(),
+                        b.getY() + r.nextDouble() * b.getHeight());
+                boolean expected = Shapes.outlineContains(path, p, tolerance);
+                assertEquals(instance.outlineContains(p.x, p.y, tolerance), expected, "p=" + p + " closed=" + closed);
+                if (expected) {
+                    hits++;
+                }
+            }
+            assertTrue(hits > 0);
+        }
+    }
+
+    @Test
+    public void testLargePath() {
+        Path2D.Double path = createPath(10000, false, 3);
+        double tolerance = 2;
+        Random r = new Random(5);
+        java.awt.geom.Rectangle2D b = path.getBounds2D();
+        int n = 200;
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = b.getX() + r.nextDouble() * b.getWidth();
+            ys[i] = b.getY() + r.nextDouble() * b.getHeight();
+        }
+
+        int expectedHits = 0;
+        for (int i = 0; i < n; i++) {
+            if (Shapes.outlineContains(path, new Point2D.Double(xs[i], ys[i]), tolerance)) {
+                expectedHits++;
+            }
+        }
+        FlattenedOutline instance = new FlattenedOutline(path, tolerance);
+        int hits = 0;
+        for (int i = 0; i < n; i++) {
+            if (instance.outlineContains(xs[i], ys[i], tolerance)) {
+                hits++;
+            }
+        }
+        assertEquals(hits, expectedHits);
+    }
+}
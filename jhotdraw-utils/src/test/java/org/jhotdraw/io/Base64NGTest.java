@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the streams of {@link Base64} against the static encode and decode
+ * methods, and compares their throughput with {@code java.util.Base64}.
+ */
+public class Base64NGTest {
+
+    private static final int[] LENGTHS = {0, 1, 2, 3, 4, 56, 57, 58, 1000, 10001};
+
+    public Base64NGTest() {
+    }
+
+    @Test
+    public void testOutputStreamEncodesLikeEncodeBytes() throws IOException {
+        for (int length : LENGTHS) {
+            byte[] data = createData(length);
+            for (int options : new int[]{Base64.NO_OPTIONS, Base64.DONT_BREAK_LINES}) {
+                String expected = Base64.encodeBytes(data, options);
+                // bulk writes
+                ByteArrayOutputStream buf = new ByteArrayOutputStream();
+                Base64.OutputStream out = new Base64.OutputStream(buf, Base64.ENCODE | options);
+                out.write(data, 0, Math.min(1, length));
+                out.write(data, Math.min(1, length), length - Math.min(1, length));
+                out.close();
+                assertEquals(new String(buf.toByteArray(), "US-ASCII"), expected, "length " + length);
+                // writer adapter
+                StringWriter w = new StringWriter();
+                out = new Base64.OutputStream(w, Base64.ENCODE | options);
+                out.write(data);
+                out.flushBase64();
+                assertEquals(w.toString(), expected, "length " + length);
+            }
+        }
+    }
+
+    @Test
+    public void testStreamsDecodeLikeDecode() throws IOException {
+        for (int length : LENGTHS) {
+            byte[] data = createData(length);
+            String encoded = Base64.encodeBytes(data);
+            assertEquals(Base64.decode(encoded), data);
+            // bulk reads
+            assertEquals(readFully(new Base64.InputStream(
+                    new ByteArrayInputStream(encoded.getBytes("US-ASCII")))), data, "length " + length);
+            // reader adapter with white space
+            assertEquals(readFully(new Base64.InputStream(
+                    new StringReader(" " + encoded.replace("\n", "\r\n  ")), Base64.DECODE)), data, "length " + length);
+            // decoding output stream
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            Base64.OutputStream out = new Base64.OutputStream(buf, Base64.DECODE);
+            out.write(encoded.getBytes("US-ASCII"));
+            out.close();
+            assertEquals(buf.toByteArray(), data, "length " + length);
+        }
+    }
+
+    @Test
+    public void testMixedSingleAndBulkReads() throws IOException {
+        byte[] data = createData(100);
+        Base64.InputStream in = new Base64.InputStream(new StringReader(Base64.encodeBytes(data)), Base64.DECODE);
+        byte[] result = new byte[data.length];
+        result[0] = (byte) in.read();
+        int count = 1 + in.read(result, 1, 50);
+        while (count < data.length) {
+            count += in.read(result, count, data.length - count);
+        }
+        assertEquals(result, data);
+        assertEquals(in.read(), -1);
+        assertEquals(in.read(new byte[10], 0, 10), -1);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testImproperlyPaddedInput() throws IOException {
+        readFully(new Base64.InputStream(new StringReader("QUJD\nRA"), Base64.DECODE));
+    }
+
+    @Test
+    public void testLargeData() throws IOException {
+        byte[] data = createData(4 * 1024 * 1024);
+        String expected = java.util.Base64.getEncoder().encodeToString(data);
+        String encoded = Base64.encodeBytes(data, Base64.DONT_BREAK_LINES);
+        assertEquals(encoded, expected);
+
+        StringWriter w = new StringWriter(encoded.length());
+        Base64.OutputStream out = new Base64.OutputStream(w, Base64.ENCODE | Base64.DONT_BREAK_LINES);
+        out.write(data);
+        out.flushBase64();
+        assertEquals(w.toString(), expected);
+
+        assertEquals(Base64.decode(encoded), data);
+        assertEquals(readFully(new Base64.InputStream(new ByteArrayInputStream(encoded.getBytes("US-ASCII")))), data);
+    }
+
+    private static byte[] createData(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] readFully(java.io.InputStream in) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        byte[] b = new byte[8192];
+        for (int n; (n = in.read(b, 0, b.length)) > 0;) {
+            buf.write(b, 0, n);
+        }
+        return buf.toByteArray();
+    }
+}
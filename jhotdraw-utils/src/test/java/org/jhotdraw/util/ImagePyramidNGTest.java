@@ -0,0 +1,136 @@
+/*
+ * @(#)ImagePyramidNGTest.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.util;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import static org.testng.Assert.*;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ImagePyramidNGTest {
+
+    private long savedBudget;
+
+    public ImagePyramidNGTest() {
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+        savedBudget = ImagePyramid.getMemoryBudget();
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+        ImagePyramid.setMemoryBudget(savedBudget);
+    }
+
+    private static BufferedImage createImage(int width, int height) {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        g.setColor(Color.BLUE);
+        g.fillRect(0, 0, width / 2, height);
+        g.setColor(Color.YELLOW);
+        g.fillRect(width / 2, 0, width - width / 2, height);
+        g.dispose();
+        return img;
+    }
+
+    private static byte[] encode(BufferedImage img) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        ImageIO.write(img, "PNG", bout);
+        return bout.toByteArray();
+    }
+
+    @Test
+    public void testGetLevel() {
+        assertEquals(ImagePyramid.getLevel(1024, 768, 1024, 768), 0);
+        assertEquals(ImagePyramid.getLevel(1024, 768, 2048, 1536), 0);
+        assertEquals(ImagePyramid.getLevel(1024, 768, 512, 384), 1);
+        assertEquals(ImagePyramid.getLevel(1024, 768, 500, 100), 1);
+        assertEquals(ImagePyramid.getLevel(1024, 768, 100, 100), 2);
+        assertEquals(ImagePyramid.getLevel(1024, 768, 0, 0), 9);
+    }
+
+    @Test
+    public void testImageData() throws IOException {
+        ImagePyramid instance = new ImagePyramid(encode(createImage(400, 200)), null);
+        assertEquals(instance.getWidth(), 400);
+        assertEquals(instance.getHeight(), 200);
+        BufferedImage full = instance.getImage(400, 200);
+        assertEquals(full.getWidth(), 400);
+        assertEquals(full.getHeight(), 200);
+        BufferedImage small = instance.getImage(100, 50);
+        assertEquals(small.getWidth(), 100);
+        assertEquals(small.getHeight(), 50);
+        assertEquals(small.getRGB(10, 10), Color.BLUE.getRGB());
+        assertEquals(small.getRGB(90, 10), Color.YELLOW.getRGB());
+        assertSame(instance.getImage(100, 50), small);
+        instance.dispose();
+    }
+
+    @Test
+    public void testBufferedImage() {
+        BufferedImage img = createImage(400, 200);
+        ImagePyramid instance = new ImagePyramid(null, img);
+        assertSame(instance.getImage(400, 200), img);
+        BufferedImage small = instance.getImage(50, 25);
+        assertEquals(small.getWidth(), 50);
+        assertEquals(small.getHeight(), 25);
+        instance.dispose();
+    }
+
+    @Test
+    public void testInvalidImageData() {
+        ImagePyramid instance = new ImagePyramid(new byte[]{1, 2, 3, 4}, null);
+        assertEquals(instance.getWidth(), -1);
+        assertNull(instance.getImage(10, 10));
+    }
+
+    @Test
+    public void testMemoryBudget() throws IOException {
+        long usage = ImagePyramid.getMemoryUsage();
+        byte[] data = encode(createImage(256, 256));
+        ImagePyramid a = new ImagePyramid(data, null);
+        ImagePyramid b = new ImagePyramid(data, null);
+        BufferedImage levelA = a.getImage(128, 128);
+        long levelSize = ImagePyramid.getMemoryUsage() - usage;
+        assertTrue(levelSize >= 128 * 128 * 3);
+        // There is only room for one level
+        ImagePyramid.setMemoryBudget(usage + levelSize * 3 / 2);
+        BufferedImage levelB = b.getImage(128, 128);
+        assertEquals(ImagePyramid.getMemoryUsage(), usage + levelSize);
+        // a has been evicted, b is still cached
+        assertSame(b.getImage(128, 128), levelB);
+        assertNotSame(a.getImage(128, 128), levelA);
+        a.dispose();
+        b.dispose();
+        assertEquals(ImagePyramid.getMemoryUsage(), usage);
+    }
+
+    @Test
+    public void testCollectedPyramidIsRemovedFromCache() throws Exception {
+        long usage = ImagePyramid.getMemoryUsage();
+        ImagePyramid instance = new ImagePyramid(encode(createImage(256, 256)), null);
+        assertNotNull(instance.getImage(128, 128));
+        assertTrue(ImagePyramid.getMemoryUsage() > usage);
+        instance.enqueueReference();
+        assertEquals(ImagePyramid.getMemoryUsage(), usage);
+        // The levels are cached again, if the pyramid is still in use
+        BufferedImage level = instance.getImage(128, 128);
+        assertSame(instance.getImage(128, 128), level);
+        assertTrue(ImagePyramid.getMemoryUsage() > usage);
+        instance.dispose();
+        assertEquals(ImagePyramid.getMemoryUsage(), usage);
+    }
+}
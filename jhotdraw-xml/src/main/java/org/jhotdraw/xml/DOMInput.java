@@ -102,6 +102,32 @@ public interface DOMInput {
      */
     public void openElement(String tagName, int index) throws IOException;
 
+    /**
+     * Returns true if the current element has a child element after the
+     * cursor.
+     * <p>
+     * Each opened element has a cursor over its child elements. The cursor
+     * is positioned before the first child element when the element is
+     * opened, and is positioned after a child element when the child element
+     * is opened by any of the {@code openElement}, {@code nextElement} or
+     * {@code readObject} methods. Iterating over all child elements with the
+     * cursor takes linear time:
+     * <pre>
+     * while (in.hasNextElement()) {
+     *     Object o = in.readNextObject();
+     * }
+     * </pre>
+     */
+    public boolean hasNextElement();
+
+    /**
+     * Opens the child element after the cursor and makes it the current node.
+     *
+     * @return false if there is no child element after the cursor. The
+     * current node does not change in this case.
+     */
+    public boolean nextElement() throws IOException;
+
     /**
      * Closes the current element of the DOM Document.
      * The parent of the current element becomes the current element.
@@ -120,4 +146,12 @@ public interface DOMInput {
      * Reads an object from the current element.
      */
     public Object readObject(int index) throws IOException;
+
+    /**
+     * Reads an object from the child element after the cursor of the current
+     * element.
+     *
+     * @exception IOException if there is no child element after the cursor.
+     */
+    public Object readNextObject() throws IOException;
 }
@@ -9,11 +9,8 @@ package org.jhotdraw.xml;
 
 import java.io.*;
 import java.util.*;
-import javax.xml.XMLConstants;
 import javax.xml.parsers.*;
 import org.w3c.dom.*;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
 /**
  * DOMInput.
@@ -46,52 +43,71 @@ public class JavaxDOMInput implements DOMInput {
      * The factory used to create objects from XML tag names.
      */
     private DOMFactory factory;
-    protected static DocumentBuilder documentBuilder;
+    /**
+     * The child index of the current node.
+     */
+    private ChildIndex index;
+    /**
+     * The child indices of the parents of the current node.
+     */
+    private ArrayList<ChildIndex> indexStack = new ArrayList<ChildIndex>();
 
     /**
-     * Lazily create the document builder and keep a reference to it for
-     * performance improvement.
+     * Caches the child elements of an opened node, and holds the cursor over
+     * the child elements.
      */
-    protected static DocumentBuilder getBuilder() throws IOException {
-        if (documentBuilder == null) {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setNamespaceAware(true);
-            factory.setValidating(false);
-            factory.setXIncludeAware(false);
-            try {
-                factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-                documentBuilder = factory.newDocumentBuilder();
-            } catch (Exception ex) {
-                InternalError error = new InternalError("Unable to create DocumentBuilder");
-                error.initCause(ex);
-                throw error;
+    private static class ChildIndex {
+
+        private final Node node;
+        /**
+         * The child elements, created lazily.
+         */
+        private Element[] elements;
+        /**
+         * The index of the child element after the cursor.
+         */
+        private int cursor;
+
+        public ChildIndex(Node node) {
+            this.node = node;
+        }
+
+        public Element[] getElements() {
+            if (elements == null) {
+                ArrayList<Element> list = new ArrayList<Element>();
+                for (Node n = node.getFirstChild(); n != null; n = n.getNextSibling()) {
+                    if (n instanceof Element) {
+                        list.add((Element) n);
+                    }
+                }
+                elements = list.toArray(new Element[list.size()]);
             }
+            return elements;
         }
-        return documentBuilder;
+    }
+
+    /**
+     * Returns the document builder of the current thread.
+     *
+     * @deprecated Use {@link XMLPool#getDocumentBuilder} instead.
+     */
+    @Deprecated
+    protected static DocumentBuilder getBuilder() throws IOException {
+        return XMLPool.getDocumentBuilder();
     }
 
     public JavaxDOMInput(DOMFactory factory, InputStream in) throws IOException {
         this.factory = factory;
-        try {
-            document = getBuilder().parse(in);
-            current = document;
-        } catch (SAXException ex) {
-            IOException e = new IOException(ex.getMessage());
-            e.initCause(ex);
-            throw e;
-        }
+        document = XMLPool.parse(in);
+        current = document;
+        index = new ChildIndex(current);
     }
 
     public JavaxDOMInput(DOMFactory factory, Reader in) throws IOException {
         this.factory = factory;
-        try {
-            document = getBuilder().parse(new InputSource(in));
-            current = document;
-        } catch (SAXException ex) {
-            IOException e = new IOException(ex.getMessage());
-            e.initCause(ex);
-            throw e;
-        }
+        document = XMLPool.parse(in);
+        current = document;
+        index = new ChildIndex(current);
     }
 
     /**
@@ -190,15 +206,7 @@ public class JavaxDOMInput implements DOMInput {
      */
     @Override
     public int getElementCount() {
-        int count = 0;
-        NodeList list = current.getChildNodes();
-        for (int i = 0; i < list.getLength(); i++) {
-            Node node = list.item(i);
-            if ((node instanceof Element)) {
-                count++;
-            }
-        }
-        return count;
+        return index.getElements().length;
     }
 
     /**
@@ -208,33 +216,32 @@ public class JavaxDOMInput implements DOMInput {
     @Override
     public int getElementCount(String tagName) {
         int count = 0;
-        NodeList list = current.getChildNodes();
-        for (int i = 0; i < list.getLength(); i++) {
-            Node node = list.item(i);
-            if ((node instanceof Element)
-                    && ((Element) node).getTagName().equals(tagName)) {
+        for (Element elem : index.getElements()) {
+            if (elem.getTagName().equals(tagName)) {
                 count++;
             }
         }
         return count;
     }
 
+    /**
+     * Opens the child element with the specified index in the child index
+     * of the current node, and makes it the current node.
+     */
+    private void open(int i) {
+        index.cursor = i + 1;
+        indexStack.add(index);
+        current = index.getElements()[i];
+        index = new ChildIndex(current);
+    }
+
     /**
      * Opens the element with the specified index and makes it the current node.
      */
     @Override
     public void openElement(int index) {
-        int count = 0;
-        NodeList list = current.getChildNodes();
-        int len = list.getLength();
-        for (int i = 0; i < len; i++) {
-            Node node = list.item(i);
-            if ((node instanceof Element)) {
-                if (count++ == index) {
-                    current = node;
-                    return;
-                }
-            }
+        if (index >= 0 && index < this.index.getElements().length) {
+            open(index);
         }
     }
 
@@ -243,14 +250,10 @@ public class JavaxDOMInput implements DOMInput {
      */
     @Override
     public void openElement(String tagName) {
-        int count = 0;
-        NodeList list = current.getChildNodes();
-        int len = list.getLength();
-        for (int i = 0; i < len; i++) {
-            Node node = list.item(i);
-            if ((node instanceof Element)
-                    && ((Element) node).getTagName().equals(tagName)) {
-                current = node;
+        Element[] elements = index.getElements();
+        for (int i = 0; i < elements.length; i++) {
+            if (elements[i].getTagName().equals(tagName)) {
+                open(i);
                 return;
             }
         }
@@ -264,14 +267,11 @@ public class JavaxDOMInput implements DOMInput {
     @Override
     public void openElement(String tagName, int index) {
         int count = 0;
-        NodeList list = current.getChildNodes();
-        int len = list.getLength();
-        for (int i = 0; i < len; i++) {
-            Node node = list.item(i);
-            if ((node instanceof Element)
-                    && ((Element) node).getTagName().equals(tagName)) {
+        Element[] elements = this.index.getElements();
+        for (int i = 0; i < elements.length; i++) {
+            if (elements[i].getTagName().equals(tagName)) {
                 if (count++ == index) {
-                    current = node;
+                    open(i);
                     return;
                 }
             }
@@ -279,6 +279,20 @@ public class JavaxDOMInput implements DOMInput {
         throw new IllegalArgumentException("no such child " + tagName + "[" + index + "]");
     }
 
+    @Override
+    public boolean hasNextElement() {
+        return index.cursor < index.getElements().length;
+    }
+
+    @Override
+    public boolean nextElement() {
+        if (!hasNextElement()) {
+            return false;
+        }
+        open(index.cursor);
+        return true;
+    }
+
     /**
      * Closes the current element of the DOM Document.
      * The parent of the current element becomes the current element.
@@ -293,6 +307,12 @@ public class JavaxDOMInput implements DOMInput {
         throw new IllegalArgumentException("Attempt to close wrong element:"+tagName +"!="+((Element) current).getTagName());
         }*/
         current = current.getParentNode();
+        if (!indexStack.isEmpty() && indexStack.get(indexStack.size() - 1).node == current) {
+            index = indexStack.remove(indexStack.size() - 1);
+        } else {
+            indexStack.clear();
+            index = new ChildIndex(current);
+        }
     }
 
     /**
@@ -309,6 +329,25 @@ public class JavaxDOMInput implements DOMInput {
     @Override
     public Object readObject(int index) throws IOException {
         openElement(index);
+        return readCurrentObject();
+    }
+
+    /**
+     * Reads an object from the child element after the cursor of the current
+     * element.
+     */
+    @Override
+    public Object readNextObject() throws IOException {
+        if (!nextElement()) {
+            throw new IOException("no more child elements in <" + getTagName() + ">");
+        }
+        return readCurrentObject();
+    }
+
+    /**
+     * Reads an object from the current node, and closes the current node.
+     */
+    private Object readCurrentObject() throws IOException {
         Object o;
         String ref = getAttribute("ref", null);
         String id = getAttribute("id", null);
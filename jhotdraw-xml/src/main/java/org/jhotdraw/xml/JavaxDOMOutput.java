@@ -9,7 +9,6 @@ package org.jhotdraw.xml;
 
 import java.io.*;
 import java.util.*;
-import javax.xml.parsers.*;
 import javax.xml.transform.*;
 import javax.xml.transform.dom.*;
 import javax.xml.transform.stream.*;
@@ -64,15 +63,9 @@ public class JavaxDOMOutput implements DOMOutput {
     }
 
     protected void reset() throws IOException {
-        try {
-            objectids = new HashMap<Object, String>();
-            document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-            current = document;
-        } catch (ParserConfigurationException e) {
-            IOException error = new IOException(e.getMessage());
-            error.initCause(e);
-            throw error;
-        }
+        objectids = new HashMap<Object, String>();
+        document = XMLPool.newDocument();
+        current = document;
     }
 
     /**
@@ -87,7 +80,7 @@ public class JavaxDOMOutput implements DOMOutput {
                 w.write(">\n");
                 w.flush();
             }
-            Transformer t = TransformerFactory.newInstance().newTransformer();
+            Transformer t = XMLPool.getTransformer();
             t.transform(new DOMSource(document), new StreamResult(out));
         } catch (TransformerException e) {
             IOException error = new IOException(e.getMessage());
@@ -106,7 +99,7 @@ public class JavaxDOMOutput implements DOMOutput {
                 out.write(doctype);
                 out.write(">\n");
             }
-            Transformer t = TransformerFactory.newInstance().newTransformer();
+            Transformer t = XMLPool.getTransformer();
             t.transform(new DOMSource(document), new StreamResult(out));
         } catch (TransformerException e) {
             IOException error = new IOException(e.getMessage());
@@ -0,0 +1,439 @@
+/*
+ * @(#)StaxDOMInput.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.xml;
+
+import java.io.*;
+import java.util.*;
+import javax.xml.stream.*;
+
+/**
+ * DOMInput which reads a document with a StAX stream reader.
+ * <p>
+ * The document is read in a single streaming pass into a compact element
+ * tree. The tree only holds the tag names, the attributes and the positions
+ * of the text of the elements. All text of the document is held in a single
+ * character buffer. Hence, this class needs considerably less memory than
+ * {@link JavaxDOMInput}, which builds a W3C DOM with a node for each
+ * attribute and each run of text.
+ * <p>
+ * Comments, processing instructions and the doctype of the document are
+ * ignored.
+ * <p>
+ * Design pattern:<br>
+ * Name: Adapter.<br>
+ * Role: Adapter.<br>
+ * Partners: {@link javax.xml.stream.XMLStreamReader} as Adaptee.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class StaxDOMInput implements DOMInput {
+
+    /**
+     * This map is used to unmarshall references to objects to
+     * the XML DOM. A key in this map is a String representing a marshalled
+     * reference. A value in this map is an unmarshalled Object.
+     */
+    private HashMap<String, Object> idobjects = new HashMap<String, Object>();
+    /**
+     * Holds the text of all elements in document order.
+     */
+    private StringBuilder text = new StringBuilder();
+    /**
+     * The document node. Its only child is the root element.
+     */
+    private ElementNode document;
+    /**
+     * The current node used for input.
+     */
+    private ElementNode current;
+    /**
+     * The factory used to create objects from XML tag names.
+     */
+    private DOMFactory factory;
+    private static final ElementNode[] NO_CHILDREN = new ElementNode[0];
+    private static final String[] NO_ATTRIBUTES = new String[0];
+
+    /**
+     * An element of the document.
+     */
+    private static class ElementNode {
+
+        private final String tagName;
+        private final ElementNode parent;
+        /**
+         * Attribute names and values in alternating order.
+         */
+        private String[] attributes = NO_ATTRIBUTES;
+        private ElementNode[] children = NO_CHILDREN;
+        private int childCount;
+        /**
+         * The start and end of the text of this element and of all its
+         * descendants in the text buffer.
+         */
+        private int textStart, textEnd;
+        /**
+         * The index of the child element after the cursor.
+         */
+        private int cursor;
+
+        public ElementNode(String tagName, ElementNode parent) {
+            this.tagName = tagName;
+            this.parent = parent;
+        }
+
+        public void addChild(ElementNode child) {
+            if (childCount == children.length) {
+                children = Arrays.copyOf(children, Math.max(4, childCount * 2));
+            }
+            children[childCount++] = child;
+        }
+
+        public void trimChildren() {
+            if (childCount != children.length) {
+                children = (childCount == 0) ? NO_CHILDREN : Arrays.copyOf(children, childCount);
+            }
+        }
+
+        public String getAttribute(String name) {
+            for (int i = 0; i < attributes.length; i += 2) {
+                if (attributes[i].equals(name)) {
+                    return attributes[i + 1];
+                }
+            }
+            return "";
+        }
+    }
+
+    public StaxDOMInput(DOMFactory factory, InputStream in) throws IOException {
+        this.factory = factory;
+        try {
+            parse(createInputFactory().createXMLStreamReader(in));
+        } catch (XMLStreamException ex) {
+            IOException e = new IOException(ex.getMessage());
+            e.initCause(ex);
+            throw e;
+        }
+    }
+
+    public StaxDOMInput(DOMFactory factory, Reader in) throws IOException {
+        this.factory = factory;
+        try {
+            parse(createInputFactory().createXMLStreamReader(in));
+        } catch (XMLStreamException ex) {
+            IOException e = new IOException(ex.getMessage());
+            e.initCause(ex);
+            throw e;
+        }
+    }
+
+    /**
+     * Creates an input factory which does not process the doctype and does
+     * not resolve external entities.
+     */
+    protected XMLInputFactory createInputFactory() {
+        return XMLPool.getXMLInputFactory();
+    }
+
+    /**
+     * Reads the document into the element tree.
+     */
+    private void parse(XMLStreamReader r) throws XMLStreamException {
+        document = new ElementNode(null, null);
+        ElementNode node = document;
+        try {
+            while (r.hasNext()) {
+                switch (r.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        node = startElement(r, node);
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        node.textEnd = text.length();
+                        node.trimChildren();
+                        node = node.parent;
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (node != document) {
+                            text.append(r.getTextCharacters(), r.getTextStart(), r.getTextLength());
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            r.close();
+        }
+        document.textEnd = text.length();
+        document.trimChildren();
+        text.trimToSize();
+        current = document;
+    }
+
+    /**
+     * Creates an element node for the start element at the current position
+     * of the reader, and adds it to the specified parent.
+     */
+    private ElementNode startElement(XMLStreamReader r, ElementNode parent) {
+        ElementNode node = new ElementNode(getQualifiedName(r.getPrefix(), r.getLocalName()), parent);
+        int n = r.getAttributeCount();
+        if (n > 0) {
+            node.attributes = new String[n * 2];
+            for (int i = 0; i < n; i++) {
+                node.attributes[i * 2] = getQualifiedName(r.getAttributePrefix(i), r.getAttributeLocalName(i));
+                node.attributes[i * 2 + 1] = r.getAttributeValue(i);
+            }
+        }
+        node.textStart = text.length();
+        parent.addChild(node);
+        return node;
+    }
+
+    private static String getQualifiedName(String prefix, String localName) {
+        return (prefix == null || prefix.isEmpty()) ? localName : prefix + ":" + localName;
+    }
+
+    /**
+     * Returns the tag name of the current element.
+     */
+    @Override
+    public String getTagName() {
+        return current.tagName;
+    }
+
+    /**
+     * Gets an attribute of the current element of the DOM Document.
+     */
+    @Override
+    public String getAttribute(String name, String defaultValue) {
+        String value = current.getAttribute(name);
+        return (value.length() == 0) ? defaultValue : value;
+    }
+
+    /**
+     * Gets the text of the current element of the DOM Document.
+     */
+    @Override
+    public String getText() {
+        return getText(null);
+    }
+
+    /**
+     * Gets the text of the current element of the DOM Document.
+     */
+    @Override
+    public String getText(String defaultValue) {
+        if (current.textStart == current.textEnd && current.childCount == 0) {
+            return defaultValue;
+        }
+        return text.substring(current.textStart, current.textEnd);
+    }
+
+    /**
+     * Gets an attribute of the current element of the DOM Document and of
+     * all parent DOM elements.
+     */
+    @Override
+    public java.util.List<String> getInheritedAttribute(String name) {
+        LinkedList<String> values = new LinkedList<String>();
+        for (ElementNode node = current; node != document; node = node.parent) {
+            values.addFirst(node.getAttribute(name));
+        }
+        return values;
+    }
+
+    /**
+     * Gets an attribute of the current element of the DOM Document.
+     */
+    @Override
+    public int getAttribute(String name, int defaultValue) {
+        String value = current.getAttribute(name);
+        return (value.length() == 0) ? defaultValue : Long.decode(value).intValue();
+    }
+
+    /**
+     * Gets an attribute of the current element of the DOM Document.
+     */
+    @Override
+    public double getAttribute(String name, double defaultValue) {
+        String value = current.getAttribute(name);
+        return (value.length() == 0) ? defaultValue : Double.parseDouble(value);
+    }
+
+    /**
+     * Gets an attribute of the current element of the DOM Document.
+     */
+    @Override
+    public boolean getAttribute(String name, boolean defaultValue) {
+        String value = current.getAttribute(name);
+        return (value.length() == 0) ? defaultValue : Boolean.valueOf(value).booleanValue();
+    }
+
+    /**
+     * Returns the number of child elements of the current element.
+     */
+    @Override
+    public int getElementCount() {
+        return current.childCount;
+    }
+
+    /**
+     * Returns the number of child elements with the specified tag name
+     * of the current element.
+     */
+    @Override
+    public int getElementCount(String tagName) {
+        int count = 0;
+        for (int i = 0; i < current.childCount; i++) {
+            if (current.children[i].tagName.equals(tagName)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Opens the child element with the specified index and makes it the
+     * current node.
+     */
+    private void open(int i) {
+        current.cursor = i + 1;
+        current = current.children[i];
+        current.cursor = 0;
+    }
+
+    /**
+     * Opens the element with the specified index and makes it the current node.
+     */
+    @Override
+    public void openElement(int index) {
+        if (index >= 0 && index < current.childCount) {
+            open(index);
+        }
+    }
+
+    /**
+     * Opens the last element with the specified name and makes it the current node.
+     */
+    @Override
+    public void openElement(String tagName) {
+        for (int i = 0; i < current.childCount; i++) {
+            if (current.children[i].tagName.equals(tagName)) {
+                open(i);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("element not found:" + tagName);
+    }
+
+    /**
+     * Opens the element with the specified name and index and makes it the
+     * current node.
+     */
+    @Override
+    public void openElement(String tagName, int index) {
+        int count = 0;
+        for (int i = 0; i < current.childCount; i++) {
+            if (current.children[i].tagName.equals(tagName)) {
+                if (count++ == index) {
+                    open(i);
+                    return;
+                }
+            }
+        }
+        throw new IllegalArgumentException("no such child " + tagName + "[" + index + "]");
+    }
+
+    @Override
+    public boolean hasNextElement() {
+        return current.cursor < current.childCount;
+    }
+
+    @Override
+    public boolean nextElement() {
+        if (!hasNextElement()) {
+            return false;
+        }
+        open(current.cursor);
+        return true;
+    }
+
+    /**
+     * Closes the current element of the DOM Document.
+     * The parent of the current element becomes the current element.
+     */
+    @Override
+    public void closeElement() {
+        if (current.parent != null) {
+            current = current.parent;
+        }
+    }
+
+    /**
+     * Reads an object from the current element.
+     */
+    @Override
+    public Object readObject() throws IOException {
+        return readObject(0);
+    }
+
+    /**
+     * Reads an object from the current element.
+     */
+    @Override
+    public Object readObject(int index) throws IOException {
+        openElement(index);
+        return readCurrentObject();
+    }
+
+    /**
+     * Reads an object from the child element after the cursor of the current
+     * element.
+     */
+    @Override
+    public Object readNextObject() throws IOException {
+        if (!nextElement()) {
+            throw new IOException("no more child elements in <" + getTagName() + ">");
+        }
+        return readCurrentObject();
+    }
+
+    /**
+     * Reads an object from the current node, and closes the current node.
+     */
+    private Object readCurrentObject() throws IOException {
+        Object o;
+        String ref = getAttribute("ref", null);
+        String id = getAttribute("id", null);
+        if (ref != null && id != null) {
+            throw new IOException("Element has both an id and a ref attribute: <" + getTagName() + " id=" + id + " ref=" + ref + ">");
+        }
+        if (id != null && idobjects.containsKey(id)) {
+            throw new IOException("Duplicate id attribute: <" + getTagName() + " id=" + id + ">");
+        }
+        if (ref != null && !idobjects.containsKey(ref)) {
+            throw new IOException("Illegal ref attribute value: <" + getTagName() + " ref=" + ref + ">");
+        }
+        // Keep track of objects which have an ID
+        if (ref != null) {
+            o = idobjects.get(ref);
+        } else {
+            o = factory.read(this);
+            if (id != null) {
+                idobjects.put(id, o);
+            }
+            if (o instanceof DOMStorable) {
+                ((DOMStorable) o).read(this);
+            }
+        }
+        closeElement();
+        return o;
+    }
+}
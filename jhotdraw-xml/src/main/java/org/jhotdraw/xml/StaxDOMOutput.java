@@ -0,0 +1,358 @@
+/*
+ * @(#)StaxDOMOutput.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.xml;
+
+import java.io.*;
+import java.util.*;
+import javax.xml.stream.*;
+
+/**
+ * DOMOutput which writes a document with a StAX stream writer.
+ * <p>
+ * Unlike {@link JavaxDOMOutput}, this class does not build a document in
+ * memory. Each element is written to the stream as soon as its first child,
+ * its first text or its end tag is written. Therefore, all attributes of an
+ * element must be added before its children and its text, and the doctype
+ * must be set before the root element is opened. Call {@link #finish} after
+ * the root element has been closed.
+ * <p>
+ * Design pattern:<br>
+ * Name: Adapter.<br>
+ * Role: Adapter.<br>
+ * Partners: {@link javax.xml.stream.XMLStreamWriter} as Adaptee.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class StaxDOMOutput implements DOMOutput {
+
+    /**
+     * The doctype of the XML document.
+     */
+    private String doctype;
+    /**
+     * This map is used to marshall references to objects to
+     * the XML DOM. A key in this map is a Java Object, a value in this map
+     * is String representing a marshalled reference to that object.
+     */
+    private HashMap<Object, String> objectids = new HashMap<Object, String>();
+    /**
+     * This map is used to cache prototype objects.
+     */
+    private HashMap<String, Object> prototypes;
+    /**
+     * The tag names of the open elements.
+     */
+    private ArrayList<String> openElements = new ArrayList<String>();
+    /**
+     * The attributes of the current element, which have not been written
+     * yet. This is null if the start tag of the current element has been
+     * written.
+     */
+    private LinkedHashMap<String, String> pendingAttributes;
+    private boolean isDocumentStarted;
+    /**
+     * The writer used for output.
+     */
+    private XMLStreamWriter writer;
+    /**
+     * The factory used to create objects.
+     */
+    private DOMFactory factory;
+
+    /**
+     * Creates a new instance which writes UTF-8 encoded XML into the
+     * specified output stream.
+     */
+    public StaxDOMOutput(DOMFactory factory, OutputStream out) throws IOException {
+        this.factory = factory;
+        try {
+            writer = XMLPool.getXMLOutputFactory().createXMLStreamWriter(out, "UTF-8");
+        } catch (XMLStreamException ex) {
+            throw toIOException(ex);
+        }
+    }
+
+    /**
+     * Creates a new instance which writes XML into the specified writer.
+     */
+    public StaxDOMOutput(DOMFactory factory, Writer out) throws IOException {
+        this.factory = factory;
+        try {
+            writer = XMLPool.getXMLOutputFactory().createXMLStreamWriter(out);
+        } catch (XMLStreamException ex) {
+            throw toIOException(ex);
+        }
+    }
+
+    private static IOException toIOException(XMLStreamException ex) {
+        IOException error = new IOException(ex.getMessage());
+        error.initCause(ex);
+        return error;
+    }
+
+    /**
+     * Wraps an exception of the stream writer. The DOMOutput methods do
+     * not throw IOException.
+     */
+    private static IllegalStateException toIllegalStateException(XMLStreamException ex) {
+        IllegalStateException error = new IllegalStateException(ex.getMessage());
+        error.initCause(ex);
+        return error;
+    }
+
+    /**
+     * Writes the XML declaration and the doctype, if this has not been done
+     * yet.
+     */
+    private void startDocument() throws XMLStreamException {
+        if (!isDocumentStarted) {
+            isDocumentStarted = true;
+            writer.writeStartDocument("UTF-8", "1.0");
+            if (doctype != null) {
+                writer.writeDTD("<!DOCTYPE " + doctype + ">");
+            }
+        }
+    }
+
+    /**
+     * Writes the start tag and the attributes of the current element, if
+     * this has not been done yet.
+     */
+    private void flushStartElement() throws XMLStreamException {
+        if (pendingAttributes != null) {
+            writer.writeStartElement(openElements.get(openElements.size() - 1));
+            for (Map.Entry<String, String> entry : pendingAttributes.entrySet()) {
+                writer.writeAttribute(entry.getKey(), entry.getValue());
+            }
+            pendingAttributes = null;
+        }
+    }
+
+    /**
+     * Writes the end of the document and flushes the underlying stream.
+     * The underlying stream is not closed.
+     */
+    public void finish() throws IOException {
+        try {
+            startDocument();
+            flushStartElement();
+            while (!openElements.isEmpty()) {
+                closeElement();
+            }
+            writer.writeEndDocument();
+            writer.flush();
+            writer.close();
+        } catch (XMLStreamException ex) {
+            throw toIOException(ex);
+        }
+    }
+
+    /**
+     * Opens a new element.
+     * The new element is added as a child to the current element.
+     * Then it becomes the current element.
+     * The element must be closed using closeElement.
+     */
+    @Override
+    public void openElement(String tagName) {
+        try {
+            startDocument();
+            flushStartElement();
+        } catch (XMLStreamException ex) {
+            throw toIllegalStateException(ex);
+        }
+        openElements.add(tagName);
+        pendingAttributes = new LinkedHashMap<String, String>();
+    }
+
+    /**
+     * Closes the current element.
+     * The parent of the current element becomes the current element.
+     */
+    @Override
+    public void closeElement() {
+        try {
+            if (pendingAttributes != null) {
+                writer.writeEmptyElement(openElements.get(openElements.size() - 1));
+                for (Map.Entry<String, String> entry : pendingAttributes.entrySet()) {
+                    writer.writeAttribute(entry.getKey(), entry.getValue());
+                }
+                pendingAttributes = null;
+            } else {
+                writer.writeEndElement();
+            }
+        } catch (XMLStreamException ex) {
+            throw toIllegalStateException(ex);
+        }
+        openElements.remove(openElements.size() - 1);
+    }
+
+    /**
+     * Adds a comment to the current element.
+     */
+    @Override
+    public void addComment(String comment) {
+        try {
+            startDocument();
+            flushStartElement();
+            writer.writeComment(comment);
+        } catch (XMLStreamException ex) {
+            throw toIllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Adds a text to current element.
+     */
+    @Override
+    public void addText(String text) {
+        try {
+            flushStartElement();
+            writer.writeCharacters(text);
+        } catch (XMLStreamException ex) {
+            throw toIllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Adds an attribute to current element.
+     *
+     * @exception IllegalStateException if a child element or a text has
+     * already been added to the current element.
+     */
+    @Override
+    public void addAttribute(String name, String value) {
+        if (value != null) {
+            if (pendingAttributes == null) {
+                throw new IllegalStateException("Attribute " + name + " must be added before the content of element "
+                        + (openElements.isEmpty() ? null : openElements.get(openElements.size() - 1)));
+            }
+            pendingAttributes.put(name, value);
+        }
+    }
+
+    /**
+     * Adds an attribute to current element.
+     */
+    @Override
+    public void addAttribute(String name, int value) {
+        addAttribute(name, Integer.toString(value));
+    }
+
+    /**
+     * Adds an attribute to current element.
+     */
+    @Override
+    public void addAttribute(String name, boolean value) {
+        addAttribute(name, Boolean.toString(value));
+    }
+
+    /**
+     * Adds an attribute to current element.
+     */
+    @Override
+    public void addAttribute(String name, float value) {
+        // Remove the awkard .0 at the end of each number
+        String str = Float.toString(value);
+        if (str.endsWith(".0")) {
+            str = str.substring(0, str.length() - 2);
+        }
+        addAttribute(name, str);
+    }
+
+    /**
+     * Adds an attribute to current element.
+     */
+    @Override
+    public void addAttribute(String name, double value) {
+        // Remove the awkard .0 at the end of each number
+        String str = Double.toString(value);
+        if (str.endsWith(".0")) {
+            str = str.substring(0, str.length() - 2);
+        }
+        addAttribute(name, str);
+    }
+
+    @Override
+    public void writeObject(Object o) throws IOException {
+        String tagName = factory.getName(o);
+        if (tagName == null) {
+            throw new IllegalArgumentException("no tag name for:" + o);
+        }
+        openElement(tagName);
+        if (objectids.containsKey(o)) {
+            addAttribute("ref", objectids.get(o));
+        } else {
+            String id = Integer.toString(objectids.size(), 16);
+            objectids.put(o, id);
+            addAttribute("id", id);
+            factory.write(this, o);
+        }
+        closeElement();
+    }
+
+    @Override
+    public void addAttribute(String name, float value, float defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, int value, int defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, double value, double defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, boolean value, boolean defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, String value, String defaultValue) {
+        if (!value.equals(defaultValue)) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public Object getPrototype() {
+        if (prototypes == null) {
+            prototypes = new HashMap<String, Object>();
+        }
+        String tagName = openElements.get(openElements.size() - 1);
+        if (!prototypes.containsKey(tagName)) {
+            prototypes.put(tagName, factory.create(tagName));
+        }
+        return prototypes.get(tagName);
+    }
+
+    /**
+     * Sets the doctype. This method must be called before the root element
+     * is opened.
+     */
+    @Override
+    public void setDoctype(String doctype) {
+        if (isDocumentStarted) {
+            throw new IllegalStateException("The doctype must be set before the root element is opened");
+        }
+        this.doctype = doctype;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * @(#)XMLPool.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.xml;
+
+import java.io.*;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.*;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.transform.*;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Provides shared XML parsers and transformers.
+ * <p>
+ * Looking up a {@code DocumentBuilderFactory} or a {@code TransformerFactory}
+ * is expensive, and {@code DocumentBuilder} and {@code Transformer} objects
+ * are not thread-safe. This class creates each factory once, and keeps one
+ * document builder and one transformer per thread. The builder and the
+ * transformer are reset each time they are handed out. They must not be
+ * used by another thread, and must not be kept beyond the current read or
+ * write operation.
+ * <p>
+ * The document builders are namespace aware and non-validating. They use
+ * secure processing and do not load external DTDs.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public final class XMLPool {
+
+    private static DocumentBuilderFactory documentBuilderFactory;
+    private static TransformerFactory transformerFactory;
+    private static XMLInputFactory xmlInputFactory;
+    private static XMLOutputFactory xmlOutputFactory;
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDERS = new ThreadLocal<DocumentBuilder>();
+    private static final ThreadLocal<Transformer> TRANSFORMERS = new ThreadLocal<Transformer>();
+
+    /**
+     * Prevent instance creation.
+     */
+    private XMLPool() {
+    }
+
+    private static synchronized DocumentBuilderFactory getDocumentBuilderFactory() {
+        if (documentBuilderFactory == null) {
+            DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
+            f.setNamespaceAware(true);
+            f.setValidating(false);
+            f.setXIncludeAware(false);
+            try {
+                f.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            } catch (ParserConfigurationException ex) {
+                InternalError error = new InternalError("Unable to configure DocumentBuilderFactory");
+                error.initCause(ex);
+                throw error;
+            }
+            try {
+                f.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            } catch (ParserConfigurationException ex) {
+                // The feature is specific to Xerces. Other parsers may not
+                // support it.
+            }
+            documentBuilderFactory = f;
+        }
+        return documentBuilderFactory;
+    }
+
+    private static synchronized TransformerFactory getTransformerFactory() {
+        if (transformerFactory == null) {
+            transformerFactory = TransformerFactory.newInstance();
+        }
+        return transformerFactory;
+    }
+
+    /**
+     * Returns the document builder of the current thread.
+     */
+    public static DocumentBuilder getDocumentBuilder() throws IOException {
+        DocumentBuilder builder = DOCUMENT_BUILDERS.get();
+        if (builder == null) {
+            DocumentBuilderFactory f = getDocumentBuilderFactory();
+            try {
+                synchronized (f) {
+                    builder = f.newDocumentBuilder();
+                }
+            } catch (ParserConfigurationException ex) {
+                IOException e = new IOException(ex.getMessage());
+                e.initCause(ex);
+                throw e;
+            }
+            DOCUMENT_BUILDERS.set(builder);
+        } else {
+            builder.reset();
+        }
+        return builder;
+    }
+
+    /**
+     * Returns the transformer of the current thread. The transformer copies
+     * its source to its result.
+     */
+    public static Transformer getTransformer() throws IOException {
+        Transformer transformer = TRANSFORMERS.get();
+        if (transformer == null) {
+            TransformerFactory f = getTransformerFactory();
+            try {
+                synchronized (f) {
+                    transformer = f.newTransformer();
+                }
+            } catch (TransformerConfigurationException ex) {
+                IOException e = new IOException(ex.getMessage());
+                e.initCause(ex);
+                throw e;
+            }
+            TRANSFORMERS.set(transformer);
+        } else {
+            transformer.reset();
+        }
+        return transformer;
+    }
+
+    /**
+     * Parses a document from the specified input stream.
+     */
+    public static Document parse(InputStream in) throws IOException {
+        try {
+            return getDocumentBuilder().parse(in);
+        } catch (SAXException ex) {
+            IOException e = new IOException(ex.getMessage());
+            e.initCause(ex);
+            throw e;
+        }
+    }
+
+    /**
+     * Parses a document from the specified reader.
+     */
+    public static Document parse(Reader in) throws IOException {
+        try {
+            return getDocumentBuilder().parse(new InputSource(in));
+        } catch (SAXException ex) {
+            IOException e = new IOException(ex.getMessage());
+            e.initCause(ex);
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a new empty document.
+     */
+    public static Document newDocument() throws IOException {
+        return getDocumentBuilder().newDocument();
+    }
+
+    /**
+     * Returns a shared StAX input factory which does not process the doctype
+     * and does not resolve external entities. The factory must not be
+     * reconfigured.
+     */
+    public static synchronized XMLInputFactory getXMLInputFactory() {
+        if (xmlInputFactory == null) {
+            XMLInputFactory f = XMLInputFactory.newInstance();
+            f.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+            f.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+            f.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+            f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+            xmlInputFactory = f;
+        }
+        return xmlInputFactory;
+    }
+
+    /**
+     * Returns a shared StAX output factory. The factory must not be
+     * reconfigured.
+     */
+    public static synchronized XMLOutputFactory getXMLOutputFactory() {
+        if (xmlOutputFactory == null) {
+            xmlOutputFactory = XMLOutputFactory.newInstance();
+        }
+        return xmlOutputFactory;
+    }
+}
@@ -32,7 +32,7 @@ public class CSSRule {
 
     private String selector;
 
-    private static enum SelectorType {
+    static enum SelectorType {
         ALL, ELEMENT_NAME, CLASS_ATTRIBUTE, ID_ATTRIBUTE
     }
     private SelectorType type;
@@ -72,6 +72,20 @@ public class CSSRule {
         this.selector = (type == SelectorType.ELEMENT_NAME) ? selector : selector.substring(1);
     }
 
+    /**
+     * Returns the type of the selector, or null if this rule has no selector.
+     */
+    SelectorType getSelectorType() {
+        return type;
+    }
+
+    /**
+     * Returns the selector without its type prefix.
+     */
+    String getSelectorName() {
+        return selector;
+    }
+
     public boolean matches(Element elem) {
         boolean isMatch = false;
         switch (type) {
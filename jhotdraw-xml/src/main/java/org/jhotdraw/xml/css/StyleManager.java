@@ -16,6 +16,11 @@ import org.w3c.dom.Element;
 /**
  * StyleManager applies styling Rules to an XML DOM.
  * This class supports net.n3.nanoxml as well as org.w3c.dom.
+ * <p>
+ * The rules are indexed by the element name, class and id in their selector,
+ * so that only the rules which can match an element are tested against it.
+ * Rules are applied in the order in which they have been added. The selector
+ * of a rule must not be changed after the rule has been added.
  *
  * @author Werner Randelshofer
  * @version $Id$
@@ -23,24 +28,110 @@ import org.w3c.dom.Element;
 public class StyleManager {
 
     private java.util.List<CSSRule> rules;
+    /**
+     * Maps element names to the indices of the rules with this element name.
+     */
+    private HashMap<String, List<Integer>> nameRules;
+    /**
+     * Maps class names to the indices of the rules with this class name.
+     */
+    private HashMap<String, List<Integer>> classRules;
+    /**
+     * Maps ids to the indices of the rules with this id.
+     */
+    private HashMap<String, List<Integer>> idRules;
+    /**
+     * The indices of the rules which may match any element.
+     */
+    private ArrayList<Integer> universalRules;
 
     public StyleManager() {
         rules = new ArrayList<CSSRule>();
+        nameRules = new HashMap<String, List<Integer>>();
+        classRules = new HashMap<String, List<Integer>>();
+        idRules = new HashMap<String, List<Integer>>();
+        universalRules = new ArrayList<Integer>();
     }
 
     public void add(CSSRule rule) {
+        Integer index = rules.size();
         rules.add(rule);
+        CSSRule.SelectorType type = rule.getSelectorType();
+        if (type == null) {
+            universalRules.add(index);
+        } else {
+            switch (type) {
+                case ELEMENT_NAME:
+                    addToIndex(nameRules, rule.getSelectorName(), index);
+                    break;
+                case CLASS_ATTRIBUTE:
+                    addToIndex(classRules, rule.getSelectorName(), index);
+                    break;
+                case ID_ATTRIBUTE:
+                    addToIndex(idRules, rule.getSelectorName(), index);
+                    break;
+                case ALL:
+                default:
+                    universalRules.add(index);
+                    break;
+            }
+        }
+    }
+
+    private static void addToIndex(HashMap<String, List<Integer>> map, String key, Integer index) {
+        List<Integer> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<Integer>(1);
+            map.put(key, list);
+        }
+        list.add(index);
     }
 
     public void applyStylesTo(Element elem) {
-        for (CSSRule rule : rules) {
-            if (rule.matches(elem)) {
-                rule.apply(elem);
+        ArrayList<Integer> candidates = new ArrayList<Integer>();
+        candidates.addAll(universalRules);
+        addCandidates(candidates, nameRules, elem.getLocalName());
+        if (!classRules.isEmpty()) {
+            String value = elem.getAttribute("class");
+            if (value != null && value.length() != 0) {
+                for (String clazz : value.split(" ")) {
+                    addCandidates(candidates, classRules, clazz);
+                }
+            }
+        }
+        if (!idRules.isEmpty()) {
+            addCandidates(candidates, idRules, elem.getAttribute("id"));
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        // The first rule that sets a property wins, so the rules must be
+        // applied in the order in which they were added.
+        Collections.sort(candidates);
+        int previous = -1;
+        for (int index : candidates) {
+            if (index != previous) {
+                CSSRule rule = rules.get(index);
+                if (rule.matches(elem)) {
+                    rule.apply(elem);
+                }
+                previous = index;
             }
         }
     }
 
+    private static void addCandidates(List<Integer> candidates, HashMap<String, List<Integer>> map, String key) {
+        List<Integer> list = map.get(key);
+        if (list != null) {
+            candidates.addAll(list);
+        }
+    }
+
     public void clear() {
         rules.clear();
+        nameRules.clear();
+        classRules.clear();
+        idRules.clear();
+        universalRules.clear();
     }
 }
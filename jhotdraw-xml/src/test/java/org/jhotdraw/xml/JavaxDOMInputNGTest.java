@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.xml;
+
+import java.io.IOException;
+import java.io.StringReader;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the child navigation of {@link JavaxDOMInput}.
+ */
+public class JavaxDOMInputNGTest {
+
+    private static final String XML = "<list>\n"
+            + "  <int>1</int>\n"
+            + "  <string>two</string>\n"
+            + "  <int>3</int>\n"
+            + "  <intArray><int>4</int><int>5</int></intArray>\n"
+            + "</list>";
+
+    public JavaxDOMInputNGTest() {
+    }
+
+    @Test
+    public void testIndexedAccess() throws IOException {
+        JavaxDOMInput in = new JavaxDOMInput(new JavaPrimitivesDOMFactory(), new StringReader(XML));
+        in.openElement("list");
+        assertEquals(in.getElementCount(), 4);
+        assertEquals(in.getElementCount("int"), 2);
+        assertEquals(in.readObject(2), 3);
+        assertEquals(in.readObject(0), 1);
+        in.openElement("int", 1);
+        assertEquals(in.getText(), "3");
+        in.closeElement();
+        assertEquals(in.getTagName(), "list");
+        in.closeElement();
+    }
+
+    @Test
+    public void testCursor() throws IOException {
+        JavaxDOMInput in = new JavaxDOMInput(new JavaPrimitivesDOMFactory(), new StringReader(XML));
+        in.openElement("list");
+        assertTrue(in.hasNextElement());
+        assertEquals(in.readNextObject(), 1);
+        assertTrue(in.nextElement());
+        assertEquals(in.getTagName(), "string");
+        in.closeElement();
+        assertEquals(in.readNextObject(), 3);
+        assertEquals((int[]) in.readNextObject(), new int[]{4, 5});
+        assertFalse(in.hasNextElement());
+        assertFalse(in.nextElement());
+        assertEquals(in.getTagName(), "list");
+        // Opening an element by index moves the cursor after it
+        in.readObject(0);
+        assertEquals(in.readNextObject(), "two");
+        in.closeElement();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Compares {@link StaxDOMInput} and {@link StaxDOMOutput} with
+ * {@link JavaxDOMInput} and {@link JavaxDOMOutput}.
+ */
+public class StaxDOMInputOutputNGTest {
+
+    public StaxDOMInputOutputNGTest() {
+    }
+
+    private static void write(DOMOutput out, int[] shared) throws IOException {
+        out.openElement("drawing");
+        out.addAttribute("width", 10.5);
+        out.addAttribute("name", "a<b & \"c\"");
+        out.openElement("figures");
+        out.writeObject("text with <markup> & entities");
+        out.writeObject(42);
+        out.writeObject(shared);
+        out.writeObject(shared);
+        out.closeElement();
+        out.closeElement();
+    }
+
+    private static List<Object> read(DOMInput in) throws IOException {
+        List<Object> result = new ArrayList<>();
+        in.openElement("drawing");
+        result.add(in.getAttribute("width", 0.0));
+        result.add(in.getAttribute("name", null));
+        in.openElement("figures");
+        while (in.hasNextElement()) {
+            result.add(in.readNextObject());
+        }
+        in.closeElement();
+        in.closeElement();
+        return result;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        int[] shared = {1, 2, 3};
+        ByteArrayOutputStream javaxBuf = new ByteArrayOutputStream();
+        JavaxDOMOutput javaxOut = new JavaxDOMOutput(new JavaPrimitivesDOMFactory());
+        write(javaxOut, shared);
+        javaxOut.save(javaxBuf);
+        ByteArrayOutputStream staxBuf = new ByteArrayOutputStream();
+        StaxDOMOutput staxOut = new StaxDOMOutput(new JavaPrimitivesDOMFactory(), staxBuf);
+        write(staxOut, shared);
+        staxOut.finish();
+
+        List<Object> expected = read(new JavaxDOMInput(new JavaPrimitivesDOMFactory(),
+                new ByteArrayInputStream(javaxBuf.toByteArray())));
+        assertEquals(expected.size(), 6);
+        assertEquals(expected.get(1), "a<b & \"c\"");
+        assertSame(expected.get(4), expected.get(5));
+        for (byte[] data : new byte[][]{javaxBuf.toByteArray(), staxBuf.toByteArray()}) {
+            List<Object> actual = read(new StaxDOMInput(new JavaPrimitivesDOMFactory(),
+                    new ByteArrayInputStream(data)));
+            assertEquals(actual.size(), expected.size());
+            for (int i = 0; i < 4; i++) {
+                assertEquals(actual.get(i), expected.get(i));
+            }
+            assertEquals((int[]) actual.get(4), shared);
+            assertSame(actual.get(4), actual.get(5));
+        }
+        List<Object> javaxReadsStax = read(new JavaxDOMInput(new JavaPrimitivesDOMFactory(),
+                new ByteArrayInputStream(staxBuf.toByteArray())));
+        assertEquals(javaxReadsStax.subList(0, 4), expected.subList(0, 4));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testAttributeAfterContent() throws IOException {
+        StaxDOMOutput out = new StaxDOMOutput(new JavaPrimitivesDOMFactory(), new ByteArrayOutputStream());
+        out.openElement("drawing");
+        out.openElement("figures");
+        out.closeElement();
+        out.addAttribute("width", 1);
+    }
+}
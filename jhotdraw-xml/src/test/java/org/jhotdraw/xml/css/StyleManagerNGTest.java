@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.xml.css;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.jhotdraw.xml.XMLPool;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+
+/**
+ * Tests the rule matching of {@link StyleManager}.
+ */
+public class StyleManagerNGTest {
+
+    private static final String SVG_NAMESPACE = "http://www.w3.org/2000/svg";
+
+    public StyleManagerNGTest() {
+    }
+
+    @Test
+    public void testRulesApplyInOrder() throws IOException {
+        StyleManager m = new StyleManager();
+        new CSSParser().parse("#r1 { fill: red }\n"
+                + ".a { fill: green; stroke: blue }\n"
+                + "rect { stroke: black; stroke-width: 2 }\n"
+                + "* { opacity: 0.5 }\n"
+                + ".b { stroke-width: 3 }", m);
+        Document doc = XMLPool.newDocument();
+
+        Element r1 = doc.createElementNS(SVG_NAMESPACE, "rect");
+        r1.setAttribute("id", "r1");
+        r1.setAttribute("class", "b a");
+        m.applyStylesTo(r1);
+        assertEquals(r1.getAttribute("fill"), "red");
+        assertEquals(r1.getAttribute("stroke"), "blue");
+        assertEquals(r1.getAttribute("stroke-width"), "2");
+        assertEquals(r1.getAttribute("opacity"), "0.5");
+
+        Element c = doc.createElementNS(SVG_NAMESPACE, "circle");
+        c.setAttribute("class", "b");
+        c.setAttribute("fill", "none");
+        m.applyStylesTo(c);
+        assertEquals(c.getAttribute("fill"), "none");
+        assertFalse(c.hasAttribute("stroke"));
+        assertEquals(c.getAttribute("stroke-width"), "3");
+    }
+
+    @Test
+    public void testLargeStylesheet() throws IOException {
+        final int ruleCount = 2000;
+        final int elementCount = 2000;
+        StringBuilder css = new StringBuilder();
+        for (int i = 0; i < ruleCount; i++) {
+            css.append(".st").append(i).append(" { fill: #").append(String.format("%06x", i))
+                    .append("; stroke-width: ").append(i % 7).append(" }\n");
+        }
+        css.append("path { stroke: black }\n#e7 { opacity: 0.5 }\n");
+        StyleManager indexed = new StyleManager();
+        new CSSParser().parse(css.toString(), indexed);
+        List<CSSRule> rules = new ArrayList<CSSRule>();
+        new CSSParser().parse(css.toString(), new StyleManager() {
+            @Override
+            public void add(CSSRule rule) {
+                rules.add(rule);
+            }
+        });
+
+        Document doc = XMLPool.newDocument();
+        List<Element> expected = new ArrayList<Element>();
+        List<Element> actual = new ArrayList<Element>();
+        for (int i = 0; i < elementCount; i++) {
+            Element elem = doc.createElementNS(SVG_NAMESPACE, (i % 2 == 0) ? "path" : "rect");
+            elem.setAttribute("id", "e" + i);
+            elem.setAttribute("class", "st" + (i * 31 % ruleCount) + " st" + (i % ruleCount));
+            expected.add(elem);
+            actual.add((Element) elem.cloneNode(false));
+        }
+
+        for (Element elem : expected) {
+            for (CSSRule rule : rules) {
+                if (rule.matches(elem)) {
+                    rule.apply(elem);
+                }
+            }
+        }
+        for (Element elem : actual) {
+            indexed.applyStylesTo(elem);
+        }
+
+        for (int i = 0; i < elementCount; i++) {
+            assertEquals(toString(actual.get(i)), toString(expected.get(i)));
+        }
+    }
+
+    private static String toString(Element elem) {
+        StringBuilder buf = new StringBuilder(elem.getLocalName());
+        NamedNodeMap attributes = elem.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            buf.append(' ').append(attributes.item(i));
+        }
+        return buf.toString();
+    }
+}